@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.benchmarks;
+
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.Referenceable;
+import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting untyped tables, with their database, storage descriptor, columns and traits, to
+ * typed instances with {@link org.apache.hadoop.metadata.typesystem.types.ClassType#convert}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConvertBenchmark {
+
+    @Benchmark
+    public void convert(HiveModel model, Blackhole bh) throws MetadataException {
+        for (Referenceable table : model.tableReferenceables) {
+            bh.consume(model.tableType.convert(table, Multiplicity.REQUIRED));
+        }
+    }
+
+    @Benchmark
+    public void convertTyped(HiveModel model, Blackhole bh) throws MetadataException {
+        for (ITypedReferenceableInstance table : model.tableInstances) {
+            bh.consume(model.tableType.convert(table, Multiplicity.REQUIRED));
+        }
+    }
+}
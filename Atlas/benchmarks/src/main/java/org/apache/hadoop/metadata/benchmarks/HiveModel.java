@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.Referenceable;
+import org.apache.hadoop.metadata.typesystem.Struct;
+import org.apache.hadoop.metadata.typesystem.types.AttributeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.DataTypes;
+import org.apache.hadoop.metadata.typesystem.types.HierarchicalTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
+import org.apache.hadoop.metadata.typesystem.types.StructTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.TraitType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Hive shaped model shared by the benchmarks: one database with {@link #tables} tables,
+ * each with {@link #columns} composite columns, a storage descriptor struct, a map of
+ * parameters and {@link #traits} traits. The types are defined in the TypeSystem
+ * singleton, which is reset when the model is set up.
+ */
+@State(Scope.Benchmark)
+public class HiveModel {
+
+    public static final String DB_TYPE = "hive_db";
+    public static final String TABLE_TYPE = "hive_table";
+    public static final String COLUMN_TYPE = "hive_column";
+    public static final String SD_TYPE = "hive_sd";
+    public static final String PROCESS_TYPE = "hive_process";
+    public static final String TRAIT_TYPE_PREFIX = "hive_trait_";
+
+    @Param({"10", "100"})
+    public int tables;
+
+    @Param({"10", "100"})
+    public int columns;
+
+    @Param({"0", "4"})
+    public int traits;
+
+    TypeSystem typeSystem;
+    ClassType tableType;
+
+    /*
+     * the untyped tables, all referencing the same database.
+     */
+    List<Referenceable> tableReferenceables;
+
+    /*
+     * the tables converted to their ClassType.
+     */
+    List<ITypedReferenceableInstance> tableInstances;
+
+    @Setup
+    public void setup() throws MetadataException {
+        typeSystem = TypeSystem.getInstance();
+        typeSystem.reset();
+        defineTypes();
+        tableType = typeSystem.getDataType(ClassType.class, TABLE_TYPE);
+
+        Referenceable db = new Referenceable(DB_TYPE);
+        db.set("name", "db");
+        db.set("owner", "etl");
+        db.set("createTime", 1000);
+
+        tableReferenceables = new ArrayList<Referenceable>(tables);
+        tableInstances = new ArrayList<ITypedReferenceableInstance>(tables);
+        for (int i = 0; i < tables; i++) {
+            Referenceable table = createTable(db, i);
+            tableReferenceables.add(table);
+            tableInstances.add(tableType.convert(table, Multiplicity.REQUIRED));
+        }
+    }
+
+    public static String traitName(int i) {
+        return TRAIT_TYPE_PREFIX + i;
+    }
+
+    private void defineTypes() throws MetadataException {
+        HierarchicalTypeDefinition<ClassType> dbDef = TypesUtil.createClassTypeDef(DB_TYPE,
+                ImmutableList.<String>of(),
+                TypesUtil.createUniqueRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("owner", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("createTime", DataTypes.INT_TYPE));
+
+        StructTypeDefinition sdDef = TypesUtil.createStructTypeDef(SD_TYPE,
+                TypesUtil.createRequiredAttrDef("location", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("inputFormat", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("outputFormat", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("compressed", DataTypes.BOOLEAN_TYPE));
+
+        HierarchicalTypeDefinition<ClassType> columnDef = TypesUtil.createClassTypeDef(COLUMN_TYPE,
+                ImmutableList.<String>of(),
+                TypesUtil.createRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                TypesUtil.createRequiredAttrDef("type", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("comment", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("position", DataTypes.INT_TYPE));
+
+        HierarchicalTypeDefinition<ClassType> tableDef = TypesUtil.createClassTypeDef(TABLE_TYPE,
+                ImmutableList.<String>of(),
+                TypesUtil.createUniqueRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("owner", DataTypes.STRING_TYPE),
+                TypesUtil.createOptionalAttrDef("createTime", DataTypes.INT_TYPE),
+                TypesUtil.createOptionalAttrDef("retention", DataTypes.LONG_TYPE),
+                TypesUtil.createRequiredAttrDef("db", DB_TYPE),
+                TypesUtil.createRequiredAttrDef("sd", SD_TYPE),
+                new AttributeDefinition("columns",
+                        DataTypes.arrayTypeName(COLUMN_TYPE), Multiplicity.COLLECTION, true, null),
+                TypesUtil.createOptionalAttrDef("parameters",
+                        DataTypes.mapTypeName(DataTypes.STRING_TYPE, DataTypes.STRING_TYPE)));
+
+        HierarchicalTypeDefinition<ClassType> processDef = TypesUtil.createClassTypeDef(
+                PROCESS_TYPE, ImmutableList.<String>of(),
+                TypesUtil.createRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                new AttributeDefinition("inputTables",
+                        DataTypes.arrayTypeName(TABLE_TYPE), Multiplicity.COLLECTION, false, null),
+                TypesUtil.createRequiredAttrDef("outputTable", TABLE_TYPE));
+
+        ImmutableList.Builder<HierarchicalTypeDefinition<TraitType>> traitDefs =
+                ImmutableList.builder();
+        for (int i = 0; i < traits; i++) {
+            traitDefs.add(TypesUtil.createTraitTypeDef(traitName(i), ImmutableList.<String>of(),
+                    TypesUtil.createOptionalAttrDef("tag", DataTypes.STRING_TYPE)));
+        }
+
+        typeSystem.defineTypes(ImmutableList.of(sdDef), traitDefs.build(),
+                ImmutableList.of(dbDef, columnDef, tableDef, processDef));
+    }
+
+    private Referenceable createTable(Referenceable db, int index) {
+        String[] traitNames = new String[traits];
+        for (int i = 0; i < traits; i++) {
+            traitNames[i] = traitName(i);
+        }
+
+        Referenceable table = new Referenceable(TABLE_TYPE, traitNames);
+        table.set("name", "table_" + index);
+        table.set("owner", "etl");
+        table.set("createTime", index);
+        table.set("retention", 30L * index);
+        table.set("db", db);
+
+        Struct sd = new Struct(SD_TYPE);
+        sd.set("location", "hdfs://warehouse/db/table_" + index);
+        sd.set("inputFormat", "TextInputFormat");
+        sd.set("outputFormat", "TextOutputFormat");
+        sd.set("compressed", false);
+        table.set("sd", sd);
+
+        List<Referenceable> cols = new ArrayList<Referenceable>(columns);
+        for (int i = 0; i < columns; i++) {
+            Referenceable col = new Referenceable(COLUMN_TYPE);
+            col.set("name", "column_" + i);
+            col.set("type", i % 2 == 0 ? "string" : "int");
+            col.set("comment", "column " + i + " of table_" + index);
+            col.set("position", i);
+            cols.add(col);
+        }
+        table.set("columns", ImmutableList.copyOf(cols));
+
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("transient_lastDdlTime", String.valueOf(index));
+        parameters.put("numFiles", "1");
+        table.set("parameters", parameters);
+
+        for (int i = 0; i < traits; i++) {
+            ((Struct) table.getTrait(traitName(i))).set("tag", "tag_" + i);
+        }
+        return table;
+    }
+}
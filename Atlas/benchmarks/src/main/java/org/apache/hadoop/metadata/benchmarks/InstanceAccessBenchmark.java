@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.benchmarks;
+
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.persistence.StructInstance;
+import org.apache.hadoop.metadata.typesystem.types.FieldAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing the fields of a typed table by attribute name, through
+ * {@link StructInstance#get(String)} and {@link StructInstance#set(String, Object)}, and
+ * through the {@link FieldAccessor}s of its FieldMapping.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InstanceAccessBenchmark {
+
+    static final String[] FIELDS = {"name", "owner", "createTime", "retention", "sd", "columns"};
+
+    @State(Scope.Thread)
+    public static class Table {
+        StructInstance table;
+        FieldAccessor[] accessors;
+        FieldAccessor createTime;
+
+        @Setup
+        public void setup(HiveModel model) {
+            table = (StructInstance) model.tableInstances.get(0);
+            accessors = new FieldAccessor[FIELDS.length];
+            for (int i = 0; i < FIELDS.length; i++) {
+                accessors[i] = table.fieldMapping().accessor(FIELDS[i]);
+            }
+            createTime = table.fieldMapping().accessor("createTime");
+        }
+    }
+
+    @Benchmark
+    public void getByName(Table t, Blackhole bh) throws MetadataException {
+        for (String field : FIELDS) {
+            bh.consume(t.table.get(field));
+        }
+    }
+
+    @Benchmark
+    public void getByAccessor(Table t, Blackhole bh) {
+        for (FieldAccessor accessor : t.accessors) {
+            bh.consume(t.table.get(accessor));
+        }
+    }
+
+    @Benchmark
+    public void setByName(Table t) throws MetadataException {
+        t.table.set("createTime", 42);
+    }
+
+    @Benchmark
+    public void setByAccessor(Table t) throws MetadataException {
+        t.table.set(t.createTime, 42);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.benchmarks;
+
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.types.ObjectGraphWalker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking the typed tables, their database and columns with an {@link ObjectGraphWalker}, as
+ * the repository does to discover the instances of a graph before storing it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjectGraphWalkerBenchmark {
+
+    static class CountingProcessor implements ObjectGraphWalker.NodeProcessor {
+        int nodes;
+
+        @Override
+        public void processNode(ObjectGraphWalker.Node nd) throws MetadataException {
+            nodes++;
+        }
+    }
+
+    @Benchmark
+    public int walk(HiveModel model) throws MetadataException {
+        CountingProcessor processor = new CountingProcessor();
+        new ObjectGraphWalker(model.typeSystem, processor, model.tableInstances).walk();
+        return processor.nodes;
+    }
+}
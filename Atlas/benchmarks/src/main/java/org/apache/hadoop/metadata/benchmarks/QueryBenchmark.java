@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.benchmarks;
+
+import org.apache.hadoop.metadata.query.Expressions;
+import org.apache.hadoop.metadata.query.GraphPersistenceStrategy1$;
+import org.apache.hadoop.metadata.query.GremlinQuery;
+import org.apache.hadoop.metadata.query.GremlinTranslator;
+import org.apache.hadoop.metadata.query.QueryParser;
+import org.apache.hadoop.metadata.query.QueryProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing DSL queries over the Hive model with {@link QueryParser}, and resolving and
+ * translating the parsed expressions to Gremlin with {@link GremlinTranslator}. Neither
+ * depends on the number of instances, so the model is set up with one of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark {
+
+    @Param({
+            "hive_table where name = \"table_1\"",
+            "hive_table where createTime > 10 select name, owner",
+            "hive_db where name = \"db\" hive_table",
+            "hive_table where name = \"table_1\" loop (hive_process outputTable)"
+    })
+    public String query;
+
+    QueryParser parser;
+    Expressions.Expression expression;
+
+    @Setup
+    public void setup() throws Exception {
+        HiveModel model = new HiveModel();
+        model.tables = 1;
+        model.columns = 1;
+        model.traits = 1;
+        model.setup();
+
+        parser = new QueryParser();
+        expression = parser.apply(query).right().get();
+    }
+
+    @Benchmark
+    public Expressions.Expression parse() {
+        return parser.apply(query).right().get();
+    }
+
+    @Benchmark
+    public GremlinQuery translate() {
+        return new GremlinTranslator(QueryProcessor.validate(expression),
+                GraphPersistenceStrategy1$.MODULE$).translate();
+    }
+}
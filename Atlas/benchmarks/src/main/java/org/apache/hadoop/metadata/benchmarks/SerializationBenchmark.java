@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.benchmarks;
+
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.Referenceable;
+import org.apache.hadoop.metadata.typesystem.json.InstanceSerialization$;
+import org.apache.hadoop.metadata.typesystem.json.Serialization$;
+import org.apache.hadoop.metadata.typesystem.json.TypesSerialization$;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Json serialization of the tables: typed instances with Serialization, untyped instances
+ * with InstanceSerialization, and the type definitions with TypesSerialization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Json {
+        List<String> typedTables;
+        List<String> tables;
+        String types;
+
+        @Setup
+        public void setup(HiveModel model) {
+            typedTables = new ArrayList<String>(model.tables);
+            for (ITypedReferenceableInstance table : model.tableInstances) {
+                typedTables.add(Serialization$.MODULE$.toJson(table));
+            }
+            tables = new ArrayList<String>(model.tables);
+            for (Referenceable table : model.tableReferenceables) {
+                tables.add(InstanceSerialization$.MODULE$.toJson(table, false));
+            }
+            types = TypesSerialization$.MODULE$.toJson(model.typeSystem,
+                    model.typeSystem.getTypeNames());
+        }
+    }
+
+    @Benchmark
+    public void toJson(HiveModel model, Blackhole bh) {
+        for (ITypedReferenceableInstance table : model.tableInstances) {
+            bh.consume(Serialization$.MODULE$.toJson(table));
+        }
+    }
+
+    @Benchmark
+    public void fromJson(Json json, Blackhole bh) {
+        for (String table : json.typedTables) {
+            bh.consume(Serialization$.MODULE$.fromJson(table));
+        }
+    }
+
+    @Benchmark
+    public void fromJsonReferenceable(Json json, Blackhole bh) {
+        for (String table : json.tables) {
+            bh.consume(InstanceSerialization$.MODULE$.fromJsonReferenceable(table, false));
+        }
+    }
+
+    @Benchmark
+    public String typesToJson(HiveModel model) {
+        return TypesSerialization$.MODULE$.toJson(model.typeSystem,
+                model.typeSystem.getTypeNames());
+    }
+
+    @Benchmark
+    public Object typesFromJson(Json json) {
+        return TypesSerialization$.MODULE$.fromJson(json.types);
+    }
+}
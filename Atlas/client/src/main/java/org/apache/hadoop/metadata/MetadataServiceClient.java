@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.metadata;
 
+import com.google.common.base.Joiner;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
@@ -41,6 +42,15 @@ public class MetadataServiceClient {
     public static final String RESULTS = "results";
     public static final String TOTAL_SIZE = "totalSize";
 
+    public static final String LIMIT = "limit";
+    public static final String OFFSET = "offset";
+    public static final String COUNT = "count";
+    public static final String EXPLAIN = "explain";
+    public static final String ATTRIBUTES = "attributes";
+    public static final String TIMEOUT = "timeout";
+    public static final String MAX_TRAVERSED = "maxTraversed";
+    public static final String MAX_ROWS = "maxRows";
+
 
     private final WebResource service;
 
@@ -61,6 +71,7 @@ public class MetadataServiceClient {
 
         //Entity operations
         CREATE_ENTITY("api/metadata/entities/submit", HttpMethod.POST),
+        CREATE_ENTITIES("api/metadata/entities/submit/batch", HttpMethod.POST),
         GET_ENTITY("api/metadata/entities/definition", HttpMethod.GET),
         UPDATE_ENTITY("api/metadata/entities/update", HttpMethod.PUT),
         LIST_ENTITY("api/metadata/entities/list", HttpMethod.GET),
@@ -128,6 +139,25 @@ public class MetadataServiceClient {
         return callAPI(API.CREATE_ENTITY, entityAsJson);
     }
 
+    /**
+     * Create the given entities in a batch
+     * @param entitiesAsJson entities(type instances) as json
+     * @return result json object with the guids and failures per entity
+     * @throws MetadataServiceException
+     */
+    public JSONObject createEntities(List<String> entitiesAsJson) throws MetadataServiceException {
+        try {
+            JSONArray entities = new JSONArray();
+            for (String entityAsJson : entitiesAsJson) {
+                entities.put(new JSONObject(entityAsJson));
+            }
+
+            return callAPI(API.CREATE_ENTITIES, entities.toString());
+        } catch (JSONException e) {
+            throw new MetadataServiceException(API.CREATE_ENTITIES, e);
+        }
+    }
+
     /**
      * Get an entity given the entity id
      * @param guid entity id
@@ -174,6 +204,51 @@ public class MetadataServiceClient {
         return callAPIWithResource(API.SEARCH_DSL, resource);
     }
 
+    /**
+     * Search given query DSL, returning a page of the results
+     * @param query DSL query
+     * @param limit maximum number of results
+     * @param offset number of results to skip
+     * @return result json object
+     * @throws MetadataServiceException
+     */
+    public JSONObject searchByDSL(String query, int limit, int offset) throws MetadataServiceException {
+        WebResource resource = getResource(API.SEARCH_DSL);
+        resource = resource.queryParam("query", query)
+                .queryParam(LIMIT, String.valueOf(limit))
+                .queryParam(OFFSET, String.valueOf(offset));
+        return callAPIWithResource(API.SEARCH_DSL, resource);
+    }
+
+    /**
+     * Search given query DSL, returning only the given attributes of the instances found.
+     * References to other instances are returned as their ids.
+     * @param query DSL query
+     * @param attributes attributes to return, an empty list for just the ids of the instances
+     * @return result json object
+     * @throws MetadataServiceException
+     */
+    public JSONObject searchByDSL(String query, List<String> attributes)
+        throws MetadataServiceException {
+        WebResource resource = getResource(API.SEARCH_DSL);
+        resource = resource.queryParam("query", query)
+                .queryParam(ATTRIBUTES, Joiner.on(',').join(attributes));
+        return callAPIWithResource(API.SEARCH_DSL, resource);
+    }
+
+    /**
+     * Explain how a DSL query is evaluated, without running it
+     * @param query DSL query
+     * @return result json object with the explanation
+     * @throws MetadataServiceException
+     */
+    public JSONObject explainDSL(String query) throws MetadataServiceException {
+        WebResource resource = getResource(API.SEARCH_DSL);
+        resource = resource.queryParam("query", query)
+                .queryParam(EXPLAIN, "true");
+        return callAPIWithResource(API.SEARCH_DSL, resource);
+    }
+
     /**
      * Search given gremlin query
      * @param gremlinQuery Gremlin query
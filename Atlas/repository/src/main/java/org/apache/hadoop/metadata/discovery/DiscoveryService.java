@@ -18,19 +18,42 @@
 
 package org.apache.hadoop.metadata.discovery;
 
+import org.apache.hadoop.metadata.listener.TypesChangeListener;
+import org.apache.hadoop.metadata.query.QueryBudget;
+
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Metadata discovery service.
+ * Metadata discovery service. Listens to type changes to drop state derived
+ * from the types, such as compiled queries.
  */
-public interface DiscoveryService {
+public interface DiscoveryService extends TypesChangeListener {
 
     /**
      * Full text search
      */
     String searchByFullText(String query) throws DiscoveryException;
 
+    /**
+     * Full text search returning a range of the results.
+     *
+     * @param query  full text query
+     * @param limit  maximum number of results, a negative value for no limit
+     * @param offset number of results to skip
+     * @return JSON representing the query and results.
+     */
+    String searchByFullText(String query, int limit, int offset) throws DiscoveryException;
+
+    /**
+     * Full text search writing the results as they are found, see
+     * {@link #searchByFullText(String, int, int)}.
+     *
+     * @param writer writer the JSON representing the query and results is written to
+     */
+    void searchByFullText(String query, int limit, int offset, Writer writer) throws DiscoveryException;
+
     /**
      * Search using query DSL.
      *
@@ -39,6 +62,107 @@ public interface DiscoveryService {
      */
     String searchByDSL(String dslQuery) throws DiscoveryException;
 
+    /**
+     * Search using query DSL, returning a range of the results. The range applies
+     * on top of any limit in the query.
+     *
+     * @param dslQuery query in DSL format.
+     * @param limit    maximum number of results, a negative value for no limit
+     * @param offset   number of results to skip
+     * @return JSON representing the type and results.
+     */
+    String searchByDSL(String dslQuery, int limit, int offset) throws DiscoveryException;
+
+    /**
+     * Search using query DSL, writing the results as they are evaluated, see
+     * {@link #searchByDSL(String, int, int)}.
+     *
+     * @param writer writer the JSON representing the type and results is written to
+     */
+    void searchByDSL(String dslQuery, int limit, int offset, Writer writer) throws DiscoveryException;
+
+    /**
+     * Search using query DSL, writing the results as they are evaluated with only the given
+     * attributes of the instances, see {@link #searchByDSL(String, int, int, Writer)}.
+     * References to other instances are written as their ids.
+     *
+     * @param attributes attributes of the instances to return, an empty list for just their
+     *                   ids, null for whole instances
+     * @throws DiscoveryException if the query doesn't return instances of a class, or an
+     *                            attribute is not one of the class
+     */
+    void searchByDSL(String dslQuery, int limit, int offset, List<String> attributes,
+                     Writer writer) throws DiscoveryException;
+
+    /**
+     * Search using query DSL under the given budget, see
+     * {@link #searchByDSL(String, int, int, List, Writer)}.
+     *
+     * A query that fails or runs out of its budget after its first row has written its rows
+     * already: they are ended with "truncated":true rather than failing.
+     *
+     * @param budget limits on the evaluation of the query
+     * @throws DiscoveryException if the query fails or runs out of its budget before its
+     *                            first row
+     */
+    void searchByDSL(String dslQuery, int limit, int offset, List<String> attributes,
+                     QueryBudget budget, Writer writer) throws DiscoveryException;
+
+    /**
+     * The budget of a query run for a request: the configured limits, with the ones asked
+     * for by the request in their place up to the configured ceiling.
+     *
+     * @param timeoutMillis maximum time the query runs, 0 for the configured one
+     * @param maxTraversed  maximum number of elements the query traverses, 0 for the configured one
+     * @param maxRows       maximum number of rows the query returns, 0 for the configured one
+     */
+    QueryBudget getQueryBudget(long timeoutMillis, long maxTraversed, long maxRows);
+
+    /**
+     * Checks that a DSL query is valid without running it.
+     *
+     * @param dslQuery query in DSL format.
+     * @throws DiscoveryException if the query is invalid
+     */
+    void validateDSL(String dslQuery) throws DiscoveryException;
+
+    /**
+     * Checks that a DSL query is valid and that the given attributes can be returned for
+     * its results, see {@link #searchByDSL(String, int, int, List, Writer)}.
+     *
+     * @param dslQuery query in DSL format.
+     * @param attributes attributes of the instances to return, null for whole instances
+     * @throws DiscoveryException if the query or the attributes are invalid
+     */
+    void validateDSL(String dslQuery, List<String> attributes) throws DiscoveryException;
+
+    /**
+     * Explains how a DSL query is evaluated without running it: the query as validated,
+     * the plan it is optimized into, the predicates answered from indexes and the
+     * gremlin query it is translated to.
+     *
+     * @param dslQuery query in DSL format.
+     * @return JSON representing the explanation.
+     * @throws DiscoveryException if the query is invalid
+     */
+    String explainDSL(String dslQuery) throws DiscoveryException;
+
+    /**
+     * Counts the results of a DSL query without fetching them.
+     *
+     * @param dslQuery query in DSL format.
+     * @return number of results of the query
+     */
+    long countByDSL(String dslQuery) throws DiscoveryException;
+
+    /**
+     * Counts the results of a DSL query under the given budget, see {@link #countByDSL(String)}.
+     *
+     * @param budget limits on the evaluation of the query
+     * @throws DiscoveryException if the query runs out of its budget
+     */
+    long countByDSL(String dslQuery, QueryBudget budget) throws DiscoveryException;
+
     /**
      * Assumes the User is familiar with the persistence structure of the Repository.
      * The given query is run uninterpreted against the underlying Graph Store.
@@ -49,4 +173,15 @@ public interface DiscoveryService {
      * @throws org.apache.hadoop.metadata.discovery.DiscoveryException
      */
     List<Map<String, String>> searchByGremlin(String gremlinQuery) throws DiscoveryException;
+
+    /**
+     * Search using a gremlin query under the given budget, see {@link #searchByGremlin(String)}.
+     * The rows are counted as they are read from the result of the query; a query that builds
+     * its result as a list, e.g. ending in toList(), holds all of it before the rows are counted.
+     *
+     * @param budget limits on the evaluation of the query
+     * @throws DiscoveryException if the query runs out of its budget
+     */
+    List<Map<String, String>> searchByGremlin(String gremlinQuery, QueryBudget budget)
+            throws DiscoveryException;
 }
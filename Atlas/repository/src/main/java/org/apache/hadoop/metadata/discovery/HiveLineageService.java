@@ -21,13 +21,15 @@ package org.apache.hadoop.metadata.discovery;
 import com.thinkaurelius.titan.core.TitanGraph;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.discovery.graph.DefaultGraphPersistenceStrategy;
 import org.apache.hadoop.metadata.discovery.graph.GraphBackedDiscoveryService;
-import org.apache.hadoop.metadata.query.Expressions;
+import org.apache.hadoop.metadata.discovery.graph.LineageIndex;
 import org.apache.hadoop.metadata.query.HiveLineageQuery;
 import org.apache.hadoop.metadata.query.HiveWhereUsedQuery;
 import org.apache.hadoop.metadata.repository.MetadataRepository;
 import org.apache.hadoop.metadata.repository.graph.GraphProvider;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.Option;
@@ -39,6 +41,10 @@ import javax.inject.Singleton;
 
 /**
  * Hive implementation of Lineage service interface.
+ *
+ * With metadata.lineage.hive.index.enabled, inputs and outputs are answered from a
+ * {@link LineageIndex} kept up to date as processes are added, rather than by walking
+ * the graph.
  */
 @Singleton
 public class HiveLineageService implements LineageService {
@@ -53,6 +59,7 @@ public class HiveLineageService implements LineageService {
     private static final String HIVE_PROCESS_TYPE_NAME;
     private static final String HIVE_PROCESS_INPUT_ATTRIBUTE_NAME;
     private static final String HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME;
+    private static final boolean HIVE_LINEAGE_INDEX_ENABLED;
 
     static {
         // todo - externalize this using type system - dog food
@@ -69,6 +76,8 @@ public class HiveLineageService implements LineageService {
                     conf.getString("metadata.lineage.hive.process.inputs.name", "inputTables");
             HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME =
                     conf.getString("metadata.lineage.hive.process.outputs.name", "outputTables");
+            HIVE_LINEAGE_INDEX_ENABLED =
+                    conf.getBoolean("metadata.lineage.hive.index.enabled", false);
         } catch (ConfigurationException e) {
             throw new RuntimeException(e);
         }
@@ -78,6 +87,7 @@ public class HiveLineageService implements LineageService {
     private final TitanGraph titanGraph;
     private final DefaultGraphPersistenceStrategy graphPersistenceStrategy;
     private final GraphBackedDiscoveryService discoveryService;
+    private final LineageIndex lineageIndex;
 
     @Inject
     HiveLineageService(GraphProvider<TitanGraph> graphProvider,
@@ -86,6 +96,18 @@ public class HiveLineageService implements LineageService {
         this.titanGraph = graphProvider.get();
         this.graphPersistenceStrategy = new DefaultGraphPersistenceStrategy(metadataRepository);
         this.discoveryService = discoveryService;
+        this.lineageIndex = HIVE_LINEAGE_INDEX_ENABLED
+                ? new LineageIndex(titanGraph, graphPersistenceStrategy,
+                        HIVE_TABLE_TYPE_NAME, HIVE_PROCESS_TYPE_NAME,
+                        HIVE_PROCESS_INPUT_ATTRIBUTE_NAME, HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME)
+                : null;
+    }
+
+    /**
+     * @return the lineage index or null if not enabled
+     */
+    public LineageIndex getLineageIndex() {
+        return lineageIndex;
     }
 
     /**
@@ -99,14 +121,16 @@ public class HiveLineageService implements LineageService {
         LOG.info("Fetching lineage outputs for tableName={}", tableName);
 
         try {
-            HiveWhereUsedQuery outputsQuery = new HiveWhereUsedQuery(
-                    HIVE_TABLE_TYPE_NAME, tableName, HIVE_PROCESS_TYPE_NAME,
-                    HIVE_PROCESS_INPUT_ATTRIBUTE_NAME, HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME,
-                    Option.empty(), SELECT_ATTRIBUTES, true,
-                    graphPersistenceStrategy, titanGraph);
-
-            Expressions.Expression expression = outputsQuery.expr();
-            return discoveryService.evaluate(expression).toJson();
+            HiveWhereUsedQuery outputsQuery = outputsQuery(tableName);
+            if (lineageIndex != null) {
+                try {
+                    return lineageIndex.getOutputs(outputsQuery, tableName).toJson();
+                } catch (Exception e) {
+                    LOG.warn("Unable to get lineage outputs from the index, walking the graph", e);
+                }
+            }
+
+            return outputsQuery.traverse(-1).toJson();
         } catch (Exception e) { // unable to catch ExpressionException
             throw new DiscoveryException("Invalid expression", e);
         }
@@ -123,19 +147,37 @@ public class HiveLineageService implements LineageService {
         LOG.info("Fetching lineage inputs for tableName={}", tableName);
 
         try {
-            HiveLineageQuery inputsQuery = new HiveLineageQuery(
-                    HIVE_TABLE_TYPE_NAME, tableName, HIVE_PROCESS_TYPE_NAME,
-                    HIVE_PROCESS_INPUT_ATTRIBUTE_NAME, HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME,
-                    Option.empty(), SELECT_ATTRIBUTES, true,
-                    graphPersistenceStrategy, titanGraph);
-
-            Expressions.Expression expression = inputsQuery.expr();
-            return discoveryService.evaluate(expression).toJson();
+            HiveLineageQuery inputsQuery = inputsQuery(tableName);
+            if (lineageIndex != null) {
+                try {
+                    return lineageIndex.getInputs(inputsQuery, tableName).toJson();
+                } catch (Exception e) {
+                    LOG.warn("Unable to get lineage inputs from the index, walking the graph", e);
+                }
+            }
+
+            return inputsQuery.traverse(-1).toJson();
         } catch (Exception e) { // unable to catch ExpressionException
             throw new DiscoveryException("Invalid expression", e);
         }
     }
 
+    HiveWhereUsedQuery outputsQuery(String tableName) {
+        return new HiveWhereUsedQuery(
+                HIVE_TABLE_TYPE_NAME, tableName, HIVE_PROCESS_TYPE_NAME,
+                HIVE_PROCESS_INPUT_ATTRIBUTE_NAME, HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME,
+                Option.empty(), SELECT_ATTRIBUTES, true,
+                graphPersistenceStrategy, titanGraph);
+    }
+
+    HiveLineageQuery inputsQuery(String tableName) {
+        return new HiveLineageQuery(
+                HIVE_TABLE_TYPE_NAME, tableName, HIVE_PROCESS_TYPE_NAME,
+                HIVE_PROCESS_INPUT_ATTRIBUTE_NAME, HIVE_PROCESS_OUTPUT_ATTRIBUTE_NAME,
+                Option.empty(), SELECT_ATTRIBUTES, true,
+                graphPersistenceStrategy, titanGraph);
+    }
+
     /**
      * Return the schema for the given tableName.
      *
@@ -151,4 +193,32 @@ public class HiveLineageService implements LineageService {
                 // + " as column select column.name, column.dataType, column.comment";
         return discoveryService.searchByDSL(schemaQuery);
     }
+
+    @Override
+    public int rebuildIndex() throws DiscoveryException {
+        if (lineageIndex == null) {
+            throw new DiscoveryException("Lineage index is not enabled");
+        }
+
+        try {
+            return lineageIndex.rebuild();
+        } catch (MetadataException e) {
+            throw new DiscoveryException("Unable to rebuild the lineage index", e);
+        }
+    }
+
+    @Override
+    public void onEntityAdded(ITypedReferenceableInstance typedInstance) throws MetadataException {
+        if (lineageIndex != null) {
+            lineageIndex.onEntityAdded(typedInstance);
+        }
+    }
+
+    @Override
+    public void onTraitAdded(String guid, String traitName) throws MetadataException {
+    }
+
+    @Override
+    public void onTraitDeleted(String guid, String traitName) throws MetadataException {
+    }
 }
@@ -18,10 +18,12 @@
 
 package org.apache.hadoop.metadata.discovery;
 
+import org.apache.hadoop.metadata.listener.EntityChangeListener;
+
 /**
  * Lineage service interface.
  */
-public interface LineageService {
+public interface LineageService extends EntityChangeListener {
 
     /**
      * Return the lineage outputs for the given tableName.
@@ -46,4 +48,11 @@ public interface LineageService {
      * @return Schema as JSON
      */
     String getSchema(String tableName) throws DiscoveryException;
+
+    /**
+     * Rebuilds the lineage index from the lineage in the repository.
+     *
+     * @return number of processes indexed
+     */
+    int rebuildIndex() throws DiscoveryException;
 }
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.discovery;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.metadata.query.QueryExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Evaluates queries on a fixed number of threads with a bounded queue, so that queries
+ * don't run on, and can't hold, the threads serving requests.
+ *
+ * The caller waits for a query until its {@link QueryExecution} times out. A query that
+ * times out, or whose caller is interrupted, is cancelled: its execution fails at the next
+ * element or row it counts. Its thread is never interrupted, as the storage backends of
+ * Titan, berkeleyje in particular, don't tolerate interrupts during I/O. A query that counts
+ * nothing, such as an arbitrary gremlin script, keeps its thread until it ends: the timeout
+ * only releases its caller.
+ */
+public class QueryExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryExecutor.class);
+
+    public static final String THREADS_PROPERTY = "metadata.query.executor.threads";
+    public static final String QUEUE_SIZE_PROPERTY = "metadata.query.executor.queue.size";
+
+    public static final String GREMLIN_THREADS_PROPERTY = "metadata.query.gremlin.executor.threads";
+    public static final String GREMLIN_QUEUE_SIZE_PROPERTY = "metadata.query.gremlin.executor.queue.size";
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    public static final int DEFAULT_GREMLIN_THREADS = 4;
+    public static final int DEFAULT_GREMLIN_QUEUE_SIZE = 16;
+
+    private final ThreadPoolExecutor executor;
+
+    public QueryExecutor(int threads, int queueSize) {
+        this("query", threads, queueSize);
+    }
+
+    /**
+     * @param name prefix of the names of the threads
+     */
+    public QueryExecutor(String name, int threads, int queueSize) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Runs a query and waits for its result.
+     *
+     * @param execution execution the query is tracked by
+     * @param query     the query
+     * @return the result of the query
+     * @throws DiscoveryException if the queue is full, the query fails, or it runs out of time
+     */
+    public <T> T execute(QueryExecution execution, Callable<T> query) throws DiscoveryException {
+        Future<T> future;
+        try {
+            future = executor.submit(query);
+        } catch (RejectedExecutionException e) {
+            throw new DiscoveryException("Too many queries are running, retry later", e);
+        }
+
+        try {
+            long remaining = execution.remainingMillis();
+            return remaining == Long.MAX_VALUE
+                    ? future.get() : future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(execution, future);
+            throw new DiscoveryException(
+                    "Query timed out after " + execution.budget().timeoutMillis() + " ms", e);
+        } catch (InterruptedException e) {
+            cancel(execution, future);
+            Thread.currentThread().interrupt();
+            throw new DiscoveryException("Query was cancelled", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DiscoveryException) {
+                throw (DiscoveryException) e.getCause();
+            }
+            throw new DiscoveryException(e.getCause());
+        }
+    }
+
+    private void cancel(QueryExecution execution, Future<?> future) {
+        LOG.warn("Cancelling query {}", execution);
+        execution.cancel();
+        future.cancel(false);
+    }
+
+    /**
+     * @return the number of queries waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of queries running.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
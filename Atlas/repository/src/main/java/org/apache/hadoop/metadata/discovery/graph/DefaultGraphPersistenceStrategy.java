@@ -22,6 +22,7 @@ import com.thinkaurelius.titan.core.TitanVertex;
 import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.query.Expressions;
 import org.apache.hadoop.metadata.query.GraphPersistenceStrategies;
+import org.apache.hadoop.metadata.query.GraphQueryCompOps;
 import org.apache.hadoop.metadata.query.TypeUtils;
 import org.apache.hadoop.metadata.repository.MetadataRepository;
 import org.apache.hadoop.metadata.repository.Constants;
@@ -150,6 +151,20 @@ public class DefaultGraphPersistenceStrategy implements GraphPersistenceStrategi
         return null;
     }
 
+    @Override
+    public ITypedReferenceableInstance constructProjectedInstance(ClassType dataType,
+                                                                  TitanVertex vertex,
+                                                                  List<String> attributes) {
+        try {
+            return metadataRepository.getGraphToInstanceMapper().mapGraphToProjectedInstance(
+                    vertex.<String>getProperty(Constants.GUID_PROPERTY_KEY), vertex, attributes);
+        } catch (MetadataException e) {
+            LOG.error("error while constructing an instance", e);
+        }
+
+        return null;
+    }
+
     @Override
     public String edgeLabel(TypeUtils.FieldInfo fInfo) {
         return fInfo.reverseDataType() == null
@@ -183,6 +198,11 @@ public class DefaultGraphPersistenceStrategy implements GraphPersistenceStrategi
         }
     }
 
+    @Override
+    public String graphQueryCompOp(Expressions.ComparisonExpression op) {
+        return GraphQueryCompOps.apply(op);
+    }
+
     @Override
     public String loopObjectExpression(IDataType<?> dataType) {
         return "{it.object." + typeAttributeName() + " == '" + dataType.getName() + "'}";
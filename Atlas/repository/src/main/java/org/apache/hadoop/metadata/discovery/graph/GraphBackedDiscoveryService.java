@@ -18,41 +18,53 @@
 
 package org.apache.hadoop.metadata.discovery.graph;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.thinkaurelius.titan.core.TitanGraph;
 import com.thinkaurelius.titan.core.TitanProperty;
 import com.thinkaurelius.titan.core.TitanVertex;
 import com.thinkaurelius.titan.core.attribute.Text;
+import com.tinkerpop.blueprints.GraphQuery;
 import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.PropertiesUtil;
 import org.apache.hadoop.metadata.discovery.DiscoveryException;
 import org.apache.hadoop.metadata.discovery.DiscoveryService;
+import org.apache.hadoop.metadata.discovery.QueryExecutor;
 import org.apache.hadoop.metadata.query.Expressions;
 import org.apache.hadoop.metadata.query.GremlinEvaluator;
 import org.apache.hadoop.metadata.query.GremlinQuery;
 import org.apache.hadoop.metadata.query.GremlinQueryResult;
+import org.apache.hadoop.metadata.query.GremlinScriptCache;
 import org.apache.hadoop.metadata.query.GremlinTranslator;
-import org.apache.hadoop.metadata.query.QueryParser;
+import org.apache.hadoop.metadata.query.QueryBudget;
+import org.apache.hadoop.metadata.query.QueryBudgetExceededException;
+import org.apache.hadoop.metadata.query.QueryExecution;
+import org.apache.hadoop.metadata.query.QueryExplanation;
+import org.apache.hadoop.metadata.query.QueryPlanCache;
 import org.apache.hadoop.metadata.query.QueryProcessor;
+import org.apache.hadoop.metadata.query.ResultProjection;
+import org.apache.hadoop.metadata.query.StreamedQueryResult;
 import org.apache.hadoop.metadata.repository.Constants;
 import org.apache.hadoop.metadata.repository.MetadataRepository;
 import org.apache.hadoop.metadata.repository.graph.GraphProvider;
+import org.apache.hadoop.metadata.typesystem.types.IDataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import scala.util.Either;
-import scala.util.parsing.combinator.Parsers;
+import scala.Option;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import javax.script.Bindings;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Graph backed implementation of Search.
@@ -64,32 +76,118 @@ public class GraphBackedDiscoveryService implements DiscoveryService {
 
     private final TitanGraph titanGraph;
     private final DefaultGraphPersistenceStrategy graphPersistenceStrategy;
+    private final GremlinScriptCache scriptCache;
+    private final QueryPlanCache planCache;
+    private final QueryExecutor queryExecutor;
+    private final QueryExecutor gremlinExecutor;
+    private final QueryBudget queryBudget;
+    private final QueryBudget queryBudgetCeiling;
 
     @Inject
     GraphBackedDiscoveryService(GraphProvider<TitanGraph> graphProvider,
                                 MetadataRepository metadataRepository) throws DiscoveryException {
         this.titanGraph = graphProvider.get();
         this.graphPersistenceStrategy = new DefaultGraphPersistenceStrategy(metadataRepository);
+        this.scriptCache = GremlinScriptCache.instance();
+
+        try {
+            PropertiesConfiguration configuration = PropertiesUtil.getApplicationProperties();
+            this.planCache = new QueryPlanCache(graphPersistenceStrategy, configuration.getLong(
+                    QueryPlanCache.MAX_SIZE_PROPERTY(), QueryPlanCache.DEFAULT_MAX_SIZE()));
+            this.queryExecutor = new QueryExecutor(
+                    configuration.getInt(QueryExecutor.THREADS_PROPERTY,
+                            QueryExecutor.DEFAULT_THREADS),
+                    configuration.getInt(QueryExecutor.QUEUE_SIZE_PROPERTY,
+                            QueryExecutor.DEFAULT_QUEUE_SIZE));
+            this.gremlinExecutor = new QueryExecutor("gremlin-query",
+                    configuration.getInt(QueryExecutor.GREMLIN_THREADS_PROPERTY,
+                            QueryExecutor.DEFAULT_GREMLIN_THREADS),
+                    configuration.getInt(QueryExecutor.GREMLIN_QUEUE_SIZE_PROPERTY,
+                            QueryExecutor.DEFAULT_GREMLIN_QUEUE_SIZE));
+            this.queryBudget = QueryBudget.configured(configuration);
+            this.queryBudgetCeiling = QueryBudget.configuredCeiling(configuration);
+        } catch (ConfigurationException e) {
+            throw new DiscoveryException(e);
+        }
+    }
+
+    public GremlinScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    public QueryPlanCache getPlanCache() {
+        return planCache;
+    }
+
+    public QueryExecutor getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    public QueryExecutor getGremlinExecutor() {
+        return gremlinExecutor;
+    }
+
+    @Override
+    public QueryBudget getQueryBudget(long timeoutMillis, long maxTraversed, long maxRows) {
+        return queryBudget.overriddenBy(timeoutMillis, maxTraversed, maxRows, queryBudgetCeiling);
+    }
+
+    /**
+     * Query plans are resolved against the types in the type system, drop them
+     * when types are added.
+     */
+    @Override
+    public void onAdd(String typeName, IDataType dataType) throws MetadataException {
+        planCache.invalidateAll();
     }
 
     @Override
     public String searchByFullText(String query) throws DiscoveryException {
-        Iterator iterator = titanGraph.query()
-                .has(Constants.ENTITY_TEXT_PROPERTY_KEY, Text.CONTAINS, query)
-                .vertices()
-                .iterator();
-        JsonArray results = new JsonArray();
-        while (iterator.hasNext()) {
-            Vertex vertex = (Vertex) iterator.next();
-            JsonObject row = new JsonObject();
-            row.addProperty("guid", vertex.<String>getProperty(Constants.GUID_PROPERTY_KEY));
-            row.addProperty("typeName", vertex.<String>getProperty(Constants.ENTITY_TYPE_PROPERTY_KEY));
-            results.add(row);
+        return searchByFullText(query, -1, 0);
+    }
+
+    @Override
+    public String searchByFullText(String query, int limit, int offset) throws DiscoveryException {
+        StringWriter writer = new StringWriter();
+        searchByFullText(query, limit, offset, writer);
+        return writer.toString();
+    }
+
+    @Override
+    public void searchByFullText(String query, int limit, int offset,
+                                 Writer writer) throws DiscoveryException {
+        checkRange(limit, offset);
+
+        GraphQuery graphQuery = titanGraph.query()
+                .has(Constants.ENTITY_TEXT_PROPERTY_KEY, Text.CONTAINS, query);
+        if (limit > 0) {
+            graphQuery = graphQuery.limit((int) Math.min((long) offset + limit, Integer.MAX_VALUE));
+        }
+
+        Iterator iterator = graphQuery.vertices().iterator();
+        for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+
+        try {
+            JsonWriter response = new JsonWriter(writer);
+            response.beginObject();
+            response.name("query").value(query);
+            response.name("results").beginArray();
+            while (iterator.hasNext()) {
+                Vertex vertex = (Vertex) iterator.next();
+                response.beginObject();
+                response.name("guid").value(vertex.<String>getProperty(Constants.GUID_PROPERTY_KEY));
+                response.name("typeName").value(
+                        vertex.<String>getProperty(Constants.ENTITY_TYPE_PROPERTY_KEY));
+                response.endObject();
+            }
+            response.endArray();
+            response.endObject();
+            response.flush();
+        } catch (IOException e) {
+            throw new DiscoveryException(e);
         }
-        JsonObject response = new JsonObject();
-        response.addProperty("query", query);
-        response.add("results", results);
-        return response.toString();
     }
 
     /**
@@ -100,14 +198,93 @@ public class GraphBackedDiscoveryService implements DiscoveryService {
      */
     @Override
     public String searchByDSL(String dslQuery) throws DiscoveryException {
-        LOG.info("Executing dsl query={}", dslQuery);
+        return searchByDSL(dslQuery, -1, 0);
+    }
+
+    @Override
+    public String searchByDSL(String dslQuery, int limit, int offset) throws DiscoveryException {
+        LOG.info("Executing dsl query={} limit={} offset={}", dslQuery, limit, offset);
+        checkRange(limit, offset);
+
+        final GremlinQuery gremlinQuery = translate(dslQuery).range(limit, offset);
+        return execute(queryBudget, "Invalid expression : " + dslQuery, new Query<String>() {
+            @Override
+            public String run(QueryExecution execution) {
+                return evaluate(gremlinQuery, execution).toJson();
+            }
+        });
+    }
+
+    @Override
+    public void searchByDSL(String dslQuery, int limit, int offset,
+                            Writer writer) throws DiscoveryException {
+        searchByDSL(dslQuery, limit, offset, null, writer);
+    }
+
+    @Override
+    public void searchByDSL(String dslQuery, int limit, int offset, List<String> attributes,
+                            Writer writer) throws DiscoveryException {
+        searchByDSL(dslQuery, limit, offset, attributes, queryBudget, writer);
+    }
+
+    @Override
+    public void searchByDSL(String dslQuery, int limit, int offset, final List<String> attributes,
+                            QueryBudget budget, final Writer writer) throws DiscoveryException {
+        LOG.info("Executing dsl query={} limit={} offset={} attributes={} budget={}",
+                dslQuery, limit, offset, attributes, budget);
+        checkRange(limit, offset);
+
+        final GremlinQuery gremlinQuery = translate(dslQuery).range(limit, offset);
+        LOG.debug("Gremlin Query = {}", gremlinQuery.queryStr());
+        final StreamedQueryResult result = new StreamedQueryResult(
+                gremlinQuery.expr().toString(), gremlinQuery.expr().dataType(), writer);
+        try {
+            execute(budget, "Invalid expression : " + dslQuery, new Query<Void>() {
+                @Override
+                public Void run(QueryExecution execution) throws Exception {
+                    new GremlinEvaluator(gremlinQuery, graphPersistenceStrategy, titanGraph,
+                            scriptCache, ResultProjection.forQuery(gremlinQuery, attributes),
+                            execution).evaluate(result);
+                    return null;
+                }
+            });
+        } catch (DiscoveryException e) {
+            // the rows already written can't be taken back, the result ends after them
+            if (!result.close()) {
+                throw e;
+            }
+            LOG.warn("Truncated the results of dsl query {} after {} rows",
+                    dslQuery, result.getRowCount(), e);
+        } finally {
+            // a cancelled query only stops at its next row, it may still be running and
+            // must not write to the caller's writer once the caller is back
+            result.close();
+        }
+    }
+
+    @Override
+    public void validateDSL(String dslQuery) throws DiscoveryException {
+        translate(dslQuery);
+    }
+
+    @Override
+    public void validateDSL(String dslQuery, List<String> attributes) throws DiscoveryException {
+        GremlinQuery gremlinQuery = translate(dslQuery);
+        try {
+            ResultProjection.forQuery(gremlinQuery, attributes);
+        } catch (Exception e) { // unable to catch ExpressionException
+            throw new DiscoveryException("Invalid attributes " + attributes
+                    + " for expression : " + dslQuery, e);
+        }
+    }
+
+    @Override
+    public String explainDSL(String dslQuery) throws DiscoveryException {
         try {
-            QueryParser queryParser = new QueryParser();
-            Either<Parsers.NoSuccess, Expressions.Expression> either = queryParser.apply(dslQuery);
-            if (either.isRight()) {
-                Expressions.Expression expression = either.right().get();
-                GremlinQueryResult queryResult = evaluate(expression);
-                return queryResult.toJson();
+            Option<QueryExplanation> explanation =
+                    QueryProcessor.explain(dslQuery, graphPersistenceStrategy);
+            if (explanation.isDefined()) {
+                return explanation.get().toJson();
             }
         } catch (Exception e) { // unable to catch ExpressionException
             throw new DiscoveryException("Invalid expression : " + dslQuery, e);
@@ -116,14 +293,106 @@ public class GraphBackedDiscoveryService implements DiscoveryService {
         throw new DiscoveryException("Invalid expression : " + dslQuery);
     }
 
+    @Override
+    public long countByDSL(String dslQuery) throws DiscoveryException {
+        return countByDSL(dslQuery, queryBudget);
+    }
+
+    @Override
+    public long countByDSL(String dslQuery, QueryBudget budget) throws DiscoveryException {
+        LOG.info("Counting dsl query={} budget={}", dslQuery, budget);
+        final GremlinQuery gremlinQuery = translate(dslQuery);
+        return execute(budget, "Invalid expression : " + dslQuery, new Query<Long>() {
+            @Override
+            public Long run(QueryExecution execution) throws Exception {
+                Object count = scriptCache.eval(gremlinQuery.countQueryStr(), titanGraph, execution);
+                return ((Number) count).longValue();
+            }
+        });
+    }
+
+    /**
+     * A query evaluated by the QueryExecutor.
+     */
+    private interface Query<T> {
+        T run(QueryExecution execution) throws Exception;
+    }
+
+    /**
+     * Evaluates a query on the QueryExecutor under the given budget. The read transaction
+     * the query opens on the executor's thread is closed when it is done.
+     *
+     * @param failure message of the exception thrown if the query fails
+     */
+    private <T> T execute(QueryBudget budget, String failure,
+                          Query<T> query) throws DiscoveryException {
+        return execute(queryExecutor, budget, failure, query);
+    }
+
+    private <T> T execute(QueryExecutor executor, QueryBudget budget, final String failure,
+                          final Query<T> query) throws DiscoveryException {
+        final QueryExecution execution = budget.start();
+        return executor.execute(execution, new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    return query.run(execution);
+                } catch (Exception e) { // unable to catch ExpressionException
+                    throw queryFailure(failure, e);
+                } finally {
+                    titanGraph.rollback();
+                }
+            }
+        });
+    }
+
+    /*
+     * a query that ran out of budget fails with the reason, whichever exception it surfaced in.
+     */
+    private static DiscoveryException queryFailure(String message, Exception e) {
+        if (e instanceof DiscoveryException) {
+            return (DiscoveryException) e;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof QueryBudgetExceededException) {
+                return new DiscoveryException(t.getMessage(), e);
+            }
+        }
+        return new DiscoveryException(message, e);
+    }
+
+    private GremlinQuery translate(String dslQuery) throws DiscoveryException {
+        try {
+            Option<GremlinQuery> gremlinQuery = planCache.translate(dslQuery);
+            if (gremlinQuery.isDefined()) {
+                return gremlinQuery.get();
+            }
+        } catch (Exception e) { // unable to catch ExpressionException
+            throw new DiscoveryException("Invalid expression : " + dslQuery, e);
+        }
+
+        throw new DiscoveryException("Invalid expression : " + dslQuery);
+    }
+
+    private static void checkRange(int limit, int offset) throws DiscoveryException {
+        if (limit == 0 || offset < 0) {
+            throw new DiscoveryException("Invalid limit " + limit + " offset " + offset);
+        }
+    }
+
     public GremlinQueryResult evaluate(Expressions.Expression expression) {
         Expressions.Expression validatedExpression = QueryProcessor.validate(expression);
         GremlinQuery gremlinQuery =
                 new GremlinTranslator(validatedExpression, graphPersistenceStrategy).translate();
         LOG.debug("Query = {}", validatedExpression);
         LOG.debug("Expression Tree = {}", validatedExpression.treeString());
+        return evaluate(gremlinQuery, QueryBudget.UNLIMITED().start());
+    }
+
+    private GremlinQueryResult evaluate(GremlinQuery gremlinQuery, QueryExecution execution) {
         LOG.debug("Gremlin Query = {}", gremlinQuery.queryStr());
-        return new GremlinEvaluator(gremlinQuery, graphPersistenceStrategy, titanGraph).evaluate();
+        return new GremlinEvaluator(gremlinQuery, graphPersistenceStrategy, titanGraph, scriptCache,
+                ResultProjection.forQuery(gremlinQuery, null), execution).evaluate();
     }
 
     /**
@@ -138,28 +407,51 @@ public class GraphBackedDiscoveryService implements DiscoveryService {
     @Override
     public List<Map<String, String>> searchByGremlin(String gremlinQuery)
             throws DiscoveryException {
-        LOG.info("Executing gremlin query={}", gremlinQuery);
-        ScriptEngineManager manager = new ScriptEngineManager();
-        ScriptEngine engine = manager.getEngineByName("gremlin-groovy");
-        Bindings bindings = engine.createBindings();
-        bindings.put("g", titanGraph);
+        return searchByGremlin(gremlinQuery, queryBudget);
+    }
 
-        try {
-            Object o = engine.eval(gremlinQuery, bindings);
-            return extractResult(o);
-        } catch (ScriptException se) {
-            throw new DiscoveryException(se);
-        }
+    /**
+     * A gremlin query is bounded by the number of rows of its budget; the elements it
+     * traverses are not counted. The caller of a query that times out gets an error, but
+     * the query itself only stops at its next row, and a script that builds its result
+     * before returning it, e.g. with toList(), runs to its end. Gremlin queries run on
+     * their own executor so that such scripts can't take the threads of dsl searches.
+     *
+     * Rows are counted as they are read from the result: a query returning a pipe is read
+     * no further than the maximum number of rows, while a query returning a list, e.g. one
+     * ending in toList(), has built all of its rows by then and is not bounded in memory.
+     */
+    @Override
+    public List<Map<String, String>> searchByGremlin(final String gremlinQuery, QueryBudget budget)
+            throws DiscoveryException {
+        LOG.info("Executing gremlin query={} budget={}", gremlinQuery, budget);
+        return execute(gremlinExecutor, budget, "Invalid gremlin query : " + gremlinQuery,
+                new Query<List<Map<String, String>>>() {
+                    @Override
+                    public List<Map<String, String>> run(QueryExecution execution)
+                            throws Exception {
+                        Object o = scriptCache.eval(gremlinQuery, titanGraph, execution);
+                        return extractResult(o, execution);
+                    }
+                });
     }
 
-    private List<Map<String, String>> extractResult(Object o) throws DiscoveryException {
-        if (!(o instanceof List)) {
-            throw new DiscoveryException(String.format("Cannot process result %s", o.toString()));
+    private List<Map<String, String>> extractResult(Object o, QueryExecution execution)
+            throws DiscoveryException, QueryBudgetExceededException {
+        Iterator rows;
+        if (o instanceof Iterator) {
+            rows = (Iterator) o;
+        } else if (o instanceof Iterable) {
+            rows = ((Iterable) o).iterator();
+        } else {
+            throw new DiscoveryException(String.format("Cannot process result %s", o));
         }
 
-        List l = (List) o;
         List<Map<String, String>> result = new ArrayList<>();
-        for (Object r : l) {
+        while (rows.hasNext()) {
+            execution.row();
+
+            Object r = rows.next();
 
             Map<String, String> oRow = new HashMap<>();
             if (r instanceof Map) {
@@ -183,7 +475,7 @@ public class GraphBackedDiscoveryService implements DiscoveryService {
             } else if (r instanceof String) {
                 oRow.put("", r.toString());
             } else {
-                throw new DiscoveryException(String.format("Cannot process result %s", o.toString()));
+                throw new DiscoveryException(String.format("Cannot process result %s", r));
             }
 
             result.add(oRow);
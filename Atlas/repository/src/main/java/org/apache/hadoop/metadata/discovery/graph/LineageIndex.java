@@ -0,0 +1,409 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.discovery.graph;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.thinkaurelius.titan.core.TitanGraph;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.listener.EntityChangeListener;
+import org.apache.hadoop.metadata.query.ClosureQuery;
+import org.apache.hadoop.metadata.query.GraphPersistenceStrategies;
+import org.apache.hadoop.metadata.query.GremlinQueryResult;
+import org.apache.hadoop.metadata.repository.graph.GraphHelper;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.types.AttributeInfo;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the transitive lineage closure of tables in memory: for every table, the tables
+ * upstream and downstream of it through processes, each with a link back towards the table
+ * so that the lineage path can be returned without walking the graph.
+ *
+ * The index is built from the process vertices in the graph on first use or by
+ * {@link #rebuild()}, and kept up to date as processes are added to the repository.
+ */
+public class LineageIndex implements EntityChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LineageIndex.class);
+
+    private static final String NAME_ATTRIBUTE = "name";
+
+    private final TitanGraph titanGraph;
+    private final GraphPersistenceStrategies persistenceStrategy;
+    private final String tableTypeName;
+    private final String processTypeName;
+    private final String inputsAttributeName;
+    private final String outputsAttributeName;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final Map<Object, Node> tables = new HashMap<>();
+    private final ListMultimap<String, Node> tablesByName = ArrayListMultimap.create();
+    private final Set<Object> processes = new HashSet<>();
+    private boolean built;
+
+    /**
+     * A table in the index, by vertex id.
+     */
+    private static final class Node {
+        final Object vertexId;
+        final Map<Node, Link> upstream = new LinkedHashMap<>();
+        final Map<Node, Link> downstream = new LinkedHashMap<>();
+
+        Node(Object vertexId) {
+            this.vertexId = vertexId;
+        }
+    }
+
+    /**
+     * How a table in the closure of another one is reached: from the table before it on
+     * the path, through a process.
+     */
+    private static final class Link {
+        final Node prev;
+        final Object processId;
+        final int depth;
+
+        Link(Node prev, Object processId, int depth) {
+            this.prev = prev;
+            this.processId = processId;
+            this.depth = depth;
+        }
+    }
+
+    public LineageIndex(TitanGraph titanGraph, GraphPersistenceStrategies persistenceStrategy,
+                        String tableTypeName, String processTypeName,
+                        String inputsAttributeName, String outputsAttributeName) {
+        this.titanGraph = titanGraph;
+        this.persistenceStrategy = persistenceStrategy;
+        this.tableTypeName = tableTypeName;
+        this.processTypeName = processTypeName;
+        this.inputsAttributeName = inputsAttributeName;
+        this.outputsAttributeName = outputsAttributeName;
+    }
+
+    /**
+     * Drops the index and builds it again from the process vertices in the graph.
+     *
+     * @return number of processes indexed
+     */
+    public int rebuild() throws MetadataException {
+        lock.writeLock().lock();
+        try {
+            build();
+            return processes.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // called with the write lock held
+    private void build() throws MetadataException {
+        tables.clear();
+        tablesByName.clear();
+        processes.clear();
+        built = false;
+
+        if (TypeSystem.getInstance().isRegistered(processTypeName)) {
+            for (Vertex processVertex : titanGraph.query()
+                    .has(persistenceStrategy.typeAttributeName(), processTypeName).vertices()) {
+                addProcess(processVertex);
+            }
+        }
+
+        built = true;
+        LOG.info("Built lineage index of {} tables from {} processes",
+                tables.size(), processes.size());
+    }
+
+    /**
+     * Returns the tables upstream of a table, in the form of
+     * {@link org.apache.hadoop.metadata.query.HiveLineageQuery}.
+     *
+     * @param query     lineage query for the table
+     * @param tableName name of the table
+     */
+    public GremlinQueryResult getInputs(ClosureQuery query, String tableName) throws MetadataException {
+        return getClosure(query, tableName, true);
+    }
+
+    /**
+     * Returns the tables downstream of a table, in the form of
+     * {@link org.apache.hadoop.metadata.query.HiveWhereUsedQuery}.
+     *
+     * @param query     where used query for the table
+     * @param tableName name of the table
+     */
+    public GremlinQueryResult getOutputs(ClosureQuery query, String tableName) throws MetadataException {
+        return getClosure(query, tableName, false);
+    }
+
+    private GremlinQueryResult getClosure(ClosureQuery query, String tableName,
+                                          boolean upstream) throws MetadataException {
+        List<List<Object>> paths = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (!built) {
+                // a read lock can't be upgraded: build under the write lock, then downgrade
+                lock.readLock().unlock();
+                lock.writeLock().lock();
+                try {
+                    if (!built) {
+                        build();
+                    }
+                } finally {
+                    lock.readLock().lock();
+                    lock.writeLock().unlock();
+                }
+            }
+
+            for (Node source : tablesByName.get(tableName)) {
+                Map<Node, Link> closure = upstream ? source.upstream : source.downstream;
+                for (Node dest : closure.keySet()) {
+                    paths.add(path(source, dest, closure));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Object, Vertex> vertices = new HashMap<>();
+        List<List<Vertex>> vertexPaths = new ArrayList<>(paths.size());
+        for (List<Object> path : paths) {
+            List<Vertex> vertexPath = new ArrayList<>(path.size());
+            for (Object vertexId : path) {
+                Vertex vertex = vertices.get(vertexId);
+                if (vertex == null) {
+                    vertex = titanGraph.getVertex(vertexId);
+                    vertices.put(vertexId, vertex);
+                }
+                vertexPath.add(vertex);
+            }
+            vertexPaths.add(vertexPath);
+        }
+
+        return query.result(vertexPaths);
+    }
+
+    // vertex ids from the source to the destination, processes included
+    private List<Object> path(Node source, Node dest, Map<Node, Link> closure) {
+        List<Object> path = new ArrayList<>();
+        Node node = dest;
+        while (node != source) {
+            Link link = closure.get(node);
+            path.add(node.vertexId);
+            path.add(link.processId);
+            node = link.prev;
+        }
+        path.add(source.vertexId);
+
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Indexes the processes added to the repository. New instances do not carry the
+     * guid they were stored with, so unindexed processes are looked up by name.
+     */
+    @Override
+    public void onEntityAdded(ITypedReferenceableInstance typedInstance) throws MetadataException {
+        if (!processTypeName.equals(typedInstance.getTypeName())) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!built) { // picked up when the index is built
+                return;
+            }
+
+            if (typedInstance.getId().isAssigned()) {
+                Vertex processVertex = GraphHelper.findVertexByGUID(
+                        titanGraph, typedInstance.getId()._getId());
+                if (processVertex != null) {
+                    addProcess(processVertex);
+                }
+                return;
+            }
+
+            AttributeInfo nameInfo = typedInstance.fieldMapping().fields.get(NAME_ATTRIBUTE);
+            Object name = nameInfo == null ? null : typedInstance.get(NAME_ATTRIBUTE);
+            if (name == null) {
+                LOG.warn("Unable to find the {} added, the lineage index will be rebuilt",
+                        processTypeName);
+                built = false;
+                return;
+            }
+
+            ClassType processType = TypeSystem.getInstance().getDataType(
+                    ClassType.class, processTypeName);
+            for (Vertex processVertex : titanGraph.query()
+                    .has(persistenceStrategy.typeAttributeName(), processTypeName)
+                    .has(persistenceStrategy.fieldNameInVertex(processType, nameInfo), name)
+                    .vertices()) {
+                addProcess(processVertex);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onTraitAdded(String guid, String traitName) throws MetadataException {
+    }
+
+    @Override
+    public void onTraitDeleted(String guid, String traitName) throws MetadataException {
+    }
+
+    // called with the write lock held
+    private void addProcess(Vertex processVertex) throws MetadataException {
+        if (!processes.add(processVertex.getId())) {
+            return;
+        }
+
+        ClassType processType = TypeSystem.getInstance().getDataType(
+                ClassType.class, processTypeName);
+        List<Node> inputs = getTables(processVertex, processType, inputsAttributeName);
+        List<Node> outputs = getTables(processVertex, processType, outputsAttributeName);
+        for (Node output : outputs) {
+            for (Node input : inputs) {
+                addLink(output, input, processVertex.getId());
+            }
+        }
+    }
+
+    private List<Node> getTables(Vertex processVertex, ClassType processType,
+                                 String attributeName) throws MetadataException {
+        String edgeLabel = persistenceStrategy.edgeLabel(
+                processType, processType.fieldMapping().fields.get(attributeName));
+
+        ClassType tableType = TypeSystem.getInstance().getDataType(ClassType.class, tableTypeName);
+        String nameKey = persistenceStrategy.fieldNameInVertex(
+                tableType, tableType.fieldMapping().fields.get(NAME_ATTRIBUTE));
+
+        List<Node> nodes = new ArrayList<>();
+        for (Vertex tableVertex : processVertex.getVertices(Direction.OUT, edgeLabel)) {
+            Node node = tables.get(tableVertex.getId());
+            if (node == null) {
+                node = new Node(tableVertex.getId());
+                tables.put(node.vertexId, node);
+
+                String typeName = tableVertex.getProperty(persistenceStrategy.typeAttributeName());
+                Object name = tableVertex.getProperty(nameKey);
+                if (tableTypeName.equals(typeName) && name != null) {
+                    tablesByName.put(name.toString(), node);
+                }
+            }
+            nodes.add(node);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Adds input and its upstream tables to the closure of output and of the tables
+     * downstream of it, and the other way round. A shorter path replaces a longer one,
+     * so tables are reached through a shortest path known when they were linked.
+     */
+    private void addLink(Node output, Node input, Object processId) {
+        // the tables being linked, each with the link next to output (or input) on its
+        // path and its distance from it; copied, the closures change while linking
+        Map<Node, Link> targets = new LinkedHashMap<>();
+        targets.put(output, new Link(input, processId, 0));
+        for (Map.Entry<Node, Link> entry : output.downstream.entrySet()) {
+            if (!targets.containsKey(entry.getKey())) {
+                targets.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<Node, Link> sources = new LinkedHashMap<>();
+        sources.put(input, new Link(output, processId, 0));
+        for (Map.Entry<Node, Link> entry : input.upstream.entrySet()) {
+            if (!sources.containsKey(entry.getKey())) {
+                sources.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<Node, Link> target : targets.entrySet()) {
+            final Node x = target.getKey();
+            final Link xLink = target.getValue();
+            for (Map.Entry<Node, Link> source : sources.entrySet()) {
+                final Node y = source.getKey();
+                final Link yLink = source.getValue();
+                if (x == y) {
+                    continue;
+                }
+
+                final int depth = xLink.depth + yLink.depth + 1;
+                link(x.upstream, y, new Link(yLink.prev, yLink.processId, depth));
+                link(y.downstream, x, new Link(xLink.prev, xLink.processId, depth));
+            }
+        }
+    }
+
+    private static void link(Map<Node, Link> closure, Node node, Link link) {
+        Link current = closure.get(node);
+        if (current == null || link.depth < current.depth) {
+            closure.put(node, link);
+        }
+    }
+
+    public int getTableCount() {
+        lock.readLock().lock();
+        try {
+            return tables.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getProcessCount() {
+        lock.readLock().lock();
+        try {
+            return processes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LineageIndex{tables=" + getTableCount() + ", processes=" + getProcessCount() + '}';
+    }
+}
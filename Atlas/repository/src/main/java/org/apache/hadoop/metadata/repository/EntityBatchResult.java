@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a batch entity submission. Results are reported per entity,
+ * indexed by the position of the entity in the submitted batch.
+ */
+public class EntityBatchResult {
+
+    private final String[] guids;
+    private final Map<Integer, Throwable> failures = new TreeMap<>();
+
+    public EntityBatchResult(int size) {
+        this.guids = new String[size];
+    }
+
+    public void succeeded(int index, String guid) {
+        guids[index] = guid;
+        failures.remove(index);
+    }
+
+    public void failed(int index, Throwable cause) {
+        guids[index] = null;
+        failures.put(index, cause);
+    }
+
+    public int size() {
+        return guids.length;
+    }
+
+    /**
+     * @param index position of the entity in the batch
+     * @return the guid assigned to the entity, null if it failed
+     */
+    public String getGuid(int index) {
+        return guids[index];
+    }
+
+    /**
+     * @return guids in batch order, with null for entities that failed
+     */
+    public List<String> getGuids() {
+        return Collections.unmodifiableList(Arrays.asList(guids));
+    }
+
+    /**
+     * @return failure causes keyed by the position of the entity in the batch
+     */
+    public Map<Integer, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "EntityBatchResult{size=" + guids.length + ", failures=" + failures.size() + '}';
+    }
+}
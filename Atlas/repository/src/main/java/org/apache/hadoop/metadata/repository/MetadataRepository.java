@@ -74,6 +74,18 @@ public interface MetadataRepository {
      */
     String createEntity(IReferenceableInstance entity) throws RepositoryException;
 
+    /**
+     * Creates a batch of entity definitions (instances). Entities are written in
+     * chunks, each chunk in a single transaction, and a failure of one entity does
+     * not fail the rest of the batch.
+     *
+     * @param entities entities (typed instances)
+     * @return the guid or the failure for each entity, in batch order
+     * @throws RepositoryException
+     */
+    EntityBatchResult createEntities(List<? extends IReferenceableInstance> entities)
+        throws RepositoryException;
+
     /**
      * Fetch the complete definition of an entity given its GUID.
      *
@@ -92,6 +104,26 @@ public interface MetadataRepository {
      */
     List<String> getEntityList(String entityType) throws RepositoryException;
 
+    /**
+     * Gets a page of the list of entities for a given entity type.
+     *
+     * @param entityType name of a type which is unique
+     * @param limit      maximum number of entities, a negative value for no limit
+     * @param offset     number of entities to skip
+     * @return a list of entity names for the given type
+     * @throws RepositoryException
+     */
+    List<String> getEntityList(String entityType, int limit, int offset) throws RepositoryException;
+
+    /**
+     * Counts the entities of a given entity type.
+     *
+     * @param entityType name of a type which is unique
+     * @return number of entities of the given type
+     * @throws RepositoryException
+     */
+    long getEntityCount(String entityType) throws RepositoryException;
+
     /**
      * Deletes an entity definition (instance) corresponding to a given type.
      *
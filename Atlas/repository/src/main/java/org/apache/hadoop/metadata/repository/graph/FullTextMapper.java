@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.graph;
+
+import com.google.common.collect.ImmutableSet;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.Configuration;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.repository.Constants;
+import org.apache.hadoop.metadata.typesystem.IReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.ITypedInstance;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.AttributeInfo;
+import org.apache.hadoop.metadata.typesystem.types.EnumValue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the full text of an entity from the typed instance being written,
+ * without reading the entity back from the graph.
+ *
+ * Attributes indexed per type can be restricted with
+ * metadata.fulltext.attributes.[typeName]=attr1,attr2 and the size of the
+ * text is bounded by metadata.fulltext.max.size characters.
+ */
+final class FullTextMapper {
+
+    public static final String MAX_SIZE_PROPERTY = "metadata.fulltext.max.size";
+    public static final String ATTRIBUTES_PROPERTY = "metadata.fulltext.attributes";
+    public static final String ATTRIBUTES_PROPERTY_PREFIX = ATTRIBUTES_PROPERTY + ".";
+
+    private static final int DEFAULT_MAX_SIZE = 32 * 1024;
+    private static final String FULL_TEXT_DELIMITER = " ";
+
+    private final GuidVertexCache guidVertexCache;
+    private final int maxSize;
+    private final Map<String, Set<String>> attributesByType = new HashMap<>();
+
+    FullTextMapper(GuidVertexCache guidVertexCache, Configuration configuration) {
+        this.guidVertexCache = guidVertexCache;
+        this.maxSize = configuration.getInt(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+
+        // getKeys matches the keys under the prefix followed by a dot, and the prefix itself
+        Iterator<String> keys = configuration.getKeys(ATTRIBUTES_PROPERTY);
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!key.startsWith(ATTRIBUTES_PROPERTY_PREFIX)) {
+                continue;
+            }
+            attributesByType.put(key.substring(ATTRIBUTES_PROPERTY_PREFIX.length()),
+                    ImmutableSet.copyOf(configuration.getStringArray(key)));
+        }
+    }
+
+    /**
+     * Returns the full text for an instance. References to instances written along
+     * with it are followed one level deep in memory; references to entities already
+     * in the graph contribute their stored full text.
+     *
+     * @param typedInstance instance being written
+     * @param instances     instances being written, by id
+     * @param idToVertexMap vertices of the instances and references being written, by id
+     * @return full text, at most metadata.fulltext.max.size characters
+     */
+    String getFullText(ITypedInstance typedInstance,
+                       Map<Id, ITypedReferenceableInstance> instances,
+                       Map<Id, Vertex> idToVertexMap) throws MetadataException {
+        StringBuilder fullText = new StringBuilder();
+        appendFullText(fullText, typedInstance, instances, idToVertexMap, true);
+
+        return fullText.length() > maxSize
+                ? fullText.substring(0, maxSize) : fullText.toString();
+    }
+
+    private void appendFullText(StringBuilder fullText, ITypedInstance typedInstance,
+                                Map<Id, ITypedReferenceableInstance> instances,
+                                Map<Id, Vertex> idToVertexMap,
+                                boolean followReferences) throws MetadataException {
+        final Set<String> indexedAttributes = attributesByType.get(typedInstance.getTypeName());
+        for (AttributeInfo attributeInfo : typedInstance.fieldMapping().fields.values()) {
+            if (fullText.length() >= maxSize) {
+                return;
+            }
+
+            if (indexedAttributes != null && !indexedAttributes.contains(attributeInfo.name)) {
+                continue;
+            }
+
+            Object attrValue = typedInstance.get(attributeInfo.name);
+            if (attrValue == null) {
+                continue;
+            }
+
+            final int start = fullText.length();
+            fullText.append(FULL_TEXT_DELIMITER).append(attributeInfo.name)
+                    .append(FULL_TEXT_DELIMITER);
+            final int valueStart = fullText.length();
+
+            switch (attributeInfo.dataType().getTypeCategory()) {
+                case PRIMITIVE:
+                    fullText.append(String.valueOf(attrValue));
+                    break;
+
+                case ENUM:
+                    fullText.append(((EnumValue) attrValue).value);
+                    break;
+
+                case CLASS:
+                    if (followReferences) {
+                        Id referenceId = ((IReferenceableInstance) attrValue).getId();
+                        appendReferenceFullText(fullText, referenceId, instances, idToVertexMap);
+                    }
+                    break;
+
+                case STRUCT:
+                case TRAIT:
+                    if (followReferences) {
+                        appendFullText(fullText, (ITypedInstance) attrValue,
+                                instances, idToVertexMap, false);
+                    }
+                    break;
+
+                default: // ARRAY, MAP
+                    break;
+            }
+
+            if (fullText.length() == valueStart) { // nothing to index for this attribute
+                fullText.setLength(start);
+            }
+        }
+    }
+
+    private void appendReferenceFullText(StringBuilder fullText, Id referenceId,
+                                         Map<Id, ITypedReferenceableInstance> instances,
+                                         Map<Id, Vertex> idToVertexMap) throws MetadataException {
+        ITypedReferenceableInstance reference = instances.get(referenceId);
+        if (reference != null) {
+            appendFullText(fullText, reference, instances, idToVertexMap, false);
+            return;
+        }
+
+        Vertex referenceVertex = idToVertexMap.get(referenceId);
+        if (referenceVertex == null && referenceId.isAssigned()) {
+            referenceVertex = guidVertexCache.findVertexByGUID(referenceId.id);
+        }
+
+        if (referenceVertex != null) {
+            String referenceText = referenceVertex.getProperty(Constants.ENTITY_TEXT_PROPERTY_KEY);
+            if (referenceText != null) {
+                fullText.append(referenceText.trim());
+            }
+        }
+    }
+}
@@ -26,8 +26,12 @@ import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.GraphQuery;
 import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.PropertiesUtil;
 import org.apache.hadoop.metadata.repository.Constants;
+import org.apache.hadoop.metadata.repository.EntityBatchResult;
 import org.apache.hadoop.metadata.repository.MetadataRepository;
 import org.apache.hadoop.metadata.repository.RepositoryException;
 import org.apache.hadoop.metadata.typesystem.IReferenceableInstance;
@@ -39,7 +43,7 @@ import org.apache.hadoop.metadata.typesystem.persistence.MapIds;
 import org.apache.hadoop.metadata.typesystem.types.AttributeInfo;
 import org.apache.hadoop.metadata.typesystem.types.ClassType;
 import org.apache.hadoop.metadata.typesystem.types.DataTypes;
-import org.apache.hadoop.metadata.typesystem.types.EnumValue;
+import org.apache.hadoop.metadata.typesystem.types.FieldAccessor;
 import org.apache.hadoop.metadata.typesystem.types.IDataType;
 import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
 import org.apache.hadoop.metadata.typesystem.types.ObjectGraphWalker;
@@ -51,8 +55,6 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -70,10 +72,15 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
 
     private static final Logger LOG =
             LoggerFactory.getLogger(GraphBackedMetadataRepository.class);
-    private static final String FULL_TEXT_DELIMITER = " ";
 
     private static final String EDGE_LABEL_PREFIX = "__";
 
+    /**
+     * Number of entities written in a single transaction by createEntities.
+     */
+    public static final String BATCH_SIZE_PROPERTY = "metadata.repository.batch.size";
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
     private final AtomicInteger ID_SEQ = new AtomicInteger(0);
 
     private final TypedInstanceToGraphMapper instanceToGraphMapper
@@ -83,18 +90,34 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
 
     private final TypeSystem typeSystem;
     private final TitanGraph titanGraph;
+    private final int batchSize;
+    private final FullTextMapper fullTextMapper;
+    private final GuidVertexCache guidVertexCache;
 
     @Inject
     public GraphBackedMetadataRepository(GraphProvider<TitanGraph> graphProvider) throws MetadataException {
         this.typeSystem = TypeSystem.getInstance();
 
         this.titanGraph = graphProvider.get();
+
+        try {
+            PropertiesConfiguration configuration = PropertiesUtil.getApplicationProperties();
+            this.batchSize = Math.max(1, configuration.getInt(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+            this.guidVertexCache = new GuidVertexCache(titanGraph, configuration);
+            this.fullTextMapper = new FullTextMapper(guidVertexCache, configuration);
+        } catch (ConfigurationException e) {
+            throw new RepositoryException(e);
+        }
     }
 
     public GraphToTypedInstanceMapper getGraphToInstanceMapper() {
         return graphToInstanceMapper;
     }
 
+    public GuidVertexCache getGuidVertexCache() {
+        return guidVertexCache;
+    }
+
     @Override
     public String getTypeAttributeName() {
         return Constants.ENTITY_TYPE_PROPERTY_KEY;
@@ -125,8 +148,11 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
 
         try {
             titanGraph.rollback();
-            final String guid = instanceToGraphMapper.mapTypedInstanceToGraph(typedInstance);
+            EntityProcessor entityProcessor = new EntityProcessor();
+            final String guid = instanceToGraphMapper.mapTypedInstanceToGraph(
+                    typedInstance, entityProcessor);
             titanGraph.commit();  // commit if there are no errors
+            guidVertexCache.putAll(entityProcessor.newVertexIds);
             return guid;
 
         } catch (MetadataException e) {
@@ -135,6 +161,64 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
         }
     }
 
+    /**
+     * Creates the entities in chunks of {@link #BATCH_SIZE_PROPERTY}, each chunk in a
+     * single transaction. Entities that fail type conversion are reported and skipped
+     * without affecting the rest of the chunk; a failure while writing to or committing
+     * the graph fails every entity of that chunk.
+     */
+    @Override
+    public EntityBatchResult createEntities(List<? extends IReferenceableInstance> entities)
+        throws RepositoryException {
+        Preconditions.checkNotNull(entities, "entities cannot be null");
+        LOG.info("adding {} entities in chunks of {}", entities.size(), batchSize);
+
+        EntityBatchResult result = new EntityBatchResult(entities.size());
+        for (int start = 0; start < entities.size(); start += batchSize) {
+            createEntities(entities, start, Math.min(start + batchSize, entities.size()), result);
+        }
+
+        return result;
+    }
+
+    private void createEntities(List<? extends IReferenceableInstance> entities,
+                                int start, int end, EntityBatchResult result) {
+        try {
+            titanGraph.rollback();
+
+            // shared across the chunk so that entities can refer to each other
+            EntityProcessor entityProcessor = new EntityProcessor();
+            for (int index = start; index < end; index++) {
+                IReferenceableInstance entity = entities.get(index);
+
+                List<ITypedReferenceableInstance> newTypedInstances;
+                try {
+                    newTypedInstances = instanceToGraphMapper.collectInstances(
+                            entity, entityProcessor);
+                } catch (MetadataException | RuntimeException e) {
+                    LOG.warn("Unable to add entity at index {} in batch", index, e);
+                    result.failed(index, e);
+                    continue;
+                }
+
+                String guid = instanceToGraphMapper.addInstancesToGraph(
+                        entity, entityProcessor, newTypedInstances);
+                result.succeeded(index, guid);
+            }
+
+            titanGraph.commit();  // commit if there are no errors
+            guidVertexCache.putAll(entityProcessor.newVertexIds);
+        } catch (Exception e) {
+            LOG.error("Unable to add entities [{}, {}) in batch", start, end, e);
+            titanGraph.rollback();
+            for (int index = start; index < end; index++) {
+                if (!result.getFailures().containsKey(index)) {
+                    result.failed(index, e);
+                }
+            }
+        }
+    }
+
     @Override
     public ITypedReferenceableInstance getEntityDefinition(String guid) throws RepositoryException {
         LOG.info("Retrieving entity with guid={}", guid);
@@ -152,7 +236,7 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
     }
 
     private Vertex getVertexForGUID(String guid) throws RepositoryException {
-        Vertex instanceVertex = GraphHelper.findVertexByGUID(titanGraph, guid);
+        Vertex instanceVertex = guidVertexCache.findVertexByGUID(guid);
         if (instanceVertex == null) {
             LOG.debug("Could not find a vertex for guid={}", guid);
             throw new RepositoryException(
@@ -164,10 +248,23 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
 
     @Override
     public List<String> getEntityList(String entityType) throws RepositoryException {
-        LOG.info("Retrieving entity list for type={}", entityType);
+        return getEntityList(entityType, -1, 0);
+    }
+
+    @Override
+    public List<String> getEntityList(String entityType, int limit,
+                                      int offset) throws RepositoryException {
+        LOG.info("Retrieving entity list for type={} limit={} offset={}", entityType, limit, offset);
         GraphQuery query = titanGraph.query()
                 .has(Constants.ENTITY_TYPE_PROPERTY_KEY, entityType);
+        if (limit > 0) {
+            query = query.limit((int) Math.min((long) offset + limit, Integer.MAX_VALUE));
+        }
+
         Iterator<Vertex> results = query.vertices().iterator();
+        for (int skipped = 0; skipped < offset && results.hasNext(); skipped++) {
+            results.next();
+        }
         if (!results.hasNext()) {
             return Collections.emptyList();
         }
@@ -181,6 +278,22 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
         return entityList;
     }
 
+    @Override
+    public long getEntityCount(String entityType) throws RepositoryException {
+        LOG.info("Counting entities of type={}", entityType);
+        GraphQuery query = titanGraph.query()
+                .has(Constants.ENTITY_TYPE_PROPERTY_KEY, entityType);
+        Iterator<Vertex> results = query.vertices().iterator();
+
+        long count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+
+        return count;
+    }
+
     /**
      * Gets the list of trait names for a given entity represented by a guid.
      *
@@ -228,7 +341,7 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
             final String typeName = getTypeName(instanceVertex);
             instanceToGraphMapper.mapTraitInstanceToVertex(
                     traitInstance, getIdFromVertex(typeName, instanceVertex),
-                    typeName, instanceVertex, Collections.<Id, Vertex>emptyMap());
+                    typeName, instanceVertex, new HashMap<Id, Vertex>());
 
             // update the traits in entity once adding trait instance is successful
             ((TitanVertex) instanceVertex)
@@ -306,7 +419,7 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
 
         try {
             titanGraph.rollback();  // clean up before starting a query
-            Vertex instanceVertex = GraphHelper.findVertexByGUID(titanGraph, guid);
+            Vertex instanceVertex = guidVertexCache.findVertexByGUID(guid);
             if (instanceVertex == null) {
                 throw new RepositoryException("Could not find a vertex for guid " + guid);
             }
@@ -356,11 +469,14 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
         public final Map<Id, Id> idToNewIdMap;
         public final Map<Id, IReferenceableInstance> idToInstanceMap;
         public final Map<Id, Vertex> idToVertexMap;
+        // ids of the vertices created, by guid, published to the cache on commit
+        public final Map<String, Object> newVertexIds;
 
         public EntityProcessor() {
             idToNewIdMap = new HashMap<>();
             idToInstanceMap = new HashMap<>();
             idToVertexMap = new HashMap<>();
+            newVertexIds = new HashMap<>();
         }
 
         @Override
@@ -384,6 +500,11 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                     }
 
                     if (ref != null) {
+                        if (idToVertexMap.containsKey(idToNewIdMap.get(id))) {
+                            // already added to the graph earlier in this batch
+                            return;
+                        }
+
                         if (idToInstanceMap.containsKey(id)) { // Oops
                             throw new RepositoryException(String.format(
                                     "Unexpected internal error: Id %s processed again", id));
@@ -401,111 +522,101 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                 if (!idToVertexMap.containsKey(id)) {
                     Vertex instanceVertex;
                     if (id.isAssigned()) {  // has a GUID
-                        instanceVertex = GraphHelper.findVertexByGUID(titanGraph, id.id);
+                        instanceVertex = guidVertexCache.findVertexByGUID(id.id);
                     } else {
                         instanceVertex =
                                 GraphHelper.createVertexWithIdentity(titanGraph, typedInstance);
+                        newVertexIds.put(instanceVertex.<String>getProperty(
+                                Constants.GUID_PROPERTY_KEY), instanceVertex.getId());
                     }
 
                     idToVertexMap.put(id, instanceVertex);
                 }
             }
         }
+
+        public String getGuid(Id id) {
+            if (id.isAssigned()) {
+                return id.id;
+            }
+
+            Id newId = idToNewIdMap.containsKey(id) ? idToNewIdMap.get(id) : id;
+            Vertex instanceVertex = idToVertexMap.get(newId);
+            return instanceVertex == null
+                    ? null : instanceVertex.<String>getProperty(Constants.GUID_PROPERTY_KEY);
+        }
     }
 
     private final class TypedInstanceToGraphMapper {
 
-        private String mapTypedInstanceToGraph(IReferenceableInstance typedInstance)
+        private String mapTypedInstanceToGraph(IReferenceableInstance typedInstance,
+                                               EntityProcessor entityProcessor)
             throws MetadataException {
 
-            EntityProcessor entityProcessor = new EntityProcessor();
+            List<ITypedReferenceableInstance> newTypedInstances =
+                    collectInstances(typedInstance, entityProcessor);
+            return addInstancesToGraph(typedInstance, entityProcessor, newTypedInstances);
+        }
+
+        /**
+         * Step 1: Walk the object graph of the entity and convert the new instances.
+         * Does not touch the graph, so a failure here leaves the transaction clean.
+         */
+        private List<ITypedReferenceableInstance> collectInstances(
+                IReferenceableInstance typedInstance,
+                EntityProcessor entityProcessor) throws MetadataException {
             try {
-                LOG.debug("Walking the object graph for instance {}", typedInstance.getTypeName());
-                new ObjectGraphWalker(typeSystem, entityProcessor, typedInstance).walk();
-            } catch (MetadataException me) {
-                throw new RepositoryException("TypeSystem error when walking the ObjectGraph", me);
+                try {
+                    LOG.debug("Walking the object graph for instance {}",
+                            typedInstance.getTypeName());
+                    new ObjectGraphWalker(typeSystem, entityProcessor, typedInstance).walk();
+                } catch (MetadataException me) {
+                    throw new RepositoryException(
+                            "TypeSystem error when walking the ObjectGraph", me);
+                }
+
+                return discoverInstances(entityProcessor);
+            } finally {
+                // id and vertex maps are kept for the next entity in a batch
+                entityProcessor.idToInstanceMap.clear();
             }
+        }
+
+        private String addInstancesToGraph(IReferenceableInstance typedInstance,
+                                           EntityProcessor entityProcessor,
+                                           List<ITypedReferenceableInstance> newTypedInstances)
+            throws MetadataException {
 
-            List<ITypedReferenceableInstance> newTypedInstances = discoverInstances(entityProcessor);
             entityProcessor.createVerticesForClassTypes(newTypedInstances);
             String guid = addDiscoveredInstances(typedInstance, entityProcessor, newTypedInstances);
             addFullTextProperty(entityProcessor, newTypedInstances);
-            return guid;
+            return guid != null ? guid : entityProcessor.getGuid(typedInstance.getId());
         }
 
         private void addFullTextProperty(EntityProcessor entityProcessor,
                                          List<ITypedReferenceableInstance> newTypedInstances)
             throws MetadataException {
 
+            Map<Id, ITypedReferenceableInstance> instances = new HashMap<>();
+            for (ITypedReferenceableInstance typedInstance : newTypedInstances) {
+                instances.put(typedInstance.getId(), typedInstance);
+            }
+
             for (ITypedReferenceableInstance typedInstance : newTypedInstances) { // Traverse
                 Id id = typedInstance.getId();
                 Vertex instanceVertex = entityProcessor.idToVertexMap.get(id);
-                String fullText = getFullText(instanceVertex, true);
+                String fullText = fullTextMapper.getFullText(
+                        typedInstance, instances, entityProcessor.idToVertexMap);
                 instanceVertex.setProperty(Constants.ENTITY_TEXT_PROPERTY_KEY, fullText);
             }
         }
 
-        private String getFullText(Vertex instanceVertex,
-                                   boolean followReferences) throws MetadataException {
-            String guid = instanceVertex.getProperty(Constants.GUID_PROPERTY_KEY);
-            ITypedReferenceableInstance typedReference =
-                    graphToInstanceMapper.mapGraphToTypedInstance(guid, instanceVertex);
-            return getFullText(typedReference, followReferences);
-        }
-
-        private String getFullText(ITypedInstance typedInstance,
-                                   boolean followReferences) throws MetadataException {
-            StringBuilder fullText = new StringBuilder();
-            for (AttributeInfo attributeInfo : typedInstance.fieldMapping().fields.values()) {
-                Object attrValue = typedInstance.get(attributeInfo.name);
-                if (attrValue == null) {
-                    continue;
-                }
-
-                String attrFullText = null;
-                switch(attributeInfo.dataType().getTypeCategory()) {
-                    case PRIMITIVE:
-                        attrFullText = String.valueOf(attrValue);
-                        break;
-
-                    case ENUM:
-                        attrFullText = ((EnumValue)attrValue).value;
-                        break;
-
-                    case ARRAY:
-                        break;
-
-                    case MAP:
-                        break;
-
-                    case CLASS:
-                        if (followReferences) {
-                            String refGuid = ((ITypedReferenceableInstance) attrValue).getId()._getId();
-                            Vertex refVertex = getVertexForGUID(refGuid);
-                            attrFullText = getFullText(refVertex, false);
-                        }
-                        break;
-
-                    case STRUCT:
-                    case TRAIT:
-                        if (followReferences) {
-                            attrFullText = getFullText((ITypedInstance) attrValue, false);
-                        }
-                        break;
-                }
-                if (attrFullText != null) {
-                    fullText = fullText.append(FULL_TEXT_DELIMITER).append(attributeInfo.name)
-                            .append(FULL_TEXT_DELIMITER).append(attrFullText);
-                }
-            }
-            return fullText.toString();
-        }
-
         /**
          * Step 2: Traverse oldIdToInstance map create newInstances :
          * List[ITypedReferenceableInstance]
          *  - create a ITypedReferenceableInstance.
-         *   replace any old References ( ids or object references) with new Ids.
+         *  - once all are created, replace any old References ( ids or object references)
+         *    with new Ids in a single walk over the new instances.
          */
         private List<ITypedReferenceableInstance> discoverInstances(EntityProcessor entityProcessor)
                 throws RepositoryException {
@@ -518,11 +629,6 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                     ITypedReferenceableInstance newInstance = cT.convert(
                             transientInstance, Multiplicity.REQUIRED);
                     newTypedInstances.add(newInstance);
-
-                    // Now replace old references with new Ids
-                    MapIds mapIds = new MapIds(entityProcessor.idToNewIdMap);
-                    new ObjectGraphWalker(typeSystem, mapIds, newTypedInstances).walk();
-
                 } catch (MetadataException me) {
                     throw new RepositoryException(
                             String.format("Failed to create Instance(id = %s",
@@ -530,6 +636,14 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                 }
             }
 
+            // Now replace old references with new Ids
+            try {
+                MapIds mapIds = new MapIds(entityProcessor.idToNewIdMap);
+                new ObjectGraphWalker(typeSystem, mapIds, newTypedInstances).walk();
+            } catch (MetadataException me) {
+                throw new RepositoryException("Failed to map the ids of new instances", me);
+            }
+
             return newTypedInstances;
         }
 
@@ -593,13 +707,14 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                                            IDataType dataType) throws MetadataException {
             LOG.debug("mapping attributeInfo {}", attributeInfo);
             final String propertyName = typedInstance.getTypeName() + "." + attributeInfo.name;
-            if (typedInstance.get(attributeInfo.name) == null) {
+            final Object value = getAttribute(typedInstance, attributeInfo);
+            if (value == null) {
                 return;
             }
 
             switch (dataType.getTypeCategory()) {
                 case PRIMITIVE:
-                    mapPrimitiveToVertex(typedInstance, instanceVertex, attributeInfo);
+                    mapPrimitiveToVertex(instanceVertex, attributeInfo, propertyName, value);
                     break;
 
                 case ENUM:
@@ -619,7 +734,7 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
 
                 case STRUCT:
                     Vertex structInstanceVertex = mapStructInstanceToVertex(id,
-                            (ITypedStruct) typedInstance.get(attributeInfo.name),
+                            (ITypedStruct) value,
                             attributeInfo, idToVertexMap);
                     // add an edge to the newly created vertex from the parent
                     GraphHelper.addEdge(
@@ -631,7 +746,7 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                     break;
 
                 case CLASS:
-                    Id referenceId = (Id) typedInstance.get(attributeInfo.name);
+                    Id referenceId = (Id) value;
                     mapClassReferenceAsEdge(
                             instanceVertex, idToVertexMap, propertyName, referenceId
                     );
@@ -747,7 +862,13 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
             if (id != null) {
                 Vertex referenceVertex;
                 if (id.isAssigned()) {
-                    referenceVertex = GraphHelper.findVertexByGUID(titanGraph, id.id);
+                    referenceVertex = idToVertexMap.get(id);
+                    if (referenceVertex == null) {
+                        referenceVertex = guidVertexCache.findVertexByGUID(id.id);
+                        if (referenceVertex != null) { // reused by full text and later references
+                            idToVertexMap.put(id, referenceVertex);
+                        }
+                    }
                 } else {
                     referenceVertex = idToVertexMap.get(id);
                 }
@@ -810,49 +931,17 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                     titanGraph, parentInstanceVertex, traitInstanceVertex, relationshipLabel);
         }
 
-        private void mapPrimitiveToVertex(ITypedInstance typedInstance,
-                                          Vertex instanceVertex,
-                                          AttributeInfo attributeInfo) throws MetadataException {
+        private void mapPrimitiveToVertex(Vertex instanceVertex,
+                                          AttributeInfo attributeInfo,
+                                          String vertexPropertyName,
+                                          Object value) {
             LOG.debug("Adding primitive {} to v {}", attributeInfo, instanceVertex);
-            if (typedInstance.get(attributeInfo.name) ==
-                    null) { // add only if instance has this attribute
+            // dates are not mapped to the vertex
+            if (attributeInfo.dataType() == DataTypes.DATE_TYPE) {
                 return;
             }
 
-            final String vertexPropertyName = typedInstance.getTypeName() + "." +
-                    attributeInfo.name;
-
-            if (attributeInfo.dataType() == DataTypes.STRING_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getString(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.SHORT_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getShort(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.INT_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getInt(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.BIGINTEGER_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getBigInt(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.BOOLEAN_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getBoolean(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.BYTE_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getByte(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.LONG_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getLong(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.FLOAT_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getFloat(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.DOUBLE_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getDouble(attributeInfo.name));
-            } else if (attributeInfo.dataType() == DataTypes.BIGDECIMAL_TYPE) {
-                instanceVertex.setProperty(vertexPropertyName,
-                        typedInstance.getBigDecimal(attributeInfo.name));
-            }
+            instanceVertex.setProperty(vertexPropertyName, value);
         }
     }
 
@@ -881,6 +970,90 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
             return typedInstance;
         }
 
+        /**
+         * Maps only the given attributes of an instance: the instance has its id and the
+         * names of its traits, the trait vertices are not read. References to other
+         * instances, composite or not, are mapped to their Ids, the referenced vertices
+         * are not loaded.
+         */
+        public ITypedReferenceableInstance mapGraphToProjectedInstance(String guid,
+                                                                       Vertex instanceVertex,
+                                                                       List<String> attributes)
+            throws MetadataException {
+
+            LOG.debug("Mapping attributes {} of vertex {} for guid {}",
+                    attributes, instanceVertex, guid);
+            String typeName = instanceVertex.getProperty(Constants.ENTITY_TYPE_PROPERTY_KEY);
+            List<String> traits = getTraitNames(instanceVertex);
+
+            Id id = new Id(guid,
+                    instanceVertex.<Integer>getProperty(Constants.VERSION_PROPERTY_KEY), typeName);
+
+            ClassType classType = typeSystem.getDataType(ClassType.class, typeName);
+            ITypedReferenceableInstance typedInstance = classType.createInstance(
+                    id, traits.toArray(new String[traits.size()]));
+
+            for (String attribute : attributes) {
+                AttributeInfo attributeInfo = classType.fieldMapping().fields.get(attribute);
+                if (attributeInfo == null) {
+                    throw new MetadataException(
+                            "Unknown attribute " + attribute + " of type " + typeName);
+                }
+                mapVertexToAttributeIds(instanceVertex, typedInstance, attributeInfo);
+            }
+
+            return typedInstance;
+        }
+
+        private void mapVertexToAttributeIds(Vertex instanceVertex,
+                                             ITypedInstance typedInstance,
+                                             AttributeInfo attributeInfo) throws MetadataException {
+            final IDataType dataType = attributeInfo.dataType();
+            final String propertyName = typedInstance.getTypeName() + "." + attributeInfo.name;
+
+            if (dataType.getTypeCategory() == DataTypes.TypeCategory.CLASS) {
+                Iterator<Edge> results = instanceVertex.getEdges(
+                        Direction.OUT, propertyName).iterator();
+                setAttribute(typedInstance, attributeInfo, results.hasNext()
+                        ? referenceId(results.next().getVertex(Direction.IN), dataType) : null);
+
+            } else if (dataType.getTypeCategory() == DataTypes.TypeCategory.ARRAY
+                    && ((DataTypes.ArrayType) dataType).getElemType().getTypeCategory()
+                    == DataTypes.TypeCategory.CLASS) {
+                String keys = instanceVertex.getProperty(propertyName);
+                if (keys == null || keys.length() == 0) {
+                    return;
+                }
+
+                Map<String, Vertex> referenceVertices = new HashMap<>();
+                for (Edge edge : instanceVertex.getEdges(
+                        Direction.OUT, EDGE_LABEL_PREFIX + propertyName)) {
+                    referenceVertices.put(String.valueOf(edge.getId()), edge.getVertex(Direction.IN));
+                }
+
+                IDataType elementType = ((DataTypes.ArrayType) dataType).getElemType();
+                ArrayList<Id> ids = new ArrayList<>();
+                for (String propertyNameWithSuffix : keys.split(",")) {
+                    String edgeId = propertyNameWithSuffix.substring(
+                            propertyNameWithSuffix.lastIndexOf(":") + 1);
+                    ids.add(referenceId(referenceVertices.get(edgeId), elementType));
+                }
+                typedInstance.set(attributeInfo.name, ids);
+
+            } else {
+                mapVertexToAttribute(instanceVertex, typedInstance, attributeInfo);
+            }
+        }
+
+        private Id referenceId(Vertex referenceVertex, IDataType dataType) {
+            if (referenceVertex == null) {
+                return null;
+            }
+            return new Id(referenceVertex.<String>getProperty(Constants.GUID_PROPERTY_KEY),
+                    referenceVertex.<Integer>getProperty(Constants.VERSION_PROPERTY_KEY),
+                    dataType.getName());
+        }
+
         public void mapVertexToInstanceTraits(Vertex instanceVertex,
                                               ITypedReferenceableInstance typedInstance,
                                               List<String> traits) throws MetadataException {
@@ -946,7 +1119,7 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                             attributeInfo.name;
                     Object idOrInstance = mapClassReferenceToVertex(instanceVertex,
                             attributeInfo, relationshipLabel, attributeInfo.dataType());
-                    typedInstance.set(attributeInfo.name, idOrInstance);
+                    setAttribute(typedInstance, attributeInfo, idOrInstance);
                     break;
 
                 default:
@@ -1193,42 +1366,39 @@ public class GraphBackedMetadataRepository implements MetadataRepository {
                                           ITypedInstance typedInstance,
                                           AttributeInfo attributeInfo) throws MetadataException {
             LOG.debug("Adding primitive {} from vertex {}", attributeInfo, instanceVertex);
-            final String vertexPropertyName = typedInstance.getTypeName() + "." + attributeInfo.name;
-            if (instanceVertex.getProperty(vertexPropertyName) == null) {
+            // dates are not mapped to the vertex
+            if (attributeInfo.dataType() == DataTypes.DATE_TYPE) {
                 return;
             }
 
-            if (attributeInfo.dataType() == DataTypes.STRING_TYPE) {
-                typedInstance.setString(attributeInfo.name,
-                        instanceVertex.<String>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.SHORT_TYPE) {
-                typedInstance.setShort(attributeInfo.name,
-                        instanceVertex.<Short>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.INT_TYPE) {
-                typedInstance.setInt(attributeInfo.name,
-                        instanceVertex.<Integer>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.BIGINTEGER_TYPE) {
-                typedInstance.setBigInt(attributeInfo.name,
-                        instanceVertex.<BigInteger>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.BOOLEAN_TYPE) {
-                typedInstance.setBoolean(attributeInfo.name,
-                        instanceVertex.<Boolean>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.BYTE_TYPE) {
-                typedInstance.setByte(attributeInfo.name,
-                        instanceVertex.<Byte>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.LONG_TYPE) {
-                typedInstance.setLong(attributeInfo.name,
-                        instanceVertex.<Long>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.FLOAT_TYPE) {
-                typedInstance.setFloat(attributeInfo.name,
-                        instanceVertex.<Float>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.DOUBLE_TYPE) {
-                typedInstance.setDouble(attributeInfo.name,
-                        instanceVertex.<Double>getProperty(vertexPropertyName));
-            } else if (attributeInfo.dataType() == DataTypes.BIGDECIMAL_TYPE) {
-                typedInstance.setBigDecimal(attributeInfo.name,
-                        instanceVertex.<BigDecimal>getProperty(vertexPropertyName));
+            final String vertexPropertyName = typedInstance.getTypeName() + "." + attributeInfo.name;
+            final Object value = instanceVertex.getProperty(vertexPropertyName);
+            if (value == null) {
+                return;
             }
+
+            setAttribute(typedInstance, attributeInfo, value);
+        }
+    }
+
+    /**
+     * Reads an attribute through the accessor of its field, the mappers access every
+     * attribute of every instance they map.
+     */
+    private static Object getAttribute(ITypedInstance typedInstance,
+                                       AttributeInfo attributeInfo) throws MetadataException {
+        FieldAccessor accessor = typedInstance.fieldMapping().accessor(attributeInfo.name);
+        return accessor != null
+                ? accessor.get(typedInstance) : typedInstance.get(attributeInfo.name);
+    }
+
+    private static void setAttribute(ITypedInstance typedInstance, AttributeInfo attributeInfo,
+                                     Object value) throws MetadataException {
+        FieldAccessor accessor = typedInstance.fieldMapping().accessor(attributeInfo.name);
+        if (accessor != null) {
+            accessor.set(typedInstance, value);
+        } else {
+            typedInstance.set(attributeInfo.name, value);
         }
     }
 }
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.thinkaurelius.titan.core.TitanGraph;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.Configuration;
+import org.apache.hadoop.metadata.repository.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the vertex id of entities by guid so that hot entities are resolved
+ * with a lookup by id instead of a guid index query.
+ *
+ * Vertices created by the repository are added once their transaction commits,
+ * so a rollback never publishes ids of discarded vertices. An entry that no longer
+ * resolves to a vertex with the same guid is dropped on access.
+ */
+public class GuidVertexCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GuidVertexCache.class);
+
+    public static final String MAX_SIZE_PROPERTY = "metadata.repository.guid.cache.size";
+    public static final String TTL_PROPERTY = "metadata.repository.guid.cache.ttl.secs";
+
+    private static final long DEFAULT_MAX_SIZE = 100000;
+    private static final long DEFAULT_TTL_SECS = 3600;
+
+    private final TitanGraph titanGraph;
+    private final Cache<String, Object> guidToVertexId;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public GuidVertexCache(TitanGraph titanGraph, Configuration configuration) {
+        this.titanGraph = titanGraph;
+
+        final long maxSize = configuration.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+        final long ttlSecs = configuration.getLong(TTL_PROPERTY, DEFAULT_TTL_SECS);
+        LOG.info("Caching up to {} guid to vertex ids for {} secs", maxSize, ttlSecs);
+
+        this.guidToVertexId = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSecs, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Finds the vertex for the given guid, by id when cached.
+     *
+     * @param guid globally unique identifier of the entity
+     * @return vertex or null if there is no entity for the guid
+     */
+    public Vertex findVertexByGUID(String guid) {
+        Object vertexId = guidToVertexId.getIfPresent(guid);
+        if (vertexId != null) {
+            Vertex vertex = titanGraph.getVertex(vertexId);
+            if (vertex != null
+                    && guid.equals(vertex.<String>getProperty(Constants.GUID_PROPERTY_KEY))) {
+                hits.incrementAndGet();
+                return vertex;
+            }
+
+            LOG.debug("Dropping stale vertex id {} for guid {}", vertexId, guid);
+            guidToVertexId.invalidate(guid);
+        }
+
+        misses.incrementAndGet();
+        Vertex vertex = GraphHelper.findVertexByGUID(titanGraph, guid);
+        if (vertex != null) {
+            guidToVertexId.put(guid, vertex.getId());
+        }
+
+        return vertex;
+    }
+
+    /**
+     * Caches the vertex ids of committed vertices.
+     *
+     * @param committedVertexIds vertex ids by guid
+     */
+    public void putAll(Map<String, Object> committedVertexIds) {
+        for (Map.Entry<String, Object> entry : committedVertexIds.entrySet()) {
+            guidToVertexId.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void invalidate(String guid) {
+        guidToVertexId.invalidate(guid);
+    }
+
+    public void invalidateAll() {
+        guidToVertexId.invalidateAll();
+    }
+
+    public long size() {
+        return guidToVertexId.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "GuidVertexCache{size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + '}';
+    }
+}
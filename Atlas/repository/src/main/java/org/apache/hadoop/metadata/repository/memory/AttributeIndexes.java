@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.AttributeInfo;
+import org.apache.hadoop.metadata.typesystem.types.DataTypes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class AttributeIndexes {
+
+    /**
+     * Create the index for an attribute:
+     * - a SortedIndex for numeric, string and date attributes.
+     * - a HashIndex for boolean attributes.
+     * - no index for other attributes, or attributes that are not indexable.
+     * @param i
+     * @return the index, or null.
+     */
+    static IAttributeIndex createIndex(AttributeInfo i) {
+        if (!i.isIndexable || i.dataType().getTypeCategory() != DataTypes.TypeCategory.PRIMITIVE) {
+            return null;
+        }
+        if (i.dataType() == DataTypes.BOOLEAN_TYPE) {
+            return new HashIndex(i);
+        }
+        return new SortedIndex(i);
+    }
+
+    /*
+     * Values map to the Ids that have them; the reverse map lets an Instance's old value be
+     * removed when it is stored again. Stores of different Instances can happen concurrently,
+     * so all access is synchronized.
+     */
+    static abstract class AbstractAttributeIndex implements IAttributeIndex {
+        final AttributeInfo attrInfo;
+        final Map<Object, Set<Id>> valueMap;
+        final Map<Id, Object> idValues;
+
+        AbstractAttributeIndex(AttributeInfo attrInfo, Map<Object, Set<Id>> valueMap) {
+            this.attrInfo = attrInfo;
+            this.valueMap = valueMap;
+            this.idValues = new HashMap<Id, Object>();
+        }
+
+        @Override
+        public AttributeInfo getAttributeInfo() {
+            return attrInfo;
+        }
+
+        @Override
+        public synchronized Set<Id> lookup(Object value) {
+            Set<Id> ids = valueMap.get(value);
+            return ids == null ? ImmutableSet.<Id>of() : ImmutableSet.copyOf(ids);
+        }
+
+        @Override
+        public synchronized void store(Id id, Object value) {
+            remove(id);
+            if (value != null) {
+                Set<Id> ids = valueMap.get(value);
+                if (ids == null) {
+                    ids = new HashSet<Id>();
+                    valueMap.put(value, ids);
+                }
+                ids.add(id);
+                idValues.put(id, value);
+            }
+        }
+
+        @Override
+        public synchronized void remove(Id id) {
+            Object oldValue = idValues.remove(id);
+            if (oldValue != null) {
+                Set<Id> ids = valueMap.get(oldValue);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    valueMap.remove(oldValue);
+                }
+            }
+        }
+    }
+
+    static class HashIndex extends AbstractAttributeIndex {
+
+        HashIndex(AttributeInfo attrInfo) {
+            super(attrInfo, new HashMap<Object, Set<Id>>());
+        }
+
+        @Override
+        public boolean isSorted() {
+            return false;
+        }
+
+        @Override
+        public Set<Id> lookupRange(Object from, boolean fromInclusive, Object to,
+                                   boolean toInclusive) {
+            throw new UnsupportedOperationException(
+                    String.format("Index on %s does not support range lookups", attrInfo.name));
+        }
+    }
+
+    static class SortedIndex extends AbstractAttributeIndex {
+
+        SortedIndex(AttributeInfo attrInfo) {
+            super(attrInfo, new TreeMap<Object, Set<Id>>());
+        }
+
+        @Override
+        public boolean isSorted() {
+            return true;
+        }
+
+        @Override
+        public synchronized Set<Id> lookupRange(Object from, boolean fromInclusive, Object to,
+                                                boolean toInclusive) {
+            NavigableMap<Object, Set<Id>> m = (NavigableMap<Object, Set<Id>>) valueMap;
+            if (from != null) {
+                m = m.tailMap(from, fromInclusive);
+            }
+            if (to != null) {
+                m = m.headMap(to, toInclusive);
+            }
+            ImmutableSet.Builder<Id> b = ImmutableSet.builder();
+            for (Set<Id> ids : m.values()) {
+                b.addAll(ids);
+            }
+            return b.build();
+        }
+    }
+}
@@ -39,15 +39,26 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AttributeStores {
 
     private static final Object NULL_VAL = new Object();
 
-    static IAttributeStore createStore(AttributeInfo i) throws RepositoryException {
+    /**
+     * Create the store for an attribute of a type.
+     * String attributes use a {@link DictionaryStringStore} if the repository encodes them,
+     * other attributes a store for their datatype.
+     * @param repository
+     * @param typeName the Class, Trait or Struct declaring the attribute.
+     * @param i
+     * @return
+     * @throws RepositoryException
+     */
+    static IAttributeStore createStore(MemRepository repository, String typeName, AttributeInfo i)
+    throws RepositoryException {
         switch (i.dataType().getTypeCategory()) {
             case PRIMITIVE:
                 if (i.dataType() == DataTypes.BOOLEAN_TYPE) {
@@ -55,7 +66,7 @@ public class AttributeStores {
                 } else if (i.dataType() == DataTypes.BYTE_TYPE) {
                     return new ByteAttributeStore(i);
                 } else if (i.dataType() == DataTypes.SHORT_TYPE) {
-                    new ShortAttributeStore(i);
+                    return new ShortAttributeStore(i);
                 } else if (i.dataType() == DataTypes.INT_TYPE) {
                     return new IntAttributeStore(i);
                 } else if (i.dataType() == DataTypes.LONG_TYPE) {
@@ -71,8 +82,9 @@ public class AttributeStores {
                 } else if (i.dataType() == DataTypes.DATE_TYPE) {
                     return new DateStore(i);
                 } else if (i.dataType() == DataTypes.STRING_TYPE) {
-                    return new StringStore(i);
-                } else if (i.dataType() == DataTypes.STRING_TYPE) {
+                    if (repository.isDictionaryEncoded(typeName, i.name)) {
+                        return new DictionaryStringStore(i, repository.stringDictionary);
+                    }
                     return new StringStore(i);
                 } else {
                     throw new RepositoryException(
@@ -85,7 +97,7 @@ public class AttributeStores {
             case MAP:
                 return new ImmutableMapStore(i);
             case STRUCT:
-                return new StructStore(i);
+                return new StructStore(repository, i);
             case CLASS:
                 return new IdStore(i);
             default:
@@ -96,13 +108,18 @@ public class AttributeStores {
 
     static abstract class AbstractAttributeStore implements IAttributeStore {
         final BooleanArrayList nullList;
-        final Map<Integer, Map<String, Object>> hiddenVals;
+        /*
+         * The values of the hidden attributes at a position, in the order of
+         * type.getNames(attrInfo) starting at its 3rd name. The names are the same for every
+         * store and load of a position, as they come from the Instance's type.
+         */
+        final Map<Integer, Object[]> hiddenVals;
         AttributeInfo attrInfo;
 
         AbstractAttributeStore(AttributeInfo attrInfo) {
             this.attrInfo = attrInfo;
             this.nullList = new BooleanArrayList();
-            hiddenVals = new HashMap<Integer, Map<String, Object>>();
+            hiddenVals = new ConcurrentHashMap<Integer, Object[]>();
         }
 
         final void setNull(int pos, boolean flag) {
@@ -116,33 +133,29 @@ public class AttributeStores {
         void storeHiddenVals(int pos, IConstructableType type, StructInstance instance)
         throws RepositoryException {
             List<String> attrNames = type.getNames(attrInfo);
-            Map<String, Object> m = hiddenVals.get(pos);
-            if (m == null) {
-                m = new HashMap<String, Object>();
-                hiddenVals.put(pos, m);
-            }
+            Object[] vals = new Object[attrNames.size() - 2];
             for (int i = 2; i < attrNames.size(); i++) {
                 String attrName = attrNames.get(i);
                 int nullPos = instance.fieldMapping().fieldNullPos.get(attrName);
                 int colPos = instance.fieldMapping().fieldPos.get(attrName);
                 if (instance.nullFlags[nullPos]) {
-                    m.put(attrName, NULL_VAL);
+                    vals[i - 2] = NULL_VAL;
                 } else {
-                    //m.put(attrName, instance.bools[colPos]);
-                    store(instance, colPos, attrName, m);
+                    vals[i - 2] = getHiddenVal(instance, colPos);
                 }
             }
+            hiddenVals.put(pos, vals);
         }
 
         void loadHiddenVals(int pos, IConstructableType type, StructInstance instance)
         throws RepositoryException {
             List<String> attrNames = type.getNames(attrInfo);
-            Map<String, Object> m = hiddenVals.get(pos);
+            Object[] vals = hiddenVals.get(pos);
             for (int i = 2; i < attrNames.size(); i++) {
                 String attrName = attrNames.get(i);
                 int nullPos = instance.fieldMapping().fieldNullPos.get(attrName);
                 int colPos = instance.fieldMapping().fieldPos.get(attrName);
-                Object val = m == null ? NULL_VAL : m.get(attrName);
+                Object val = vals == null ? NULL_VAL : vals[i - 2];
                 if (val == NULL_VAL) {
                     instance.nullFlags[nullPos] = true;
                 } else {
@@ -207,16 +220,23 @@ public class AttributeStores {
                 throws RepositoryException;
 
         /*
-         * store the value from colPos in map as attrName
+         * the value from colPos in instance, to store as a hidden value.
          */
-        protected abstract void store(StructInstance instance, int colPos, String attrName,
-                                      Map<String, Object> m);
+        protected abstract Object getHiddenVal(StructInstance instance, int colPos)
+                throws RepositoryException;
 
         /*
          * load the val into colPos in instance.
          */
         protected abstract void load(StructInstance instance, int colPos, Object val);
 
+        @Override
+        public void collectStatistics(StoreStatistics stats) {
+            for (Object[] vals : hiddenVals.values()) {
+                stats.hiddenValues += vals.length;
+            }
+        }
+
     }
 
     static abstract class PrimitiveAttributeStore extends AbstractAttributeStore
@@ -246,9 +266,8 @@ public class AttributeStores {
             instance.bools[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.bools[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.bools[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -279,9 +298,8 @@ public class AttributeStores {
             instance.bytes[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.bytes[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.bytes[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -312,9 +330,8 @@ public class AttributeStores {
             instance.shorts[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.shorts[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.shorts[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -345,9 +362,8 @@ public class AttributeStores {
             instance.ints[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.ints[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.ints[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -378,9 +394,8 @@ public class AttributeStores {
             instance.longs[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.longs[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.longs[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -411,9 +426,8 @@ public class AttributeStores {
             instance.floats[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.floats[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.floats[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -444,9 +458,8 @@ public class AttributeStores {
             instance.doubles[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.doubles[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.doubles[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -492,9 +505,8 @@ public class AttributeStores {
             instance.bigIntegers[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.bigIntegers[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.bigIntegers[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -517,9 +529,8 @@ public class AttributeStores {
             instance.bigDecimals[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.bigDecimals[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.bigDecimals[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -542,9 +553,8 @@ public class AttributeStores {
             instance.dates[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.dates[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.dates[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -567,15 +577,87 @@ public class AttributeStores {
             instance.strings[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.strings[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.strings[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
             instance.strings[colPos] = (String) val;
         }
 
+        @Override
+        public void collectStatistics(StoreStatistics stats) {
+            super.collectStatistics(stats);
+            for (String v : list) {
+                if (v != null) {
+                    stats.heapStrings++;
+                    stats.heapStringBytes += StoreStatistics.estimateHeapBytes(v);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Stores the codes of the values in a {@link StringDictionary} shared by the repository,
+     * instead of the Strings. Hidden values are stored as codes too. Loads decode the value,
+     * so each load creates a new String.
+     */
+    static class DictionaryStringStore extends AbstractAttributeStore {
+
+        static final int NULL_CODE = -1;
+
+        final StringDictionary dictionary;
+        final IntArrayList list;
+
+        DictionaryStringStore(AttributeInfo attrInfo, StringDictionary dictionary) {
+            super(attrInfo);
+            this.dictionary = dictionary;
+            this.list = new IntArrayList();
+        }
+
+        int encode(String s) throws RepositoryException {
+            return s == null ? NULL_CODE : dictionary.encode(s);
+        }
+
+        String decode(int code) {
+            return code == NULL_CODE ? null : dictionary.decode(code);
+        }
+
+        protected void store(StructInstance instance, int colPos, int pos)
+                throws RepositoryException {
+            list.set(pos, encode(instance.strings[colPos]));
+        }
+
+        protected void load(StructInstance instance, int colPos, int pos) {
+            instance.strings[colPos] = decode(list.get(pos));
+        }
+
+        protected Object getHiddenVal(StructInstance instance, int colPos)
+                throws RepositoryException {
+            return encode(instance.strings[colPos]);
+        }
+
+        protected void load(StructInstance instance, int colPos, Object val) {
+            instance.strings[colPos] = decode((Integer) val);
+        }
+
+        @Override
+        public void ensureCapacity(int pos) throws RepositoryException {
+            list.size(pos + 1);
+            nullList.size(pos + 1);
+        }
+
+        @Override
+        public void collectStatistics(StoreStatistics stats) {
+            super.collectStatistics(stats);
+            for (int i = 0; i < list.size(); i++) {
+                if (!nullList.get(i)) {
+                    stats.encodedStrings++;
+                }
+            }
+        }
+
     }
 
     static class IdStore extends ObjectAttributeStore<Id> {
@@ -592,9 +674,8 @@ public class AttributeStores {
             instance.ids[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.ids[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.ids[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -617,9 +698,8 @@ public class AttributeStores {
             instance.arrays[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.arrays[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.arrays[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
@@ -642,9 +722,8 @@ public class AttributeStores {
             instance.maps[colPos] = list.get(pos);
         }
 
-        protected void store(StructInstance instance, int colPos, String attrName,
-                             Map<String, Object> m) {
-            m.put(attrName, instance.maps[colPos]);
+        protected Object getHiddenVal(StructInstance instance, int colPos) {
+            return instance.maps[colPos];
         }
 
         protected void load(StructInstance instance, int colPos, Object val) {
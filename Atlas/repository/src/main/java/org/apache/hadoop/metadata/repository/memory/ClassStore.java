@@ -41,8 +41,24 @@ public class ClassStore extends HierarchicalTypeStore {
 
     void store(ReferenceableInstance i) throws RepositoryException {
         super.store(i);
-        int pos = idPosMap.get(i.getId());
-        traitNamesStore.set(pos, i.getTraits());
+        acquireReadLock();
+        try {
+            traitNamesStore.set(getPosition(i.getId()), i.getTraits());
+        } finally {
+            releaseReadLock();
+        }
+    }
+
+    /*
+     * - assumes id is already validated
+     */
+    ImmutableList<String> getTraitNames(Id id) throws RepositoryException {
+        acquireReadLock();
+        try {
+            return traitNamesStore.get(getPosition(id));
+        } finally {
+            releaseReadLock();
+        }
     }
 
     public void ensureCapacity(int pos) throws RepositoryException {
@@ -56,12 +72,14 @@ public class ClassStore extends HierarchicalTypeStore {
         if (id.isUnassigned()) {
             throw new RepositoryException(String.format("Invalid Id (unassigned) : %s", id));
         }
-        Integer pos = idPosMap.get(id);
-        if (pos == null) {
-            throw new RepositoryException(String.format("Invalid Id (unknown) : %s", id));
+        String typeName;
+        acquireReadLock();
+        try {
+            typeName = typeNameList.get(getPosition(id));
+        } finally {
+            releaseReadLock();
         }
 
-        String typeName = typeNameList.get(pos);
         if (typeName != hierarchicalType.getName()) {
             throw new RepositoryException(
                     String.format("Invalid Id (incorrect typeName, type is %s) : %s",
@@ -75,13 +93,21 @@ public class ClassStore extends HierarchicalTypeStore {
      * - assumes id is already validated
      */
     ReferenceableInstance createInstance(MemRepository repo, Id id) throws RepositoryException {
-        Integer pos = idPosMap.get(id);
-        String typeName = typeNameList.get(pos);
+        String typeName;
+        ImmutableList<String> traitNames;
+        acquireReadLock();
+        try {
+            int pos = getPosition(id);
+            typeName = typeNameList.get(pos);
+            traitNames = traitNamesStore.get(pos);
+        } finally {
+            releaseReadLock();
+        }
+
         if (typeName != hierarchicalType.getName()) {
             return repo.getClassStore(typeName).createInstance(repo, id);
         }
 
-        ImmutableList<String> traitNames = traitNamesStore.get(pos);
         String[] tNs = traitNames.toArray(new String[]{});
 
         try {
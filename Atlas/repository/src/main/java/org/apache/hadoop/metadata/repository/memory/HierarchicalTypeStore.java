@@ -22,6 +22,8 @@ import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.repository.RepositoryException;
 import org.apache.hadoop.metadata.typesystem.persistence.Id;
 import org.apache.hadoop.metadata.typesystem.persistence.ReferenceableInstance;
@@ -45,18 +47,31 @@ public abstract class HierarchicalTypeStore {
     final ImmutableMap<AttributeInfo, IAttributeStore> attrStores;
     final ImmutableList<HierarchicalTypeStore> superTypeStores;
 
+    /**
+     * Secondary indexes on the immediate attributes, by attribute name. Only built when the
+     * repository is created with indexes.
+     */
+    final ImmutableMap<String, IAttributeIndex> indexes;
 
     /**
      * Map Id to position in storage lists.
      */
     Map<Id, Integer> idPosMap;
 
-    List<Integer> freePositions;
+    /**
+     * Released positions, reused most recently released first.
+     */
+    IntArrayList freePositions;
 
     int nextPos;
 
     /**
-     * Lock for each Class/Trait.
+     * Lock for each Class/Trait. It guards the layout of the store, not the values stored:
+     * - the write lock is held while positions are assigned or released, and while the
+     *   storage lists are grown.
+     * - the read lock is held while values are stored or loaded. Distinct positions are
+     *   independent slots, so stores and loads of different Instances run in parallel;
+     *   access to the same Instance is serialized by the MemRepository instance locks.
      */
     ReentrantReadWriteLock lock;
 
@@ -70,10 +85,21 @@ public abstract class HierarchicalTypeStore {
         typeNameList = Lists.newArrayList((String) null);
         ImmutableList<AttributeInfo> l = hierarchicalType.immediateAttrs;
         for (AttributeInfo i : l) {
-            b.put(i, AttributeStores.createStore(i));
+            b.put(i, AttributeStores.createStore(repository, hierarchicalType.getName(), i));
         }
         attrStores = b.build();
 
+        ImmutableMap.Builder<String, IAttributeIndex> b2 = ImmutableMap.builder();
+        if (repository.createIndexes) {
+            for (AttributeInfo i : l) {
+                IAttributeIndex index = AttributeIndexes.createIndex(i);
+                if (index != null) {
+                    b2.put(i.name, index);
+                }
+            }
+        }
+        indexes = b2.build();
+
         ImmutableList.Builder<HierarchicalTypeStore> b1
                 = new ImmutableList.Builder<HierarchicalTypeStore>();
         Set<String> allSuperTypeNames = hierarchicalType.getAllSuperTypeNames();
@@ -84,7 +110,7 @@ public abstract class HierarchicalTypeStore {
 
         nextPos = 0;
         idPosMap = new HashMap<Id, Integer>();
-        freePositions = new ArrayList<Integer>();
+        freePositions = new IntArrayList();
 
         lock = new ReentrantReadWriteLock();
     }
@@ -101,14 +127,19 @@ public abstract class HierarchicalTypeStore {
     int assignPosition(Id id) throws RepositoryException {
 
         int pos = -1;
-        if (!freePositions.isEmpty()) {
-            pos = freePositions.remove(0);
-        } else {
-            pos = nextPos++;
-            ensureCapacity(pos);
-        }
+        acquireWriteLock();
+        try {
+            if (!freePositions.isEmpty()) {
+                pos = freePositions.popInt();
+            } else {
+                pos = nextPos++;
+                ensureCapacity(pos);
+            }
 
-        idPosMap.put(id, pos);
+            idPosMap.put(id, pos);
+        } finally {
+            releaseWriteLock();
+        }
 
         for (HierarchicalTypeStore s : superTypeStores) {
             s.assignPosition(id);
@@ -124,17 +155,51 @@ public abstract class HierarchicalTypeStore {
      */
     void releaseId(Id id) {
 
-        Integer pos = idPosMap.get(id);
-        if (pos != null) {
-            idPosMap.remove(id);
-            freePositions.add(pos);
+        Integer pos;
+        acquireWriteLock();
+        try {
+            pos = idPosMap.remove(id);
+            if (pos != null) {
+                freePositions.push(pos);
+            }
+        } finally {
+            releaseWriteLock();
+        }
 
+        if (pos != null) {
+            for (IAttributeIndex index : indexes.values()) {
+                index.remove(id);
+            }
             for (HierarchicalTypeStore s : superTypeStores) {
                 s.releaseId(id);
             }
         }
     }
 
+    /**
+     * The index on an attribute of this type or one of its SuperTypes.
+     * @param attrName
+     * @return the index, or null if the attribute is not indexed.
+     */
+    IAttributeIndex getIndex(String attrName) {
+        IAttributeIndex index = indexes.get(attrName);
+        for (int i = 0; index == null && i < superTypeStores.size(); i++) {
+            index = superTypeStores.get(i).indexes.get(attrName);
+        }
+        return index;
+    }
+
+    /**
+     * The position assigned to an Id; callers must hold the read or write lock.
+     */
+    int getPosition(Id id) throws RepositoryException {
+        Integer pos = idPosMap.get(id);
+        if (pos == null) {
+            throw new RepositoryException(String.format("Invalid Id (unknown) : %s", id));
+        }
+        return pos;
+    }
+
     void acquireReadLock() {
         lock.readLock().lock();
     }
@@ -158,6 +223,17 @@ public abstract class HierarchicalTypeStore {
         }
     }
 
+    protected void indexFields(Id id, StructInstance s) throws RepositoryException {
+        for (IAttributeIndex index : indexes.values()) {
+            List<String> attrNames = hierarchicalType.getNames(index.getAttributeInfo());
+            try {
+                index.store(id, s.get(attrNames.get(0)));
+            } catch (MetadataException me) {
+                throw new RepositoryException(me);
+            }
+        }
+    }
+
     protected void loadFields(int pos, StructInstance s) throws RepositoryException {
         for (Map.Entry<AttributeInfo, IAttributeStore> e : attrStores.entrySet()) {
             IAttributeStore attributeStore = e.getValue();
@@ -173,9 +249,15 @@ public abstract class HierarchicalTypeStore {
      * @throws RepositoryException
      */
     void store(ReferenceableInstance i) throws RepositoryException {
-        int pos = idPosMap.get(i.getId());
-        typeNameList.set(pos, i.getTypeName());
-        storeFields(pos, i);
+        acquireReadLock();
+        try {
+            int pos = getPosition(i.getId());
+            typeNameList.set(pos, i.getTypeName());
+            storeFields(pos, i);
+        } finally {
+            releaseReadLock();
+        }
+        indexFields(i.getId(), i);
 
         for (HierarchicalTypeStore s : superTypeStores) {
             s.store(i);
@@ -189,8 +271,12 @@ public abstract class HierarchicalTypeStore {
      * @throws RepositoryException
      */
     void load(ReferenceableInstance i) throws RepositoryException {
-        int pos = idPosMap.get(i.getId());
-        loadFields(pos, i);
+        acquireReadLock();
+        try {
+            loadFields(getPosition(i.getId()), i);
+        } finally {
+            releaseReadLock();
+        }
 
         for (HierarchicalTypeStore s : superTypeStores) {
             s.load(i);
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.AttributeInfo;
+
+import java.util.Set;
+
+/**
+ * A secondary index from the values of an attribute to the Ids of the Instances that have
+ * them. Null values are not indexed.
+ */
+public interface IAttributeIndex {
+
+    AttributeInfo getAttributeInfo();
+
+    /**
+     * @return true if the index can answer range lookups.
+     */
+    boolean isSorted();
+
+    /**
+     * The Ids of the Instances whose attribute equals the value.
+     * @param value a value of the attribute's type
+     * @return
+     */
+    Set<Id> lookup(Object value);
+
+    /**
+     * The Ids of the Instances whose attribute lies between from and to. A null bound
+     * leaves that end of the range open.
+     * @throws UnsupportedOperationException if the index is not sorted.
+     */
+    Set<Id> lookupRange(Object from, boolean fromInclusive, Object to, boolean toInclusive);
+
+    /**
+     * Index the value of an Instance, replacing the value indexed for it before.
+     * @param id
+     * @param value the value, or null to only remove the current entry.
+     */
+    void store(Id id, Object value);
+
+    /**
+     * Remove the entry of an Instance.
+     * @param id
+     */
+    void remove(Id id);
+}
@@ -46,4 +46,10 @@ public interface IAttributeStore {
      * @throws RepositoryException
      */
     void ensureCapacity(int pos) throws RepositoryException;
+
+    /**
+     * Add the values held by this store to the statistics.
+     * @param stats
+     */
+    void collectStatistics(StoreStatistics stats);
 }
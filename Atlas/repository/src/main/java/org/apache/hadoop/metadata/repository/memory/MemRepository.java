@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.metadata.repository.memory;
 
+import com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.repository.DiscoverInstances;
 import org.apache.hadoop.metadata.repository.IRepository;
@@ -35,14 +36,17 @@ import org.apache.hadoop.metadata.typesystem.types.ObjectGraphWalker;
 import org.apache.hadoop.metadata.typesystem.types.TraitType;
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class MemRepository implements IRepository {
 
@@ -58,9 +62,54 @@ public class MemRepository implements IRepository {
     final Map<String, HierarchicalTypeStore> typeStores;
     final AtomicInteger ID_SEQ = new AtomicInteger(0);
 
+    /*
+     * Striped locks over Instance Ids. Reads of an Instance hold its stripe's read lock,
+     * creates, updates and deletes hold the write lock. So an Instance is never seen half
+     * stored, while operations on unrelated Instances, even of the same Class, proceed in
+     * parallel.
+     */
+    static final int NUM_INSTANCE_LOCKS = 256;
+    final ReentrantReadWriteLock[] instanceLocks;
+
+    /*
+     * Maintain secondary indexes on the indexable primitive attributes of the stores.
+     */
+    final boolean createIndexes;
+
+    /*
+     * String attributes whose values are stored as codes of the stringDictionary, as
+     * 'TypeName.attrName'; ALL_STRING_ATTRIBUTES selects every String attribute.
+     */
+    public static final String ALL_STRING_ATTRIBUTES = "*";
+    final ImmutableSet<String> dictionaryEncodedAttrs;
+    final StringDictionary stringDictionary;
+
     public MemRepository(TypeSystem typeSystem) {
+        this(typeSystem, false);
+    }
+
+    public MemRepository(TypeSystem typeSystem, boolean createIndexes) {
+        this(typeSystem, createIndexes, ImmutableSet.<String>of());
+    }
+
+    /**
+     * @param typeSystem
+     * @param createIndexes maintain secondary indexes, see {@link #getIndex(String, String)}
+     * @param dictionaryEncodedAttrs the String attributes to store off heap in a dictionary,
+     *                               as 'TypeName.attrName', or {@link #ALL_STRING_ATTRIBUTES}.
+     *                               Attributes of Structs are named by the Struct type.
+     */
+    public MemRepository(TypeSystem typeSystem, boolean createIndexes,
+                         Set<String> dictionaryEncodedAttrs) {
         this.typeSystem = typeSystem;
-        this.typeStores = new HashMap<>();
+        this.createIndexes = createIndexes;
+        this.dictionaryEncodedAttrs = ImmutableSet.copyOf(dictionaryEncodedAttrs);
+        this.stringDictionary = dictionaryEncodedAttrs.isEmpty() ? null : new StringDictionary();
+        this.typeStores = new ConcurrentHashMap<>();
+        this.instanceLocks = new ReentrantReadWriteLock[NUM_INSTANCE_LOCKS];
+        for (int i = 0; i < NUM_INSTANCE_LOCKS; i++) {
+            instanceLocks[i] = new ReentrantReadWriteLock();
+        }
     }
 
 /*
@@ -95,13 +144,14 @@ public class MemRepository implements IRepository {
      * 2. Traverse oldIdToInstance map create newInstances : List[ITypedReferenceableInstance]
      *    - create a ITypedReferenceableInstance.
      *      replace any old References ( ids or object references) with new Ids.
-     * 3. Traverse over newInstances
+     * 3. Acquire the instance locks of the newInstances.
+     * 4. Traverse over newInstances
      *    - ask ClassStore to assign a position to the Id.
      *      - for Instances with Traits, assign a position for each Trait
      *    - invoke store on the nwInstance.
      *
      * Recovery:
-     * - on each newInstance, invoke releaseId and delete on its ClassStore and Traits' Stores.
+     * - on each newInstance, invoke releaseId on its ClassStore and Traits' Stores.
      *
      * @param i
      * @return
@@ -138,13 +188,11 @@ public class MemRepository implements IRepository {
         /* Step 2: Traverse oldIdToInstance map create newInstances :
         List[ITypedReferenceableInstance]
          * - create a ITypedReferenceableInstance.
-         *   replace any old References ( ids or object references) with new Ids.
+         * - then replace any old References ( ids or object references) with new Ids.
         */
         List<ITypedReferenceableInstance> newInstances
                 = new ArrayList<ITypedReferenceableInstance>();
         ITypedReferenceableInstance retInstance = null;
-        Set<ClassType> classTypes = new TreeSet<ClassType>();
-        Set<TraitType> traitTypes = new TreeSet<TraitType>();
         for (IReferenceableInstance transientInstance : discoverInstances.idToInstanceMap
                 .values()) {
             try {
@@ -154,22 +202,9 @@ public class MemRepository implements IRepository {
                         .convert(transientInstance, Multiplicity.REQUIRED);
                 newInstances.add(newInstance);
 
-                classTypes.add(cT);
-                for (String traitName : newInstance.getTraits()) {
-                    TraitType tT = typeSystem.getDataType(TraitType.class, traitName);
-                    traitTypes.add(tT);
-                }
-
                 if (newInstance.getId() == i.getId()) {
                     retInstance = newInstance;
                 }
-
-                /*
-                 * Now replace old references with new Ids
-                 */
-                MapIds mapIds = new MapIds(discoverInstances.idToNewIdMap);
-                new ObjectGraphWalker(typeSystem, mapIds, newInstances).walk();
-
             } catch (MetadataException me) {
                 throw new RepositoryException(
                         String.format("Failed to create Instance(id = %s",
@@ -178,19 +213,28 @@ public class MemRepository implements IRepository {
         }
 
         /*
-         * 3. Acquire Class and Trait Storage locks.
-         * - acquire them in a stable order (super before subclass, classes before traits
+         * Now replace old references with new Ids, in one walk over all the new Instances
          */
-        for (ClassType cT : classTypes) {
-            HierarchicalTypeStore st = typeStores.get(cT.getName());
-            st.acquireWriteLock();
+        try {
+            MapIds mapIds = new MapIds(discoverInstances.idToNewIdMap);
+            new ObjectGraphWalker(typeSystem, mapIds, newInstances).walk();
+        } catch (MetadataException me) {
+            throw new RepositoryException("Failed to map the ids of new Instances", me);
         }
 
-        for (TraitType tT : traitTypes) {
-            HierarchicalTypeStore st = typeStores.get(tT.getName());
-            st.acquireWriteLock();
+        /*
+         * 3. Acquire the instance locks of the new Instances.
+         * - acquire them in a stable order (by stripe), so concurrent creates cannot deadlock.
+         * - the Class and Trait Stores are only locked while positions are handed out or the
+         *   storage lists grow.
+         */
+        SortedSet<Integer> stripes = new TreeSet<Integer>();
+        for (ITypedReferenceableInstance instance : newInstances) {
+            stripes.add(stripe(instance.getId()));
+        }
+        for (int stripe : stripes) {
+            instanceLocks[stripe].writeLock().lock();
         }
-
 
         /*
          * 4. Traverse over newInstances
@@ -220,30 +264,128 @@ public class MemRepository implements IRepository {
             for (ITypedReferenceableInstance instance : newInstances) {
                 HierarchicalTypeStore st = typeStores.get(instance.getTypeName());
                 st.releaseId(instance.getId());
+                for (String traitName : instance.getTraits()) {
+                    HierarchicalTypeStore tt = typeStores.get(traitName);
+                    tt.releaseId(instance.getId());
+                }
             }
             throw re;
         } finally {
-            for (ClassType cT : classTypes) {
-                HierarchicalTypeStore st = typeStores.get(cT.getName());
-                st.releaseWriteLock();
-            }
-
-            for (TraitType tT : traitTypes) {
-                HierarchicalTypeStore st = typeStores.get(tT.getName());
-                st.releaseWriteLock();
+            for (int stripe : stripes) {
+                instanceLocks[stripe].writeLock().unlock();
             }
         }
 
         return retInstance;
     }
 
+    /**
+     * Replace the stored state of an existing Instance with the state of i.
+     * - i's Id must be assigned and known to its ClassStore.
+     * - references in i are stored as Ids; i may not refer to new(unassigned) Instances,
+     *   these must be created first.
+     * - Trait positions are assigned for added Traits and released for removed Traits.
+     * Referenced Instances are not updated, only i itself.
+     *
+     * @param i
+     * @return
+     * @throws RepositoryException
+     */
     public ITypedReferenceableInstance update(ITypedReferenceableInstance i)
     throws RepositoryException {
-        throw new RepositoryException("not implemented");
+
+        ClassStore cS = getClassStore(i.getTypeName());
+        if (cS == null) {
+            throw new RepositoryException(String.format("Unknown Class %s", i.getTypeName()));
+        }
+
+        DiscoverInstances discoverInstances = new DiscoverInstances(this);
+        try {
+            new ObjectGraphWalker(typeSystem, discoverInstances, i).walk();
+        } catch (MetadataException me) {
+            throw new RepositoryException("TypeSystem error when walking the ObjectGraph", me);
+        }
+        if (!discoverInstances.idToNewIdMap.isEmpty()) {
+            throw new RepositoryException(String.format("Invalid Object Graph: " +
+                            "Update of %s refers to unassigned Ids %s, create them first",
+                    i.getId(), discoverInstances.idToNewIdMap.keySet()));
+        }
+
+        /*
+         * Replace references to Instances with their Ids.
+         */
+        try {
+            MapIds mapIds = new MapIds(Collections.<Id, Id>emptyMap());
+            new ObjectGraphWalker(typeSystem, mapIds, i).walk();
+        } catch (MetadataException me) {
+            throw new RepositoryException("Failed to map the ids of the Instance", me);
+        }
+
+        Id id = i.getId();
+        ReentrantReadWriteLock.WriteLock lock = instanceLocks[stripe(id)].writeLock();
+        lock.lock();
+        try {
+            cS.validate(this, id);
+            List<String> oldTraits = cS.getTraitNames(id);
+            List<String> addedTraits = new ArrayList<String>();
+            try {
+                for (String traitName : i.getTraits()) {
+                    if (!oldTraits.contains(traitName)) {
+                        typeStores.get(traitName).assignPosition(id);
+                        addedTraits.add(traitName);
+                    }
+                }
+
+                cS.store((ReferenceableInstance) i);
+                for (String traitName : i.getTraits()) {
+                    typeStores.get(traitName).store((ReferenceableInstance) i);
+                }
+            } catch (RepositoryException re) {
+                for (String traitName : addedTraits) {
+                    typeStores.get(traitName).releaseId(id);
+                }
+                throw re;
+            }
+
+            for (String traitName : oldTraits) {
+                if (!i.getTraits().contains(traitName)) {
+                    typeStores.get(traitName).releaseId(id);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return i;
     }
 
+    /**
+     * Remove an Instance: its positions in the ClassStore, the SuperType Stores and its
+     * Traits' Stores are released for reuse. References to the Instance from other Instances
+     * are not removed, they fail to resolve once the Instance is deleted.
+     *
+     * @param i
+     * @throws RepositoryException
+     */
     public void delete(ITypedReferenceableInstance i) throws RepositoryException {
-        throw new RepositoryException("not implemented");
+
+        ClassStore cS = getClassStore(i.getTypeName());
+        if (cS == null) {
+            throw new RepositoryException(String.format("Unknown Class %s", i.getTypeName()));
+        }
+
+        Id id = i.getId();
+        ReentrantReadWriteLock.WriteLock lock = instanceLocks[stripe(id)].writeLock();
+        lock.lock();
+        try {
+            cS.validate(this, id);
+            for (String traitName : cS.getTraitNames(id)) {
+                typeStores.get(traitName).releaseId(id);
+            }
+            cS.releaseId(id);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public ITypedReferenceableInstance get(Id id) throws RepositoryException {
@@ -262,27 +404,165 @@ public class MemRepository implements IRepository {
 
     /*
      * - Id must be valid; Class must be valid.
-     * - Ask ClassStore to createInstance.
-     * - Ask ClassStore to load instance.
-     * - load instance traits
+     * - load the Instance
      * - add to GraphWalker
      */
     ITypedReferenceableInstance getDuringWalk(Id id, ObjectGraphWalker walker)
             throws RepositoryException {
+        ReferenceableInstance r = load(id);
+        walker.addRoot(r);
+        return r;
+    }
+
+    /**
+     * Load an Instance without resolving its composite references; all references are
+     * returned as Ids.
+     * - Id must be valid; Class must be valid.
+     * - Ask ClassStore to createInstance.
+     * - Ask ClassStore to load instance.
+     * - load instance traits
+     *
+     * @param id
+     * @return
+     * @throws RepositoryException
+     */
+    public ReferenceableInstance load(Id id) throws RepositoryException {
         ClassStore cS = getClassStore(id.getTypeName());
         if (cS == null) {
             throw new RepositoryException(String.format("Unknown Class %s", id.getTypeName()));
         }
-        cS.validate(this, id);
-        ReferenceableInstance r = cS.createInstance(this, id);
-        cS.load(r);
-        for (String traitName : r.getTraits()) {
+        ReferenceableInstance r;
+        ReentrantReadWriteLock.ReadLock lock = instanceLocks[stripe(id)].readLock();
+        lock.lock();
+        try {
+            cS.validate(this, id);
+            r = cS.createInstance(this, id);
+            cS.load(r);
+            for (String traitName : r.getTraits()) {
+                HierarchicalTypeStore tt = typeStores.get(traitName);
+                tt.load(r);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return r;
+    }
+
+    /**
+     * The Ids of the Instances stored for a Class or Trait; for a Class this includes the
+     * Instances of its SubClasses.
+     *
+     * @param typeName
+     * @return
+     * @throws RepositoryException
+     */
+    public List<Id> getInstanceIds(String typeName) throws RepositoryException {
+        HierarchicalTypeStore st = getStore(typeName);
+        if (st == null) {
+            throw new RepositoryException(String.format("Unknown Type %s", typeName));
+        }
+        st.acquireReadLock();
+        try {
+            return new ArrayList<Id>(st.idPosMap.keySet());
+        } finally {
+            st.releaseReadLock();
+        }
+    }
+
+    /**
+     * The index on an attribute of a Class or Trait, which may be declared in a SuperType.
+     *
+     * @param typeName
+     * @param attrName
+     * @return the index, or null if the attribute is not indexed.
+     * @throws RepositoryException
+     */
+    public IAttributeIndex getIndex(String typeName, String attrName) throws RepositoryException {
+        HierarchicalTypeStore st = getStore(typeName);
+        if (st == null) {
+            throw new RepositoryException(String.format("Unknown Type %s", typeName));
+        }
+        return st.getIndex(attrName);
+    }
+
+    /**
+     * Write the types and Instances of the repository to a file, see
+     * {@link MemRepositorySnapshot} for the format. Creates, updates and deletes wait until
+     * the snapshot is written.
+     *
+     * @param file
+     * @throws RepositoryException
+     */
+    public void snapshot(File file) throws RepositoryException {
+        MemRepositorySnapshot.write(this, file);
+    }
+
+    /**
+     * Restore a snapshot written by {@link #snapshot(File)} into this repository, which must
+     * be empty and not in use yet. Types missing from the TypeSystem are defined from the
+     * snapshot.
+     *
+     * @param file
+     * @return the number of Instances restored.
+     * @throws RepositoryException
+     */
+    public int restore(File file) throws RepositoryException {
+        return MemRepositorySnapshot.read(this, file);
+    }
+
+    /*
+     * Store an Instance read from a snapshot under its own Id; references are Ids already.
+     */
+    void restoreInstance(ReferenceableInstance instance) throws RepositoryException {
+        HierarchicalTypeStore st = typeStores.get(instance.getTypeName());
+        st.assignPosition(instance.getId());
+        st.store(instance);
+        for (String traitName : instance.getTraits()) {
             HierarchicalTypeStore tt = typeStores.get(traitName);
-            tt.load(r);
+            tt.assignPosition(instance.getId());
+            tt.store(instance);
         }
+    }
 
-        walker.addRoot(r);
-        return r;
+    /**
+     * The memory used by the stores. Every store is read, so this is meant for monitoring
+     * and tuning, not for frequent calls.
+     *
+     * @return
+     */
+    public StoreStatistics getStatistics() {
+        StoreStatistics stats = new StoreStatistics();
+        for (Map.Entry<String, HierarchicalTypeStore> e : typeStores.entrySet()) {
+            HierarchicalTypeStore st = e.getValue();
+            st.acquireReadLock();
+            try {
+                stats.instanceCounts.put(e.getKey(), st.idPosMap.size());
+                for (IAttributeStore attrStore : st.attrStores.values()) {
+                    attrStore.collectStatistics(stats);
+                }
+            } finally {
+                st.releaseReadLock();
+            }
+        }
+        if (stringDictionary != null) {
+            stats.dictionaryEntries = stringDictionary.size();
+            stats.dictionaryUsedBytes = stringDictionary.usedBytes();
+            stats.dictionaryOffHeapBytes = stringDictionary.offHeapBytes();
+            stats.dictionaryHeapBytes = stringDictionary.heapBytes();
+        }
+        return stats;
+    }
+
+    boolean isDictionaryEncoded(String typeName, String attrName) {
+        return dictionaryEncodedAttrs.contains(ALL_STRING_ATTRIBUTES)
+                || dictionaryEncodedAttrs.contains(typeName + "." + attrName);
+    }
+
+    int stripe(Id id) {
+        int h = id.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (NUM_INSTANCE_LOCKS - 1);
     }
 
     HierarchicalTypeStore getStore(String typeName) {
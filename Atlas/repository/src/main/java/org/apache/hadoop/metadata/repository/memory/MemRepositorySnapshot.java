@@ -0,0 +1,305 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.repository.RepositoryException;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.TypesDef;
+import org.apache.hadoop.metadata.typesystem.binary.BinarySerialization;
+import org.apache.hadoop.metadata.typesystem.json.TypesSerialization$;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.persistence.ReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.EnumTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.HierarchicalType;
+import org.apache.hadoop.metadata.typesystem.types.HierarchicalTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.StructTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.TraitType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.apache.hadoop.metadata.typesystem.types.TypeUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the contents of a MemRepository to a file, and restores them into an empty
+ * MemRepository by memory mapping the file.
+ *
+ * Format (version 1), all numbers big endian:
+ * - magic, version.
+ * - the Id sequence of the repository.
+ * - the definitions of the types of the TypeSystem, as TypesSerialization json; types
+ *   already defined when the snapshot is restored are skipped.
+ * - the names of the Classes and Traits that have stores.
+ * - the Class Instances, each as its length followed by its {@link BinarySerialization}
+ *   bytes, with its Traits; a length of -1 ends them. References are written as Ids.
+ * - a count of the Instances written, as a check that the file is complete.
+ * Strings are written as their length followed by their UTF-8 bytes.
+ *
+ * Instances keep their Ids; their positions in the stores are assigned again on restore, so a
+ * restored store has no free positions.
+ */
+class MemRepositorySnapshot {
+
+    static final int MAGIC = 0x4D454D53;
+    static final int VERSION = 1;
+
+    /*
+     * the size of the regions of the file mapped at a time.
+     */
+    static final int MAP_SIZE = 256 * 1024 * 1024;
+
+    /*
+     * marks the end of the Instances.
+     */
+    static final int END = -1;
+
+    private MemRepositorySnapshot() {
+    }
+
+    /**
+     * Write a consistent snapshot: creates, updates and deletes wait until it is written,
+     * reads proceed. The snapshot is written to a temporary file next to the given one and
+     * then moved over it, so a failed write leaves the previous snapshot in place.
+     */
+    static void write(MemRepository repository, File file) throws RepositoryException {
+        File tmpFile = null;
+        for (int i = 0; i < MemRepository.NUM_INSTANCE_LOCKS; i++) {
+            repository.instanceLocks[i].readLock().lock();
+        }
+        try {
+            tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            writeTo(repository, tmpFile);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            tmpFile = null;
+        } catch (IOException | MetadataException e) {
+            throw new RepositoryException(
+                    String.format("Failed to write snapshot %s", file), e);
+        } finally {
+            for (int i = MemRepository.NUM_INSTANCE_LOCKS - 1; i >= 0; i--) {
+                repository.instanceLocks[i].readLock().unlock();
+            }
+            if (tmpFile != null && !tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+
+    private static void writeTo(MemRepository repository, File file)
+            throws IOException, MetadataException {
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(repository.ID_SEQ.get());
+
+            TypeSystem ts = repository.typeSystem;
+            writeString(out, TypesSerialization$.MODULE$.toJson(ts, ts.getTypeNames()));
+
+            List<String> storeNames = new ArrayList<String>(repository.typeStores.keySet());
+            out.writeInt(storeNames.size());
+            for (String storeName : storeNames) {
+                writeString(out, storeName);
+            }
+
+            int count = 0;
+            for (String storeName : storeNames) {
+                HierarchicalTypeStore st = repository.getStore(storeName);
+                if (!(st instanceof ClassStore)) {
+                    continue;
+                }
+                for (Id id : repository.getInstanceIds(storeName)) {
+                    if (id.className.equals(storeName)) {
+                        byte[] bytes = BinarySerialization.toBytes(repository.load(id));
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                        count++;
+                    }
+                }
+            }
+            out.writeInt(END);
+            out.writeInt(count);
+
+            // on disk before it replaces the previous snapshot
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Restore a snapshot into an empty repository; types that are not defined in the
+     * repository's TypeSystem are defined from the snapshot.
+     * @return the number of Instances restored.
+     */
+    static int read(MemRepository repository, File file) throws RepositoryException {
+        if (!repository.typeStores.isEmpty()) {
+            throw new RepositoryException("A snapshot can only be restored into an empty repository");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedInput in = new MappedInput(channel);
+            if (in.readInt() != MAGIC) {
+                throw new RepositoryException(String.format("%s is not a snapshot", file));
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new RepositoryException(
+                        String.format("Unsupported snapshot version %d in %s", version, file));
+            }
+            int idSeq = in.readInt();
+
+            defineTypes(repository.typeSystem,
+                    TypesSerialization$.MODULE$.fromJson(in.readString()));
+
+            int numStores = in.readInt();
+            List<HierarchicalType> storeTypes = new ArrayList<HierarchicalType>();
+            for (int i = 0; i < numStores; i++) {
+                storeTypes.add(repository.typeSystem.getDataType(HierarchicalType.class,
+                        in.readString()));
+            }
+            repository.defineTypes(storeTypes);
+
+            int count = 0;
+            for (int length = in.readInt(); length != END; length = in.readInt()) {
+                ITypedReferenceableInstance instance = BinarySerialization
+                        .referenceableFromBytes(in.read(new byte[length]));
+                repository.restoreInstance((ReferenceableInstance) instance);
+                count++;
+            }
+            if (in.readInt() != count) {
+                throw new RepositoryException(String.format("Snapshot %s is incomplete", file));
+            }
+
+            repository.ID_SEQ.set(Math.max(idSeq, repository.ID_SEQ.get()));
+            return count;
+        } catch (RepositoryException re) {
+            throw re;
+        } catch (IOException | MetadataException e) {
+            throw new RepositoryException(
+                    String.format("Failed to restore snapshot %s", file), e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void defineTypes(TypeSystem ts, TypesDef typesDef) throws MetadataException {
+        ImmutableList.Builder<EnumTypeDefinition> enums = ImmutableList.builder();
+        for (EnumTypeDefinition d : typesDef.enumTypesAsJavaList()) {
+            if (!ts.isRegistered(d.name)) {
+                enums.add(d);
+            }
+        }
+        ImmutableList.Builder<StructTypeDefinition> structs = ImmutableList.builder();
+        for (StructTypeDefinition d : typesDef.structTypesAsJavaList()) {
+            if (!ts.isRegistered(d.typeName)) {
+                structs.add(d);
+            }
+        }
+        ImmutableList.Builder<HierarchicalTypeDefinition<TraitType>> traits =
+                ImmutableList.builder();
+        for (HierarchicalTypeDefinition<TraitType> d : typesDef.traitTypesAsJavaList()) {
+            if (!ts.isRegistered(d.typeName)) {
+                traits.add(d);
+            }
+        }
+        ImmutableList.Builder<HierarchicalTypeDefinition<ClassType>> classes =
+                ImmutableList.builder();
+        for (HierarchicalTypeDefinition<ClassType> d : typesDef.classTypesAsJavaList()) {
+            if (!ts.isRegistered(d.typeName)) {
+                classes.add(d);
+            }
+        }
+        ImmutableList<EnumTypeDefinition> e = enums.build();
+        ImmutableList<StructTypeDefinition> s = structs.build();
+        ImmutableList<HierarchicalTypeDefinition<TraitType>> t = traits.build();
+        ImmutableList<HierarchicalTypeDefinition<ClassType>> c = classes.build();
+        if (!(e.isEmpty() && s.isEmpty() && t.isEmpty() && c.isEmpty())) {
+            ts.defineTypes(TypeUtils.getTypesDef(e, s, t, c));
+        }
+    }
+
+    /*
+     * Reads a file through a window of at most MAP_SIZE bytes mapped at a time; a read that
+     * goes past the window remaps it from the read's offset.
+     */
+    static class MappedInput {
+        final FileChannel channel;
+        final long size;
+        long windowStart;
+        MappedByteBuffer window;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(MAP_SIZE, size - start));
+        }
+
+        private ByteBuffer ensure(int n) throws IOException {
+            if (window.remaining() < n) {
+                long position = windowStart + window.position();
+                if (size - position < n) {
+                    throw new IOException("Unexpected end of snapshot");
+                }
+                map(position);
+                if (window.remaining() < n) {
+                    throw new IOException(String.format("Entry of %d bytes is too large", n));
+                }
+            }
+            return window;
+        }
+
+        int readInt() throws IOException {
+            return ensure(4).getInt();
+        }
+
+        byte[] read(byte[] bytes) throws IOException {
+            ensure(bytes.length).get(bytes);
+            return bytes;
+        }
+
+        String readString() throws IOException {
+            return new String(read(new byte[readInt()]), Charsets.UTF_8);
+        }
+    }
+}
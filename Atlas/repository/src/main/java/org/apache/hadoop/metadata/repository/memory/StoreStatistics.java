@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of the memory used by a MemRepository. Sizes of heap Strings are estimates:
+ * an object header, the char array and its header.
+ */
+public class StoreStatistics {
+
+    final Map<String, Integer> instanceCounts = new TreeMap<String, Integer>();
+    long heapStrings;
+    long heapStringBytes;
+    long encodedStrings;
+    long hiddenValues;
+    int dictionaryEntries;
+    long dictionaryUsedBytes;
+    long dictionaryOffHeapBytes;
+    long dictionaryHeapBytes;
+    long jvmHeapUsed;
+    long jvmDirectMemoryUsed;
+
+    StoreStatistics() {
+        Runtime r = Runtime.getRuntime();
+        jvmHeapUsed = r.totalMemory() - r.freeMemory();
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                jvmDirectMemoryUsed = pool.getMemoryUsed();
+            }
+        }
+    }
+
+    static long estimateHeapBytes(String s) {
+        return 40 + 2L * s.length();
+    }
+
+    /**
+     * @return the number of Instances stored for each Class and Trait, including the
+     * Instances of SubTypes.
+     */
+    public Map<String, Integer> getInstanceCounts() {
+        return Collections.unmodifiableMap(instanceCounts);
+    }
+
+    /**
+     * @return the number of String values held on the heap.
+     */
+    public long getHeapStrings() {
+        return heapStrings;
+    }
+
+    /**
+     * @return the estimated bytes of the String values held on the heap.
+     */
+    public long getHeapStringBytes() {
+        return heapStringBytes;
+    }
+
+    /**
+     * @return the number of String values stored as dictionary codes.
+     */
+    public long getEncodedStrings() {
+        return encodedStrings;
+    }
+
+    /**
+     * @return the number of values of hidden attributes.
+     */
+    public long getHiddenValues() {
+        return hiddenValues;
+    }
+
+    public int getDictionaryEntries() {
+        return dictionaryEntries;
+    }
+
+    public long getDictionaryUsedBytes() {
+        return dictionaryUsedBytes;
+    }
+
+    public long getDictionaryOffHeapBytes() {
+        return dictionaryOffHeapBytes;
+    }
+
+    public long getDictionaryHeapBytes() {
+        return dictionaryHeapBytes;
+    }
+
+    public long getJvmHeapUsed() {
+        return jvmHeapUsed;
+    }
+
+    public long getJvmDirectMemoryUsed() {
+        return jvmDirectMemoryUsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StoreStatistics{instances=%s, heapStrings=%d (%d bytes), " +
+                        "encodedStrings=%d, hiddenValues=%d, dictionary=%d entries " +
+                        "(%d used / %d off-heap bytes, %d heap bytes), jvmHeapUsed=%d, " +
+                        "jvmDirectMemoryUsed=%d}",
+                instanceCounts, heapStrings, heapStringBytes, encodedStrings, hiddenValues,
+                dictionaryEntries, dictionaryUsedBytes, dictionaryOffHeapBytes,
+                dictionaryHeapBytes, jvmHeapUsed, jvmDirectMemoryUsed);
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import com.google.common.base.Charsets;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.hadoop.metadata.repository.RepositoryException;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maps Strings to int codes, keeping the UTF-8 bytes of each distinct String in a direct
+ * ByteBuffer. Each entry is laid out as its length followed by its bytes; the heap only holds
+ * the offset and hash of each entry and an open addressing table over the codes.
+ *
+ * Entries are never removed: codes stay valid for the life of the dictionary, so they can be
+ * stored in place of the Strings.
+ */
+public class StringDictionary {
+
+    static final int INITIAL_CAPACITY = 64 * 1024;
+
+    /*
+     * the entries; replaced by a buffer of twice the capacity when full, up to
+     * Integer.MAX_VALUE bytes.
+     */
+    ByteBuffer data;
+
+    /*
+     * offset and hash of the entry for each code.
+     */
+    final IntArrayList offsets;
+    final IntArrayList hashes;
+
+    /*
+     * code + 1 of the entry in each slot, 0 for an empty slot.
+     */
+    int[] table;
+
+    final ReentrantReadWriteLock lock;
+
+    public StringDictionary() {
+        data = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+        offsets = new IntArrayList();
+        hashes = new IntArrayList();
+        table = new int[1024];
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * The code of a String, adding it to the dictionary if it is new.
+     * @param s
+     * @return
+     * @throws RepositoryException if the dictionary has no room left for a new String
+     */
+    public int encode(String s) throws RepositoryException {
+        byte[] bytes = s.getBytes(Charsets.UTF_8);
+        int hash = s.hashCode();
+        lock.readLock().lock();
+        try {
+            int code = find(bytes, hash);
+            if (code >= 0) {
+                return code;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            int code = find(bytes, hash);
+            if (code >= 0) {
+                return code;
+            }
+            return add(bytes, hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The String for a code returned by {@link #encode(String)}.
+     * @param code
+     * @return
+     */
+    public String decode(int code) {
+        lock.readLock().lock();
+        try {
+            int offset = offsets.get(code);
+            byte[] bytes = new byte[data.getInt(offset)];
+            ByteBuffer b = data.duplicate();
+            b.position(offset + 4);
+            b.get(bytes);
+            return new String(bytes, Charsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct Strings.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes used by the entries.
+     */
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return data.position();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes allocated off heap.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return data.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the heap structures: the offsets, hashes and table.
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            return 4L * (offsets.elements().length + hashes.elements().length + table.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * callers must hold the read or write lock.
+     */
+    private int find(byte[] bytes, int hash) {
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (hashes.get(code) == hash && matches(offsets.get(code), bytes)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int offset, byte[] bytes) {
+        if (data.getInt(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (data.get(offset + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * callers must hold the write lock.
+     */
+    private int add(byte[] bytes, int hash) throws RepositoryException {
+        if (data.remaining() < bytes.length + 4) {
+            grow(bytes.length + 4);
+        }
+        int code = offsets.size();
+        offsets.add(data.position());
+        hashes.add(hash);
+        data.putInt(bytes.length);
+        data.put(bytes);
+
+        if (2 * offsets.size() > table.length) {
+            rehash(2 * table.length);
+        } else {
+            insert(table, code);
+        }
+        return code;
+    }
+
+    private void grow(int needed) throws RepositoryException {
+        ByteBuffer b = ByteBuffer.allocateDirect(newCapacity(data.capacity(), data.position(), needed));
+        data.flip();
+        b.put(data);
+        data = b;
+    }
+
+    /*
+     * the capacity of a buffer holding needed more bytes, computed in long so that doubling
+     * past 1GB doesn't overflow.
+     */
+    static int newCapacity(int capacity, int position, int needed) throws RepositoryException {
+        long required = (long) position + needed;
+        if (required > Integer.MAX_VALUE) {
+            throw new RepositoryException(String.format(
+                    "String dictionary is full: %d bytes needed, at most %d can be held",
+                    required, Integer.MAX_VALUE));
+        }
+        long newCapacity = capacity;
+        while (newCapacity < required) {
+            newCapacity *= 2;
+        }
+        return (int) Math.min(newCapacity, Integer.MAX_VALUE);
+    }
+
+    private void rehash(int size) {
+        int[] t = new int[size];
+        for (int code = 0; code < offsets.size(); code++) {
+            insert(t, code);
+        }
+        table = t;
+    }
+
+    private void insert(int[] t, int code) {
+        int mask = t.length - 1;
+        int slot = spread(hashes.get(code)) & mask;
+        while (t[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        t[slot] = code + 1;
+    }
+
+    private static int spread(int h) {
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+}
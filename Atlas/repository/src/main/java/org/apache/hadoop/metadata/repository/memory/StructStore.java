@@ -33,13 +33,13 @@ public class StructStore extends AttributeStores.AbstractAttributeStore implemen
     final StructType structType;
     final ImmutableMap<AttributeInfo, IAttributeStore> attrStores;
 
-    StructStore(AttributeInfo aInfo) throws RepositoryException {
+    StructStore(MemRepository repository, AttributeInfo aInfo) throws RepositoryException {
         super(aInfo);
         this.structType = (StructType) aInfo.dataType();
         ImmutableMap.Builder<AttributeInfo, IAttributeStore> b = new ImmutableBiMap.Builder<>();
         Collection<AttributeInfo> l = structType.fieldMapping.fields.values();
         for (AttributeInfo i : l) {
-            b.put(i, AttributeStores.createStore(i));
+            b.put(i, AttributeStores.createStore(repository, structType.getName(), i));
         }
         attrStores = b.build();
 
@@ -65,9 +65,8 @@ public class StructStore extends AttributeStores.AbstractAttributeStore implemen
     }
 
     @Override
-    protected void store(StructInstance instance, int colPos, String attrName,
-                         Map<String, Object> m) {
-        m.put(attrName, instance.structs[colPos]);
+    protected Object getHiddenVal(StructInstance instance, int colPos) {
+        return instance.structs[colPos];
     }
 
     @Override
@@ -84,4 +83,12 @@ public class StructStore extends AttributeStores.AbstractAttributeStore implemen
         nullList.size(pos + 1);
     }
 
+    @Override
+    public void collectStatistics(StoreStatistics stats) {
+        super.collectStatistics(stats);
+        for (IAttributeStore attributeStore : attrStores.values()) {
+            attributeStore.collectStatistics(stats);
+        }
+    }
+
 }
@@ -36,16 +36,26 @@ public class TraitStore extends HierarchicalTypeStore {
     }
 
     void store(ReferenceableInstance i) throws RepositoryException {
-        int pos = idPosMap.get(i.getId());
         StructInstance s = (StructInstance) i.getTrait(hierarchicalType.getName());
-        super.storeFields(pos, s);
-        classNameStore.set(pos, i.getTypeName());
+        acquireReadLock();
+        try {
+            int pos = getPosition(i.getId());
+            super.storeFields(pos, s);
+            classNameStore.set(pos, i.getTypeName());
+        } finally {
+            releaseReadLock();
+        }
+        indexFields(i.getId(), s);
     }
 
     void load(ReferenceableInstance i) throws RepositoryException {
-        int pos = idPosMap.get(i.getId());
         StructInstance s = (StructInstance) i.getTrait(hierarchicalType.getName());
-        super.loadFields(pos, s);
+        acquireReadLock();
+        try {
+            super.loadFields(getPosition(i.getId()), s);
+        } finally {
+            releaseReadLock();
+        }
     }
 
     public void ensureCapacity(int pos) throws RepositoryException {
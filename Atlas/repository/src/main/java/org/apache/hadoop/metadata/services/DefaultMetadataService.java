@@ -20,25 +20,34 @@ package org.apache.hadoop.metadata.services;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import org.apache.commons.configuration.ConfigurationException;
 import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.PropertiesUtil;
+import org.apache.hadoop.metadata.discovery.DiscoveryService;
+import org.apache.hadoop.metadata.discovery.LineageService;
 import org.apache.hadoop.metadata.discovery.SearchIndexer;
 import org.apache.hadoop.metadata.listener.EntityChangeListener;
 import org.apache.hadoop.metadata.listener.TypesChangeListener;
+import org.apache.hadoop.metadata.repository.EntityBatchResult;
 import org.apache.hadoop.metadata.repository.MetadataRepository;
 import org.apache.hadoop.metadata.repository.typestore.ITypeStore;
+import org.apache.hadoop.metadata.typesystem.IReferenceableInstance;
 import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
 import org.apache.hadoop.metadata.typesystem.ITypedStruct;
-import org.apache.hadoop.metadata.typesystem.Referenceable;
 import org.apache.hadoop.metadata.typesystem.Struct;
 import org.apache.hadoop.metadata.typesystem.TypesDef;
+import org.apache.hadoop.metadata.typesystem.binary.BinarySerialization;
+import org.apache.hadoop.metadata.typesystem.json.InstanceJsonReader;
 import org.apache.hadoop.metadata.typesystem.json.InstanceSerialization;
 import org.apache.hadoop.metadata.typesystem.json.Serialization$;
 import org.apache.hadoop.metadata.typesystem.json.TypesSerialization;
-import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
 import org.apache.hadoop.metadata.typesystem.types.IDataType;
 import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
+import org.apache.hadoop.metadata.typesystem.types.ObjectGraphWalker;
 import org.apache.hadoop.metadata.typesystem.types.TraitType;
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
@@ -46,6 +55,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +74,9 @@ public class DefaultMetadataService implements MetadataService {
     private static final Logger LOG =
             LoggerFactory.getLogger(DefaultMetadataService.class);
 
+    public static final String GUIDS = "guids";
+    public static final String FAILURES = "failures";
+
     private final Set<TypesChangeListener> typesChangeListeners = new LinkedHashSet<>();
     private final Set<EntityChangeListener> entityChangeListeners
             = new LinkedHashSet<>();
@@ -68,15 +84,32 @@ public class DefaultMetadataService implements MetadataService {
     private final TypeSystem typeSystem;
     private final MetadataRepository repository;
     private final ITypeStore typeStore;
+    private final EntityDefinitionCache entityDefinitionCache;
 
     @Inject
-    DefaultMetadataService(MetadataRepository repository,
-                           SearchIndexer searchIndexer, ITypeStore typeStore) throws MetadataException {
+    DefaultMetadataService(MetadataRepository repository, SearchIndexer searchIndexer,
+                           ITypeStore typeStore, DiscoveryService discoveryService,
+                           LineageService lineageService)
+        throws MetadataException {
         this.typeStore = typeStore;
         this.typeSystem = TypeSystem.getInstance();
         this.repository = repository;
 
+        try {
+            this.entityDefinitionCache =
+                    new EntityDefinitionCache(PropertiesUtil.getApplicationProperties());
+        } catch (ConfigurationException e) {
+            throw new MetadataException(e);
+        }
+
         registerListener(searchIndexer);
+        registerListener(discoveryService);
+        registerListener(entityDefinitionCache);
+        registerListener(lineageService);
+    }
+
+    public EntityDefinitionCache getEntityDefinitionCache() {
+        return entityDefinitionCache;
     }
 
     /**
@@ -162,24 +195,122 @@ public class DefaultMetadataService implements MetadataService {
         return guid;
     }
 
+    /**
+     * Creates an entity, instance of the type, streaming its definition from the reader.
+     *
+     * @param entityInstanceDefinition entity instance definition as JSON
+     * @return guid
+     */
+    @Override
+    public String createEntity(Reader entityInstanceDefinition) throws MetadataException {
+        Preconditions.checkNotNull(entityInstanceDefinition,
+                "entity instance definition cannot be null");
+
+        ITypedReferenceableInstance entityTypedInstance =
+                deserializeClassInstance(entityInstanceDefinition);
+
+        final String guid = repository.createEntity(entityTypedInstance);
+
+        onEntityAddedToRepo(entityTypedInstance);
+        return guid;
+    }
+
+    /**
+     * Creates an entity from its binary encoding.
+     *
+     * @param entityInstanceDefinition entity instance, see BinarySerialization
+     * @return guid
+     */
+    @Override
+    public String createEntity(byte[] entityInstanceDefinition) throws MetadataException {
+        Preconditions.checkNotNull(entityInstanceDefinition,
+                "entity instance definition cannot be null");
+
+        // the instance is built from the bytes as is, its values are checked as they are read
+        ITypedReferenceableInstance entityTypedInstance =
+                BinarySerialization.referenceableFromBytes(entityInstanceDefinition, true);
+        Preconditions.checkArgument(entityTypedInstance != null, "entity instance cannot be null");
+
+        final String guid = repository.createEntity(entityTypedInstance);
+
+        onEntityAddedToRepo(entityTypedInstance);
+        return guid;
+    }
+
+    /**
+     * Creates a batch of entities, instances of their types. Entities that cannot be
+     * deserialized or stored are reported as failures without failing the batch.
+     *
+     * @param entitiesDefinition json array of entity definitions
+     * @return guids, in batch order, and failures keyed by position in the batch
+     */
+    @Override
+    public JSONObject createEntities(String entitiesDefinition) throws MetadataException {
+        Preconditions.checkNotNull(entitiesDefinition, "entity instance definitions cannot be null");
+
+        try {
+            JSONArray entityDefinitions = new JSONArray(entitiesDefinition);
+            final int size = entityDefinitions.length();
+
+            JSONArray guids = new JSONArray();
+            JSONObject failures = new JSONObject();
+
+            // positions in the batch of the entities handed over to the repository
+            List<Integer> positions = new ArrayList<>(size);
+            List<ITypedReferenceableInstance> entities = new ArrayList<>(size);
+            for (int index = 0; index < size; index++) {
+                guids.put(index, JSONObject.NULL);
+                try {
+                    entities.add(deserializeClassInstance(entityDefinitions.getString(index)));
+                    positions.add(index);
+                } catch (MetadataException e) {
+                    LOG.warn("Unable to deserialize entity at index {} in batch", index, e);
+                    failures.put(String.valueOf(index), e.getMessage());
+                }
+            }
+
+            EntityBatchResult result = repository.createEntities(entities);
+            for (int index = 0; index < result.size(); index++) {
+                final int position = positions.get(index);
+                final String guid = result.getGuid(index);
+                if (guid != null) {
+                    guids.put(position, guid);
+                    onEntityAddedToRepo(entities.get(index));
+                } else {
+                    Throwable cause = result.getFailures().get(index);
+                    failures.put(String.valueOf(position),
+                            cause == null ? "Unable to create entity" : cause.getMessage());
+                }
+            }
+
+            JSONObject response = new JSONObject();
+            response.put(GUIDS, guids);
+            response.put(FAILURES, failures);
+            return response;
+        } catch (JSONException e) {
+            throw new MetadataException("Error deserializing entity instances", e);
+        }
+    }
+
     private ITypedReferenceableInstance deserializeClassInstance(
             String entityInstanceDefinition) throws MetadataException {
+        return deserializeClassInstance(new StringReader(entityInstanceDefinition));
+    }
 
-        try {
-            final Referenceable entityInstance = InstanceSerialization.fromJsonReferenceable(
-                    entityInstanceDefinition, true);
-            final String entityTypeName = entityInstance.getTypeName();
-            Preconditions.checkNotNull(entityTypeName, "entity type cannot be null");
+    private ITypedReferenceableInstance deserializeClassInstance(
+            Reader entityInstanceDefinition) throws MetadataException {
 
-            ClassType entityType = typeSystem.getDataType(ClassType.class, entityTypeName);
-            return entityType.convert(entityInstance, Multiplicity.REQUIRED);
+        try {
+            return InstanceJsonReader.readReferenceable(entityInstanceDefinition);
         } catch (Exception e) {
             throw new MetadataException("Error deserializing class instance", e);
         }
     }
 
+
     /**
-     * Return the definition for the given guid.
+     * Return the definition for the given guid, from the entity definition cache
+     * when the entity has not changed since it was last read.
      *
      * @param guid guid
      * @return entity definition as JSON
@@ -188,8 +319,51 @@ public class DefaultMetadataService implements MetadataService {
     public String getEntityDefinition(String guid) throws MetadataException {
         Preconditions.checkNotNull(guid, "guid cannot be null");
 
+        String entityDefinition = entityDefinitionCache.get(guid);
+        if (entityDefinition != null) {
+            return entityDefinition;
+        }
+
+        final long generation = entityDefinitionCache.getGeneration();
+        final ITypedReferenceableInstance instance = repository.getEntityDefinition(guid);
+        entityDefinition = Serialization$.MODULE$.toJson(instance);
+        entityDefinitionCache.put(guid, entityDefinition, getInlinedGuids(instance), generation);
+        return entityDefinition;
+    }
+
+    /**
+     * Finds the composite entities inlined in a definition, which are read as instances
+     * where other references are read as ids.
+     */
+    private Set<String> getInlinedGuids(ITypedReferenceableInstance instance) throws MetadataException {
+        final String guid = instance.getId()._getId();
+        final Set<String> inlinedGuids = new HashSet<>();
+        new ObjectGraphWalker(typeSystem, new ObjectGraphWalker.NodeProcessor() {
+            @Override
+            public void processNode(ObjectGraphWalker.Node nd) throws MetadataException {
+                if (nd.attributeName == null) {
+                    Id id = ((IReferenceableInstance) nd.instance).getId();
+                    if (id.isAssigned() && !guid.equals(id._getId())) {
+                        inlinedGuids.add(id._getId());
+                    }
+                }
+            }
+        }, instance).walk();
+        return inlinedGuids;
+    }
+
+    /**
+     * Return the definition for the given guid in the binary encoding.
+     *
+     * @param guid guid
+     * @return entity instance, see BinarySerialization
+     */
+    @Override
+    public byte[] getBinaryEntityDefinition(String guid) throws MetadataException {
+        Preconditions.checkNotNull(guid, "guid cannot be null");
+
         final ITypedReferenceableInstance instance = repository.getEntityDefinition(guid);
-        return Serialization$.MODULE$.toJson(instance);
+        return instance == null ? null : BinarySerialization.toBytes(instance);
     }
 
     /**
@@ -205,6 +379,22 @@ public class DefaultMetadataService implements MetadataService {
         return repository.getEntityList(entityType);
     }
 
+    @Override
+    public List<String> getEntityList(String entityType, int limit, int offset) throws MetadataException {
+        validateTypeExists(entityType);
+        Preconditions.checkArgument(limit != 0, "limit cannot be 0");
+        Preconditions.checkArgument(offset >= 0, "offset cannot be negative");
+
+        return repository.getEntityList(entityType, limit, offset);
+    }
+
+    @Override
+    public long getEntityCount(String entityType) throws MetadataException {
+        validateTypeExists(entityType);
+
+        return repository.getEntityCount(entityType);
+    }
+
     @Override
     public void updateEntity(String guid, String property, String value) throws MetadataException {
         Preconditions.checkNotNull(guid, "guid cannot be null");
@@ -212,6 +402,7 @@ public class DefaultMetadataService implements MetadataService {
         Preconditions.checkNotNull(value, "property value cannot be null");
 
         repository.updateEntity(guid, property, value);
+        entityDefinitionCache.invalidate(guid);
     }
 
     private void validateTypeExists(String entityType) throws MetadataException {
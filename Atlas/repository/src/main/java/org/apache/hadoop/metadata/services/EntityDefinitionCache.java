@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.services;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.configuration.Configuration;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.listener.EntityChangeListener;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the serialized definition of entities by guid. Definitions are held as
+ * utf-8 bytes and evicted least recently used once their total size exceeds
+ * metadata.services.entity.cache.max.bytes.
+ *
+ * Entries are dropped when the entity changes, or any of the composite entities inlined
+ * in its definition, such as the columns of a table, does. A definition read from the
+ * repository is only cached if no entity changed while it was being read, so a read
+ * racing with a change never caches the stale definition.
+ */
+public class EntityDefinitionCache implements EntityChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityDefinitionCache.class);
+
+    public static final String MAX_BYTES_PROPERTY = "metadata.services.entity.cache.max.bytes";
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Cache<String, Entry> definitions;
+
+    // guid of an inlined entity -> guids of the cached definitions inlining it
+    private final ConcurrentMap<String, Set<String>> inlinedIn = new ConcurrentHashMap<>();
+
+    // bumped on every invalidation, see #getGeneration
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public EntityDefinitionCache(Configuration configuration) {
+        final long maxBytes = configuration.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+        LOG.info("Caching up to {} bytes of entity definitions", maxBytes);
+
+        this.definitions = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(String guid, Entry entry) {
+                        return guid.length() + entry.definition.length;
+                    }
+                })
+                .removalListener(new RemovalListener<String, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Entry> notification) {
+                        if (notification.getCause() != RemovalCause.REPLACED) {
+                            unregister(notification.getKey(), notification.getValue());
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @param guid globally unique identifier of the entity
+     * @return the serialized definition or null if not cached
+     */
+    public String get(String guid) {
+        Entry entry = definitions.getIfPresent(guid);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return new String(entry.definition, Charsets.UTF_8);
+    }
+
+    /**
+     * Returns the current generation, to be taken before reading a definition
+     * from the repository and handed back to {@link #put}.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a definition read from the repository unless an entity changed since
+     * the given generation was taken.
+     *
+     * @param guid       globally unique identifier of the entity
+     * @param definition serialized definition
+     * @param readGeneration generation taken before the definition was read
+     */
+    public void put(String guid, String definition, long readGeneration) {
+        put(guid, definition, Collections.<String>emptySet(), readGeneration);
+    }
+
+    /**
+     * Caches a definition read from the repository unless an entity changed since
+     * the given generation was taken.
+     *
+     * @param guid           globally unique identifier of the entity
+     * @param definition     serialized definition
+     * @param inlinedGuids   guids of the composite entities inlined in the definition
+     * @param readGeneration generation taken before the definition was read
+     */
+    public void put(String guid, String definition, Collection<String> inlinedGuids,
+                    long readGeneration) {
+        Entry entry = new Entry(definition.getBytes(Charsets.UTF_8), ImmutableSet.copyOf(inlinedGuids));
+        synchronized (inlinedIn) {
+            for (String inlinedGuid : entry.inlinedGuids) {
+                Set<String> guids = inlinedIn.get(inlinedGuid);
+                if (guids == null) {
+                    guids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    inlinedIn.put(inlinedGuid, guids);
+                }
+                guids.add(guid);
+            }
+            definitions.put(guid, entry);
+        }
+
+        // an invalidation may have slipped in between the check and the put
+        if (generation.get() != readGeneration) {
+            definitions.invalidate(guid);
+        }
+    }
+
+    private void unregister(String guid, Entry entry) {
+        synchronized (inlinedIn) {
+            // a definition cached again since keeps its own registrations
+            if (entry == null || definitions.asMap().containsKey(guid)) {
+                return;
+            }
+
+            for (String inlinedGuid : entry.inlinedGuids) {
+                Set<String> guids = inlinedIn.get(inlinedGuid);
+                if (guids != null) {
+                    guids.remove(guid);
+                    if (guids.isEmpty()) {
+                        inlinedIn.remove(inlinedGuid);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the definition of the entity and the definitions inlining it.
+     *
+     * @param guid globally unique identifier of the entity
+     */
+    public void invalidate(String guid) {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        definitions.invalidate(guid);
+
+        Set<String> inliningGuids = inlinedIn.get(guid);
+        if (inliningGuids != null) {
+            // every cached ancestor registered the entity, so there is no need to recurse
+            definitions.invalidateAll(ImmutableSet.copyOf(inliningGuids));
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        definitions.invalidateAll();
+    }
+
+    @Override
+    public void onEntityAdded(ITypedReferenceableInstance typedInstance) throws MetadataException {
+        Id id = typedInstance.getId();
+        if (id.isAssigned()) {
+            invalidate(id._getId());
+        }
+    }
+
+    @Override
+    public void onTraitAdded(String guid, String traitName) throws MetadataException {
+        invalidate(guid);
+    }
+
+    @Override
+    public void onTraitDeleted(String guid, String traitName) throws MetadataException {
+        invalidate(guid);
+    }
+
+    public long size() {
+        return definitions.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    private static final class Entry {
+        final byte[] definition;
+        final Set<String> inlinedGuids;
+
+        Entry(byte[] definition, Set<String> inlinedGuids) {
+            this.definition = definition;
+            this.inlinedGuids = inlinedGuids;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EntityDefinitionCache{size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", invalidations=" + getInvalidationCount() + '}';
+    }
+}
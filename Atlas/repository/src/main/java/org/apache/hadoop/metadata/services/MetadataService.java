@@ -21,6 +21,7 @@ package org.apache.hadoop.metadata.services;
 import org.apache.hadoop.metadata.MetadataException;
 import org.codehaus.jettison.json.JSONObject;
 
+import java.io.Reader;
 import java.util.List;
 
 /**
@@ -67,6 +68,30 @@ public interface MetadataService {
      */
     String createEntity(String entityDefinition) throws MetadataException;
 
+    /**
+     * Creates an entity, instance of the type, reading its definition as it is streamed.
+     *
+     * @param entityDefinition definition
+     * @return guid
+     */
+    String createEntity(Reader entityDefinition) throws MetadataException;
+
+    /**
+     * Creates a new entity from its binary encoding.
+     *
+     * @param entityInstanceDefinition entity instance, see BinarySerialization
+     * @return guid
+     */
+    String createEntity(byte[] entityInstanceDefinition) throws MetadataException;
+
+    /**
+     * Creates a batch of entities, instances of their types.
+     *
+     * @param entitiesDefinition json array of entity definitions
+     * @return guids, in batch order, and failures keyed by position in the batch
+     */
+    JSONObject createEntities(String entitiesDefinition) throws MetadataException;
+
     /**
      * Return the definition for the given guid.
      *
@@ -75,6 +100,14 @@ public interface MetadataService {
      */
     String getEntityDefinition(String guid) throws MetadataException;
 
+    /**
+     * Return the definition for the given guid in the binary encoding.
+     *
+     * @param guid guid
+     * @return entity instance, see BinarySerialization
+     */
+    byte[] getBinaryEntityDefinition(String guid) throws MetadataException;
+
     /**
      * Return the list of entity names for the given type in the repository.
      *
@@ -83,6 +116,24 @@ public interface MetadataService {
      */
     List<String> getEntityList(String entityType) throws MetadataException;
 
+    /**
+     * Return a page of the list of entity names for the given type in the repository.
+     *
+     * @param entityType type
+     * @param limit      maximum number of entities, a negative value for no limit
+     * @param offset     number of entities to skip
+     * @return list of entity names for the given type in the repository
+     */
+    List<String> getEntityList(String entityType, int limit, int offset) throws MetadataException;
+
+    /**
+     * Return the number of entities of the given type in the repository.
+     *
+     * @param entityType type
+     * @return number of entities of the given type
+     */
+    long getEntityCount(String entityType) throws MetadataException;
+
     /**
      * Adds the property to the given entity id(guid).
      *
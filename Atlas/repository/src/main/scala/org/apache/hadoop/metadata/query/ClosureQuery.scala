@@ -20,8 +20,13 @@ package org.apache.hadoop.metadata.query
 
 import Expressions._
 import com.thinkaurelius.titan.core.TitanGraph
-import org.apache.hadoop.metadata.typesystem.types.DataTypes
-import org.apache.hadoop.metadata.typesystem.types.DataTypes.PrimitiveType
+import com.tinkerpop.blueprints.{Direction, GraphQuery, Vertex}
+import org.apache.hadoop.metadata.typesystem.ITypedStruct
+import org.apache.hadoop.metadata.typesystem.types.{ClassType, DataTypes, IDataType, StructType}
+import org.apache.hadoop.metadata.typesystem.types.DataTypes.{ArrayType, PrimitiveType}
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
 
 /**
  * Represents a Query to compute the closure based on a relationship between entities of a particular type.
@@ -138,6 +143,151 @@ trait ClosureQuery {
     var e = expr
     QueryProcessor.evaluate(e, g, persistenceStrategy)
   }
+
+  /**
+   * the instances the closure is computed for.
+   */
+  def sourceVertices : Iterable[Vertex] = {
+    import scala.collection.JavaConversions._
+    val q : GraphQuery = g.query()
+    q.has(persistenceStrategy.typeAttributeName, closureType).vertices()
+  }
+
+  private case class Step(direction : Direction, label : String)
+
+  // a vertex reached by the traversal, linked to the vertex it was reached from
+  private case class Hop(vertex : Vertex, prev : Hop, depth : Int) {
+    def path : List[Vertex] = {
+      var p = List[Vertex]()
+      var h = this
+      while (h != null) {
+        p = h.vertex :: p
+        h = h.prev
+      }
+      p
+    }
+  }
+
+  private def steps : List[Step] = {
+    var typ : IDataType[_] = TypeUtils.typSystem.getDataType(classOf[ClassType], closureType)
+    closureRelation.map {
+      case ReverseRelation(typeName, attributeName) =>
+        typ = TypeUtils.typSystem.getDataType(classOf[ClassType], typeName)
+        val aInfo = TypeUtils.fieldMapping(typ).get.fields.get(attributeName)
+        Step(Direction.IN, persistenceStrategy.edgeLabel(typ, aInfo))
+      case Relation(attributeName) =>
+        val aInfo = TypeUtils.fieldMapping(typ).get.fields.get(attributeName)
+        val label = persistenceStrategy.edgeLabel(typ, aInfo)
+        typ = aInfo.dataType() match {
+          case a : ArrayType => a.getElemType
+          case t => t
+        }
+        Step(Direction.OUT, label)
+    }
+  }
+
+  /**
+   * Computes the closure by walking the edges of the closure relation over the graph, rather than
+   * evaluating [[expr]] as a gremlin loop. Every instance in the closure of a source instance is reached
+   * once, through one of the shortest paths to it, so cycles in the relation end the traversal.
+   * The result has the form of [[evaluate]]; closures without select attributes are evaluated with
+   * gremlin.
+   *
+   * @param maxResults the traversal stops after this many rows, a negative value for the complete closure
+   * @return the result of the closure query
+   */
+  def traverse(maxResults : Int) : GremlinQueryResult = {
+    if (!selectAttributes.isDefined) {
+      return evaluate()
+    }
+
+    import scala.collection.JavaConversions._
+    val paths = ArrayBuffer[List[Vertex]]()
+    val relation = steps
+    val sources = sourceVertices.iterator
+    while (sources.hasNext && (maxResults < 0 || paths.size < maxResults)) {
+      val src = sources.next()
+      val visited = mutable.Set[AnyRef](src.getId)
+      var frontier = List(Hop(src, null, 0))
+      while (frontier.nonEmpty && (maxResults < 0 || paths.size < maxResults)) {
+        val next = ArrayBuffer[Hop]()
+        frontier.foreach { from =>
+          // follow the relation one step at a time, through the intermediate instances
+          var reached = List(from)
+          relation.foreach { step =>
+            reached = reached.flatMap { h =>
+              h.vertex.getVertices(step.direction, step.label).filter(v => visited.add(v.getId)).
+                map(v => Hop(v, h, from.depth + 1))
+            }
+          }
+          next ++= reached
+        }
+        next.foreach { h =>
+          if (maxResults < 0 || paths.size < maxResults) {
+            paths += h.path
+          }
+        }
+        frontier = if (depth.isDefined && next.nonEmpty && next.head.depth >= depth.get) Nil else next.toList
+      }
+    }
+
+    result(paths)
+  }
+
+  /**
+   * Builds the result of the query from closure paths found without gremlin, such as by [[traverse]].
+   * A path starts at a source instance and ends at an instance in its closure, going through the
+   * intermediate instances of the closure relation.
+   *
+   * @param paths paths of the closure, one per row
+   * @return the result of the closure query, in the form of [[evaluate]]
+   */
+  def result(paths : Iterable[List[Vertex]]) : GremlinQueryResult = {
+    require(selectAttributes.isDefined, "closure paths can only be returned with select attributes")
+
+    val e = QueryProcessor.validate(expr)
+    val rType = e.dataType
+    val sType = (e match {
+      case PathExpression(se) => se.dataType
+      case se => se.dataType
+    }).asInstanceOf[StructType]
+
+    val clsType = TypeUtils.typSystem.getDataType(classOf[ClassType], closureType)
+    val attributes = selectAttributes.get.map { a =>
+      val aInfo = clsType.fieldMapping().fields.get(a)
+      (a, aInfo, persistenceStrategy.fieldNameInVertex(clsType, aInfo))
+    }
+    def set(s : ITypedStruct, alias : String, v : Vertex) : Unit = attributes.foreach { case (a, aInfo, key) =>
+      s.set(s"${alias}_$a", persistenceStrategy.constructInstance(aInfo.dataType(), v.getProperty[AnyRef](key)))
+    }
+
+    val rows = paths.map { path =>
+      val sInstance = sType.createInstance()
+      set(sInstance, "src", path.head)
+      set(sInstance, "dest", path.last)
+      if (withPath) {
+        import scala.collection.JavaConverters._
+        val idType = TypeUtils.typSystem.getIdType.getStructType
+        val rInstance = rType.asInstanceOf[StructType].createInstance()
+        rInstance.set(TypeUtils.ResultWithPathStruct.pathAttrName,
+          path.map(v => persistenceStrategy.constructInstance(idType, v)).asJava)
+        rInstance.set(TypeUtils.ResultWithPathStruct.resultAttrName, sInstance)
+        rInstance
+      } else {
+        sInstance
+      }
+    }
+
+    GremlinQueryResult(e.toString, rType, rows.toList)
+  }
+
+  /**
+   * Java friendly version of [[result]].
+   */
+  def result(paths : java.util.List[java.util.List[Vertex]]) : GremlinQueryResult = {
+    import scala.collection.JavaConversions._
+    result(paths.map(_.toList))
+  }
 }
 
 /**
@@ -158,6 +308,15 @@ trait SingleInstanceClosureQuery[T] extends ClosureQuery {
       Expressions.id(attributeToSelectInstance).`=`(Expressions.literal(attributeTyp, instanceValue))
     )
   }
+
+  override def sourceVertices : Iterable[Vertex] = {
+    import scala.collection.JavaConversions._
+    val clsType = TypeUtils.typSystem.getDataType(classOf[ClassType], closureType)
+    val aInfo = clsType.fieldMapping().fields.get(attributeToSelectInstance)
+    val q : GraphQuery = g.query()
+    q.has(persistenceStrategy.typeAttributeName, closureType).
+      has(persistenceStrategy.fieldNameInVertex(clsType, aInfo), instanceValue).vertices()
+  }
 }
 
 /**
@@ -317,6 +317,10 @@ object Expressions {
 
         def select(selectList: Expression*) = new SelectExpression(this, selectList.toList)
 
+        def groupBy(groupByList: Expression*) = new GroupByExpression(this, groupByList.toList)
+
+        def orderBy(orderByExpr: Expression, asc: Boolean = true) = new OrderExpression(this, orderByExpr, asc)
+
         def loop(loopingExpr: Expression) = new LoopExpression(this, loopingExpr, None)
 
         def loop(loopingExpr: Expression, times: Literal[Integer]) =
@@ -468,6 +472,29 @@ object Expressions {
         }
     }
 
+    /**
+     * A literal of a cached query plan. It is rendered as a placeholder that is
+     * replaced by the value of the literal when the plan is bound, see [[QueryPlanCache]].
+     */
+    class ParameterLiteral[T](dataType: PrimitiveType[T], rawValue: Any, val index: Int)
+        extends Literal[T](dataType, rawValue) {
+
+        override def toString = ParameterLiteral.placeholder(index)
+
+        override def canEqual(that: Any) = that.isInstanceOf[ParameterLiteral[_]]
+
+        override def equals(that: Any) = that match {
+            case p: ParameterLiteral[_] => p.index == index && super.equals(p)
+            case _ => false
+        }
+
+        override def hashCode = 31 * super.hashCode + index
+    }
+
+    object ParameterLiteral {
+        def placeholder(index: Int) = s"\u0000$index\u0000"
+    }
+
     def literal[T](typ: PrimitiveType[T], rawValue: Any) = new Literal[T](typ, rawValue)
 
     def boolean(rawValue: Any) = literal(DataTypes.BOOLEAN_TYPE, rawValue)
@@ -658,9 +685,31 @@ object Expressions {
                 throw new UnresolvedException(this,
                     s"datatype. Can not resolve due to unresolved children")
             }
+            if (isAggregate) {
+                validateAggregateSelectList
+            }
             TypeUtils.createStructType(selectListWithAlias)
         }
 
+        /**
+         * whether the select has a row per group of a groupby input, or a single row of
+         * aggregates over all the rows of its input.
+         */
+        lazy val isAggregate = child.isInstanceOf[GroupByExpression] || selectList.exists(containsAggregate)
+
+        private def validateAggregateSelectList = {
+            val groupBy = child match {
+                case GroupByExpression(_, l) => l
+                case _ => Nil
+            }
+            selectListWithAlias.foreach { aE =>
+                if (!aE.child.isInstanceOf[AggregateExpression] && !groupBy.contains(aE.child)) {
+                    throw new ExpressionException(this,
+                        s"'${aE.child}' is neither an aggregate nor one of the groupby expressions")
+                }
+            }
+        }
+
         override def namedExpressions = child.namedExpressions ++ (selectList.flatMap(_.namedExpressions))
 
         override def toString = s"""$child select ${selectListWithAlias.mkString("", ", ", "")}"""
@@ -736,4 +785,137 @@ object Expressions {
 
     override def toString = s"$child withPath"
   }
+
+    /**
+     * Restricts the results of a query to at most limit rows, skipping the first offset rows.
+     */
+    case class LimitExpression(child: Expression, limit: Literal[_], offset: Literal[_]) extends Expression {
+        val children = List(child, limit, offset)
+        lazy val dataType = {
+            if (!resolved) {
+                throw new UnresolvedException(this,
+                    s"datatype. Can not resolve due to unresolved child")
+            }
+            if (limit.dataType != DataTypes.INT_TYPE || offset.dataType != DataTypes.INT_TYPE) {
+                throw new ExpressionException(this, "limit and offset must be int values")
+            }
+            val l = limit.value.asInstanceOf[Integer].longValue
+            val o = offset.value.asInstanceOf[Integer].longValue
+            if (l <= 0 || o < 0 || o + l > Integer.MAX_VALUE) {
+                throw new ExpressionException(this, s"Invalid limit $l offset $o")
+            }
+            child.dataType
+        }
+
+        override def namedExpressions = child.namedExpressions
+
+        override def toString = s"$child limit $limit offset $offset"
+    }
+
+    /**
+     * The instances of a Class that satisfy comparisons on its indexed attributes, looked up
+     * through the graph's indexes. The comparisons are ordered by how selective they are
+     * expected to be. Built by the [[QueryOptimizer]] from a filter over a Class.
+     */
+    case class IndexedClassExpression(classExpression: ClassExpression,
+                                      predicates: List[ComparisonExpression]) extends Expression {
+        val children = classExpression :: predicates
+        lazy val dataType = classExpression.dataType
+
+        override def toString = s"$classExpression indexed by ${predicates.mkString(" and ")}"
+    }
+
+    /**
+     * An aggregate over the rows of a select's input, or over the rows of each group if the
+     * input is a [[GroupByExpression]]: count(), or min, max or sum of a primitive expression.
+     */
+    case class AggregateExpression(function: String, arg: Option[Expression]) extends Expression {
+        val children = if (arg.isDefined) List(arg.get) else Nil
+        lazy val dataType = {
+            if (!resolved) {
+                throw new UnresolvedException(this,
+                    s"datatype. Can not resolve due to unresolved argument")
+            }
+            (function, arg) match {
+                case ("count", None) => DataTypes.LONG_TYPE
+                case ("count", Some(_)) => throw new ExpressionException(this, "count does not take an argument")
+                case (_, None) => throw new ExpressionException(this, s"$function requires an argument")
+                case (_, Some(a)) if a.dataType.getTypeCategory != TypeCategory.PRIMITIVE =>
+                    throw new ExpressionException(this,
+                        s"Cannot apply $function on input of type '${a.dataType.getName}'")
+                case ("sum", Some(a)) => TypeUtils.sumType(a.dataType)
+                case ("min", Some(a)) => a.dataType
+                case ("max", Some(a)) => a.dataType
+                case _ => throw new ExpressionException(this, s"Unknown aggregate function '$function'")
+            }
+        }
+
+        override def namedExpressions = if (arg.isDefined) arg.get.namedExpressions else Map()
+
+        override def toString = s"$function(${arg.getOrElse("")})"
+    }
+
+    def count() = new AggregateExpression("count", None)
+
+    def _min(e: Expression) = new AggregateExpression("min", Some(e))
+
+    def _max(e: Expression) = new AggregateExpression("max", Some(e))
+
+    def _sum(e: Expression) = new AggregateExpression("sum", Some(e))
+
+    def containsAggregate(e: Expression): Boolean = {
+        var found = false
+        e.traverseUp { case a: AggregateExpression => found = true }
+        found
+    }
+
+    /**
+     * Groups the rows of the input by the values of the groupBy expressions. Only a select
+     * can be applied to the groups; it has a row per group, made of groupBy expressions and
+     * aggregates over the rows of the group.
+     */
+    case class GroupByExpression(child: Expression, groupBy: List[Expression]) extends Expression {
+        val children = child :: groupBy
+        lazy val dataType = {
+            if (!resolved) {
+                throw new UnresolvedException(this,
+                    s"datatype. Can not resolve due to unresolved children")
+            }
+            groupBy.foreach { g =>
+                if (g.dataType.getTypeCategory != TypeCategory.PRIMITIVE &&
+                    g.dataType.getTypeCategory != TypeCategory.ENUM) {
+                    throw new ExpressionException(this, s"Cannot group by '$g' of type '${g.dataType.getName}'")
+                }
+            }
+            child.dataType
+        }
+
+        override def namedExpressions = child.namedExpressions
+
+        override def toString = s"""$child groupby ${groupBy.mkString("(", ", ", ")")}"""
+    }
+
+    /**
+     * Orders the rows of the input by the value of an expression: a primitive field of the
+     * input, or a column of an aggregate select.
+     */
+    case class OrderExpression(child: Expression, orderBy: Expression, asc: Boolean) extends Expression {
+        val children = List(child, orderBy)
+        lazy val dataType = {
+            if (!resolved) {
+                throw new UnresolvedException(this,
+                    s"datatype. Can not resolve due to unresolved children")
+            }
+            if (orderBy.dataType.getTypeCategory != TypeCategory.PRIMITIVE &&
+                orderBy.dataType.getTypeCategory != TypeCategory.ENUM) {
+                throw new ExpressionException(this,
+                    s"Cannot order by '$orderBy' of type '${orderBy.dataType.getName}'")
+            }
+            child.dataType
+        }
+
+        override def namedExpressions = child.namedExpressions
+
+        override def toString = s"$child orderby $orderBy ${if (asc) "asc" else "desc"}"
+    }
 }
@@ -20,6 +20,7 @@ package org.apache.hadoop.metadata.query
 
 import com.thinkaurelius.titan.core.TitanVertex
 import com.tinkerpop.blueprints.Direction
+import org.apache.hadoop.metadata.MetadataException
 import org.apache.hadoop.metadata.query.Expressions.{ComparisonExpression, ExpressionException}
 import org.apache.hadoop.metadata.query.TypeUtils.FieldInfo
 import org.apache.hadoop.metadata.typesystem.persistence.Id
@@ -96,6 +97,18 @@ trait GraphPersistenceStrategies {
 
     def constructInstance[U](dataType: IDataType[U], v: java.lang.Object): U
 
+    /**
+     * construct an instance of a Class with only the given attributes loaded from the vertex.
+     * The instance has its id and trait names; references to other instances are
+     * loaded as their [[Id]]s.
+     * @param dataType
+     * @param v
+     * @param attributes
+     * @return
+     */
+    def constructProjectedInstance(dataType: ClassType, v: TitanVertex,
+                                   attributes: java.util.List[String]): ITypedReferenceableInstance
+
     def gremlinCompOp(op: ComparisonExpression) = op.symbol match {
         case "=" => "T.eq"
         case "!=" => "T.neq"
@@ -106,11 +119,33 @@ trait GraphPersistenceStrategies {
         case _ => throw new ExpressionException(op, "Comparison operator not supported in Gremlin")
     }
 
+    /**
+     * the blueprints predicate of a comparison, for a graph query.
+     */
+    def graphQueryCompOp(op: ComparisonExpression): String = GraphQueryCompOps(op)
+
     def loopObjectExpression(dataType: IDataType[_]) = {
         s"{it.object.'${typeAttributeName}' == '${dataType.getName}'}"
     }
 }
 
+/**
+ * the blueprints predicates of comparisons in a graph query. Kept out of the trait so that
+ * Java strategies, which don't inherit its method bodies, can share them.
+ */
+object GraphQueryCompOps {
+
+    def apply(op: ComparisonExpression): String = op.symbol match {
+        case "=" => "com.tinkerpop.blueprints.Compare.EQUAL"
+        case "!=" => "com.tinkerpop.blueprints.Compare.NOT_EQUAL"
+        case ">" => "com.tinkerpop.blueprints.Compare.GREATER_THAN"
+        case ">=" => "com.tinkerpop.blueprints.Compare.GREATER_THAN_EQUAL"
+        case "<" => "com.tinkerpop.blueprints.Compare.LESS_THAN"
+        case "<=" => "com.tinkerpop.blueprints.Compare.LESS_THAN_EQUAL"
+        case _ => throw new ExpressionException(op, "Comparison operator not supported in a graph query")
+    }
+}
+
 object GraphPersistenceStrategy1 extends GraphPersistenceStrategies {
     val typeAttributeName = "typeName"
     val idAttributeName = "guid"
@@ -202,6 +237,40 @@ object GraphPersistenceStrategy1 extends GraphPersistenceStrategies {
         cInstance
     }
 
+    def constructProjectedInstance(dataType: ClassType, v: TitanVertex,
+                                   attributes: java.util.List[String]): ITypedReferenceableInstance = {
+        val cInstance = dataType.createInstance(getIdFromVertex(dataType.name, v), traitNames(v): _*)
+        attributes.foreach { aNm =>
+            val aInfo = dataType.fieldMapping().fields.get(aNm)
+            if (aInfo == null) {
+                throw new MetadataException(s"Unknown attribute $aNm of type ${dataType.getName}")
+            }
+            aInfo.dataType().getTypeCategory match {
+                case DataTypes.TypeCategory.CLASS =>
+                    val edges = v.getEdges(Direction.OUT, edgeLabel(FieldInfo(dataType, aInfo, null))).iterator()
+                    // an unset reference has no edge
+                    if (edges.hasNext) {
+                        val rVertex = edges.next().getVertex(Direction.IN).asInstanceOf[TitanVertex]
+                        cInstance.set(aInfo.name, getIdFromVertex(aInfo.dataType().getName, rVertex))
+                    }
+                case DataTypes.TypeCategory.ARRAY if aInfo.dataType().asInstanceOf[ArrayType].getElemType
+                  .getTypeCategory == DataTypes.TypeCategory.CLASS =>
+                    // each element is an edge with the attribute's label
+                    val aType = aInfo.dataType().asInstanceOf[ArrayType]
+                    val ids = new java.util.ArrayList[Id]()
+                    v.getEdges(Direction.OUT, edgeLabel(FieldInfo(dataType, aInfo, null))).foreach { e =>
+                        ids.add(getIdFromVertex(aType.getElemType.getName,
+                            e.getVertex(Direction.IN).asInstanceOf[TitanVertex]))
+                    }
+                    if (!ids.isEmpty) {
+                        cInstance.set(aInfo.name, ids)
+                    }
+                case _ => loadAttribute(dataType, aInfo, cInstance, v)
+            }
+        }
+        cInstance
+    }
+
     def loadAttribute(dataType: IDataType[_], aInfo: AttributeInfo, i: ITypedInstance, v: TitanVertex): Unit = {
         aInfo.dataType.getTypeCategory match {
             case DataTypes.TypeCategory.PRIMITIVE => loadPrimitiveAttribute(dataType, aInfo, i, v)
@@ -227,14 +296,17 @@ object GraphPersistenceStrategy1 extends GraphPersistenceStrategies {
                                        i: ITypedInstance, v: TitanVertex): Unit = {
         val fName = fieldNameInVertex(dataType, aInfo)
         aInfo.dataType() match {
-            case x: BooleanType => i.setBoolean(aInfo.name, v.getProperty[java.lang.Boolean](fName))
-            case x: ByteType => i.setByte(aInfo.name, v.getProperty[java.lang.Byte](fName))
-            case x: ShortType => i.setShort(aInfo.name, v.getProperty[java.lang.Short](fName))
-            case x: IntType => i.setInt(aInfo.name, v.getProperty[java.lang.Integer](fName))
-            case x: LongType => i.setLong(aInfo.name, v.getProperty[java.lang.Long](fName))
-            case x: FloatType => i.setFloat(aInfo.name, v.getProperty[java.lang.Float](fName))
-            case x: DoubleType => i.setDouble(aInfo.name, v.getProperty[java.lang.Double](fName))
-            case x: StringType => i.setString(aInfo.name, v.getProperty[java.lang.String](fName))
+            case _: BooleanType | _: ByteType | _: ShortType | _: IntType | _: LongType | _: FloatType |
+                 _: DoubleType | _: StringType =>
+                val value = v.getProperty[AnyRef](fName)
+                val accessor = i.fieldMapping().accessor(aInfo.name)
+                if (value == null) {
+                    i.setNull(aInfo.name)
+                } else if (accessor != null) {
+                    accessor.set(i, value)
+                } else {
+                    i.set(aInfo.name, value)
+                }
             case _ => throw new UnsupportedOperationException(s"load for ${aInfo.dataType()} not supported")
         }
     }
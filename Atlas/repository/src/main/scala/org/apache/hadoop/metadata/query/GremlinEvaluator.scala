@@ -18,14 +18,16 @@
 
 package org.apache.hadoop.metadata.query
 
-import javax.script.{Bindings, ScriptEngine, ScriptEngineManager}
+import java.io.Writer
 
-import com.thinkaurelius.titan.core.TitanGraph
+import com.thinkaurelius.titan.core.{TitanGraph, TitanVertex}
 import com.tinkerpop.pipes.util.structures.Row
+import org.apache.hadoop.metadata.query.Expressions.ExpressionException
 import org.apache.hadoop.metadata.query.TypeUtils.ResultWithPathStruct
 import org.apache.hadoop.metadata.typesystem.json._
 import org.apache.hadoop.metadata.typesystem.types._
 import org.json4s._
+import org.json4s.native.JsonMethods.{compact, render}
 import org.json4s.native.Serialization._
 
 import scala.language.existentials
@@ -36,12 +38,42 @@ case class GremlinQueryResult(query: String,
     def toJson = JsonHelper.toJson(this)
 }
 
-class GremlinEvaluator(qry: GremlinQuery, persistenceStrategy: GraphPersistenceStrategies, g: TitanGraph) {
+/**
+ * The attributes loaded for the instances returned by a query, in place of whole instances.
+ * A projected instance has its id, its trait names and only these attributes; references to
+ * other instances are returned as their Ids, so the caller loads only the ones it follows.
+ * An empty list returns just the ids.
+ */
+case class ResultProjection(attributes: java.util.List[String])
+
+object ResultProjection {
+
+    /**
+     * @param attributes the attributes to load, null for whole instances.
+     * @throws ExpressionException if the query doesn't return instances of a Class, or an
+     *                             attribute is not one of the Class.
+     */
+    def forQuery(qry: GremlinQuery, attributes: java.util.List[String]): Option[ResultProjection] = {
+        if (attributes == null) {
+            return None
+        }
+        val cType = qry.expr.dataType match {
+            case c: ClassType if !qry.hasSelectList && !qry.isPathExpresion => c
+            case _ => throw new ExpressionException(qry.expr,
+                "attributes can only be projected from a query that returns instances of a Class")
+        }
+        import scala.collection.JavaConversions._
+        attributes.find(!cType.fieldMapping().fields.containsKey(_)).foreach { a =>
+            throw new ExpressionException(qry.expr, s"Unknown attribute $a of ${cType.getName}")
+        }
+        Some(ResultProjection(attributes))
+    }
+}
 
-    val manager: ScriptEngineManager = new ScriptEngineManager
-    val engine: ScriptEngine = manager.getEngineByName("gremlin-groovy")
-    val bindings: Bindings = engine.createBindings
-    bindings.put("g", g)
+class GremlinEvaluator(qry: GremlinQuery, persistenceStrategy: GraphPersistenceStrategies, g: TitanGraph,
+                       scripts: GremlinScriptCache = GremlinScriptCache.instance,
+                       projection: Option[ResultProjection] = None,
+                       execution: QueryExecution = QueryBudget.UNLIMITED.start()) {
 
     /**
      *
@@ -80,36 +112,85 @@ class GremlinEvaluator(qry: GremlinQuery, persistenceStrategy: GraphPersistenceS
     def evaluate(): GremlinQueryResult = {
         import scala.collection.JavaConversions._
         val rType = qry.expr.dataType
-        val oType = if (qry.isPathExpresion) qry.expr.children(0).dataType else rType
-        val rawRes = engine.eval(qry.queryStr, bindings)
-
-        if (!qry.hasSelectList) {
-            val rows = rawRes.asInstanceOf[java.util.List[AnyRef]].map { v =>
-                val iV = instanceObject(v)
-                val o = persistenceStrategy.constructInstance(oType, iV)
-              addPathStruct(v, o)
+        val rawRes = scripts.eval(qry.queryStr, g, execution)
+
+        val rows = rawRes.asInstanceOf[java.util.List[AnyRef]].map(budgetedRow)
+        GremlinQueryResult(qry.expr.toString, rType, rows.toList)
+    }
+
+    /**
+     * Evaluates the query and writes the result as json. Rows are constructed and written
+     * one at a time as they come out of the gremlin pipeline, the result is never held in
+     * memory as a whole.
+     *
+     * @param out writer the result is written to
+     */
+    def evaluate(out: Writer): Unit =
+        evaluate(new StreamedQueryResult(qry.expr.toString, qry.expr.dataType, out))
+
+    /**
+     * Evaluates the query into a result streamed as json, as evaluate(Writer) does.
+     *
+     * @param result result the rows are written to
+     */
+    def evaluate(result: StreamedQueryResult): Unit = {
+        import scala.collection.JavaConversions._
+        val rawRes = scripts.eval(qry.iteratorQueryStr, g, execution)
+
+        rawRes.asInstanceOf[java.util.Iterator[AnyRef]].foreach { r =>
+            result.row(budgetedRow(r))
+        }
+        result.end()
+    }
+
+    private lazy val oType = if (qry.isPathExpresion) qry.resultExpr.children(0).dataType else qry.expr.dataType
+
+    private lazy val selExpr =
+        (if (qry.isPathExpresion) qry.resultExpr.children(0) else qry.resultExpr).
+            asInstanceOf[Expressions.SelectExpression]
+
+    /*
+     * counts the row against the budget of the query, which also stops a query that timed out
+     * or was cancelled between rows.
+     */
+    private def budgetedRow(r: AnyRef): Any = {
+        execution.row()
+        toRow(r)
+    }
+
+    /**
+     * @param r a row returned from gremlin
+     * @return the row of the query result
+     */
+    def toRow(r: AnyRef): Any = {
+        if (qry.isAggregate) {
+            val sType = oType.asInstanceOf[StructType]
+            val rV = r.asInstanceOf[java.util.List[AnyRef]]
+            val sInstance = sType.createInstance()
+            selExpr.selectListWithAlias.zipWithIndex.foreach { case (aE, idx) =>
+                sInstance.set(aE.alias, persistenceStrategy.constructInstance(aE.dataType, rV.get(idx)))
             }
-            GremlinQueryResult(qry.expr.toString, rType, rows.toList)
+            sInstance
+        } else if (!qry.hasSelectList) {
+            val iV = instanceObject(r)
+            val o = projection match {
+                case Some(p) => persistenceStrategy.constructProjectedInstance(oType.asInstanceOf[ClassType],
+                    iV.asInstanceOf[TitanVertex], p.attributes)
+                case None => persistenceStrategy.constructInstance(oType, iV)
+            }
+            addPathStruct(r, o)
         } else {
             val sType = oType.asInstanceOf[StructType]
-            val rows = rawRes.asInstanceOf[java.util.List[AnyRef]].map { r =>
-              val rV = instanceObject(r).asInstanceOf[Row[java.util.List[AnyRef]]]
-                val sInstance = sType.createInstance()
-                val selExpr =
-                  (if (qry.isPathExpresion) qry.expr.children(0) else qry.expr).
-                    asInstanceOf[Expressions.SelectExpression]
-                selExpr.selectListWithAlias.foreach { aE =>
-                    val cName = aE.alias
-                    val (src, idx) = qry.resultMaping(cName)
-                    val v = rV.getColumn(src).get(idx)
-                    sInstance.set(cName, persistenceStrategy.constructInstance(aE.dataType, v))
-                }
-                sInstance
-              addPathStruct(r, sInstance)
+            val rV = instanceObject(r).asInstanceOf[Row[java.util.List[AnyRef]]]
+            val sInstance = sType.createInstance()
+            selExpr.selectListWithAlias.foreach { aE =>
+                val cName = aE.alias
+                val (src, idx) = qry.resultMaping(cName)
+                val v = rV.getColumn(src).get(idx)
+                sInstance.set(cName, persistenceStrategy.constructInstance(aE.dataType, v))
             }
-            GremlinQueryResult(qry.expr.toString, rType, rows.toList)
+            addPathStruct(r, sInstance)
         }
-
     }
 }
 
@@ -137,4 +218,82 @@ object JsonHelper {
     def toJson(r: GremlinQueryResult): String = {
         writePretty(r)
     }
+
+}
+
+/**
+ * A query result written in the form of [[JsonHelper.toJson]] one row at a time, by the
+ * thread evaluating the query, while the thread waiting for the query can give up on it.
+ * Nothing is written before the first row or the end of the result, so a query that fails
+ * before its first row can still be answered with an error. The rows of a query that fails
+ * after them can't be taken back: they are ended with "truncated":true instead.
+ *
+ * Writes are serialized with [[close]], after which a row fails: a query that keeps running
+ * after its caller gave up never writes to the caller's writer once the caller is back.
+ */
+class StreamedQueryResult(query: String, resultDataType: IDataType[_], out: Writer) {
+
+    import JsonHelper.formats
+
+    private var rowCount = 0L
+    private var closed = false
+    private var complete = false
+
+    @throws(classOf[QueryBudgetExceededException])
+    def row(row: Any): Unit = synchronized {
+        checkOpen()
+        if (rowCount == 0) {
+            writeHeader()
+        } else {
+            out.write(",")
+        }
+        out.write(compact(render(Extraction.decompose(row))))
+        rowCount += 1
+    }
+
+    @throws(classOf[QueryBudgetExceededException])
+    def end(): Unit = synchronized {
+        checkOpen()
+        if (rowCount == 0) {
+            writeHeader()
+        }
+        out.write("]}")
+        out.flush()
+        closed = true
+        complete = true
+    }
+
+    /**
+     * Closes the result, rows written by the query from now on fail. A result cut short
+     * after its first row is ended as truncated.
+     *
+     * @return whether the result was written, whole or truncated
+     */
+    def close(): Boolean = synchronized {
+        if (!closed && rowCount > 0) {
+            out.write("],\"truncated\":true}")
+            out.flush()
+            complete = true
+        }
+        closed = true
+        complete
+    }
+
+    def getRowCount: Long = synchronized {
+        rowCount
+    }
+
+    private def checkOpen(): Unit = {
+        if (closed) {
+            throw new QueryBudgetExceededException("Query was cancelled")
+        }
+    }
+
+    private def writeHeader(): Unit = {
+        out.write("{\"query\":")
+        out.write(compact(render(JString(query))))
+        out.write(",\"dataType\":")
+        out.write(compact(render(TypesSerialization.toJsonValue(resultDataType))))
+        out.write(",\"rows\":[")
+    }
 }
\ No newline at end of file
@@ -30,7 +30,54 @@ case class GremlinQuery(expr: Expression, queryStr: String, resultMaping: Map[St
 
     def hasSelectList = resultMaping != null
 
-    def isPathExpresion = expr.isInstanceOf[PathExpression]
+    /**
+     * the expression the rows of the result are built from, below any limit and order on the
+     * query.
+     */
+    def resultExpr: Expression = expr match {
+        case LimitExpression(OrderExpression(child, _, _), _, _) => child
+        case LimitExpression(child, _, _) => child
+        case OrderExpression(child, _, _) => child
+        case e => e
+    }
+
+    def isPathExpresion = resultExpr.isInstanceOf[PathExpression]
+
+    /**
+     * whether the rows are aggregates: each row is a list of the values of the select list.
+     */
+    def isAggregate = resultExpr match {
+        case sel: SelectExpression => sel.isAggregate
+        case _ => false
+    }
+
+    /**
+     * Restricts the query to the given range of its results.
+     *
+     * @param limit  maximum number of results, a negative value for no limit
+     * @param offset number of results to skip
+     * @return the restricted query
+     */
+    def range(limit: Int, offset: Int): GremlinQuery = {
+        require(limit != 0 && offset >= 0, s"Invalid limit $limit offset $offset")
+        if (limit < 0 && offset == 0) {
+            return this
+        }
+        val high = if (limit < 0) -1 else Math.min(offset.toLong + limit - 1, Integer.MAX_VALUE).toInt
+        GremlinQuery(expr, s"$steps.range($offset, $high).toList()", resultMaping)
+    }
+
+    /**
+     * gremlin query counting the results of this query.
+     */
+    def countQueryStr = s"$steps.count()"
+
+    /**
+     * gremlin query returning an iterator over the results of this query, instead of a list.
+     */
+    def iteratorQueryStr = s"$steps.iterator()"
+
+    private def steps = queryStr.stripSuffix(".toList()")
 }
 
 trait SelectExpressionHandling {
@@ -56,6 +103,7 @@ trait SelectExpressionHandling {
         }
 
         def apply(e: Expression) = e match {
+            case sel: SelectExpression if sel.isAggregate => sel
             case SelectExpression(aliasE@AliasExpression(_, _), selList) => {
                 idx = idx + 1
                 SelectExpression(aliasE, selList.map(_.transformUp(new DecorateFieldWithAlias(aliasE))))
@@ -228,6 +276,37 @@ class GremlinTranslator(expr: Expression,
         case l@LogicalExpression(symb, children) => {
             s"""$symb${children.map("_()." + genQuery(_, inSelect)).mkString("(", ",", ")")}"""
         }
+        case sel@SelectExpression(GroupByExpression(child, groupBy), _) => {
+            val keys = groupBy.map(genValueInClosure)
+            val cols = sel.selectListWithAlias.map {
+                case AliasExpression(a: AggregateExpression, _) => genAggregate(a, "grp.value")
+                case AliasExpression(k, _) => s"grp.key[${groupBy.indexOf(k)}]"
+            }
+            s"""${genQuery(child, inSelect)}.groupBy{${keys.mkString("[", ",", "]")}}{it}.cap.scatter""" +
+                s""".transform{grp -> ${cols.mkString("[", ",", "]")}}"""
+        }
+        case sel@SelectExpression(child, _) if sel.isAggregate => {
+            val cols = sel.selectListWithAlias.map(aE => genAggregate(aE.child.asInstanceOf[AggregateExpression], "rows"))
+            s"${genQuery(child, inSelect)}.aggregate().cap.transform{rows -> ${cols.mkString("[", ",", "]")}}"
+        }
+        case g: GroupByExpression =>
+            throw new GremlinTranslationException(g, "groupby must be followed by a select")
+        case o@OrderExpression(sel: SelectExpression, BackReference(alias, _, _), asc) if sel.isAggregate => {
+            val idx = sel.selectListWithAlias.indexWhere(_.alias == alias)
+            s"${genQuery(sel, inSelect)}.order{${genCompare(s"it.a[$idx]", s"it.b[$idx]", asc)}}"
+        }
+        case o@OrderExpression(child, f@FieldExpression(_, fInfo, None), asc)
+            if f.dataType.getTypeCategory == TypeCategory.PRIMITIVE ||
+                f.dataType.getTypeCategory == TypeCategory.ENUM => {
+            if (QueryOptimizer.isIndexOrdered(o)) {
+                genIndexOrderedQuery(o)
+            } else {
+                val fN = "\"" + gPersistenceBehavior.fieldNameInVertex(fInfo.dataType, fInfo.attrInfo) + "\""
+                s"${genQuery(child, inSelect)}.order{${genCompare(s"it.a.$fN", s"it.b.$fN", asc)}}"
+            }
+        }
+        case o: OrderExpression => throw new GremlinTranslationException(o,
+            "orderby is only supported on a primitive field of the input or a column of an aggregate select")
         case sel@SelectExpression(child, selList) => {
             val m = groupSelectExpressionsBySrc(sel)
             var srcNamesList: List[String] = List()
@@ -251,7 +330,9 @@ class GremlinTranslator(expr: Expression,
             val inputQry = genQuery(input, inSelect)
             val loopingPathGExpr = genQuery(loopExpr, inSelect)
             val loopGExpr = s"""loop("${input.asInstanceOf[AliasExpression].alias}")"""
-            val untilCriteria = if (t.isDefined) s"{it.loops < ${t.get.value}}" else "{true}"
+            // each element a loop goes through is counted against the budget of the query
+            val untilCriteria = if (t.isDefined) s"{${QueryExecution.BINDING}.traversed(); it.loops < ${t.get.value}}"
+                else s"{${QueryExecution.BINDING}.traversed(); true}"
             val loopObjectGExpr = gPersistenceBehavior.loopObjectExpression(input.dataType)
             s"""${inputQry}.${loopingPathGExpr}.${loopGExpr}${untilCriteria}${loopObjectGExpr}"""
         }
@@ -278,11 +359,85 @@ class GremlinTranslator(expr: Expression,
         case pe@PathExpression(child) => {
           s"${genQuery(child, inSelect)}.path"
         }
+        case IndexedClassExpression(clsExpr, predicates) =>
+            (predicates.map(genQuery(_, inSelect)) :+ genQuery(clsExpr, inSelect)).mkString(".")
+        case LimitExpression(child, limit, offset) =>
+            s"${genQuery(child, inSelect)}.range($offset, $offset + $limit - 1)"
         case x => throw new GremlinTranslationException(x, "expression not yet supported")
     }
 
-    def translate(): GremlinQuery = {
-        var e1 = expr.transformUp(wrapAndRule)
+    /*
+     * the value of a primitive field of the element a closure is applied to, or of an instance
+     * it references, e.g. db.name of a Table; the first value if there are several.
+     */
+    private def genValueInClosure(e: Expression): String = e match {
+        case FieldExpression(_, fInfo, child) if (e.dataType.getTypeCategory == TypeCategory.PRIMITIVE ||
+            e.dataType.getTypeCategory == TypeCategory.ENUM) && child.forall(isReferencePath) => {
+            val fN = "\"" + gPersistenceBehavior.fieldNameInVertex(fInfo.dataType, fInfo.attrInfo) + "\""
+            child match {
+                case Some(ref) => s"it.${genQuery(ref, false)}.$fN.toList()[0]"
+                case None => s"it.$fN"
+            }
+        }
+        case x => throw new GremlinTranslationException(x,
+            "groupby and aggregates are only supported on primitive fields of the input or of instances it references")
+    }
+
+    private def isReferencePath(e: Expression): Boolean = e match {
+        case FieldExpression(_, fInfo, child) if fInfo.traitName == null &&
+            e.dataType.getTypeCategory == TypeCategory.CLASS => child.forall(isReferencePath)
+        case _ => false
+    }
+
+    /*
+     * an aggregate over the collection of elements rows.
+     */
+    private def genAggregate(a: AggregateExpression, rows: String): String = a match {
+        case AggregateExpression("count", None) => s"$rows.size()"
+        case AggregateExpression(f, Some(arg)) => {
+            val values = s"$rows.collect{${genValueInClosure(arg)}}.findAll{it != null}"
+            f match {
+                case "sum" => s"$values.sum(0L)"
+                case _ => s"$values.$f()"
+            }
+        }
+        case x => throw new GremlinTranslationException(x, "aggregate not supported")
+    }
+
+    private def genCompare(a: String, b: String, asc: Boolean) = if (asc) s"$a <=> $b" else s"$b <=> $a"
+
+    /*
+     * an orderby over the instances of a Class, answered by a graph query that returns them in
+     * order from the mixed index; it starts the traversal, see [[translate]].
+     */
+    private def genIndexOrderedQuery(o: OrderExpression): String = {
+        val (clsExpr, predicates) = o.child match {
+            case c: ClassExpression => (c, Nil)
+            case IndexedClassExpression(c, p) => (c, p)
+        }
+        val hasSteps = predicates.map {
+            case c@ComparisonExpression(_, FieldExpression(_, fInfo, _), l) =>
+                val fN = gPersistenceBehavior.fieldNameInVertex(fInfo.dataType, fInfo.attrInfo)
+                s""".has("$fN", ${gPersistenceBehavior.graphQueryCompOp(c)}, $l)"""
+        }
+        val FieldExpression(_, fInfo, _) = o.orderBy
+        val orderKey = gPersistenceBehavior.fieldNameInVertex(fInfo.dataType, fInfo.attrInfo)
+        val order = if (o.asc) "ASC" else "DESC"
+        s"""query().has("${gPersistenceBehavior.typeAttributeName}","${clsExpr.clsName}")${hasSteps.mkString}""" +
+            s""".orderBy("$orderKey", com.thinkaurelius.titan.core.Order.$order).vertices()._()"""
+    }
+
+    /*
+     * the query rewritten for translation, with any limit on the query taken off the top.
+     */
+    private lazy val (rewrittenExpr, limitExpr, resultMapping) = {
+        // the limit applies to the rows of the query, it is put back on top once the query is rewritten
+        val (qryExpr, limitExpr) = expr match {
+            case l: LimitExpression => (l.child, Some(l))
+            case e => (e, None)
+        }
+
+        var e1 = qryExpr.transformUp(wrapAndRule)
 
         e1.traverseUp(validateComparisonForm)
 
@@ -292,20 +447,41 @@ class GremlinTranslator(expr: Expression,
         e1 = e1.transformUp(instanceClauseToTop(e1))
         e1 = e1.transformUp(traitClauseWithInstanceForTop(e1))
 
-        e1 match {
-            case e1: SelectExpression => {
-                val rMap = buildResultMapping(e1)
-                GremlinQuery(e1, s"g.V.${genQuery(e1, false)}.toList()", rMap)
-            }
-            case pe@PathExpression(se@SelectExpression(child, selectList)) => {
-              val rMap = buildResultMapping(se)
-              GremlinQuery(e1, s"g.V.${genQuery(pe, false)}.toList()", rMap)
-            }
-            case e1 => GremlinQuery(e1, s"g.V.${genQuery(e1, false)}.toList()", null)
+        val rMap = e1 match {
+            case se: SelectExpression if se.isAggregate => null
+            case se: SelectExpression => buildResultMapping(se)
+            case PathExpression(se: SelectExpression) => buildResultMapping(se)
+            case _ => null
         }
 
+        (e1, limitExpr, rMap)
+    }
+
+    private def withLimit(e: Expression): Expression = limitExpr match {
+        case Some(l) => LimitExpression(e, l.limit, l.offset)
+        case None => e
+    }
+
+    /**
+     * the rewritten query with predicates on indexed attributes pushed into index lookups,
+     * see [[QueryOptimizer]].
+     */
+    def plan(): Expression = withLimit(QueryOptimizer.optimize(rewrittenExpr))
+
+    /**
+     * The gremlin query is generated from the [[plan]], the expression of the query stays
+     * the rewritten query: the results and their description are the same either way.
+     * A plan that reads its source in order from an index starts with a graph query instead
+     * of all the vertices.
+     */
+    def translate(): GremlinQuery = {
+        val p = plan()
+        val start = if (QueryOptimizer.indexOrder(p).isDefined) "g" else "g.V"
+        GremlinQuery(withLimit(rewrittenExpr), s"$start.${genQuery(p, false)}.toList()", resultMapping)
     }
 
+    def explain(): QueryExplanation = QueryExplanation(expr, plan(), translate())
+
     /*
      * Translation Issues:
      * 1. back references in filters. For e.g. testBackreference: 'DB as db Table where (db.name = "Reporting")'
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+import javax.script.{Compilable, CompiledScript, ScriptEngine, ScriptEngineManager, SimpleBindings}
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import com.thinkaurelius.titan.core.TitanGraph
+import org.apache.hadoop.metadata.PropertiesUtil
+
+/**
+ * Evaluates gremlin queries with a shared pool of gremlin-groovy engines and a bounded
+ * cache of compiled scripts.
+ *
+ * String literals are lifted out of the query and passed as bindings, so queries that
+ * only differ in the values they look for share one compiled script.
+ *
+ * An engine keeps the class of every script it compiles for as long as it lives, whether the
+ * script is still cached or not. So once the engines have compiled as many scripts as the
+ * cache holds, they are replaced by a new generation of engines and the cache, whose scripts
+ * hold on to the old engines, is emptied; the classes they compiled are then unloaded.
+ *
+ * @param poolSize number of engines compiling scripts
+ * @param maxSize  maximum number of compiled scripts kept
+ */
+class GremlinScriptCache(poolSize: Int, maxSize: Long) {
+
+    private class Generation {
+        val engines: Array[ScriptEngine] = Array.fill(Math.max(1, poolSize)) {
+            new ScriptEngineManager().getEngineByName("gremlin-groovy")
+        }
+        val compiledCount = new AtomicLong()
+    }
+
+    @volatile private var generation = new Generation
+    private val generations = new AtomicLong(1)
+    private val nextEngine = new AtomicInteger()
+
+    private val scripts: Cache[String, CompiledScript] =
+        CacheBuilder.newBuilder().maximumSize(maxSize).build[String, CompiledScript]()
+
+    private val hits = new AtomicLong()
+    private val misses = new AtomicLong()
+
+    /**
+     * Evaluates the query against the given graph, bound as g.
+     *
+     * @param query gremlin query
+     * @param g     graph to query
+     * @return the result of the query
+     */
+    def eval(query: String, g: TitanGraph): AnyRef = eval(query, g, QueryBudget.UNLIMITED.start())
+
+    /**
+     * Evaluates the query against the given graph, bound as g, with the execution it is
+     * tracked by bound as [[QueryExecution.BINDING]].
+     *
+     * @param query     gremlin query
+     * @param g         graph to query
+     * @param execution execution of the query
+     * @return the result of the query
+     */
+    def eval(query: String, g: TitanGraph, execution: QueryExecution): AnyRef = {
+        val parameterized = GremlinScriptCache.parameterize(query)
+
+        val bindings = new SimpleBindings()
+        parameterized.literals.foreach { case (name, value) => bindings.put(name, value)}
+        bindings.put("g", g)
+        bindings.put(QueryExecution.BINDING, execution)
+
+        compiled(parameterized.script).eval(bindings)
+    }
+
+    private def compiled(script: String): CompiledScript = {
+        val cached = scripts.getIfPresent(script)
+        if (cached != null) {
+            hits.incrementAndGet()
+            return cached
+        }
+
+        misses.incrementAndGet()
+        val current = generation
+        val engine = current.engines(Math.abs(nextEngine.getAndIncrement % current.engines.length))
+        val compiledScript = engine.asInstanceOf[Compilable].compile(script)
+        if (current.compiledCount.incrementAndGet() >= maxSize) {
+            // not cached, so that nothing holds on to the retired engines once it has run
+            retire(current)
+        } else {
+            scripts.put(script, compiledScript)
+        }
+        compiledScript
+    }
+
+    private def retire(old: Generation): Unit = synchronized {
+        if (generation eq old) {
+            generation = new Generation
+            generations.incrementAndGet()
+            scripts.invalidateAll()
+        }
+    }
+
+    def invalidateAll(): Unit = scripts.invalidateAll()
+
+    def size: Long = scripts.size()
+
+    def getHitCount: Long = hits.get()
+
+    def getMissCount: Long = misses.get()
+
+    /**
+     * @return the number of generations of engines created so far.
+     */
+    def getGenerationCount: Long = generations.get()
+
+    override def toString =
+        s"GremlinScriptCache{size=$size, hits=$getHitCount, misses=$getMissCount, generations=$getGenerationCount}"
+}
+
+object GremlinScriptCache {
+
+    val POOL_SIZE_PROPERTY = "metadata.query.gremlin.engine.pool.size"
+    val MAX_SIZE_PROPERTY = "metadata.query.gremlin.script.cache.size"
+
+    val DEFAULT_POOL_SIZE = 4
+    val DEFAULT_MAX_SIZE = 1000L
+
+    val LITERAL_PREFIX = "__lit"
+
+    lazy val instance: GremlinScriptCache = {
+        val conf = PropertiesUtil.getApplicationProperties
+        new GremlinScriptCache(conf.getInt(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE),
+            conf.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE))
+    }
+
+    case class ParameterizedScript(script: String, literals: Map[String, String])
+
+    private val escapes = Map('n' -> '\n', 't' -> '\t', 'r' -> '\r', 'b' -> '\b', 'f' -> '\f',
+        '\\' -> '\\', '"' -> '"', '\'' -> '\'')
+
+    /**
+     * Replaces the string literals of a query by variables named __lit0, __lit1, ...
+     *
+     * Literals that are not plain values are left in place: property names (.'name'),
+     * map keys ('key': value) and interpolated strings. A query that cannot be scanned
+     * safely, one with slashy or multi-line strings or comments, is returned as is.
+     *
+     * @param query gremlin query
+     * @return the query with its literals replaced, and the literal values by variable name
+     */
+    def parameterize(query: String): ParameterizedScript = {
+        val asIs = ParameterizedScript(query, Map())
+        if (query.contains(LITERAL_PREFIX) || query.contains("/")
+            || query.contains("\"\"\"") || query.contains("'''")) {
+            return asIs
+        }
+
+        val script = new StringBuilder
+        var literals = Map[String, String]()
+        var i = 0
+        while (i < query.length) {
+            val quote = query.charAt(i)
+            if (quote == '"' || quote == '\'') {
+                val value = new StringBuilder
+                var j = i + 1
+                while (j < query.length && query.charAt(j) != quote) {
+                    if (query.charAt(j) == '\\') {
+                        if (j + 1 >= query.length || !escapes.contains(query.charAt(j + 1))) {
+                            return asIs
+                        }
+                        value.append(escapes(query.charAt(j + 1)))
+                        j += 2
+                    } else {
+                        value.append(query.charAt(j))
+                        j += 1
+                    }
+                }
+                if (j >= query.length) { // unterminated
+                    return asIs
+                }
+
+                val literal = query.substring(i, j + 1)
+                if ((quote == '"' && literal.contains("$"))
+                    || lastNonWhitespace(script) == '.' || nextNonWhitespace(query, j + 1) == ':') {
+                    script.append(literal)
+                } else {
+                    val name = LITERAL_PREFIX + literals.size
+                    literals += (name -> value.toString)
+                    script.append(name)
+                }
+                i = j + 1
+            } else {
+                script.append(quote)
+                i += 1
+            }
+        }
+
+        ParameterizedScript(script.toString, literals)
+    }
+
+    private def lastNonWhitespace(s: StringBuilder): Char = {
+        var i = s.length - 1
+        while (i >= 0 && Character.isWhitespace(s.charAt(i))) {
+            i -= 1
+        }
+        if (i >= 0) s.charAt(i) else 0
+    }
+
+    private def nextNonWhitespace(s: String, from: Int): Char = {
+        var i = from
+        while (i < s.length && Character.isWhitespace(s.charAt(i))) {
+            i += 1
+        }
+        if (i < s.length) s.charAt(i) else 0
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import java.math.{BigInteger, MathContext}
+
+import org.apache.hadoop.metadata.query.Expressions._
+import org.apache.hadoop.metadata.query.TypeUtils.FieldInfo
+import org.apache.hadoop.metadata.repository.memory.MemRepository
+import org.apache.hadoop.metadata.typesystem.persistence.Id
+import org.apache.hadoop.metadata.typesystem.types.DataTypes.TypeCategory
+import org.apache.hadoop.metadata.typesystem.types._
+import org.apache.hadoop.metadata.typesystem.{ITypedInstance, ITypedReferenceableInstance}
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Evaluates a resolved query [[Expression]] directly against the stores of a [[MemRepository]].
+ *
+ * The semantics follow the gremlin translation:
+ * - a Class expression returns the Instances of exactly that Class.
+ * - navigating a reference yields the referenced Instances; an array of references yields
+ *   each element.
+ * - a comparison holds if it holds for any pair of values of its operands.
+ * - a loop returns the Instances of the input's Class reached in 1 up to `times` steps,
+ *   each Instance at most once.
+ *
+ * A filter on a Class uses an index of the repository for the first conjunct of the
+ * condition that compares an indexed attribute with a literal of the attribute's type; the
+ * whole condition is still applied to the Instances found. Instances are loaded without
+ * resolving their composite references.
+ *
+ * Aggregates skip null values; the sum of no values is 0. Orderings put null values first.
+ */
+class InMemoryEvaluator(expr: Expression, repo: MemRepository) {
+
+    /*
+     * A row being evaluated: the current value, and the values bound to the aliases on the way.
+     */
+    case class Binding(value: Any, aliases: Map[String, Any]) {
+        def withValue(v: Any) = Binding(v, aliases)
+
+        def bind(alias: String) = Binding(value, aliases + (alias -> value))
+    }
+
+    def evaluate(): GremlinQueryResult = {
+        val rows = eval(expr, Binding(null, Map())).map(_.value)
+        GremlinQueryResult(expr.toString, expr.dataType, rows.toList)
+    }
+
+    def eval(e: Expression, in: Binding): Seq[Binding] = e match {
+        case ClassExpression(clsName) => instances(clsName, true).map(i => Binding(i, in.aliases))
+        case TraitExpression(traitName) =>
+            instances(traitName, false).filter(_.getTraits.contains(traitName)).map { i =>
+                Binding(i.getTrait(traitName), in.aliases)
+            }
+        case f@FieldExpression(_, _, child) => {
+            val src = if (child.isDefined) eval(child.get, in) else Seq(in)
+            src.flatMap(b => fieldValues(f, b.value).map(b.withValue))
+        }
+        case AliasExpression(child, alias) => eval(child, in).map(_.bind(alias))
+        case BackReference(alias, _, child) => {
+            val src = if (child.isDefined) eval(child.get, in) else Seq(in)
+            src.map(b => b.withValue(b.aliases(alias)))
+        }
+        case l: Literal[_] => Seq(in.withValue(l.value))
+        case c@ComparisonExpression(_, left, right) => {
+            val ls = eval(left, in).map(_.value)
+            val rs = eval(right, in).map(_.value)
+            Seq(in.withValue(ls.exists(l => rs.exists(r => compare(c, l, r)))))
+        }
+        case a@ArithmeticExpression(_, left, right) =>
+            for (l <- eval(left, in); r <- eval(right, in)) yield in.withValue(arithmetic(a, l.value, r.value))
+        case LogicalExpression("and", children) => Seq(in.withValue(children.forall(isTrue(_, in))))
+        case LogicalExpression("or", children) => Seq(in.withValue(children.exists(isTrue(_, in))))
+        case isTraitLeafExpression(traitName, Some(_)) => Seq(in.withValue(hasTrait(in.value, traitName)))
+        case isTraitUnaryExpression(traitName, child) =>
+            Seq(in.withValue(eval(child, in).exists(b => hasTrait(b.value, traitName))))
+        case hasFieldLeafExpression(fieldName, Some(_)) => Seq(in.withValue(hasFieldValue(in.value, fieldName)))
+        case hasFieldUnaryExpression(fieldName, child) =>
+            Seq(in.withValue(eval(child, in).exists(b => hasFieldValue(b.value, fieldName))))
+        case FilterExpression(child, condExpr) => filterInput(child, condExpr, in).filter(isTrue(condExpr, _))
+        case s@SelectExpression(GroupByExpression(child, groupBy), _) => {
+            val groups = mutable.LinkedHashMap[List[Any], ArrayBuffer[Binding]]()
+            eval(child, in).foreach { b =>
+                groups.getOrElseUpdate(groupBy.map(value(_, b)), ArrayBuffer()) += b
+            }
+            groups.toSeq.map { case (key, rows) => in.withValue(aggregateRow(s, groupBy, key, rows)) }
+        }
+        case s: SelectExpression if s.isAggregate => Seq(in.withValue(aggregateRow(s, Nil, Nil, eval(s.child, in))))
+        case OrderExpression(child, orderBy, asc) => {
+            val key: Binding => Any = orderBy match {
+                case BackReference(alias, _, None) if child.isInstanceOf[SelectExpression] =>
+                    _.value.asInstanceOf[ITypedInstance].get(alias)
+                case _ => value(orderBy, _)
+            }
+            eval(child, in).sortBy(key)(if (asc) valueOrdering else valueOrdering.reverse)
+        }
+        case s@SelectExpression(child, _) => {
+            val sType = s.dataType
+            eval(child, in).map { b =>
+                val sInstance = sType.createInstance()
+                s.selectListWithAlias.foreach { aE =>
+                    eval(aE.child, b).headOption.foreach { c =>
+                        sInstance.set(aE.alias, c.value.asInstanceOf[AnyRef])
+                    }
+                }
+                b.withValue(sInstance)
+            }
+        }
+        case LoopExpression(input, loopExpr, times) => {
+            val maxLoops = if (times.isDefined) times.get.value.asInstanceOf[Number].intValue else Int.MaxValue
+            eval(input, in).flatMap(loop(input.dataType, loopExpr, maxLoops, _))
+        }
+        case LimitExpression(child, limit, offset) => {
+            val l = limit.value.asInstanceOf[Number].intValue
+            val o = offset.value.asInstanceOf[Number].intValue
+            eval(child, in).slice(o, o + l)
+        }
+        case x => throw new ExpressionException(x, "expression not supported by the in-memory evaluator")
+    }
+
+    def isTrue(e: Expression, in: Binding): Boolean = eval(e, in).exists(_.value == true)
+
+    def value(e: Expression, in: Binding): Any = eval(e, in).headOption.map(_.value).orNull
+
+    /**
+     * a row of an aggregate select over the rows of a group with the given values of the
+     * groupBy expressions.
+     */
+    def aggregateRow(s: SelectExpression, groupBy: List[Expression], key: List[Any], rows: Seq[Binding]) = {
+        val sInstance = s.dataType.createInstance()
+        s.selectListWithAlias.foreach { aE =>
+            val v = aE.child match {
+                case a: AggregateExpression => aggregate(a, rows)
+                case k => key(groupBy.indexOf(k))
+            }
+            if (v != null) {
+                sInstance.set(aE.alias, aE.dataType.convert(v, Multiplicity.OPTIONAL).asInstanceOf[AnyRef])
+            }
+        }
+        sInstance
+    }
+
+    def aggregate(a: AggregateExpression, rows: Seq[Binding]): Any = a match {
+        case AggregateExpression("count", None) => rows.size.toLong
+        case AggregateExpression(f, Some(arg)) => {
+            val values = rows.flatMap(eval(arg, _)).map(_.value).filter(_ != null)
+            f match {
+                case "sum" => values.map(n => bigDecimal(n.asInstanceOf[Number])).
+                    foldLeft(java.math.BigDecimal.ZERO)(_.add(_))
+                case "min" => if (values.isEmpty) null else values.min(valueOrdering)
+                case "max" => if (values.isEmpty) null else values.max(valueOrdering)
+            }
+        }
+        case x => throw new ExpressionException(x, "aggregate not supported by the in-memory evaluator")
+    }
+
+    val valueOrdering: Ordering[Any] = new Ordering[Any] {
+        def compare(l: Any, r: Any): Int = (l, r) match {
+            case (null, null) => 0
+            case (null, _) => -1
+            case (_, null) => 1
+            case (a: Number, b: Number) => bigDecimal(a).compareTo(bigDecimal(b))
+            case (a: Comparable[_], b) => a.asInstanceOf[Comparable[Any]].compareTo(b)
+            case _ => throw new IllegalArgumentException(s"Cannot order $l and $r")
+        }
+    }
+
+    /**
+     * @param typeName a Class or Trait
+     * @param exact only return the Instances of the Class itself, not of its SubClasses.
+     */
+    def instances(typeName: String, exact: Boolean): Seq[ITypedReferenceableInstance] = {
+        val ids = repo.getInstanceIds(typeName).toSeq
+        (if (exact) ids.filter(_.className == typeName) else ids).map(repo.load)
+    }
+
+    def fieldValues(f: FieldExpression, v: Any): Seq[Any] = {
+        val fInfo = f.fieldInfo
+        v match {
+            case r: ITypedReferenceableInstance if fInfo.traitName != null =>
+                if (r.getTraits.contains(fInfo.traitName)) Seq(r.getTrait(fInfo.traitName)) else Nil
+            case r: ITypedReferenceableInstance if fInfo.isReverse => referrers(f, r)
+            case i: ITypedInstance if fInfo.traitName == null && !fInfo.isReverse =>
+                values(f.dataType, i.get(fInfo.attrInfo.name))
+            case _ => Nil
+        }
+    }
+
+    def values(dataType: IDataType[_], v: Any): Seq[Any] = v match {
+        case null => Nil
+        case c: java.util.Collection[_]
+            if dataType.getTypeCategory == TypeCategory.CLASS || dataType.getTypeCategory == TypeCategory.STRUCT =>
+            c.toSeq.flatMap(values(dataType, _))
+        case id: Id => Seq(repo.load(id))
+        case x => Seq(x)
+    }
+
+    /*
+     * The Instances of the reverse Class whose attribute refers to r.
+     */
+    def referrers(f: FieldExpression, r: ITypedReferenceableInstance): Seq[Any] = {
+        val fInfo = f.fieldInfo
+        if (fInfo.reverseDataType.getTypeCategory != TypeCategory.CLASS) {
+            throw new ExpressionException(f, "navigation from a struct not supported by the in-memory evaluator")
+        }
+        instances(fInfo.reverseDataType.getName, false).filter { i =>
+            i.get(fInfo.attrInfo.name) match {
+                case id: Id => id == r.getId
+                case c: java.util.Collection[_] => c.contains(r.getId)
+                case _ => false
+            }
+        }
+    }
+
+    def hasTrait(v: Any, traitName: String) = v match {
+        case r: ITypedReferenceableInstance => r.getTraits.contains(traitName)
+        case _ => false
+    }
+
+    def hasFieldValue(v: Any, fieldName: String) = v match {
+        case i: ITypedInstance => i.fieldMapping().fields.containsKey(fieldName) && i.get(fieldName) != null
+        case _ => false
+    }
+
+    def loop(dataType: IDataType[_], loopExpr: Expression, maxLoops: Int, start: Binding): Seq[Binding] = {
+        var visited = Set[Any]()
+        var frontier = Seq(start)
+        var result = Seq[Binding]()
+        var loops = 0
+        while (frontier.nonEmpty && loops < maxLoops) {
+            frontier = frontier.flatMap(eval(loopExpr, _)).filter { b =>
+                val isNew = !visited.contains(key(b.value))
+                visited += key(b.value)
+                isNew
+            }
+            result ++= frontier.filter(b => isOfType(b.value, dataType))
+            loops += 1
+        }
+        result
+    }
+
+    def key(v: Any): Any = v match {
+        case r: ITypedReferenceableInstance => r.getId
+        case x => x
+    }
+
+    def isOfType(v: Any, dataType: IDataType[_]) = v match {
+        case r: ITypedReferenceableInstance => r.getTypeName == dataType.getName
+        case _ => false
+    }
+
+    def filterInput(child: Expression, condExpr: Expression, in: Binding): Seq[Binding] = {
+        val indexed = child match {
+            case ClassExpression(clsName) =>
+                indexLookup(clsName, condExpr).map(_.map(i => Binding(i, in.aliases)))
+            case AliasExpression(ClassExpression(clsName), alias) =>
+                indexLookup(clsName, condExpr).map(_.map(i => Binding(i, in.aliases).bind(alias)))
+            case _ => None
+        }
+        indexed.getOrElse(eval(child, in))
+    }
+
+    def indexLookup(clsName: String, condExpr: Expression): Option[Seq[ITypedReferenceableInstance]] = {
+        val conjuncts = condExpr match {
+            case LogicalExpression("and", children) => children
+            case x => List(x)
+        }
+        conjuncts.toStream.flatMap(indexedIds(clsName, _)).headOption.map { ids =>
+            ids.toSeq.filter(_.className == clsName).map(repo.load)
+        }
+    }
+
+    def indexedIds(clsName: String, e: Expression): Option[java.util.Set[Id]] = e match {
+        case ComparisonExpression(symb, FieldExpression(_, fInfo, None), l: Literal[_]) =>
+            lookupIndex(clsName, fInfo, symb, l)
+        case ComparisonExpression(symb, l: Literal[_], FieldExpression(_, fInfo, None)) =>
+            lookupIndex(clsName, fInfo, flip(symb), l)
+        case _ => None
+    }
+
+    def lookupIndex(clsName: String, fInfo: FieldInfo, symb: String, l: Literal[_]): Option[java.util.Set[Id]] = {
+        if (fInfo.traitName != null || fInfo.isReverse || l.value == null || l.dataType != fInfo.attrInfo.dataType()) {
+            return None
+        }
+        val index = repo.getIndex(clsName, fInfo.attrInfo.name)
+        if (index == null) {
+            return None
+        }
+        val v = l.value.asInstanceOf[AnyRef]
+        symb match {
+            case "=" => Some(index.lookup(v))
+            case ">" if index.isSorted => Some(index.lookupRange(v, false, null, false))
+            case ">=" if index.isSorted => Some(index.lookupRange(v, true, null, false))
+            case "<" if index.isSorted => Some(index.lookupRange(null, false, v, false))
+            case "<=" if index.isSorted => Some(index.lookupRange(null, false, v, true))
+            case _ => None
+        }
+    }
+
+    def flip(symb: String) = symb match {
+        case ">" => "<"
+        case ">=" => "<="
+        case "<" => ">"
+        case "<=" => ">="
+        case x => x
+    }
+
+    def compare(c: ComparisonExpression, l: Any, r: Any): Boolean = {
+        val cmp = (l, r) match {
+            case (a: Number, b: Number) => bigDecimal(a).compareTo(bigDecimal(b))
+            case (a: String, b: String) => a.compareTo(b)
+            case (a: java.util.Date, b: java.util.Date) => a.compareTo(b)
+            case (a, b) if c.symbol == "=" || c.symbol == "!=" => if (a == b) 0 else 1
+            case _ => throw new ExpressionException(c, s"Cannot compare $l and $r")
+        }
+        c.symbol match {
+            case "=" => cmp == 0
+            case "!=" => cmp != 0
+            case ">" => cmp > 0
+            case ">=" => cmp >= 0
+            case "<" => cmp < 0
+            case "<=" => cmp <= 0
+            case _ => throw new ExpressionException(c, "Comparison operator not supported")
+        }
+    }
+
+    def arithmetic(a: ArithmeticExpression, l: Any, r: Any): Any = (l, r) match {
+        case (x: Number, y: Number) => {
+            val (bx, by) = (bigDecimal(x), bigDecimal(y))
+            val v = a.symbol match {
+                case "+" => bx.add(by)
+                case "-" => bx.subtract(by)
+                case "*" => bx.multiply(by)
+                case "/" => bx.divide(by, MathContext.DECIMAL128)
+                case _ => throw new ExpressionException(a, "Arithmetic operator not supported")
+            }
+            a.dataType.convert(v, Multiplicity.OPTIONAL)
+        }
+        case _ => throw new ExpressionException(a, s"Cannot apply ${a.symbol} on $l and $r")
+    }
+
+    def bigDecimal(n: Number): java.math.BigDecimal = n match {
+        case b: java.math.BigDecimal => b
+        case b: BigInteger => new java.math.BigDecimal(b)
+        case _: java.lang.Float | _: java.lang.Double => new java.math.BigDecimal(n.doubleValue)
+        case _ => java.math.BigDecimal.valueOf(n.longValue)
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import java.util.concurrent.TimeUnit
+
+import org.apache.commons.configuration.Configuration
+import org.apache.hadoop.metadata.MetadataException
+
+/**
+ * Limits on the evaluation of a query: how long it runs, how many elements its loops
+ * traverse and how many rows it returns. A limit of 0 or less is no limit.
+ */
+case class QueryBudget(timeoutMillis: Long, maxTraversed: Long, maxRows: Long) {
+
+    /**
+     * These limits with the ones asked for by a request in their place. The limits asked for
+     * are capped at the ceiling; a limit that is not asked for, 0 or less, is left as is.
+     */
+    def overriddenBy(timeoutMillis: Long, maxTraversed: Long, maxRows: Long,
+                     ceiling: QueryBudget): QueryBudget = QueryBudget(
+        QueryBudget.limit(this.timeoutMillis, timeoutMillis, ceiling.timeoutMillis),
+        QueryBudget.limit(this.maxTraversed, maxTraversed, ceiling.maxTraversed),
+        QueryBudget.limit(this.maxRows, maxRows, ceiling.maxRows))
+
+    /**
+     * @return the execution of a query under these limits, its clock starts now.
+     */
+    def start(): QueryExecution = new QueryExecution(this)
+}
+
+object QueryBudget {
+
+    val TIMEOUT_PROPERTY = "metadata.query.timeout.ms"
+    val MAX_TRAVERSED_PROPERTY = "metadata.query.max.traversed"
+    val MAX_ROWS_PROPERTY = "metadata.query.max.rows"
+
+    /**
+     * suffix of the properties of the highest limits a request can ask for.
+     */
+    val CEILING_SUFFIX = ".ceiling"
+
+    val UNLIMITED = QueryBudget(0, 0, 0)
+    val DEFAULT = QueryBudget(60000L, 1000000L, 100000L)
+    val DEFAULT_CEILING = QueryBudget(300000L, 10000000L, 1000000L)
+
+    def configured(conf: Configuration): QueryBudget = fromConfiguration(conf, "", DEFAULT)
+
+    def configuredCeiling(conf: Configuration): QueryBudget =
+        fromConfiguration(conf, CEILING_SUFFIX, DEFAULT_CEILING)
+
+    private def fromConfiguration(conf: Configuration, suffix: String, default: QueryBudget) =
+        QueryBudget(conf.getLong(TIMEOUT_PROPERTY + suffix, default.timeoutMillis),
+            conf.getLong(MAX_TRAVERSED_PROPERTY + suffix, default.maxTraversed),
+            conf.getLong(MAX_ROWS_PROPERTY + suffix, default.maxRows))
+
+    private def limit(current: Long, asked: Long, ceiling: Long): Long = {
+        if (asked <= 0) current
+        else if (ceiling <= 0) asked
+        else Math.min(asked, ceiling)
+    }
+}
+
+class QueryBudgetExceededException(message: String) extends MetadataException(message)
+
+/**
+ * Tracks a query against its [[QueryBudget]]. The evaluation calls back as it goes: for each
+ * element traversed by a loop, bound as `__execution` in gremlin scripts, and for each
+ * row; a call fails once a limit is exceeded or the execution is cancelled, which stops the
+ * query at that point.
+ *
+ * The counts are kept by the thread evaluating the query; it can be cancelled from any thread.
+ */
+class QueryExecution(val budget: QueryBudget) {
+
+    private val deadline =
+        if (budget.timeoutMillis > 0) System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.timeoutMillis)
+        else 0L
+
+    private var traversedCount = 0L
+    private var rowCount = 0L
+
+    @volatile private var cancelled = false
+
+    def cancel(): Unit = {
+        cancelled = true
+    }
+
+    def isCancelled: Boolean = cancelled
+
+    /**
+     * @return the milliseconds left before the query times out, Long.MaxValue if it doesn't.
+     */
+    def remainingMillis: Long =
+        if (deadline == 0L) Long.MaxValue
+        else Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))
+
+    @throws(classOf[QueryBudgetExceededException])
+    def traversed(): Unit = {
+        traversedCount += 1
+        if (budget.maxTraversed > 0 && traversedCount > budget.maxTraversed) {
+            throw new QueryBudgetExceededException(
+                s"Query traversed more than ${budget.maxTraversed} elements")
+        }
+        check()
+    }
+
+    @throws(classOf[QueryBudgetExceededException])
+    def row(): Unit = {
+        rowCount += 1
+        if (budget.maxRows > 0 && rowCount > budget.maxRows) {
+            throw new QueryBudgetExceededException(s"Query returned more than ${budget.maxRows} rows")
+        }
+        check()
+    }
+
+    @throws(classOf[QueryBudgetExceededException])
+    def check(): Unit = {
+        if (cancelled) {
+            throw new QueryBudgetExceededException("Query was cancelled")
+        }
+        if (deadline != 0L && System.nanoTime() - deadline > 0) {
+            throw new QueryBudgetExceededException(s"Query timed out after ${budget.timeoutMillis} ms")
+        }
+    }
+
+    def getTraversedCount: Long = traversedCount
+
+    def getRowCount: Long = rowCount
+
+    override def toString = s"QueryExecution{budget=$budget, traversed=$traversedCount, rows=$rowCount}"
+}
+
+object QueryExecution {
+
+    /**
+     * name of the execution in the bindings of a gremlin script.
+     */
+    val BINDING = "__execution"
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import org.apache.hadoop.metadata.query.Expressions._
+import org.apache.hadoop.metadata.typesystem.types.DataTypes.TypeCategory
+import org.json4s._
+import org.json4s.native.JsonMethods._
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Rewrites resolved expressions so that comparisons on indexed attributes of a Class are
+ * answered from the graph's indexes instead of filtering every instance of the Class.
+ *
+ * A filter over a Class is split into the comparisons of an indexed primitive attribute with
+ * a literal, which become an [[IndexedClassExpression]], and the rest of the condition, which
+ * stays a filter. The indexed comparisons are ordered by expected selectivity: equality on a
+ * unique attribute, then other equalities, then ranges. They are translated to `has` steps in
+ * that order ahead of the type predicate; consecutive `has` steps at the start of a traversal
+ * are folded into a single graph query, which Titan answers from its indexes.
+ *
+ * The rewrite only reorders filter steps, so it is also applied where the Class is not at the
+ * start of the traversal.
+ *
+ * An orderby on an indexed primitive attribute over the instances of a Class, possibly looked
+ * up by indexed comparisons, is read in order from the mixed index by the translation.
+ */
+object QueryOptimizer {
+
+    /**
+     * comparisons that can be answered from a mixed index.
+     */
+    val INDEXED_COMPARISONS = Set("=", "<", "<=", ">", ">=")
+
+    def optimize(e: Expression): Expression = e.transformUp(pushIndexedPredicates)
+
+    val pushIndexedPredicates: PartialFunction[Expression, Expression] = {
+        case f@FilterExpression(src, condExpr) if isIndexSource(src) =>
+            val conjuncts = condExpr match {
+                case LogicalExpression("and", children) => children
+                case c: ComparisonExpression => List(c)
+                case _ => Nil
+            }
+            val (indexed, rest) = conjuncts.partition(isIndexed)
+            if (indexed.isEmpty) {
+                f
+            } else {
+                val predicates = indexed.map(_.asInstanceOf[ComparisonExpression])
+                val indexedSrc = src match {
+                    case c: ClassExpression => IndexedClassExpression(c, order(predicates))
+                    case IndexedClassExpression(c, p) => IndexedClassExpression(c, order(p ++ predicates))
+                }
+                if (rest.isEmpty) indexedSrc else FilterExpression(indexedSrc, new LogicalExpression("and", rest))
+            }
+    }
+
+    private def isIndexSource(e: Expression) = e.isInstanceOf[ClassExpression] || e.isInstanceOf[IndexedClassExpression]
+
+    def isIndexed(e: Expression): Boolean = e match {
+        case ComparisonExpression(symbol, FieldExpression(_, fInfo, None), _: Literal[_]) =>
+            INDEXED_COMPARISONS.contains(symbol) && isIndexedAttribute(fInfo)
+        case _ => false
+    }
+
+    private def isIndexedAttribute(fInfo: TypeUtils.FieldInfo) =
+        fInfo.traitName == null && !fInfo.isReverse && fInfo.attrInfo != null && fInfo.attrInfo.isIndexable &&
+            fInfo.attrInfo.dataType().getTypeCategory == TypeCategory.PRIMITIVE
+
+    /**
+     * whether the rows of an orderby can be read in order from the mixed index.
+     */
+    def isIndexOrdered(o: OrderExpression): Boolean = isIndexSource(o.child) && (o.orderBy match {
+        case FieldExpression(_, fInfo, None) => isIndexedAttribute(fInfo)
+        case _ => false
+    })
+
+    /**
+     * @return the orderby the traversal starts from, if it is read in order from the index.
+     */
+    def indexOrder(e: Expression): Option[OrderExpression] = e match {
+        case o: OrderExpression if isIndexOrdered(o) => Some(o)
+        case _ if e.children.isEmpty => None
+        case _ => indexOrder(e.children.head)
+    }
+
+    private def order(predicates: List[ComparisonExpression]) = predicates.sortBy(selectivity)
+
+    /**
+     * lower is more selective.
+     */
+    def selectivity(c: ComparisonExpression): Int = c match {
+        case ComparisonExpression("=", FieldExpression(_, fInfo, _), _) if fInfo.attrInfo.isUnique => 0
+        case ComparisonExpression("=", _, _) => 1
+        case _ => 2
+    }
+
+    /**
+     * @return the expression a traversal starts from: the leftmost leaf of the expression.
+     */
+    def source(e: Expression): Expression = e match {
+        case i: IndexedClassExpression => i
+        case _ if e.children.isEmpty => e
+        case _ => source(e.children.head)
+    }
+}
+
+/**
+ * How a DSL query is evaluated: the validated expression, the plan the optimizer turned it
+ * into, and the gremlin query the plan is translated to.
+ */
+case class QueryExplanation(expression: Expression, plan: Expression, gremlinQuery: GremlinQuery) {
+
+    def indexedPredicates: List[ComparisonExpression] = {
+        val l = ArrayBuffer[ComparisonExpression]()
+        plan.traverseUp {
+            case IndexedClassExpression(_, predicates) => l ++= predicates
+        }
+        l.toList
+    }
+
+    /**
+     * whether the traversal starts from an index lookup on attributes, rather than from all
+     * the instances of a type.
+     */
+    def startsFromIndex: Boolean = QueryOptimizer.source(plan).isInstanceOf[IndexedClassExpression]
+
+    def toJson: String = pretty(render(JObject(
+        JField("expression", JString(expression.toString)),
+        JField("plan", JString(plan.toString)),
+        JField("planTree", JString(plan.treeString)),
+        JField("startsFromIndex", JBool(startsFromIndex)),
+        JField("indexedPredicates", JArray(indexedPredicates.map(p => JString(p.toString)))),
+        JField("orderedFromIndex", JBool(QueryOptimizer.indexOrder(plan).isDefined)),
+        JField("gremlinQuery", JString(gremlinQuery.queryStr))
+    )))
+}
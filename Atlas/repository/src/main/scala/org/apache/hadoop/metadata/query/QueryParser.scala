@@ -62,6 +62,9 @@ trait QueryKeywords {
     protected val AS = Keyword("as")
     protected val TIMES = Keyword("times")
     protected val WITHPATH = Keyword("withPath")
+    protected val LIMIT = Keyword("limit")
+    protected val OFFSET = Keyword("offset")
+    protected val ORDERBY = Keyword("orderby")
 }
 
 trait ExpressionUtils {
@@ -83,6 +86,28 @@ trait ExpressionUtils {
         input.select(selList: _*)
     }
 
+    def groupBy(input: Expression, g: Option[List[Expression]]) = g match {
+        case Some(l) => input.groupBy(l: _*)
+        case None => input
+    }
+
+    def orderBy(input: Expression, o: Option[(Expression, Boolean)]) = o match {
+        case Some((e, asc)) => input.orderBy(e, asc)
+        case None => input
+    }
+
+    /**
+     * The rows of an aggregate select are ordered after the select, so the orderby can refer to
+     * its columns; other queries are ordered before the select, by fields of the input.
+     */
+    def buildSingleQuery(src: Expression, g: Option[List[Expression]], s: Option[List[(Expression, Option[String])]],
+                    o: Option[(Expression, Boolean)]) = s match {
+        case Some(sel) if g.isDefined || sel.exists(t => containsAggregate(t._1)) =>
+            orderBy(select(groupBy(src, g), sel), o)
+        case Some(sel) => select(orderBy(groupBy(src, g), o), sel)
+        case None => orderBy(groupBy(src, g), o)
+    }
+
     def leftmostId(e: Expression) = {
         var le: IdExpression = null
         e.traverseUp { case i: IdExpression if le == null => le = i}
@@ -117,6 +142,20 @@ class QueryParser extends StandardTokenParsers with QueryKeywords with Expressio
 
     override val lexical = new QueryLexer(queryreservedWords, querydelims)
 
+    /**
+     * a word that is only a keyword where the grammar expects it, so that types and attributes
+     * can still be named count, max, desc etc.
+     */
+    protected def contextualKeyword(word: String): Parser[String] =
+        elem(word, t => t.isInstanceOf[lexical.Identifier] && t.chars.equalsIgnoreCase(word)) ^^^ word
+
+    protected lazy val ASC = contextualKeyword("asc")
+    protected lazy val DESC = contextualKeyword("desc")
+    protected lazy val COUNT = contextualKeyword("count")
+    protected lazy val MIN = contextualKeyword("min")
+    protected lazy val MAX = contextualKeyword("max")
+    protected lazy val SUM = contextualKeyword("sum")
+
     def apply(input: String): Either[NoSuccess, Expression] = {
         phrase(queryWithPath)(new lexical.Scanner(input)) match {
             case Success(r, x) => Right(r)
@@ -125,9 +164,17 @@ class QueryParser extends StandardTokenParsers with QueryKeywords with Expressio
         }
     }
 
-    def queryWithPath = query ~ opt(WITHPATH) ^^ {
-      case q ~ None => q
-      case q ~ p => q.path()
+    def queryWithPath = query ~ opt(WITHPATH) ~ opt(limitClause) ^^ {
+      case q ~ p ~ l =>
+        val q1 = if (p.isDefined) q.path() else q
+        l match {
+          case Some((lmt, off)) => LimitExpression(q1, lmt, off)
+          case None => q1
+        }
+    }
+
+    def limitClause: Parser[(Literal[_], Literal[_])] = LIMIT ~> literal ~ opt(OFFSET ~> literal) ^^ {
+        case l ~ o => (l, o.getOrElse(int(0)))
     }
 
     def query: Parser[Expression] = rep1sep(singleQuery, opt(COMMA)) ^^ { l => l match {
@@ -136,11 +183,10 @@ class QueryParser extends StandardTokenParsers with QueryKeywords with Expressio
     }
     }
 
-    def singleQuery = singleQrySrc ~ opt(loopExpression) ~ opt(selectClause) ^^ {
-        case s ~ None ~ None => s
-        case s ~ l ~ None => loop(s, l.get)
-        case s ~ l ~ sel if l.isDefined => select(loop(s, l.get), sel.get)
-        case s ~ None ~ sel => select(s, sel.get)
+    def singleQuery = singleQrySrc ~ opt(loopExpression) ~ opt(groupByClause) ~ opt(selectClause) ~
+        opt(orderByClause) ^^ {
+        case s ~ None ~ g ~ sel ~ o => buildSingleQuery(s, g, sel, o)
+        case s ~ l ~ g ~ sel ~ o => buildSingleQuery(loop(s, l.get), g, sel, o)
     }
 
     /**
@@ -191,6 +237,12 @@ class QueryParser extends StandardTokenParsers with QueryKeywords with Expressio
         case s ~ cs => cs
     }
 
+    def groupByClause: Parser[List[Expression]] = GROUPBY ~> LPAREN ~> rep1sep(expr, COMMA) <~ RPAREN
+
+    def orderByClause: Parser[(Expression, Boolean)] = ORDERBY ~> expr ~ opt(ASC ^^^ true | DESC ^^^ false) ^^ {
+        case e ~ asc => (e, asc.getOrElse(true))
+    }
+
     def selectExpression: Parser[(Expression, Option[String])] = expr ~ opt(AS ~> alias) ^^ {
         case e ~ a => (e, a)
     }
@@ -223,7 +275,10 @@ class QueryParser extends StandardTokenParsers with QueryKeywords with Expressio
     def multiERight = (STAR | DIV) ~ atomE ^^ { case op ~ r => (op, r)}
 
 
-    def atomE = literal | identifier | LPAREN ~> expr <~ RPAREN
+    def atomE = literal | aggregateE | identifier | LPAREN ~> expr <~ RPAREN
+
+    def aggregateE = COUNT ~ LPAREN ~ RPAREN ^^ { case c ~ l ~ r => new AggregateExpression("count", None)} |
+        (MIN | MAX | SUM) ~ (LPAREN ~> expr <~ RPAREN) ^^ { case f ~ e => new AggregateExpression(f, Some(e))}
 
     def identifier = rep1sep(ident, DOT) ^^ { l => l match {
         case h :: Nil => id(h)
@@ -235,7 +290,7 @@ class QueryParser extends StandardTokenParsers with QueryKeywords with Expressio
 
     def alias = ident | stringLit
 
-    def literal = booleanConstant ^^ {
+    def literal: Parser[Literal[_]] = booleanConstant ^^ {
         boolean(_)
     } |
         intConstant ^^ {
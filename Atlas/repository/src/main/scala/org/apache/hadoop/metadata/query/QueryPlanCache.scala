@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import java.util.concurrent.atomic.AtomicLong
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import org.apache.hadoop.metadata.query.Expressions._
+import org.apache.hadoop.metadata.typesystem.types.{DataTypes, TypeSystem}
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.control.NonFatal
+import scala.util.matching.Regex
+
+/**
+ * Caches the gremlin translation of DSL queries by query shape: the tokens of the query
+ * with its literals left out. A query whose shape was seen before skips parsing,
+ * validation and translation; its literals are bound into the cached plan.
+ *
+ * Plans are only valid for the types they were resolved against. They are keyed on the
+ * version of the type system, plans of earlier versions are never used again and age out;
+ * invalidating the cache when types change frees them early.
+ *
+ * @param persistenceStrategy persistence strategy queries are translated for
+ * @param maxSize             maximum number of plans kept
+ */
+class QueryPlanCache(persistenceStrategy: GraphPersistenceStrategies, maxSize: Long) {
+
+    import QueryPlanCache._
+
+    // parsers are not bound to an input, they are shared to save their set up
+    private val parser = new QueryParser
+    private val planParser = new PlanParser
+
+    private val plans: Cache[String, QueryPlan] =
+        CacheBuilder.newBuilder().maximumSize(maxSize).build[String, QueryPlan]()
+
+    private val hits = new AtomicLong()
+    private val misses = new AtomicLong()
+
+    /**
+     * Translates a DSL query to gremlin.
+     *
+     * @param dslQuery query in DSL format
+     * @return the gremlin query or None if the query cannot be parsed
+     */
+    def translate(dslQuery: String): Option[GremlinQuery] = {
+        val tokens = tokenize(dslQuery)
+        if (tokens.isEmpty) {
+            return parse(dslQuery)
+        }
+
+        val key = s"${TypeSystem.getInstance().getVersion}$TOKEN_SEPARATOR${shape(tokens.get)}"
+        val literals = tokens.get.collect { case (_, t) if isLiteral(t) => t.chars}
+
+        val cached = plans.getIfPresent(key)
+        if (cached != null && cached.matches(literals)) {
+            hits.incrementAndGet()
+            return Some(cached.bind(literals))
+        }
+
+        misses.incrementAndGet()
+        plan(dslQuery, tokens.get) match {
+            case Some(p) =>
+                plans.put(key, p)
+                Some(p.bind(literals))
+            case None => parse(dslQuery)
+        }
+    }
+
+    /**
+     * Translates the query without going through a plan, failures report the query
+     * as written.
+     */
+    private def parse(dslQuery: String): Option[GremlinQuery] = {
+        parser.apply(dslQuery) match {
+            case Right(expression) =>
+                Some(new GremlinTranslator(QueryProcessor.validate(expression), persistenceStrategy).translate())
+            case Left(_) => None
+        }
+    }
+
+    private def plan(dslQuery: String, tokens: List[(Int, parser.lexical.Token)]): Option[QueryPlan] = {
+        val literalTokens = tokens.filter(t => isLiteral(t._2))
+        val ordinals = literalTokens.map(_._1).zipWithIndex.toMap
+
+        try {
+            planParser.apply(dslQuery) match {
+                case Right(expression) =>
+                    val template = new GremlinTranslator(
+                        QueryProcessor.validate(expression), persistenceStrategy).translate()
+
+                    val bound = PLACEHOLDER.findAllMatchIn(template.queryStr).map(_.group(1).toInt).toSet
+                    if (!bound.forall(ordinals.contains)) {
+                        return None
+                    }
+
+                    // literals that did not make it into the gremlin query as a placeholder
+                    // are part of the plan, such as loop counts or aliases
+                    val fixed = literalTokens.collect {
+                        case (offset, t) if !bound.contains(offset) => ordinals(offset) -> t.chars
+                    }.toMap
+                    val types = literalTokens.collect {
+                        case (offset, t) if bound.contains(offset) => offset -> dataType(t)
+                    }.toMap
+
+                    Some(QueryPlan(template, ordinals, fixed, types))
+                case Left(_) => None
+            }
+        } catch {
+            case NonFatal(e) => None
+        }
+    }
+
+    private def tokenize(dslQuery: String): Option[List[(Int, parser.lexical.Token)]] = {
+        val tokens = ArrayBuffer[(Int, parser.lexical.Token)]()
+        var in = new parser.lexical.Scanner(dslQuery)
+        while (!in.atEnd) {
+            if (in.first.isInstanceOf[parser.lexical.ErrorToken]) {
+                return None
+            }
+            tokens += ((in.offset, in.first))
+            in = in.rest
+        }
+        Some(tokens.toList)
+    }
+
+    private def isLiteral(t: parser.lexical.Token) = t match {
+        case _: parser.lexical.StringLit | _: parser.lexical.BooleanLiteral | _: parser.lexical.IntLiteral |
+             _: parser.lexical.LongLiteral | _: parser.lexical.FloatLiteral | _: parser.lexical.DoubleLiteral => true
+        case _ => false
+    }
+
+    // the type QueryParser gives to the literal of a token
+    private def dataType(t: parser.lexical.Token): DataTypes.PrimitiveType[_] = t match {
+        case _: parser.lexical.BooleanLiteral => DataTypes.BOOLEAN_TYPE
+        case _: parser.lexical.IntLiteral => DataTypes.INT_TYPE
+        case _: parser.lexical.LongLiteral => DataTypes.LONG_TYPE
+        case _: parser.lexical.FloatLiteral => DataTypes.FLOAT_TYPE
+        case _: parser.lexical.DoubleLiteral => DataTypes.DOUBLE_TYPE
+        case _ => DataTypes.STRING_TYPE
+    }
+
+    private def shape(tokens: List[(Int, parser.lexical.Token)]): String = {
+        tokens.map { case (_, t) =>
+            if (isLiteral(t)) t.getClass.getSimpleName else s"${t.getClass.getSimpleName}:${t.chars}"
+        }.mkString(TOKEN_SEPARATOR)
+    }
+
+    def invalidateAll(): Unit = plans.invalidateAll()
+
+    def size: Long = plans.size()
+
+    def getHitCount: Long = hits.get()
+
+    def getMissCount: Long = misses.get()
+
+    override def toString = s"QueryPlanCache{size=$size, hits=$getHitCount, misses=$getMissCount}"
+}
+
+object QueryPlanCache {
+
+    val MAX_SIZE_PROPERTY = "metadata.query.dsl.plan.cache.size"
+    val DEFAULT_MAX_SIZE = 1000L
+
+    private val TOKEN_SEPARATOR = "\u0001"
+
+    // see ParameterLiteral.placeholder
+    private val PLACEHOLDER = "\u0000(\\d+)\u0000".r
+
+    /**
+     * Parses literals as [[ParameterLiteral]]s identified by their offset in the query.
+     */
+    private class PlanParser extends QueryParser {
+
+        override def literal: Parser[Literal[_]] = Parser { in =>
+            super.literal(in) match {
+                case Success(l, next) => Success(parameter(l, in.offset), next)
+                case ns: NoSuccess => ns
+            }
+        }
+
+        private def parameter[T](l: Literal[T], offset: Int): Literal[T] =
+            new ParameterLiteral[T](l.dataType, l.rawValue, offset)
+    }
+
+    /**
+     * A translated query with placeholders for its literals.
+     *
+     * @param template gremlin query with literals as placeholders
+     * @param ordinals position of each literal among the literals of the query, by offset
+     * @param fixed    literals the plan was translated with that are not bound, by position
+     * @param types    types of the bound literals, by offset
+     */
+    private case class QueryPlan(template: GremlinQuery, ordinals: Map[Int, Int], fixed: Map[Int, String],
+                                 types: Map[Int, DataTypes.PrimitiveType[_]]) {
+
+        def matches(literals: List[String]): Boolean =
+            fixed.forall { case (ordinal, value) => literals(ordinal) == value}
+
+        def bind(literals: List[String]): GremlinQuery = {
+            def value(offset: Int) = literals(ordinals(offset))
+
+            val queryStr = PLACEHOLDER.replaceAllIn(template.queryStr, { m =>
+                val offset = m.group(1).toInt
+                Regex.quoteReplacement(literal(types(offset), value(offset)).toString)
+            })
+            val expr = template.expr.transformUp {
+                case p: ParameterLiteral[_] => literal(p.dataType, value(p.index))
+            }
+            // the plan was validated with other values, bound values such as limits are checked here
+            expr.dataType
+
+            GremlinQuery(expr, queryStr, template.resultMaping)
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.metadata.query
 
 import com.thinkaurelius.titan.core.TitanGraph
 import org.apache.hadoop.metadata.query.Expressions._
+import org.apache.hadoop.metadata.repository.memory.MemRepository
 
 object QueryProcessor {
 
@@ -35,6 +36,24 @@ object QueryProcessor {
         new GremlinEvaluator(q, gP, g).evaluate()
     }
 
+    /**
+     * Evaluates the query against the stores of a [[MemRepository]], see [[InMemoryEvaluator]].
+     */
+    def evaluate(e: Expression, repo: MemRepository): GremlinQueryResult = {
+        new InMemoryEvaluator(validate(e), repo).evaluate()
+    }
+
+    /**
+     * Explains how a DSL query is evaluated, see [[QueryExplanation]].
+     *
+     * @return the explanation or None if the query cannot be parsed
+     */
+    def explain(dslQuery: String, gP: GraphPersistenceStrategies): Option[QueryExplanation] = {
+        new QueryParser().apply(dslQuery).right.toOption.map { e =>
+            new GremlinTranslator(validate(e), gP).explain()
+        }
+    }
+
     def validate(e: Expression): Expression = {
         val e1 = e.transformUp(new Resolver())
 
@@ -91,8 +91,37 @@ class Resolver(srcExpr: Option[Expression] = None, aliases: Map[String, Expressi
             val r = new Resolver(Some(inputExpr), inputExpr.namedExpressions, true)
             return new LoopExpression(inputExpr, loopExpr.transformUp(r), t)
         }
+        case GroupByExpression(child, groupBy) if child.resolved => {
+            val r = new Resolver(Some(child), child.namedExpressions)
+            return new GroupByExpression(child, groupBy.map {
+                _.transformUp(r)
+            })
+        }
+        case o@OrderExpression(sel: SelectExpression, orderBy, asc)
+            if sel.resolved && sel.isAggregate && !orderBy.isInstanceOf[BackReference] => {
+            /*
+             * an aggregate select is ordered by one of its columns, referred to by its alias,
+             * its expression or, for a column without an alias, the name of the field.
+             */
+            val col = sel.selectListWithAlias.find { aE =>
+                aE.alias == orderBy.toString || aE.child.toString == orderBy.toString
+            }
+            if (col.isDefined) {
+                return new OrderExpression(sel, BackReference(col.get.alias, col.get.child, None), asc)
+            }
+            o
+        }
+        case OrderExpression(child, orderBy, asc) if child.resolved && !isAggregateSelect(child) => {
+            val r = new Resolver(Some(child), child.namedExpressions)
+            return new OrderExpression(child, orderBy.transformUp(r), asc)
+        }
         case x => x
     }
+
+    private def isAggregateSelect(e: Expression) = e match {
+        case sel: SelectExpression => sel.isAggregate
+        case _ => false
+    }
 }
 
 /**
@@ -143,6 +172,15 @@ object FieldValidator extends PartialFunction[Expression, Expression] {
                 _.transformUp(v)
             })
         }
+        case GroupByExpression(child, groupBy) if child.resolved => {
+            val v = validateQualifiedField(child.dataType)
+            return new GroupByExpression(child, groupBy.map {
+                _.transformUp(v)
+            })
+        }
+        case OrderExpression(child, orderBy, asc) if child.resolved => {
+            new OrderExpression(child, orderBy.transformUp(validateQualifiedField(child.dataType)), asc)
+        }
         case l@LoopExpression(inputExpr, loopExpr, t) => {
             val validatedLE = loopExpr.transformUp(validateQualifiedField(inputExpr.dataType))
             val l1 = {
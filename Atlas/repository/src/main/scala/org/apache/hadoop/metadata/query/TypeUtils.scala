@@ -55,6 +55,23 @@ object TypeUtils {
         throw new MetadataException(s"Cannot combine types: ${typ1.getName} and ${typ2.getName}")
     }
 
+    /**
+     * the type of the sum of values of a numeric type: integral values are summed as longs,
+     * floating point values as doubles.
+     */
+    def sumType(typ : IDataType[_]) : PrimitiveType[_] = {
+        if (Seq(DataTypes.BYTE_TYPE, DataTypes.SHORT_TYPE, DataTypes.INT_TYPE, DataTypes.LONG_TYPE).contains(typ)) {
+            return DataTypes.LONG_TYPE
+        }
+        if (typ == DataTypes.FLOAT_TYPE || typ == DataTypes.DOUBLE_TYPE) {
+            return DataTypes.DOUBLE_TYPE
+        }
+        if (numericTypes.contains(typ)) {
+            return typ.asInstanceOf[PrimitiveType[_]]
+        }
+        throw new MetadataException(s"Cannot sum values of type: ${typ.getName}")
+    }
+
     var tempStructCounter : AtomicInteger = new AtomicInteger(0)
     val TEMP_STRUCT_NAME_PREFIX = "__tempQueryResultStruct"
     def createStructType(selectExprs : List[Expressions.AliasExpression]) : StructType = {
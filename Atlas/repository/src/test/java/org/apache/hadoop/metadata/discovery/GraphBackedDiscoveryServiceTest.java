@@ -50,6 +50,9 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
 
 @Guice(modules = RepositoryMetadataModule.class)
 public class GraphBackedDiscoveryServiceTest {
@@ -138,6 +141,132 @@ public class GraphBackedDiscoveryServiceTest {
         Assert.assertEquals(rows.length(), 1);
     }
 
+    @Test
+    public void testStreamSearchByDSL() throws Exception {
+        String dslQuery = "Column as PII";
+
+        StringWriter writer = new StringWriter();
+        discoveryService.searchByDSL(dslQuery, -1, 0, writer);
+        JSONObject streamed = new JSONObject(writer.toString());
+        JSONObject results = new JSONObject(discoveryService.searchByDSL(dslQuery));
+
+        Assert.assertEquals(streamed.getString("query"), results.getString("query"));
+        Assert.assertEquals(streamed.getJSONObject("dataType").getString("typeName"),
+                results.getJSONObject("dataType").getString("typeName"));
+        Assert.assertEquals(streamed.getJSONArray("rows").length(), results.getJSONArray("rows").length());
+        Assert.assertFalse(streamed.has("truncated"));
+    }
+
+    @Test
+    public void testSearchByDSLWithAttributes() throws Exception {
+        StringWriter writer = new StringWriter();
+        discoveryService.searchByDSL("from Department", -1, 0,
+                Arrays.asList("name", "employees"), writer);
+
+        JSONArray rows = new JSONObject(writer.toString()).getJSONArray("rows");
+        Assert.assertEquals(rows.length(), 1);
+        JSONObject row = rows.getJSONObject(0);
+        Assert.assertEquals(row.getString("$typeName$"), "Department");
+        Assert.assertEquals(row.getString("name"), "hr");
+
+        // the composite employees are returned as their ids
+        JSONArray employees = row.getJSONArray("employees");
+        Assert.assertEquals(employees.length(), 2);
+        for (int index = 0; index < employees.length(); index++) {
+            JSONObject employee = employees.getJSONObject(index);
+            Assert.assertNotNull(employee.getString("id"));
+            Assert.assertEquals(employee.getString("$typeName$"), "Person");
+            Assert.assertFalse(employee.has("name"));
+        }
+    }
+
+    @Test
+    public void testSearchByDSLIdsOnly() throws Exception {
+        StringWriter writer = new StringWriter();
+        discoveryService.searchByDSL("from Department", -1, 0,
+                Collections.<String>emptyList(), writer);
+
+        JSONArray rows = new JSONObject(writer.toString()).getJSONArray("rows");
+        Assert.assertEquals(rows.length(), 1);
+        JSONObject row = rows.getJSONObject(0);
+        Assert.assertNotNull(row.getJSONObject("$id$").getString("id"));
+        Assert.assertTrue(row.isNull("name"));
+        Assert.assertTrue(row.isNull("employees"));
+    }
+
+    @Test(expectedExceptions = DiscoveryException.class)
+    public void testSearchByDSLUnknownAttribute() throws Exception {
+        discoveryService.validateDSL("from Department", Arrays.asList("name", "budget"));
+    }
+
+    @Test(expectedExceptions = DiscoveryException.class)
+    public void testSearchByDSLAttributesOfSelect() throws Exception {
+        discoveryService.validateDSL("Department select name", Arrays.asList("name"));
+    }
+
+    @Test
+    public void testSearchByDSLWithinBudget() throws Exception {
+        StringWriter writer = new StringWriter();
+        discoveryService.searchByDSL("Table loop (LoadProcess outputTable)", -1, 0, null,
+                discoveryService.getQueryBudget(10000, 1000, 1000), writer);
+
+        Assert.assertTrue(new JSONObject(writer.toString()).getJSONArray("rows").length() > 0);
+    }
+
+    @Test
+    public void testSearchByDSLTraversedElementsBudget() throws Exception {
+        StringWriter writer = new StringWriter();
+        try {
+            discoveryService.searchByDSL("Table loop (LoadProcess outputTable)", -1, 0, null,
+                    discoveryService.getQueryBudget(0, 1, 0), writer);
+        } catch (DiscoveryException e) {
+            // out of budget before the first row
+            Assert.assertEquals(e.getMessage(), "Query traversed more than 1 elements");
+            Assert.assertEquals(writer.toString(), "");
+            return;
+        }
+        Assert.assertTrue(new JSONObject(writer.toString()).getBoolean("truncated"));
+    }
+
+    @Test
+    public void testSearchByDSLRowsBudget() throws Exception {
+        StringWriter writer = new StringWriter();
+        discoveryService.searchByDSL("Column", -1, 0, null,
+                discoveryService.getQueryBudget(0, 0, 1), writer);
+
+        JSONObject result = new JSONObject(writer.toString());
+        Assert.assertEquals(result.getJSONArray("rows").length(), 1);
+        Assert.assertTrue(result.getBoolean("truncated"));
+    }
+
+    @Test(expectedExceptions = DiscoveryException.class,
+            expectedExceptionsMessageRegExp = "Query returned more than 1 rows")
+    public void testSearchByGremlinRowsBudget() throws Exception {
+        discoveryService.searchByGremlin("g.V.toList()",
+                discoveryService.getQueryBudget(0, 0, 1));
+    }
+
+    @Test(expectedExceptions = DiscoveryException.class,
+            expectedExceptionsMessageRegExp = "Query returned more than 1 rows")
+    public void testSearchByGremlinPipeRowsBudget() throws Exception {
+        discoveryService.searchByGremlin("g.V", discoveryService.getQueryBudget(0, 0, 1));
+    }
+
+    @Test
+    public void testCountByDSLWithinBudget() throws Exception {
+        Assert.assertTrue(discoveryService.countByDSL("Column",
+                discoveryService.getQueryBudget(60000, 0, 0)) > 0);
+    }
+
+    @Test
+    public void testStreamSearchByFullText() throws Exception {
+        StringWriter writer = new StringWriter();
+        discoveryService.searchByFullText("hr", 2, 1, writer);
+
+        JSONArray results = new JSONObject(writer.toString()).getJSONArray("results");
+        Assert.assertEquals(results.length(), 2);
+    }
+
     @Test(expectedExceptions = Throwable.class)
     public void testSearchByDSLBadQuery() throws Exception {
         String dslQuery = "from blah";
@@ -20,8 +20,13 @@ package org.apache.hadoop.metadata.discovery;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.thinkaurelius.titan.core.TitanGraph;
 import org.apache.hadoop.metadata.RepositoryMetadataModule;
+import org.apache.hadoop.metadata.discovery.graph.DefaultGraphPersistenceStrategy;
 import org.apache.hadoop.metadata.discovery.graph.GraphBackedDiscoveryService;
+import org.apache.hadoop.metadata.discovery.graph.LineageIndex;
+import org.apache.hadoop.metadata.repository.MetadataRepository;
+import org.apache.hadoop.metadata.repository.graph.GraphProvider;
 import org.apache.hadoop.metadata.services.DefaultMetadataService;
 import org.apache.hadoop.metadata.typesystem.Referenceable;
 import org.apache.hadoop.metadata.typesystem.TypesDef;
@@ -49,7 +54,9 @@ import org.testng.annotations.Guice;
 import org.testng.annotations.Test;
 
 import javax.inject.Inject;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Unit tests for Hive LineageService.
@@ -66,8 +73,14 @@ public class HiveLineageServiceTest {
     @Inject
     private HiveLineageService hiveLineageService;
 
-//    @Inject
-//    private GraphProvider<TitanGraph> graphProvider;
+    @Inject
+    private GraphProvider<TitanGraph> graphProvider;
+
+    @Inject
+    private MetadataRepository metadataRepository;
+
+    private Id productDim;
+    private Id timeDim;
 
     @BeforeClass
     public void setUp() throws Exception {
@@ -179,6 +192,61 @@ public class HiveLineageServiceTest {
         Assert.assertTrue(paths.length() > 0);
     }
 
+    @Test
+    public void testLineageIndex() throws Exception {
+        LineageIndex lineageIndex = new LineageIndex(graphProvider.get(),
+                new DefaultGraphPersistenceStrategy(metadataRepository),
+                HIVE_TABLE_TYPE, HIVE_PROCESS_TYPE, "inputTables", "outputTables");
+        final int processCount = lineageIndex.rebuild();
+        Assert.assertTrue(processCount >= 2);
+
+        assertSameLineage(lineageIndex.getInputs(
+                hiveLineageService.inputsQuery("sales_fact_monthly_mv"), "sales_fact_monthly_mv").toJson(),
+                hiveLineageService.getInputs("sales_fact_monthly_mv"));
+        assertSameLineage(lineageIndex.getOutputs(
+                hiveLineageService.outputsQuery("sales_fact"), "sales_fact").toJson(),
+                hiveLineageService.getOutputs("sales_fact"));
+
+        // maintained as processes are added
+        metadataService.registerListener(lineageIndex);
+        try {
+            loadProcess("loadTimeDim", "John ETL",
+                    ImmutableList.of(productDim), ImmutableList.of(timeDim),
+                    "create table as select ", "plan", "id", "graph",
+                    "ETL");
+        } finally {
+            metadataService.unregisterListener(lineageIndex);
+        }
+        Assert.assertEquals(lineageIndex.getProcessCount(), processCount + 1);
+
+        Set<String> inputs = assertSameLineage(lineageIndex.getInputs(
+                hiveLineageService.inputsQuery("sales_fact_monthly_mv"), "sales_fact_monthly_mv").toJson(),
+                hiveLineageService.getInputs("sales_fact_monthly_mv"));
+        Assert.assertTrue(inputs.contains("product_dim"));
+        assertSameLineage(lineageIndex.getOutputs(
+                hiveLineageService.outputsQuery("product_dim"), "product_dim").toJson(),
+                hiveLineageService.getOutputs("product_dim"));
+    }
+
+    private Set<String> assertSameLineage(String indexed, String traversed) throws Exception {
+        Set<String> indexedTables = destinations(indexed);
+        Assert.assertEquals(indexedTables, destinations(traversed));
+        return indexedTables;
+    }
+
+    private Set<String> destinations(String lineage) throws Exception {
+        JSONArray rows = new JSONObject(lineage).getJSONArray("rows");
+        Set<String> tables = new HashSet<>();
+        for (int index = 0; index < rows.length(); index++) {
+            final JSONObject row = rows.getJSONObject(index);
+            Assert.assertTrue(row.getJSONArray("path").length() >= 3);
+            tables.add(row.getJSONObject("result").getString("dest_name"));
+        }
+
+        Assert.assertEquals(tables.size(), rows.length());
+        return tables;
+    }
+
     @DataProvider(name = "tableNamesProvider")
     private Object[][] tableNames() {
         return new String[][] {
@@ -358,7 +426,7 @@ public class HiveLineageServiceTest {
             column("weekDay", "int", "week Day")
         );
 
-        Id timeDim = table("time_dim", "time dimension table",
+        timeDim = table("time_dim", "time dimension table",
                 salesDB, sd, "John Doe", "External", timeDimColumns, "Dimension");
 
         Id reportingDB = database("Reporting", "reporting database", "Jane BI",
@@ -379,7 +447,7 @@ public class HiveLineageServiceTest {
             column("brand_name", "int", "brand name")
         );
 
-        Id productDim = table("product_dim", "product dimension table",
+        productDim = table("product_dim", "product dimension table",
                 salesDB, sd, "John Doe", "Managed", productDimColumns, "Dimension");
 
         view("product_dim_view", reportingDB,
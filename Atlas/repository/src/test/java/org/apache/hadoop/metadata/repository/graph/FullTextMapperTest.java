@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.graph;
+
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.hadoop.metadata.TestUtils;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.Referenceable;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class FullTextMapperTest {
+
+    private ITypedReferenceableInstance john;
+    private Map<Id, ITypedReferenceableInstance> instances;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        TypeSystem typeSystem = TypeSystem.getInstance();
+        typeSystem.reset();
+        TestUtils.defineDeptEmployeeTypes(typeSystem);
+
+        Referenceable hrDept = new Referenceable("Department");
+        hrDept.set("name", "hr");
+
+        Referenceable johnAddr = new Referenceable("Address");
+        johnAddr.set("street", "Stewart Drive");
+        johnAddr.set("city", "Sunnyvale");
+
+        Referenceable johnRef = new Referenceable("Person");
+        johnRef.set("name", "John");
+        johnRef.set("department", hrDept);
+        johnRef.set("address", johnAddr);
+
+        ClassType deptType = typeSystem.getDataType(ClassType.class, "Department");
+        ITypedReferenceableInstance dept = deptType.convert(hrDept, Multiplicity.REQUIRED);
+
+        ClassType personType = typeSystem.getDataType(ClassType.class, "Person");
+        john = personType.convert(johnRef, Multiplicity.REQUIRED);
+
+        instances = new HashMap<>();
+        instances.put(dept.getId(), dept);
+        instances.put(john.getId(), john);
+    }
+
+    @Test
+    public void testFullTextFollowsReferencesInMemory() throws Exception {
+        FullTextMapper mapper = new FullTextMapper(null, new BaseConfiguration());
+        String fullText = mapper.getFullText(john, instances, new HashMap<Id, Vertex>());
+
+        Assert.assertTrue(fullText.contains("name John"));
+        Assert.assertTrue(fullText.contains("city Sunnyvale"));
+        Assert.assertTrue(fullText.contains("department  name hr"));
+    }
+
+    @Test
+    public void testFullTextAttributeWhitelist() throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty(FullTextMapper.ATTRIBUTES_PROPERTY_PREFIX + "Person", "name");
+
+        FullTextMapper mapper = new FullTextMapper(null, configuration);
+        Assert.assertEquals(
+                mapper.getFullText(john, instances, new HashMap<Id, Vertex>()), " name John");
+    }
+
+    @Test
+    public void testFullTextMaxSize() throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty(FullTextMapper.MAX_SIZE_PROPERTY, 8);
+
+        FullTextMapper mapper = new FullTextMapper(null, configuration);
+        Assert.assertEquals(
+                mapper.getFullText(john, instances, new HashMap<Id, Vertex>()).length(), 8);
+    }
+}
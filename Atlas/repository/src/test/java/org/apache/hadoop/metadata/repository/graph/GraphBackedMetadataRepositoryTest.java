@@ -26,7 +26,9 @@ import com.tinkerpop.blueprints.Vertex;
 import org.apache.hadoop.metadata.RepositoryMetadataModule;
 import org.apache.hadoop.metadata.TestUtils;
 import org.apache.hadoop.metadata.repository.Constants;
+import org.apache.hadoop.metadata.repository.EntityBatchResult;
 import org.apache.hadoop.metadata.repository.RepositoryException;
+import org.apache.hadoop.metadata.typesystem.IReferenceableInstance;
 import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
 import org.apache.hadoop.metadata.typesystem.ITypedStruct;
 import org.apache.hadoop.metadata.typesystem.Referenceable;
@@ -51,6 +53,7 @@ import scala.actors.threadpool.Arrays;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -116,6 +119,24 @@ public class GraphBackedMetadataRepositoryTest {
         Assert.assertNotNull(entity);
     }
 
+    @Test(dependsOnMethods = "testSubmitEntity")
+    public void testGetEntityDefinitionFromGuidCache() throws Exception {
+        GuidVertexCache guidVertexCache = repositoryService.getGuidVertexCache();
+        final long hits = guidVertexCache.getHitCount();
+        final long misses = guidVertexCache.getMissCount();
+
+        // the guid of a created entity is cached on commit
+        ITypedReferenceableInstance entity = repositoryService.getEntityDefinition(guid);
+        Assert.assertNotNull(entity);
+        Assert.assertEquals(guidVertexCache.getHitCount(), hits + 1);
+        Assert.assertEquals(guidVertexCache.getMissCount(), misses);
+
+        guidVertexCache.invalidate(guid);
+        entity = repositoryService.getEntityDefinition(guid);
+        Assert.assertNotNull(entity);
+        Assert.assertEquals(guidVertexCache.getMissCount(), misses + 1);
+    }
+
     @Test (expectedExceptions = RepositoryException.class)
     public void testGetEntityDefinitionNonExistent() throws Exception {
         repositoryService.getEntityDefinition("blah");
@@ -130,6 +151,17 @@ public class GraphBackedMetadataRepositoryTest {
         Assert.assertEquals(entityList.size(), 1); // one department
     }
 
+    @Test (dependsOnMethods = "testSubmitEntity")
+    public void testGetEntityListRange() throws Exception {
+        List<String> entityList = repositoryService.getEntityList(ENTITY_TYPE, 1, 0);
+        Assert.assertEquals(entityList.size(), 1);
+
+        entityList = repositoryService.getEntityList(ENTITY_TYPE, 10, 1);
+        Assert.assertTrue(entityList.isEmpty());
+
+        Assert.assertEquals(repositoryService.getEntityCount(ENTITY_TYPE), 1);
+    }
+
     @Test
     public void testGetTypeAttributeName() throws Exception {
         Assert.assertEquals(
@@ -165,6 +197,35 @@ public class GraphBackedMetadataRepositoryTest {
         System.out.println("added table = " + tableGUID);
     }
 
+    @Test
+    public void testCreateEntities() throws Exception {
+        ClassType dbType = typeSystem.getDataType(ClassType.class, DATABASE_TYPE);
+
+        List<IReferenceableInstance> entities = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            Referenceable databaseInstance = new Referenceable(DATABASE_TYPE);
+            databaseInstance.set("name", "batch_db_" + index);
+            databaseInstance.set("description", "batch database " + index);
+            entities.add(dbType.convert(databaseInstance, Multiplicity.REQUIRED));
+        }
+        // an entity of an unknown type fails on its own
+        entities.add(1, new Referenceable("unknown_type"));
+
+        EntityBatchResult result = repositoryService.createEntities(entities);
+        Assert.assertEquals(result.size(), 4);
+        Assert.assertTrue(result.hasFailures());
+        Assert.assertEquals(result.getFailures().keySet(), Collections.singleton(1));
+        Assert.assertNull(result.getGuid(1));
+
+        for (int index : new int[]{0, 2, 3}) {
+            String dbGUID = result.getGuid(index);
+            Assert.assertNotNull(dbGUID);
+
+            ITypedReferenceableInstance db = repositoryService.getEntityDefinition(dbGUID);
+            Assert.assertEquals(db.getTypeName(), DATABASE_TYPE);
+        }
+    }
+
     @Test(dependsOnMethods = "testCreateEntity")
     public void testGetEntityDefinition() throws Exception {
         String guid = getGUID();
@@ -42,12 +42,14 @@ import org.apache.hadoop.metadata.typesystem.types.StructTypeDefinition;
 import org.apache.hadoop.metadata.typesystem.types.TraitType;
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
 import org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil;
+import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Guice;
 import org.testng.annotations.Test;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Test
@@ -67,6 +69,7 @@ public class GraphRepoMapperScaleTest {
     private GraphBackedSearchIndexer searchIndexer;
     private TypeSystem typeSystem;
     private String dbGUID;
+    private Referenceable dbInstance;
 
     @BeforeClass
     public void setUp() throws Exception {
@@ -89,7 +92,7 @@ public class GraphRepoMapperScaleTest {
 
         dbGUID = repositoryService.createEntity(db);
 
-        Referenceable dbInstance = new Referenceable(
+        dbInstance = new Referenceable(
                 dbGUID, DATABASE_TYPE, databaseInstance.getValuesMap());
 
         for (int index = 0; index < 1000; index++) {
@@ -98,6 +101,35 @@ public class GraphRepoMapperScaleTest {
         }
     }
 
+    @Test(dependsOnMethods = "testSubmitEntity")
+    public void testSubmitWideEntity() throws Exception {
+        final int columnCount = 2000;
+        long columnsBefore = countVertices("hive_column_type");
+
+        ITypedReferenceableInstance table =
+                createHiveTableInstance(dbInstance, 1000, columnCount);
+        String guid = repositoryService.createEntity(table);
+
+        // every new column is mapped to the id it was stored with, and written once
+        Assert.assertEquals(countVertices("hive_column_type") - columnsBefore, columnCount);
+
+        ITypedReferenceableInstance stored = repositoryService.getEntityDefinition(guid);
+        List columns = (List) stored.get("columns");
+        Assert.assertEquals(columns.size(), columnCount);
+        for (Object column : columns) {
+            Assert.assertTrue(((ITypedReferenceableInstance) column).getId().isAssigned());
+        }
+    }
+
+    private long countVertices(String typeName) {
+        long count = 0;
+        for (Vertex ignored : graphProvider.get().query()
+                .has(Constants.ENTITY_TYPE_PROPERTY_KEY, typeName).vertices()) {
+            count++;
+        }
+        return count;
+    }
+
     @Test(dependsOnMethods = "testSubmitEntity")
     public void testSearchIndex() throws Exception {
         searchWithOutIndex(Constants.GUID_PROPERTY_KEY, dbGUID);
@@ -224,6 +256,11 @@ public class GraphRepoMapperScaleTest {
 
     private ITypedReferenceableInstance createHiveTableInstance(
             Referenceable databaseInstance, int uberIndex) throws Exception {
+        return createHiveTableInstance(databaseInstance, uberIndex, 5);
+    }
+
+    private ITypedReferenceableInstance createHiveTableInstance(
+            Referenceable databaseInstance, int uberIndex, int columnCount) throws Exception {
 
         Referenceable tableInstance = new Referenceable(TABLE_TYPE, "pii_type");
         tableInstance.set("name", TABLE_NAME + "-" + uberIndex);
@@ -250,7 +287,7 @@ public class GraphRepoMapperScaleTest {
         tableInstance.set("serde2", serde2Instance);
 
         ArrayList<Referenceable> columns = new ArrayList<>();
-        for (int index = 0; index < 5; index++) {
+        for (int index = 0; index < columnCount; index++) {
             Referenceable columnInstance = new Referenceable("hive_column_type");
             columnInstance.set("name", "column_" + "-" + uberIndex + "-" + index);
             columnInstance.set("type", "string");
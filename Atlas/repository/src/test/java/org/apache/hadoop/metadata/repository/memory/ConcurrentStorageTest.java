@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.repository.BaseTest;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Use the MemRepository from several threads: every thread creates, reads, updates and
+ * deletes its own Departments, so the threads only share the Class and Trait Stores.
+ */
+public class ConcurrentStorageTest extends BaseTest {
+
+    static final int THREADS = 4;
+    static final int OPS_PER_THREAD = 100;
+
+    @Before
+    public void setup() throws Exception {
+        super.setup();
+        defineDeptEmployeeTypes(getTypeSystem());
+    }
+
+    @Test
+    public void testConcurrentOps() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runOps();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : results) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * - create a Department with its 2 employees.
+     * - read back, update and read back the Manager.
+     * - delete every other Department's employees, so positions are recycled.
+     */
+    private void runOps() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        for (int i = 0; i < OPS_PER_THREAD; i++) {
+            ITypedReferenceableInstance dept = getRepository().create(createDeptEg1(ts));
+            Assert.assertEquals(getRepository().get(dept.getId()).get("name"), "hr");
+
+            Id managerId = managerId(dept);
+            ITypedReferenceableInstance manager = getRepository().get(managerId);
+            Assert.assertEquals(manager.get("name"), "Jane");
+            manager.set("name", "Jane " + i);
+            getRepository().update(manager);
+            Assert.assertEquals(getRepository().get(managerId).get("name"), "Jane " + i);
+
+            if (i % 2 == 0) {
+                for (Object e : (List) dept.get("employees")) {
+                    Id id = (Id) e;
+                    getRepository().delete(getRepository().get(id));
+                }
+            }
+        }
+    }
+
+    private Id managerId(ITypedReferenceableInstance dept) throws MetadataException {
+        for (Object e : (List) dept.get("employees")) {
+            Id id = (Id) e;
+            if (id.className.equals("Manager")) {
+                return id;
+            }
+        }
+        throw new AssertionError("No Manager in " + dept.getId());
+    }
+}
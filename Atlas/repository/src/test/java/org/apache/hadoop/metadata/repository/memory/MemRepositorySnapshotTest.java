@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.repository.BaseTest;
+import org.apache.hadoop.metadata.repository.RepositoryException;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class MemRepositorySnapshotTest extends BaseTest {
+
+    File file;
+
+    @Before
+    public void setup() throws Exception {
+        super.setup();
+        defineDeptEmployeeTypes(getTypeSystem());
+        file = File.createTempFile("memrepo", ".snapshot");
+    }
+
+    @After
+    public void teardown() {
+        file.delete();
+    }
+
+    @Test
+    public void testSnapshotRestore() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        ITypedReferenceableInstance hrDept = getRepository().create(createDeptEg1(ts));
+        ITypedReferenceableInstance hrDept2 = getRepository().create(createDeptEg1(ts));
+        getRepository().delete(getRepository().get(new Id(2, 0, "Person")));
+        ((MemRepository) getRepository()).snapshot(file);
+
+        MemRepository restored = new MemRepository(ts);
+        Assert.assertEquals(restored.restore(file), 5);
+        Assert.assertEquals(restored.get(hrDept2.getId()).toString(),
+                getRepository().get(hrDept2.getId()).toString());
+        Assert.assertEquals(restored.get(new Id(3, 0, "Manager")).toString(),
+                getRepository().get(new Id(3, 0, "Manager")).toString());
+        Assert.assertEquals(restored.getInstanceIds("Person").size(), 3);
+        Assert.assertEquals(restored.getInstanceIds("SecurityClearance").size(), 2);
+
+        /*
+         * new Ids continue after the restored ones.
+         */
+        ITypedReferenceableInstance hrDept3 = restored.create(createDeptEg1(ts));
+        Assert.assertTrue(Integer.parseInt(hrDept3.getId()._getId())
+                > Integer.parseInt(hrDept2.getId()._getId()));
+    }
+
+    @Test
+    public void testRestoreNotEmpty() throws MetadataException {
+        ((MemRepository) getRepository()).snapshot(file);
+        try {
+            ((MemRepository) getRepository()).restore(file);
+            Assert.fail("Expected restore into a non empty repository to fail");
+        } catch (RepositoryException re) {
+            Assert.assertEquals(re.getMessage(),
+                    "A snapshot can only be restored into an empty repository");
+        }
+    }
+
+    @Test
+    public void testVersion() throws MetadataException, IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(MemRepositorySnapshot.MAGIC);
+            out.writeInt(MemRepositorySnapshot.VERSION + 1);
+        }
+        try {
+            new MemRepository(getTypeSystem()).restore(file);
+            Assert.fail("Expected an unsupported version to fail");
+        } catch (RepositoryException re) {
+            Assert.assertTrue(re.getMessage(), re.getMessage().startsWith("Unsupported snapshot version"));
+        }
+    }
+}
@@ -18,12 +18,14 @@
 
 package org.apache.hadoop.metadata.repository.memory;
 
+import com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.repository.BaseTest;
 import org.apache.hadoop.metadata.repository.RepositoryException;
 import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
 import org.apache.hadoop.metadata.typesystem.Referenceable;
 import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
 import org.junit.Assert;
 import org.junit.Before;
@@ -124,4 +126,109 @@ public class StorageTest extends BaseTest {
                 "\t\tlevel : \t\t1\n" +
                 "\t}}");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUpdate() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        defineDeptEmployeeTypes(ts);
+
+        Referenceable hrDept = createDeptEg1(ts);
+        getRepository().create(hrDept);
+
+        Id m1Id = new Id(3, 0, "Manager");
+        ITypedReferenceableInstance m1 = getRepository().get(m1Id);
+        m1.set("name", "Jane Doe");
+        getRepository().update(m1);
+        Assert.assertEquals(getRepository().get(m1Id).get("name"), "Jane Doe");
+
+        /*
+         * drop the SecurityClearance trait.
+         */
+        ClassType managerType = ts.getDataType(ClassType.class, "Manager");
+        ITypedReferenceableInstance m2 = managerType.createInstance(m1Id);
+        for (String attrName : new String[]{"name", "department", "manager", "subordinates"}) {
+            m2.set(attrName, m1.get(attrName));
+        }
+        getRepository().update(m2);
+        ITypedReferenceableInstance m3 = getRepository().get(m1Id);
+        Assert.assertTrue(m3.getTraits().isEmpty());
+        Assert.assertEquals(m3.get("name"), "Jane Doe");
+
+        MemRepository memRepository = (MemRepository) getRepository();
+        Assert.assertEquals(memRepository.getStore("SecurityClearance").idPosMap.size(), 0);
+    }
+
+    @Test
+    public void testDelete() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        defineDeptEmployeeTypes(ts);
+
+        getRepository().create(createDeptEg1(ts));
+
+        Id e1Id = new Id(2, 0, "Person");
+        getRepository().delete(getRepository().get(e1Id));
+        try {
+            getRepository().get(e1Id);
+            Assert.fail("Expected deleted Instance to be unknown");
+        } catch (RepositoryException re) {
+            Assert.assertEquals(re.getCause().getMessage(),
+                    "Invalid Id (unknown) : (type: Person, id: 2)");
+        }
+
+        /*
+         * the freed positions are reused by the next Instances created.
+         */
+        MemRepository memRepository = (MemRepository) getRepository();
+        int nextPos = memRepository.getStore("Person").nextPos;
+        getRepository().delete(getRepository().get(new Id(3, 0, "Manager")));
+        getRepository().create(createDeptEg1(ts));
+        Assert.assertEquals(memRepository.getStore("Person").nextPos, nextPos);
+    }
+
+    @Test
+    public void testIndexes() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        repo = new MemRepository(ts, true);
+        defineDeptEmployeeTypes(ts);
+
+        getRepository().create(createDeptEg1(ts));
+        MemRepository memRepository = (MemRepository) getRepository();
+        IAttributeIndex nameIndex = memRepository.getIndex("Manager", "name");
+        Id m1Id = new Id(3, 0, "Manager");
+        Assert.assertTrue(nameIndex.isSorted());
+        Assert.assertEquals(nameIndex.lookup("Jane"), ImmutableSet.of(m1Id));
+        Assert.assertEquals(nameIndex.lookupRange("John", true, null, false),
+                ImmutableSet.of(new Id(2, 0, "Person")));
+
+        ITypedReferenceableInstance m1 = getRepository().get(m1Id);
+        m1.set("name", "Jane Doe");
+        getRepository().update(m1);
+        Assert.assertTrue(nameIndex.lookup("Jane").isEmpty());
+        Assert.assertEquals(nameIndex.lookup("Jane Doe"), ImmutableSet.of(m1Id));
+
+        getRepository().delete(getRepository().get(m1Id));
+        Assert.assertTrue(nameIndex.lookup("Jane Doe").isEmpty());
+    }
+
+    @Test
+    public void testDictionaryEncodedStrings() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        repo = new MemRepository(ts, false, ImmutableSet.of("Person.name"));
+        defineDeptEmployeeTypes(ts);
+
+        getRepository().create(createDeptEg1(ts));
+        getRepository().create(createDeptEg1(ts));
+        Assert.assertEquals(getRepository().get(new Id(2, 0, "Person")).get("name"), "John");
+        Assert.assertEquals(getRepository().get(new Id(3, 0, "Manager")).get("name"), "Jane");
+        Assert.assertEquals(getRepository().get(new Id(6, 0, "Manager")).get("name"), "Jane");
+
+        /*
+         * 4 Persons share 2 names; the Department names stay on the heap.
+         */
+        StoreStatistics stats = ((MemRepository) getRepository()).getStatistics();
+        Assert.assertEquals(stats.getEncodedStrings(), 4);
+        Assert.assertEquals(stats.getDictionaryEntries(), 2);
+        Assert.assertEquals(stats.getHeapStrings(), 2);
+        Assert.assertEquals(stats.getInstanceCounts().get("Person").intValue(), 4);
+    }
+}
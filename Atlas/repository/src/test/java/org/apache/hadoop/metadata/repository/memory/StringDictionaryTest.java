@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.repository.memory;
+
+import org.apache.hadoop.metadata.repository.RepositoryException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void testEncode() throws Exception {
+        StringDictionary d = new StringDictionary();
+        int c1 = d.encode("varchar");
+        int c2 = d.encode("int");
+        Assert.assertEquals(d.encode(new String("varchar")), c1);
+        Assert.assertTrue(c1 != c2);
+        Assert.assertEquals(d.decode(c1), "varchar");
+        Assert.assertEquals(d.decode(d.encode("")), "");
+        Assert.assertEquals(d.decode(d.encode("d\u00e9j\u00e0 vu")), "d\u00e9j\u00e0 vu");
+        Assert.assertEquals(d.size(), 4);
+    }
+
+    /*
+     * enough Strings to grow the buffer and the table several times.
+     */
+    @Test
+    public void testGrow() throws Exception {
+        StringDictionary d = new StringDictionary();
+        int n = 20000;
+        int[] codes = new int[n];
+        for (int i = 0; i < n; i++) {
+            codes[i] = d.encode("column_" + i);
+        }
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(d.encode("column_" + i), codes[i]);
+            Assert.assertEquals(d.decode(codes[i]), "column_" + i);
+        }
+        Assert.assertEquals(d.size(), n);
+        Assert.assertTrue(d.offHeapBytes() > StringDictionary.INITIAL_CAPACITY);
+    }
+
+    @Test
+    public void testCapacityPastOneGigabyte() throws Exception {
+        int gigabyte = 1 << 30;
+        Assert.assertEquals(StringDictionary.newCapacity(64, 60, 10), 128);
+        Assert.assertEquals(StringDictionary.newCapacity(gigabyte, gigabyte - 10, 100),
+                Integer.MAX_VALUE);
+    }
+
+    @Test(expected = RepositoryException.class)
+    public void testFullDictionary() throws Exception {
+        StringDictionary.newCapacity(Integer.MAX_VALUE, Integer.MAX_VALUE - 10, 100);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.services;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class EntityDefinitionCacheTest {
+
+    private static final String GUID = "3f4a6e1c-0f1e-4d4b-9b7a-1a2b3c4d5e6f";
+    private static final String DEFINITION = "{\"id\":\"" + GUID + "\"}";
+    private static final String COLUMN_GUID = "7c1d2e3f-4a5b-4c6d-8e9f-0a1b2c3d4e5f";
+    private static final String COLUMN_DEFINITION = "{\"id\":\"" + COLUMN_GUID + "\"}";
+
+    @Test
+    public void testReadThrough() throws Exception {
+        EntityDefinitionCache cache = new EntityDefinitionCache(new BaseConfiguration());
+
+        Assert.assertNull(cache.get(GUID));
+        cache.put(GUID, DEFINITION, cache.getGeneration());
+        Assert.assertEquals(cache.get(GUID), DEFINITION);
+
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void testInvalidatedOnTraitChanges() throws Exception {
+        EntityDefinitionCache cache = new EntityDefinitionCache(new BaseConfiguration());
+
+        cache.put(GUID, DEFINITION, cache.getGeneration());
+        cache.onTraitAdded(GUID, "PII");
+        Assert.assertNull(cache.get(GUID));
+
+        cache.put(GUID, DEFINITION, cache.getGeneration());
+        cache.onTraitDeleted(GUID, "PII");
+        Assert.assertNull(cache.get(GUID));
+
+        Assert.assertEquals(cache.getInvalidationCount(), 2);
+    }
+
+    @Test
+    public void testInlinedEntityChangeInvalidatesDefinition() throws Exception {
+        EntityDefinitionCache cache = new EntityDefinitionCache(new BaseConfiguration());
+
+        // a table and the column inlined in its definition
+        cache.put(GUID, DEFINITION, ImmutableSet.of(COLUMN_GUID), cache.getGeneration());
+        cache.put(COLUMN_GUID, COLUMN_DEFINITION, cache.getGeneration());
+
+        cache.onTraitAdded(COLUMN_GUID, "PII");
+        Assert.assertNull(cache.get(COLUMN_GUID));
+        Assert.assertNull(cache.get(GUID));
+
+        // the table read again is registered again
+        cache.put(GUID, DEFINITION, ImmutableSet.of(COLUMN_GUID), cache.getGeneration());
+        cache.invalidate(COLUMN_GUID);
+        Assert.assertNull(cache.get(GUID));
+    }
+
+    @Test
+    public void testStaleReadIsNotCached() throws Exception {
+        EntityDefinitionCache cache = new EntityDefinitionCache(new BaseConfiguration());
+
+        final long generation = cache.getGeneration();
+        cache.invalidate(GUID); // entity changes while its definition is being read
+        cache.put(GUID, DEFINITION, generation);
+
+        Assert.assertNull(cache.get(GUID));
+    }
+
+    @Test
+    public void testEvictedBySize() throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty(EntityDefinitionCache.MAX_BYTES_PROPERTY, 16);
+        EntityDefinitionCache cache = new EntityDefinitionCache(configuration);
+
+        cache.put(GUID, DEFINITION, cache.getGeneration());
+        Assert.assertNull(cache.get(GUID));
+    }
+}
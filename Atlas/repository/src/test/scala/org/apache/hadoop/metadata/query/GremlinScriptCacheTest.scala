@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import org.junit.{Assert, Test}
+
+class GremlinScriptCacheTest {
+
+    @Test def testLiteralsAreBound {
+        val p1 = GremlinScriptCache.parameterize("""g.V.has("typeName","DB").has("DB.name", T.eq, "Sales").toList()""")
+        val p2 = GremlinScriptCache.parameterize("""g.V.has("typeName","DB").has("DB.name", T.eq, "Reporting").toList()""")
+
+        Assert.assertEquals("g.V.has(__lit0,__lit1).has(__lit2, T.eq, __lit3).toList()", p1.script)
+        Assert.assertEquals(p1.script, p2.script)
+        Assert.assertEquals("Reporting", p2.literals("__lit3"))
+    }
+
+    @Test def testPropertyNamesAndKeysStayInline {
+        val p = GremlinScriptCache.parameterize("""g.V.filter{it.object.'typeName' == 'DB'}.map(['name': "x\"y"])""")
+
+        Assert.assertEquals("""g.V.filter{it.object.'typeName' == __lit0}.map(['name': __lit1])""", p.script)
+        Assert.assertEquals("x\"y", p.literals("__lit1"))
+    }
+
+    @Test def testUnsafeQueriesAreNotParameterized {
+        val slashy = """g.V.filter{it.name ==~ /a"b/}.toList()"""
+        Assert.assertEquals(slashy, GremlinScriptCache.parameterize(slashy).script)
+
+        val interpolated = "g.V.has(\"name\", \"${x}\").toList()"
+        Assert.assertEquals("g.V.has(__lit0, \"${x}\").toList()",
+            GremlinScriptCache.parameterize(interpolated).script)
+    }
+
+    @Test def testEnginesAreReplacedOnceTheyCompiledAFullCache {
+        val cache = new GremlinScriptCache(1, 2)
+        Assert.assertEquals(2, cache.eval("1 + 1", null))
+        Assert.assertEquals(2, cache.eval("1 + 1", null))
+        Assert.assertEquals(1L, cache.getGenerationCount)
+
+        Assert.assertEquals(3, cache.eval("1 + 2", null))
+        Assert.assertEquals(2L, cache.getGenerationCount)
+        Assert.assertEquals(0L, cache.size)
+
+        Assert.assertEquals(4, cache.eval("1 + 3", null))
+        Assert.assertEquals(2L, cache.getGenerationCount)
+        Assert.assertEquals(1L, cache.size)
+    }
+}
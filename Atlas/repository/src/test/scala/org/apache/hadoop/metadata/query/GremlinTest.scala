@@ -18,9 +18,12 @@
 
 package org.apache.hadoop.metadata.query
 
-import com.thinkaurelius.titan.core.TitanGraph
+import com.thinkaurelius.titan.core.{TitanGraph, TitanVertex}
+import org.apache.hadoop.metadata.MetadataException
 import org.apache.hadoop.metadata.query.Expressions._
-import org.apache.hadoop.metadata.typesystem.types.TypeSystem
+import org.apache.hadoop.metadata.typesystem.ITypedInstance
+import org.apache.hadoop.metadata.typesystem.persistence.Id
+import org.apache.hadoop.metadata.typesystem.types.{ClassType, TypeSystem}
 import org.junit.runner.RunWith
 import org.scalatest._
 import Matchers._
@@ -143,4 +146,67 @@ class GremlinTest extends FunSuite with BeforeAndAfterAll with BaseGremlinTest {
       val e = p("from blah").right.get
       an [ExpressionException] should be thrownBy QueryProcessor.evaluate(e, g)
     }
+
+    def query(q: String) = QueryProcessor.evaluate(new QueryParser().apply(q).right.get, g)
+
+    def column(r: GremlinQueryResult, c: String) = r.rows.map(_.asInstanceOf[ITypedInstance].get(c))
+
+    test("testGroupByCount") {
+        val r = query("""Table groupby(db.name) select db.name as dbName, count() as n orderby n desc""")
+        column(r, "dbName") should equal(List("Sales", "Reporting"))
+        column(r, "n") should equal(List(4L, 2L))
+    }
+
+    test("testAggregates") {
+        val r = query("""DB select count() as n, min(createTime) as first, max(createTime) as last,
+                        | sum(createTime) as total""".stripMargin)
+        r.rows.size should equal(1)
+        val row = r.rows.head.asInstanceOf[ITypedInstance]
+        row.get("n") should equal(2L)
+        row.get("first") should equal(1000)
+        row.get("last") should equal(1500)
+        row.get("total") should equal(2500L)
+    }
+
+    test("testOrderByIndexedAttributeLimit") {
+        column(query("""DB orderby createTime desc limit 1"""), "name") should equal(List("Reporting"))
+        column(query("""DB orderby createTime limit 1"""), "name") should equal(List("Sales"))
+        column(query("""DB where owner = "Jane BI" orderby createTime desc limit 10"""), "name") should
+            equal(List("Reporting"))
+    }
+
+    test("testProjectedReferencesAreIds") {
+        val e = QueryProcessor.validate(new QueryParser().apply("""LoadProcess where name = "loadSalesDaily"""").right.get)
+        val q = new GremlinTranslator(e, GraphPersistenceStrategy1).translate()
+        val projection = ResultProjection.forQuery(q, java.util.Arrays.asList("name", "inputTables", "outputTable"))
+        val r = new GremlinEvaluator(q, GraphPersistenceStrategy1, g, projection = projection).evaluate()
+
+        r.rows.size should equal(1)
+        val row = r.rows.head.asInstanceOf[ITypedInstance]
+        row.get("name") should equal("loadSalesDaily")
+        row.get("outputTable") shouldBe an [Id]
+        val inputTables = row.get("inputTables").asInstanceOf[java.util.List[_]]
+        inputTables.size should equal(2)
+        all (inputTables.toArray) shouldBe an [Id]
+    }
+
+    test("testProjectedUnsetReferences") {
+        val cType = TypeSystem.getInstance().getDataType(classOf[ClassType], "LoadProcess")
+        val v = g.addVertex(null).asInstanceOf[TitanVertex]
+        try {
+            v.setProperty("typeName", "LoadProcess")
+            v.setProperty("name", "noTables")
+
+            val i = GraphPersistenceStrategy1.constructProjectedInstance(cType, v,
+                java.util.Arrays.asList("name", "inputTables", "outputTable"))
+            i.get("name") should equal("noTables")
+            i.get("inputTables") should be(null)
+            i.get("outputTable") should be(null)
+
+            a [MetadataException] should be thrownBy GraphPersistenceStrategy1.constructProjectedInstance(
+                cType, v, java.util.Arrays.asList("owner"))
+        } finally {
+            g.rollback()
+        }
+    }
 }
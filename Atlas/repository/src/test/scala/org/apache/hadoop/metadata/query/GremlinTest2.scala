@@ -113,4 +113,22 @@ class GremlinTest2 extends FunSuite with BeforeAndAfterAll with BaseGremlinTest
     validateJson(r)
   }
 
-}
\ No newline at end of file
+  test("testLimit") {
+    val e = new QueryParser().apply("DB limit 1 offset 1").right.get
+    val r = QueryProcessor.evaluate(e, g)
+    r.rows.size should equal(1)
+  }
+
+  test("testRangeAndCount") {
+    val e = QueryProcessor.validate(new QueryParser().apply("Table select name").right.get)
+    val q = new GremlinTranslator(e, GraphPersistenceStrategy1).translate()
+
+    val r = new GremlinEvaluator(q.range(2, 1), GraphPersistenceStrategy1, g).evaluate()
+    r.rows.size should equal(2)
+
+    val count = GremlinScriptCache.instance.eval(q.countQueryStr, g)
+    count.asInstanceOf[Number].longValue should equal(new GremlinEvaluator(q, GraphPersistenceStrategy1, g)
+      .evaluate().rows.size)
+  }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import com.google.common.collect.ImmutableList
+import org.apache.hadoop.metadata.query.Expressions._
+import org.apache.hadoop.metadata.repository.memory.MemRepository
+import org.apache.hadoop.metadata.typesystem.persistence.Id
+import org.apache.hadoop.metadata.typesystem.types.{HierarchicalType, TypeSystem}
+import org.apache.hadoop.metadata.typesystem.{ITypedInstance, ITypedReferenceableInstance, Referenceable}
+import org.junit.runner.RunWith
+import org.scalatest._
+import Matchers._
+import org.scalatest.junit.JUnitRunner
+
+import scala.collection.JavaConversions._
+
+@RunWith(classOf[JUnitRunner])
+class InMemoryEvaluatorTest extends FunSuite with BeforeAndAfterAll {
+
+    var repo: MemRepository = null
+
+    override def beforeAll() {
+        TypeSystem.getInstance().reset()
+        QueryTestsUtils.setupTypes
+        val ts = TypeSystem.getInstance()
+        repo = new MemRepository(ts, true)
+        repo.defineTypes(List("Dimension", "PII", "Metric", "ETL", "JdbcAccess",
+            "DB", "StorageDesc", "Column", "Table", "LoadProcess", "View").map { nm =>
+            ts.getDataType(classOf[HierarchicalType[_ <: HierarchicalType[_ <: AnyRef, _], _]], nm)
+        })
+        createInstances
+    }
+
+    def create(r: Referenceable): Id = repo.create(r).getId
+
+    def createInstances {
+        def db(name: String, owner: String, createTime: Int) = {
+            val r = new Referenceable("DB")
+            r.set("name", name)
+            r.set("owner", owner)
+            r.set("createTime", createTime)
+            create(r)
+        }
+
+        def table(name: String, dbId: Id, traits: String*) = {
+            val sd = new Referenceable("StorageDesc")
+            sd.set("inputFormat", "TextInputFormat")
+            sd.set("outputFormat", "TextOutputFormat")
+            val r = new Referenceable("Table", traits: _*)
+            r.set("name", name)
+            r.set("db", dbId)
+            r.set("sd", create(sd))
+            create(r)
+        }
+
+        def loadProcess(name: String, inputTables: List[Id], outputTable: Id) = {
+            val r = new Referenceable("LoadProcess")
+            r.set("name", name)
+            r.set("inputTables", ImmutableList.copyOf(inputTables.toArray))
+            r.set("outputTable", outputTable)
+            create(r)
+        }
+
+        val salesDB = db("Sales", "John ETL", 1000)
+        val salesFact = table("sales_fact", salesDB)
+        val timeDim = table("time_dim", salesDB, "Dimension")
+        val customerDim = table("customer_dim", salesDB, "Dimension")
+
+        val reportingDB = db("Reporting", "Jane BI", 1500)
+        val dailyMV = table("sales_fact_daily_mv", reportingDB)
+        val monthlyMV = table("sales_fact_monthly_mv", reportingDB)
+
+        loadProcess("loadSalesDaily", List(salesFact, timeDim), dailyMV)
+        loadProcess("loadSalesMonthly", List(dailyMV), monthlyMV)
+    }
+
+    def evaluate(e: Expression) = QueryProcessor.evaluate(e, repo)
+
+    def names(r: GremlinQueryResult) = r.rows.map(_.asInstanceOf[ITypedInstance].get("name"))
+
+    test("testClass") {
+        names(evaluate(_class("DB"))) should contain theSameElementsAs List("Sales", "Reporting")
+    }
+
+    test("testFieldValue") {
+        evaluate(_class("DB").field("name")).rows should contain theSameElementsAs List("Sales", "Reporting")
+    }
+
+    test("testIndexedFilter") {
+        repo.getIndex("DB", "name") should not be null
+        val r = evaluate(_class("DB").where(id("name").`=`(string("Reporting"))))
+        names(r) should equal(List("Reporting"))
+        r.rows.head.asInstanceOf[ITypedInstance].get("owner") should equal("Jane BI")
+    }
+
+    test("testIndexedRange") {
+        names(evaluate(_class("DB").where(id("createTime") > int(1000)))) should equal(List("Reporting"))
+        names(evaluate(_class("DB").where(int(1500) >= id("createTime")))) should contain theSameElementsAs
+            List("Sales", "Reporting")
+    }
+
+    test("testComparisonLogical") {
+        names(evaluate(_class("DB").where(id("name").`=`(string("Reporting")).
+            and(id("createTime") > int(1500))))) should equal(Nil)
+        names(evaluate(_class("DB").where(id("name").`=`(string("Reporting")).
+            or(id("createTime") < int(1500))))) should contain theSameElementsAs List("Sales", "Reporting")
+    }
+
+    test("testSelect") {
+        val r = evaluate(_class("DB").where(id("name").`=`(string("Reporting"))).
+            select(id("name"), id("createTime") + int(1)))
+        r.rows.size should equal(1)
+        val row = r.rows.head.asInstanceOf[ITypedInstance]
+        row.get("_col_0") should equal("Reporting")
+        row.get("_col_1") should equal(1501)
+    }
+
+    test("testIsTrait") {
+        names(evaluate(_class("Table").where(isTrait("Dimension")))) should contain theSameElementsAs
+            List("time_dim", "customer_dim")
+    }
+
+    test("testFieldReference") {
+        names(evaluate(_class("DB").where(id("name").`=`(string("Reporting"))).field("Table"))) should
+            contain theSameElementsAs List("sales_fact_daily_mv", "sales_fact_monthly_mv")
+    }
+
+    test("testBackReference") {
+        val r = evaluate(_class("DB").as("db").field("Table").where(id("db").field("name").`=`(string("Sales"))))
+        names(r) should contain theSameElementsAs List("sales_fact", "time_dim", "customer_dim")
+    }
+
+    test("testLoop") {
+        val e = new QueryParser().apply("Table where name = \"sales_fact\" loop (LoadProcess outputTable)").right.get
+        names(evaluate(e)) should contain theSameElementsAs List("sales_fact_daily_mv", "sales_fact_monthly_mv")
+    }
+
+    test("testLimit") {
+        evaluate(LimitExpression(_class("Table"), int(2), int(1))).rows.size should equal(2)
+    }
+
+    test("testShallowLoad") {
+        val r = evaluate(_class("Table").where(id("name").`=`(string("sales_fact"))))
+        r.rows.head.asInstanceOf[ITypedReferenceableInstance].get("db") shouldBe an[Id]
+    }
+
+    def query(q: String) = evaluate(new QueryParser().apply(q).right.get)
+
+    def column(r: GremlinQueryResult, c: String) = r.rows.map(_.asInstanceOf[ITypedInstance].get(c))
+
+    test("testGroupByCount") {
+        val r = query("""Table groupby(db.name) select db.name as dbName, count() as n orderby n desc""")
+        column(r, "dbName") should equal(List("Sales", "Reporting"))
+        column(r, "n") should equal(List(3L, 2L))
+    }
+
+    test("testAggregates") {
+        val r = query("""DB select count() as n, min(createTime) as first, max(createTime) as last,
+                        | sum(createTime) as total""".stripMargin)
+        r.rows.size should equal(1)
+        val row = r.rows.head.asInstanceOf[ITypedInstance]
+        row.get("n") should equal(2L)
+        row.get("first") should equal(1000)
+        row.get("last") should equal(1500)
+        row.get("total") should equal(2500L)
+    }
+
+    test("testOrderByLimit") {
+        names(query("""DB orderby createTime desc limit 1""")) should equal(List("Reporting"))
+        query("""Table orderby name select name""").rows.map(_.asInstanceOf[ITypedInstance].get("_col_0")) should
+            equal(List("customer_dim", "sales_fact", "sales_fact_daily_mv", "sales_fact_monthly_mv", "time_dim"))
+    }
+}
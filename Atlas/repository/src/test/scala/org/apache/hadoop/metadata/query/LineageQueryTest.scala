@@ -20,6 +20,7 @@ package org.apache.hadoop.metadata.query
 
 import com.thinkaurelius.titan.core.TitanGraph
 import org.apache.hadoop.metadata.query.Expressions._
+import org.apache.hadoop.metadata.typesystem.ITypedStruct
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem
 import org.junit.runner.RunWith
 import org.scalatest.junit.JUnitRunner
@@ -512,4 +513,28 @@ class LineageQueryTest extends FunSuite with BeforeAndAfterAll {
   ]
 }""")
     }
-}
\ No newline at end of file
+
+    def destNames(r: GremlinQueryResult) = r.rows.map { row =>
+        row.asInstanceOf[ITypedStruct].get(TypeUtils.ResultWithPathStruct.resultAttrName).
+            asInstanceOf[ITypedStruct].get("dest_name")
+    }.toSet
+
+    test("testLineageTraversal") {
+        val q = HiveLineageQuery("Table", "sales_fact_monthly_mv", "LoadProcess", "inputTables", "outputTable",
+            None, Some(List("name")), true, GraphPersistenceStrategy1, g)
+
+        val traversed = q.traverse(-1)
+        Assertions.assert(traversed.rows.nonEmpty)
+        Assertions.assert(destNames(traversed) == destNames(q.evaluate()))
+        Assertions.assert(traversed.rows.size == destNames(traversed).size)
+
+        Assertions.assert(q.traverse(1).rows.size == 1)
+    }
+
+    test("testWhereUsedTraversal") {
+        val q = HiveWhereUsedQuery("Table", "sales_fact", "LoadProcess", "inputTables", "outputTable",
+            None, Some(List("name")), true, GraphPersistenceStrategy1, g)
+
+        Assertions.assert(destNames(q.traverse(-1)) == destNames(q.evaluate()))
+    }
+}
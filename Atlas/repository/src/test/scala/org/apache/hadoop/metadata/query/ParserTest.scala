@@ -98,4 +98,16 @@ class ParserTest extends BaseTest {
       )
     }
 
+    @Test def testLimit: Unit = {
+      val p = new QueryParser
+      println(p("DB where name = \"Reporting\" limit 10 offset 5").right.get.toString)
+      println(p("Table loop (LoadProcess outputTable) withPath limit 10").right.get.toString)
+    }
+
+    @Test def testAggregateWordsAreNotReserved: Unit = {
+      val p = new QueryParser
+      println(p("Table select count(), max(created) orderby name desc").right.get.toString)
+      println(p("Table where count = 1 select count, Desc orderby max").right.get.toString)
+    }
+
 }
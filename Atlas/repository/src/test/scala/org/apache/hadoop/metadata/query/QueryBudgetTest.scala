@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import org.junit.{Assert, Test}
+
+class QueryBudgetTest {
+
+    val budget = QueryBudget(1000L, 100L, 10L)
+    val ceiling = QueryBudget(5000L, 500L, 0L)
+
+    @Test def testOverridesAreCappedAtTheCeiling {
+        Assert.assertEquals(budget, budget.overriddenBy(0L, 0L, 0L, ceiling))
+        Assert.assertEquals(QueryBudget(2000L, 500L, 10L), budget.overriddenBy(2000L, 800L, -1L, ceiling))
+        Assert.assertEquals(QueryBudget(1000L, 100L, 1000000L), budget.overriddenBy(0L, 0L, 1000000L, ceiling))
+    }
+
+    @Test def testRowsAreCounted {
+        val execution = QueryBudget(0L, 0L, 2L).start()
+        execution.row()
+        execution.row()
+        try {
+            execution.row()
+            Assert.fail()
+        } catch {
+            case e: QueryBudgetExceededException => Assert.assertEquals(3L, execution.getRowCount)
+        }
+    }
+
+    @Test def testTraversedElementsAreCounted {
+        val execution = QueryBudget(0L, 1L, 0L).start()
+        execution.traversed()
+        try {
+            execution.traversed()
+            Assert.fail()
+        } catch {
+            case e: QueryBudgetExceededException =>
+        }
+    }
+
+    @Test def testCancelledExecutionFails {
+        val execution = QueryBudget.UNLIMITED.start()
+        execution.check()
+        Assert.assertEquals(Long.MaxValue, execution.remainingMillis)
+
+        execution.cancel()
+        try {
+            execution.row()
+            Assert.fail()
+        } catch {
+            case e: QueryBudgetExceededException => Assert.assertTrue(execution.isCancelled)
+        }
+    }
+
+    @Test def testTimedOutExecutionFails {
+        val execution = QueryBudget(1L, 0L, 0L).start()
+        Thread.sleep(10)
+        Assert.assertEquals(0L, execution.remainingMillis)
+        try {
+            execution.check()
+            Assert.fail()
+        } catch {
+            case e: QueryBudgetExceededException =>
+        }
+    }
+}
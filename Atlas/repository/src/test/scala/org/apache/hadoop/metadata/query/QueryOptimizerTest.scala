@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import com.google.common.collect.ImmutableList
+import org.apache.hadoop.metadata.query.Expressions.IndexedClassExpression
+import org.apache.hadoop.metadata.typesystem.types._
+import org.junit.runner.RunWith
+import org.scalatest._
+import Matchers._
+import org.scalatest.junit.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class QueryOptimizerTest extends FunSuite with BeforeAndAfterAll {
+
+    override def beforeAll() {
+        TypeSystem.getInstance().reset()
+        QueryTestsUtils.setupTypes
+
+        val hostClsDef = new HierarchicalTypeDefinition[ClassType](classOf[ClassType], "Host", null,
+            Array(
+                new AttributeDefinition("name", DataTypes.STRING_TYPE.getName, Multiplicity.REQUIRED,
+                    false, true, true, null),
+                new AttributeDefinition("port", DataTypes.INT_TYPE.getName, Multiplicity.OPTIONAL,
+                    false, false, true, null),
+                new AttributeDefinition("comment", DataTypes.STRING_TYPE.getName, Multiplicity.OPTIONAL,
+                    false, false, false, null)
+            ))
+        TypeSystem.getInstance().defineTypes(ImmutableList.of[StructTypeDefinition],
+            ImmutableList.of[HierarchicalTypeDefinition[TraitType]],
+            ImmutableList.of[HierarchicalTypeDefinition[ClassType]](hostClsDef))
+    }
+
+    def explain(q: String): QueryExplanation = QueryProcessor.explain(q, GraphPersistenceStrategy1).get
+
+    test("testIndexedEqualityStartsTheTraversal") {
+        val e = explain("""DB where name = "Reporting"""")
+        e.gremlinQuery.queryStr should equal(
+            """g.V.has("name", T.eq, "Reporting").has("typeName","DB").toList()""")
+        e.plan shouldBe an[IndexedClassExpression]
+        e.startsFromIndex should be(true)
+        e.indexedPredicates.map(_.toString) should equal(List("""(name = "Reporting")"""))
+    }
+
+    test("testPredicatesOrderedBySelectivity") {
+        val e = explain("""Host where (port > 80 and comment = "rack1" and name = "h1")""")
+        e.gremlinQuery.queryStr should equal(
+            """g.V.has("name", T.eq, "h1").has("port", T.gt, 80).has("typeName","Host")""" +
+                """.and(_().has("comment", T.eq, "rack1")).toList()""")
+    }
+
+    test("testNonIndexedPredicatesStayFilters") {
+        val e = explain("""Host where comment = "rack1"""")
+        e.startsFromIndex should be(false)
+        e.indexedPredicates should be(Nil)
+        e.gremlinQuery.queryStr should equal(
+            """g.V.has("typeName","Host").and(_().has("comment", T.eq, "rack1")).toList()""")
+    }
+
+    test("testDisjunctionIsNotPushed") {
+        val e = explain("""DB where (name = "Sales" or createTime > 1000)""")
+        e.indexedPredicates should be(Nil)
+    }
+
+    test("testTraversalFromIndexedSource") {
+        explain("""DB where name = "Sales" Table""").startsFromIndex should be(true)
+        explain("""DB Table""").startsFromIndex should be(false)
+    }
+
+    test("testExpressionIsNotRewritten") {
+        val q = """DB where name = "Reporting" select name"""
+        val e = new QueryParser().apply(q).right.get
+        val unoptimized = QueryProcessor.validate(e)
+        explain(q).gremlinQuery.expr.toString should not include "indexed by"
+        explain(q).expression.toString should equal(unoptimized.toString)
+    }
+
+    test("testExplainJson") {
+        val json = explain("""DB where name = "Reporting" limit 10""").toJson
+        json should include("\"startsFromIndex\":true")
+        json should include("range(0, 0 + 10 - 1)")
+    }
+
+    test("testOrderByIndexedAttributeReadsFromIndex") {
+        val e = explain("""DB where name = "Sales" orderby createTime desc limit 10""")
+        e.gremlinQuery.queryStr should equal(
+            """g.query().has("typeName","DB").has("name", com.tinkerpop.blueprints.Compare.EQUAL, "Sales")""" +
+                """.orderBy("createTime", com.thinkaurelius.titan.core.Order.DESC).vertices()._()""" +
+                """.range(0, 0 + 10 - 1).toList()""")
+        e.toJson should include("\"orderedFromIndex\":true")
+    }
+
+    test("testOrderByNonIndexedAttribute") {
+        val e = explain("""Host orderby comment""")
+        e.gremlinQuery.queryStr should equal(
+            """g.V.has("typeName","Host").order{it.a."comment" <=> it.b."comment"}.toList()""")
+        e.toJson should include("\"orderedFromIndex\":false")
+    }
+
+    test("testGroupByCount") {
+        val e = explain("""Table groupby(db.name) select db.name as dbName, count() as n orderby n desc""")
+        e.gremlinQuery.queryStr should equal(
+            """g.V.has("typeName","Table").groupBy{[it.out("Table.db")."name".toList()[0]]}{it}.cap.scatter""" +
+                """.transform{grp -> [grp.key[0],grp.value.size()]}.order{it.b[1] <=> it.a[1]}.toList()""")
+    }
+
+    test("testAggregatesWithoutGroupBy") {
+        val e = explain("""DB select count(), min(createTime), max(createTime), sum(createTime)""")
+        e.gremlinQuery.queryStr should equal(
+            """g.V.has("typeName","DB").aggregate().cap.transform{rows -> [rows.size(),""" +
+                """rows.collect{it."createTime"}.findAll{it != null}.min(),""" +
+                """rows.collect{it."createTime"}.findAll{it != null}.max(),""" +
+                """rows.collect{it."createTime"}.findAll{it != null}.sum(0L)]}.toList()""")
+    }
+
+    test("testSelectListOfGroupByMustBeGroupedOrAggregated") {
+        val e = new QueryParser().apply("""DB groupby(owner) select name, count()""").right.get
+        an[Expressions.ExpressionException] should be thrownBy QueryProcessor.validate(e)
+    }
+}
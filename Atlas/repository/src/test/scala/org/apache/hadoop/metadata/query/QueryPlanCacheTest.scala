@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.query
+
+import org.apache.hadoop.metadata.query.Expressions.ExpressionException
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem
+import org.junit.runner.RunWith
+import org.scalatest._
+import Matchers._
+import org.scalatest.junit.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class QueryPlanCacheTest extends FunSuite with BeforeAndAfterAll {
+
+    override def beforeAll() {
+        TypeSystem.getInstance().reset()
+        QueryTestsUtils.setupTypes
+    }
+
+    def translate(q: String): GremlinQuery = {
+        val e = new QueryParser().apply(q).right.get
+        new GremlinTranslator(QueryProcessor.validate(e), GraphPersistenceStrategy1).translate()
+    }
+
+    def assertSameTranslation(cache: QueryPlanCache, q: String) {
+        val cached = cache.translate(q).get
+        val translated = translate(q)
+        cached.queryStr should equal(translated.queryStr)
+        cached.expr.toString should equal(translated.expr.toString)
+    }
+
+    test("testLiteralsAreRebound") {
+        val cache = new QueryPlanCache(GraphPersistenceStrategy1, 10)
+        assertSameTranslation(cache, """DB where name = "Reporting"""")
+        assertSameTranslation(cache, """DB where name = "Sales"""")
+        assertSameTranslation(cache, """DB where (name = "Sales" and createTime > 1000) select name""")
+        assertSameTranslation(cache, """DB where (name = "Reporting" and createTime > 1200) select name""")
+
+        cache.size should equal(2)
+        cache.getHitCount should equal(2)
+    }
+
+    test("testLoopCountIsPartOfThePlan") {
+        val cache = new QueryPlanCache(GraphPersistenceStrategy1, 10)
+        assertSameTranslation(cache, """Table loop (LoadProcess outputTable) 2 times""")
+        assertSameTranslation(cache, """Table loop (LoadProcess outputTable) 3 times""")
+
+        cache.getHitCount should equal(0)
+    }
+
+    test("testLimitIsRebound") {
+        val cache = new QueryPlanCache(GraphPersistenceStrategy1, 10)
+        assertSameTranslation(cache, """DB select name limit 10 offset 5""")
+        assertSameTranslation(cache, """DB select name limit 20 offset 0""")
+
+        cache.getHitCount should equal(1)
+    }
+
+    test("testInvalidLimitIsRejectedWhenBound") {
+        val cache = new QueryPlanCache(GraphPersistenceStrategy1, 10)
+        cache.translate("""DB limit 10""")
+        an [ExpressionException] should be thrownBy cache.translate("""DB limit 0""")
+    }
+
+    test("testInvalidQuery") {
+        val cache = new QueryPlanCache(GraphPersistenceStrategy1, 10)
+        cache.translate("DB where") should equal(None)
+        cache.size should equal(0)
+    }
+}
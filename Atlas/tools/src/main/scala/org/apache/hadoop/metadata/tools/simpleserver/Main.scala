@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.metadata.tools.simpleserver
 
+import java.io.File
+
 import akka.actor.{ActorSystem, Props}
 import akka.io.IO
 import com.typesafe.config.ConfigFactory
@@ -37,11 +39,14 @@ import spray.can.Http
  *
  *              pbpaste | http PUT localhost:9140/createInstance
  *              pbpaste | http GET localhost:9140/getInstance
+ *              http GET localhost:9140/query dsl='Department where name = "hr"'
+ *              http PUT localhost:9140/snapshot
  *          }}}
  *
  *          - On the Mac, pbpaste makes available what is copied to clipboard. Copy contents of resources/sampleTypes.json
  *          - for createInstance resources/sampleInstance.json is an example
  *          - for getInstance send an Id back, you can copy the output from createInstance.
+ *          - the repository is restored from memRepository.snapshot on start, if it exists.
  *
  */
 object Main extends App {
@@ -52,8 +57,12 @@ object Main extends App {
     implicit val system = ActorSystem("metadataservice")
 
     val typSys = TypeSystem.getInstance()
-    val memRepo = new MemRepository(typSys)
+    val memRepo = new MemRepository(typSys, true)
+    val snapshot = new File(config.getString("memRepository.snapshot"))
+    if (snapshot.exists()) {
+        memRepo.restore(snapshot)
+    }
 
-    val api = system.actorOf(Props(new RestInterface(typSys, memRepo)), "httpInterface")
+    val api = system.actorOf(Props(new RestInterface(typSys, memRepo, snapshot)), "httpInterface")
     IO(Http) ! Http.Bind(listener = api, interface = host, port = port)
 }
@@ -18,9 +18,12 @@
 
 package org.apache.hadoop.metadata.tools.simpleserver
 
+import java.io.File
+
 import akka.actor._
 import akka.util.Timeout
 import com.google.common.collect.ImmutableList
+import org.apache.hadoop.metadata.query.{QueryParser, QueryProcessor}
 import org.apache.hadoop.metadata.repository.memory.MemRepository
 import org.apache.hadoop.metadata.typesystem.json._
 import org.apache.hadoop.metadata.typesystem.persistence.Id
@@ -30,6 +33,7 @@ import org.json4s.{Formats, NoTypeHints}
 import spray.httpx.Json4sSupport
 
 import scala.concurrent.duration._
+import scala.util.control.NonFatal
 
 
 class MetadataActor(val typeSystem: TypeSystem, val memRepository: MemRepository) extends Actor with ActorLogging {
@@ -79,6 +83,27 @@ class MetadataActor(val typeSystem: TypeSystem, val memRepository: MemRepository
         case GetInstance(id) =>
             val r = memRepository.get(id)
             sender ! InstanceDetails(r)
+
+        case Snapshot(file) =>
+            try {
+                memRepository.snapshot(file)
+                sender ! SnapshotWritten
+            } catch {
+                case NonFatal(ex) => sender ! Status.Failure(ex)
+            }
+
+        case Query(dsl) =>
+            new QueryParser().apply(dsl) match {
+                case Right(e) =>
+                    // a failed query is answered, not left to restart the actor and time out the ask
+                    try {
+                        sender ! QueryResult(QueryProcessor.evaluate(e, memRepository).toJson)
+                    } catch {
+                        case NonFatal(ex) => sender ! Status.Failure(ex)
+                    }
+                case Left(f) =>
+                    sender ! Status.Failure(new IllegalArgumentException(s"Invalid query: ${f.msg}"))
+            }
     }
 
 }
@@ -105,6 +130,14 @@ object MetadataProtocol {
 
     case class InstanceDetails(i: ITypedReferenceableInstance)
 
+    case class Snapshot(file: File)
+
+    case object SnapshotWritten
+
+    case class Query(dsl: String)
+
+    case class QueryResult(json: String)
+
 }
 
 
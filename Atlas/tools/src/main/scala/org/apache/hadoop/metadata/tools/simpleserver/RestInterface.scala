@@ -18,13 +18,15 @@
 
 package org.apache.hadoop.metadata.tools.simpleserver
 
+import java.io.File
+
 import akka.actor._
 import akka.util.Timeout
 import org.apache.hadoop.metadata.repository.memory.MemRepository;
 import org.apache.hadoop.metadata.typesystem.{TypesDef, ITypedReferenceableInstance}
 import org.apache.hadoop.metadata.typesystem.persistence.Id
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem
-import spray.http.StatusCodes
+import spray.http.{ContentTypes, HttpEntity, HttpResponse, StatusCodes}
 import spray.routing._
 import scala.concurrent.duration._
 
@@ -51,10 +53,23 @@ class Responder(val typeSystem: TypeSystem, val memRepository : MemRepository,
 
         case InstanceDetails(i) =>
             requestContext.complete(StatusCodes.OK, i)
+
+        case SnapshotWritten =>
+            requestContext.complete(StatusCodes.OK)
+            self ! PoisonPill
+
+        case QueryResult(json) =>
+            requestContext.complete(HttpResponse(StatusCodes.OK, HttpEntity(ContentTypes.`application/json`, json)))
+            self ! PoisonPill
+
+        case Status.Failure(e) =>
+            requestContext.complete(StatusCodes.BadRequest, e.getMessage)
+            self ! PoisonPill
     }
 }
 
-class RestInterface(val typeSystem: TypeSystem, val memRepository : MemRepository) extends HttpServiceActor
+class RestInterface(val typeSystem: TypeSystem, val memRepository : MemRepository,
+                    val snapshotFile : File) extends HttpServiceActor
 with RestApi {
     def receive = runRoute(routes)
 }
@@ -67,6 +82,7 @@ trait RestApi extends HttpService with Json4sProtocol with ActorLogging { actor:
 
     val typeSystem : TypeSystem
     val memRepository : MemRepository
+    val snapshotFile : File
 
     implicit val timeout = Timeout(10 seconds)
 
@@ -116,6 +132,20 @@ trait RestApi extends HttpService with Json4sProtocol with ActorLogging { actor:
                         mdSvc.ask(GetInstance(id)).pipeTo(responder)
                     }
                 }
+            } ~
+            path("snapshot") {
+                put { requestContext =>
+                    val responder = createResponder(requestContext)
+                    mdSvc.ask(Snapshot(snapshotFile)).pipeTo(responder)
+                }
+            } ~
+            path("query") {
+                get {
+                    entity(as[Query]) { q => requestContext =>
+                        val responder = createResponder(requestContext)
+                        mdSvc.ask(q).pipeTo(responder)
+                    }
+                }
             }
 
     def createResponder(requestContext:RequestContext) = {
@@ -0,0 +1,628 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.typesystem.binary;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CountingInputStream;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.ITypedInstance;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.persistence.StructInstance;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.DataTypes;
+import org.apache.hadoop.metadata.typesystem.types.EnumType;
+import org.apache.hadoop.metadata.typesystem.types.EnumValue;
+import org.apache.hadoop.metadata.typesystem.types.FieldAccessor;
+import org.apache.hadoop.metadata.typesystem.types.FieldMapping;
+import org.apache.hadoop.metadata.typesystem.types.IConstructableType;
+import org.apache.hadoop.metadata.typesystem.types.IDataType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.apache.hadoop.metadata.typesystem.types.ValueConversionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of typed instances that follows the {@link FieldMapping} layout of
+ * their types: the null flags and the primitive slots of an instance are written as is,
+ * in slot order, followed by the values of its non null object fields in field order.
+ * Field names are never written, both sides must have the same definition of the types.
+ *
+ * Type names are written once per payload, later references to a type use its index in
+ * the order the types were first written.
+ *
+ * Instances, ids and structs read back are equal field by field to the ones written,
+ * including the traits of class instances.
+ */
+public final class BinarySerialization {
+
+    public static final String MEDIA_TYPE = "application/x-atlas-binary";
+
+    private static final int MAGIC = 0xA71A5B01;
+
+    private static final byte NULL = 0;
+    private static final byte STRUCT = 1;
+    private static final byte REFERENCEABLE = 2;
+    private static final byte ID = 3;
+
+    /**
+     * Most bytes of a string, big number or other length prefixed value, and most elements of
+     * an array, map or trait list, read from a payload; the lengths of a payload are not trusted.
+     */
+    static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    private BinarySerialization() {
+    }
+
+    public static byte[] toBytes(ITypedInstance instance) throws MetadataException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(instance, bytes);
+        return bytes.toByteArray();
+    }
+
+    public static ITypedInstance fromBytes(byte[] bytes) throws MetadataException {
+        return read(new ByteArrayInputStream(bytes), bytes.length, false);
+    }
+
+    public static ITypedReferenceableInstance referenceableFromBytes(byte[] bytes)
+    throws MetadataException {
+        return referenceableFromBytes(bytes, false);
+    }
+
+    /**
+     * @param validate whether the values read are checked against their attributes the way
+     *                 StructInstance.set checks them: multiplicities, ids and enum values. Bytes
+     *                 not written by this process, e.g. sent by a client, must be validated.
+     */
+    public static ITypedReferenceableInstance referenceableFromBytes(byte[] bytes, boolean validate)
+    throws MetadataException {
+        ITypedInstance instance = read(new ByteArrayInputStream(bytes), bytes.length, validate);
+        if (instance != null && !(instance instanceof ITypedReferenceableInstance)) {
+            throw new MetadataException(String.format("Expected a class instance, found %s",
+                    instance.getTypeName()));
+        }
+        return (ITypedReferenceableInstance) instance;
+    }
+
+    /**
+     * @param instance struct, trait or class instance, or an id
+     * @param out      stream to write to, it is flushed but not closed
+     */
+    public static void write(ITypedInstance instance, OutputStream out) throws MetadataException {
+        try {
+            DataOutputStream dataOut = new DataOutputStream(out);
+            dataOut.writeInt(MAGIC);
+            new Writer(dataOut).writeInstance(instance);
+            dataOut.flush();
+        } catch (IOException | ClassCastException e) {
+            throw new MetadataException("Unable to serialize instance " + instance, e);
+        }
+    }
+
+    /**
+     * @param in stream positioned at an instance written by {@link #write}, it is not closed
+     */
+    public static ITypedInstance read(InputStream in) throws MetadataException {
+        return read(in, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * @param size most bytes the instance can take, no length read is allowed past them
+     */
+    private static ITypedInstance read(InputStream in, long size,
+                                       boolean validate) throws MetadataException {
+        try {
+            CountingInputStream counted = new CountingInputStream(in);
+            DataInputStream dataIn = new DataInputStream(counted);
+            if (dataIn.readInt() != MAGIC) {
+                throw new MetadataException("Not a serialized instance");
+            }
+            return new Reader(dataIn, counted, size, validate, TypeSystem.getInstance())
+                    .readInstance();
+        } catch (IOException | RuntimeException e) {
+            // a malformed payload can fail anywhere in the type system, e.g. on an enum ordinal
+            throw new MetadataException("Unable to deserialize instance", e);
+        }
+    }
+
+    /**
+     * Fields held in the primitive slot arrays, they are written with their arrays.
+     */
+    private static boolean isSlotted(IDataType dataType) {
+        return dataType == DataTypes.BOOLEAN_TYPE || dataType == DataTypes.BYTE_TYPE
+                || dataType == DataTypes.SHORT_TYPE || dataType == DataTypes.INT_TYPE
+                || dataType == DataTypes.LONG_TYPE || dataType == DataTypes.FLOAT_TYPE
+                || dataType == DataTypes.DOUBLE_TYPE
+                || dataType.getTypeCategory() == DataTypes.TypeCategory.ENUM;
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> typeIds = new HashMap<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeInstance(ITypedInstance instance) throws IOException, MetadataException {
+            if (instance == null) {
+                out.writeByte(NULL);
+            } else if (instance instanceof Id) {
+                out.writeByte(ID);
+                writeId((Id) instance);
+            } else if (instance instanceof ITypedReferenceableInstance) {
+                out.writeByte(REFERENCEABLE);
+                writeReferenceable((ITypedReferenceableInstance) instance);
+            } else {
+                out.writeByte(STRUCT);
+                writeTypeName(instance.getTypeName());
+                writeFields((StructInstance) instance);
+            }
+        }
+
+        void writeReferenceable(ITypedReferenceableInstance instance)
+        throws IOException, MetadataException {
+            writeTypeName(instance.getTypeName());
+            writeId(instance.getId());
+
+            List<String> traits = instance.getTraits();
+            writeVarInt(traits.size());
+            for (String traitName : traits) {
+                writeTypeName(traitName);
+            }
+
+            writeFields((StructInstance) instance);
+            for (String traitName : traits) {
+                writeFields((StructInstance) instance.getTrait(traitName));
+            }
+        }
+
+        void writeId(Id id) throws IOException {
+            writeTypeName(id.className);
+            writeString(id.id);
+            writeVarInt(id.version);
+        }
+
+        void writeFields(StructInstance s) throws IOException, MetadataException {
+            FieldMapping fieldMapping = s.fieldMapping;
+
+            writeBits(s.nullFlags);
+            if (fieldMapping.numBools > 0) {
+                writeBits(s.bools);
+            }
+            if (fieldMapping.numBytes > 0) {
+                out.write(s.bytes);
+            }
+            for (int i = 0; i < fieldMapping.numShorts; i++) {
+                out.writeShort(s.shorts[i]);
+            }
+            for (int i = 0; i < fieldMapping.numInts; i++) {
+                writeVarLong(s.ints[i]);
+            }
+            for (int i = 0; i < fieldMapping.numLongs; i++) {
+                writeVarLong(s.longs[i]);
+            }
+            for (int i = 0; i < fieldMapping.numFloats; i++) {
+                out.writeFloat(s.floats[i]);
+            }
+            for (int i = 0; i < fieldMapping.numDoubles; i++) {
+                out.writeDouble(s.doubles[i]);
+            }
+
+            for (FieldAccessor accessor : fieldMapping.accessors.values()) {
+                if (!s.nullFlags[accessor.nullPos] && !isSlotted(accessor.info.dataType())) {
+                    writeValue(accessor.info.dataType(), accessor.read(s));
+                }
+            }
+        }
+
+        void writeValue(IDataType dataType, Object value) throws IOException, MetadataException {
+            switch (dataType.getTypeCategory()) {
+            case PRIMITIVE:
+                writePrimitive(dataType, value);
+                break;
+
+            case ENUM:
+                writeVarInt(((EnumValue) value).ordinal);
+                break;
+
+            case ARRAY:
+                IDataType elemType = ((DataTypes.ArrayType) dataType).getElemType();
+                Collection<?> elements = (Collection<?>) value;
+                writeVarInt(elements.size());
+                for (Object element : elements) {
+                    writeValue(elemType, element);
+                }
+                break;
+
+            case MAP:
+                DataTypes.MapType mapType = (DataTypes.MapType) dataType;
+                Map<?, ?> entries = (Map<?, ?>) value;
+                writeVarInt(entries.size());
+                for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                    writeValue(mapType.getKeyType(), entry.getKey());
+                    writeValue(mapType.getValueType(), entry.getValue());
+                }
+                break;
+
+            case STRUCT:
+            case TRAIT:
+                writeFields((StructInstance) value);
+                break;
+
+            case CLASS:
+                writeInstance((ITypedInstance) value);
+                break;
+
+            default:
+                throw new MetadataException(String.format("Unknown datatype %s", dataType));
+            }
+        }
+
+        void writePrimitive(IDataType dataType, Object value) throws IOException, MetadataException {
+            if (dataType == DataTypes.BOOLEAN_TYPE) {
+                out.writeBoolean((Boolean) value);
+            } else if (dataType == DataTypes.BYTE_TYPE) {
+                out.writeByte((Byte) value);
+            } else if (dataType == DataTypes.SHORT_TYPE) {
+                out.writeShort((Short) value);
+            } else if (dataType == DataTypes.INT_TYPE) {
+                writeVarLong((Integer) value);
+            } else if (dataType == DataTypes.LONG_TYPE) {
+                writeVarLong((Long) value);
+            } else if (dataType == DataTypes.FLOAT_TYPE) {
+                out.writeFloat((Float) value);
+            } else if (dataType == DataTypes.DOUBLE_TYPE) {
+                out.writeDouble((Double) value);
+            } else if (dataType == DataTypes.BIGINTEGER_TYPE) {
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (dataType == DataTypes.BIGDECIMAL_TYPE) {
+                BigDecimal decimal = (BigDecimal) value;
+                writeVarLong(decimal.scale());
+                writeBytes(decimal.unscaledValue().toByteArray());
+            } else if (dataType == DataTypes.DATE_TYPE) {
+                writeVarLong(((Date) value).getTime());
+            } else if (dataType == DataTypes.STRING_TYPE) {
+                writeString((String) value);
+            } else {
+                throw new MetadataException(String.format("Unknown datatype %s", dataType));
+            }
+        }
+
+        void writeTypeName(String typeName) throws IOException {
+            Integer typeId = typeIds.get(typeName);
+            if (typeId != null) {
+                writeVarInt(typeId);
+            } else {
+                // the next id announces a new type, followed by its name
+                writeVarInt(typeIds.size());
+                writeString(typeName);
+                typeIds.put(typeName, typeIds.size());
+            }
+        }
+
+        void writeBits(boolean[] bits) throws IOException {
+            int b = 0;
+            for (int i = 0; i < bits.length; i++) {
+                if (bits[i]) {
+                    b |= 1 << (i & 7);
+                }
+                if ((i & 7) == 7) {
+                    out.writeByte(b);
+                    b = 0;
+                }
+            }
+            if ((bits.length & 7) != 0) {
+                out.writeByte(b);
+            }
+        }
+
+        void writeString(String s) throws IOException {
+            writeBytes(s.getBytes(Charsets.UTF_8));
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        // zig-zag encoded, so small negative values stay small
+        void writeVarLong(long value) throws IOException {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final CountingInputStream counted;
+        private final long size;
+        private final boolean validate;
+        private final TypeSystem typeSystem;
+        private final List<String> typeNames = new ArrayList<>();
+
+        Reader(DataInputStream in, CountingInputStream counted, long size, boolean validate,
+               TypeSystem typeSystem) {
+            this.in = in;
+            this.counted = counted;
+            this.size = size;
+            this.validate = validate;
+            this.typeSystem = typeSystem;
+        }
+
+        ITypedInstance readInstance() throws IOException, MetadataException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NULL:
+                return null;
+
+            case ID:
+                return readId();
+
+            case REFERENCEABLE:
+                return readReferenceable();
+
+            case STRUCT:
+                IConstructableType<?, ?> type =
+                        typeSystem.getDataType(IConstructableType.class, readTypeName());
+                return readFields((StructInstance) type.createInstance());
+
+            default:
+                throw new MetadataException("Unknown instance tag " + tag);
+            }
+        }
+
+        ITypedReferenceableInstance readReferenceable() throws IOException, MetadataException {
+            ClassType classType = typeSystem.getDataType(ClassType.class, readTypeName());
+            Id id = readId();
+
+            String[] traitNames = new String[readLength()];
+            for (int i = 0; i < traitNames.length; i++) {
+                traitNames[i] = readTypeName();
+            }
+
+            ITypedReferenceableInstance instance = classType.createInstance(id, traitNames);
+            readFields((StructInstance) instance);
+            for (String traitName : traitNames) {
+                readFields((StructInstance) instance.getTrait(traitName));
+            }
+            return instance;
+        }
+
+        Id readId() throws IOException {
+            String className = readTypeName();
+            String id = readString();
+            return new Id(id, readVarInt(), className);
+        }
+
+        StructInstance readFields(StructInstance s) throws IOException, MetadataException {
+            FieldMapping fieldMapping = s.fieldMapping;
+
+            readBits(s.nullFlags);
+            if (fieldMapping.numBools > 0) {
+                readBits(s.bools);
+            }
+            if (fieldMapping.numBytes > 0) {
+                in.readFully(s.bytes);
+            }
+            for (int i = 0; i < fieldMapping.numShorts; i++) {
+                s.shorts[i] = in.readShort();
+            }
+            for (int i = 0; i < fieldMapping.numInts; i++) {
+                s.ints[i] = (int) readVarLong();
+            }
+            for (int i = 0; i < fieldMapping.numLongs; i++) {
+                s.longs[i] = readVarLong();
+            }
+            for (int i = 0; i < fieldMapping.numFloats; i++) {
+                s.floats[i] = in.readFloat();
+            }
+            for (int i = 0; i < fieldMapping.numDoubles; i++) {
+                s.doubles[i] = in.readDouble();
+            }
+
+            for (FieldAccessor accessor : fieldMapping.accessors.values()) {
+                if (s.nullFlags[accessor.nullPos]) {
+                    if (validate && !accessor.info.multiplicity.nullAllowed()) {
+                        throw new ValueConversionException.NullConversionException(
+                                accessor.info.multiplicity);
+                    }
+                } else if (!isSlotted(accessor.info.dataType())) {
+                    Object value = readValue(accessor.info.dataType());
+                    if (validate) {
+                        s.set(accessor, value);
+                    } else {
+                        accessor.write(s, value);
+                    }
+                } else if (validate && s.get(accessor) == null) {
+                    // an enum slot holds an ordinal, that must be one of the enum's
+                    throw new MetadataException(String.format("Invalid value of attribute %s",
+                            accessor.info.name));
+                }
+            }
+            return s;
+        }
+
+        Object readValue(IDataType dataType) throws IOException, MetadataException {
+            switch (dataType.getTypeCategory()) {
+            case PRIMITIVE:
+                return readPrimitive(dataType);
+
+            case ENUM:
+                return ((EnumType) dataType).fromOrdinal(readVarInt());
+
+            case ARRAY:
+                IDataType elemType = ((DataTypes.ArrayType) dataType).getElemType();
+                int numElements = readLength();
+                ImmutableList.Builder<Object> elements = ImmutableList.builder();
+                for (int i = 0; i < numElements; i++) {
+                    elements.add(readValue(elemType));
+                }
+                return elements.build();
+
+            case MAP:
+                DataTypes.MapType mapType = (DataTypes.MapType) dataType;
+                int numEntries = readLength();
+                ImmutableMap.Builder<Object, Object> entries = ImmutableMap.builder();
+                for (int i = 0; i < numEntries; i++) {
+                    entries.put(readValue(mapType.getKeyType()), readValue(mapType.getValueType()));
+                }
+                return entries.build();
+
+            case STRUCT:
+            case TRAIT:
+                IConstructableType<?, ?> structType = (IConstructableType<?, ?>) dataType;
+                return readFields((StructInstance) structType.createInstance());
+
+            case CLASS:
+                return readInstance();
+
+            default:
+                throw new MetadataException(String.format("Unknown datatype %s", dataType));
+            }
+        }
+
+        Object readPrimitive(IDataType dataType) throws IOException, MetadataException {
+            if (dataType == DataTypes.BOOLEAN_TYPE) {
+                return in.readBoolean();
+            } else if (dataType == DataTypes.BYTE_TYPE) {
+                return in.readByte();
+            } else if (dataType == DataTypes.SHORT_TYPE) {
+                return in.readShort();
+            } else if (dataType == DataTypes.INT_TYPE) {
+                return (int) readVarLong();
+            } else if (dataType == DataTypes.LONG_TYPE) {
+                return readVarLong();
+            } else if (dataType == DataTypes.FLOAT_TYPE) {
+                return in.readFloat();
+            } else if (dataType == DataTypes.DOUBLE_TYPE) {
+                return in.readDouble();
+            } else if (dataType == DataTypes.BIGINTEGER_TYPE) {
+                return new BigInteger(readBytes());
+            } else if (dataType == DataTypes.BIGDECIMAL_TYPE) {
+                int scale = (int) readVarLong();
+                return new BigDecimal(new BigInteger(readBytes()), scale);
+            } else if (dataType == DataTypes.DATE_TYPE) {
+                return new Date(readVarLong());
+            } else if (dataType == DataTypes.STRING_TYPE) {
+                return readString();
+            } else {
+                throw new MetadataException(String.format("Unknown datatype %s", dataType));
+            }
+        }
+
+        String readTypeName() throws IOException {
+            int typeId = readVarInt();
+            if (typeId < typeNames.size()) {
+                return typeNames.get(typeId);
+            }
+            if (typeId != typeNames.size()) {
+                throw new IOException("Unknown type reference " + typeId);
+            }
+            String typeName = readString();
+            typeNames.add(typeName);
+            return typeName;
+        }
+
+        void readBits(boolean[] bits) throws IOException {
+            int b = 0;
+            for (int i = 0; i < bits.length; i++) {
+                if ((i & 7) == 0) {
+                    b = in.readUnsignedByte();
+                }
+                bits[i] = (b & (1 << (i & 7))) != 0;
+            }
+        }
+
+        String readString() throws IOException {
+            return new String(readBytes(), Charsets.UTF_8);
+        }
+
+        byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[readLength()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        /**
+         * Reads the length of a value, or the number of elements of a collection. Each element
+         * takes at least one byte, but for structs without attributes, so neither can be more
+         * than the bytes left.
+         */
+        int readLength() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || length > MAX_LENGTH || length > size - counted.getCount()) {
+                throw new IOException("Invalid length " + length);
+            }
+            return length;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable length int");
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IOException("Malformed variable length long");
+        }
+    }
+}
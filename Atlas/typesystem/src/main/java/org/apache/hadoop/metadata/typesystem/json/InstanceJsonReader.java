@@ -0,0 +1,418 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.typesystem.json;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.persistence.ReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.StructInstance;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.DataTypes;
+import org.apache.hadoop.metadata.typesystem.types.FieldAccessor;
+import org.apache.hadoop.metadata.typesystem.types.IConstructableType;
+import org.apache.hadoop.metadata.typesystem.types.IDataType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.apache.hadoop.metadata.typesystem.types.ValueConversionException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads instances in the json format of {@link InstanceSerialization} as the json is
+ * streamed in. There is no intermediate json tree or untyped {@link
+ * org.apache.hadoop.metadata.typesystem.Referenceable}: each value is converted to the data
+ * type of its field as it is read and set through the field's {@link FieldAccessor}, so a
+ * payload that does not match its types fails at the first offending value.
+ *
+ * The result is the instance ClassType.convert would return for the Referenceable read by
+ * {@link InstanceSerialization#fromJsonReferenceable}.
+ */
+public final class InstanceJsonReader {
+
+    private static final String ID = "id";
+    private static final String VERSION = "version";
+    private static final String TYPE_NAME = "typeName";
+    private static final String VALUES = "values";
+    private static final String TRAIT_NAMES = "traitNames";
+    private static final String TRAITS = "traits";
+
+    private final TypeSystem typeSystem;
+
+    private InstanceJsonReader(TypeSystem typeSystem) {
+        this.typeSystem = typeSystem;
+    }
+
+    /**
+     * @param reader json of a referenceable instance
+     * @return the typed instance, converted to its class type
+     */
+    public static ITypedReferenceableInstance readReferenceable(Reader reader)
+    throws MetadataException {
+        JsonReader in = new JsonReader(reader);
+        try {
+            Object o = new InstanceJsonReader(TypeSystem.getInstance()).readReference(in, null, true);
+            if (!(o instanceof ITypedReferenceableInstance) || o instanceof Id) {
+                throw new MetadataException("Expected a referenceable instance, found " + o);
+            }
+            if (in.peek() != JsonToken.END_DOCUMENT) {
+                throw new MetadataException("Unexpected content after the instance at " + in.getPath());
+            }
+            return (ITypedReferenceableInstance) o;
+        } catch (IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new MetadataException("Error reading instance at " + in.getPath(), e);
+        } catch (MetadataException e) {
+            throw new MetadataException("Error reading instance at " + in.getPath(), e);
+        }
+    }
+
+    /**
+     * Reads a referenceable instance or an id.
+     *
+     * @param declared type of the field the value is read for, null at the top level
+     * @param full     whether the instance is converted or only its id is kept
+     */
+    private Object readReference(JsonReader in, ClassType declared, boolean full)
+    throws IOException, MetadataException {
+        String typeName = null;
+        String guid = null;
+        int version = 0;
+        Id id = null;
+        List<String> traitNames = null;
+        ReferenceableInstance instance = null;
+        boolean[] seen = null;
+        // parts read before the instance could be created, replayed at the end
+        JsonElement values = null;
+        Map<String, JsonElement> traits = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+            case ID:
+                if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                    id = readId(in);
+                } else {
+                    guid = in.nextString();
+                }
+                break;
+            case VERSION:
+                version = in.nextInt();
+                break;
+            case TYPE_NAME:
+                typeName = in.nextString();
+                break;
+            case TRAIT_NAMES:
+                traitNames = readNames(in);
+                break;
+            case VALUES:
+                if (!full || (id != null && id.isAssigned())) {
+                    in.skipValue();
+                } else if (id == null) {
+                    values = new JsonParser().parse(in);
+                } else {
+                    instance = (ReferenceableInstance) classType(declared, typeName, id).createInstance(
+                            referenceId(id, typeName), names(traitNames));
+                    seen = readFields(in, instance);
+                }
+                break;
+            case TRAITS:
+                if (!full) {
+                    in.skipValue();
+                    break;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    String traitName = in.nextName();
+                    if (instance != null && instance.getTrait(traitName) != null) {
+                        readStruct(in, (StructInstance) instance.getTrait(traitName));
+                    } else {
+                        if (traits == null) {
+                            traits = new LinkedHashMap<>();
+                        }
+                        traits.put(traitName, new JsonParser().parse(in));
+                    }
+                }
+                in.endObject();
+                break;
+            default:
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (id == null) {
+            if (guid == null) {
+                throw new MetadataException("Missing id of instance of type " + typeName);
+            }
+            // an _Id: the id itself
+            return new Id(guid, version, typeName);
+        }
+
+        ClassType type = classType(declared, typeName, id);
+        if (!full) {
+            return referenceId(id, typeName);
+        }
+
+        if (instance == null) {
+            instance = (ReferenceableInstance) type.createInstance(referenceId(id, typeName), names(traitNames));
+        } else if (traitNames != null && !traitNames.isEmpty()
+                && instance.getTraits().isEmpty()) {
+            // trait names came after the values
+            ReferenceableInstance withTraits = (ReferenceableInstance) type.createInstance(
+                    instance.getId(), names(traitNames));
+            for (FieldAccessor accessor : instance.fieldMapping.accessors.values()) {
+                withTraits.set(accessor, instance.get(accessor));
+            }
+            instance = withTraits;
+        }
+
+        if (traits != null) {
+            for (Map.Entry<String, JsonElement> e : traits.entrySet()) {
+                if (instance.getTrait(e.getKey()) != null) {
+                    readStruct(replay(e.getValue()), (StructInstance) instance.getTrait(e.getKey()));
+                }
+            }
+        }
+
+        if (id.isAssigned()) {
+            return instance;
+        }
+        if (values != null) {
+            seen = readFields(replay(values), instance);
+        }
+        setUnseen(instance, seen);
+        return instance;
+    }
+
+    private ClassType classType(ClassType declared, String typeName, Id id) throws MetadataException {
+        String name = typeName != null ? typeName : id.className;
+        if (declared != null && declared.getName().equals(name)) {
+            return declared;
+        }
+        ClassType type = typeSystem.getDataType(ClassType.class, name);
+        if (declared != null && !declared.isSubType(name)) {
+            throw new ValueConversionException(declared, name, "not a subtype");
+        }
+        return type;
+    }
+
+    // the id of a reference, as the Referenceable it is read into gets it
+    private static Id referenceId(Id id, String typeName) {
+        return new Id(id.id, 0, typeName != null ? typeName : id.className);
+    }
+
+    private static String[] names(List<String> names) {
+        return names == null ? null : names.toArray(new String[names.size()]);
+    }
+
+    private Id readId(JsonReader in) throws IOException {
+        String guid = null;
+        int version = 0;
+        String typeName = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+            case ID:
+                guid = in.nextString();
+                break;
+            case VERSION:
+                version = in.nextInt();
+                break;
+            case TYPE_NAME:
+                typeName = in.nextString();
+                break;
+            default:
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Id(guid, version, typeName);
+    }
+
+    private List<String> readNames(JsonReader in) throws IOException {
+        List<String> names = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            names.add(in.nextString());
+        }
+        in.endArray();
+        return names;
+    }
+
+    /**
+     * Reads a struct into an instance of its type, fields missing from the json are set to
+     * null.
+     */
+    private void readStruct(JsonReader in, StructInstance s) throws IOException, MetadataException {
+        boolean[] seen = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+            case TYPE_NAME:
+                String typeName = in.nextString();
+                if (!typeName.equals(s.getTypeName())) {
+                    throw new ValueConversionException(s.getTypeName(), typeName, "unexpected type");
+                }
+                break;
+            case VALUES:
+                seen = readFields(in, s);
+                break;
+            default:
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        setUnseen(s, seen);
+    }
+
+    /**
+     * Reads the values of an instance, values of unknown fields are skipped.
+     *
+     * @return the fields read, by null position
+     */
+    private boolean[] readFields(JsonReader in, StructInstance s) throws IOException, MetadataException {
+        boolean[] seen = new boolean[s.nullFlags.length];
+
+        in.beginObject();
+        while (in.hasNext()) {
+            FieldAccessor accessor = s.fieldMapping.accessor(in.nextName());
+            if (accessor == null) {
+                in.skipValue();
+                continue;
+            }
+
+            IDataType dataType = accessor.info.dataType();
+            Object val;
+            if (dataType.getTypeCategory() == DataTypes.TypeCategory.CLASS && in.peek() != JsonToken.NULL) {
+                val = readReference(in, (ClassType) dataType, accessor.info.isComposite);
+            } else {
+                val = readValue(in, dataType);
+            }
+            s.set(accessor, val);
+            seen[accessor.nullPos] = true;
+        }
+        in.endObject();
+        return seen;
+    }
+
+    // fields missing from the json are set to null, which fails for required fields
+    private void setUnseen(StructInstance s, boolean[] seen) throws MetadataException {
+        for (FieldAccessor accessor : s.fieldMapping.accessors.values()) {
+            if (seen == null || !seen[accessor.nullPos]) {
+                s.set(accessor, null);
+            }
+        }
+    }
+
+    /**
+     * Reads a value of a data type, the value is converted by the instance it is set on.
+     */
+    private Object readValue(JsonReader in, IDataType dataType) throws IOException, MetadataException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        switch (dataType.getTypeCategory()) {
+        case PRIMITIVE:
+        case ENUM:
+            return readPrimitive(in, dataType);
+        case ARRAY:
+            IDataType elemType = ((DataTypes.ArrayType) dataType).getElemType();
+            if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                return readValue(in, elemType);
+            }
+            List<Object> elems = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                elems.add(readValue(in, elemType));
+            }
+            in.endArray();
+            return elems;
+        case MAP:
+            IDataType valueType = ((DataTypes.MapType) dataType).getValueType();
+            Map<String, Object> entries = new LinkedHashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                entries.put(key, readValue(in, valueType));
+            }
+            in.endObject();
+            return entries;
+        case STRUCT:
+        case TRAIT:
+            StructInstance s = (StructInstance) ((IConstructableType) dataType).createInstance();
+            readStruct(in, s);
+            return s;
+        case CLASS:
+            return readReference(in, (ClassType) dataType, true);
+        default:
+            throw new MetadataException(String.format("Unknown datatype %s", dataType));
+        }
+    }
+
+    private Object readPrimitive(JsonReader in, IDataType dataType) throws IOException, MetadataException {
+        JsonToken token = in.peek();
+        switch (token) {
+        case STRING:
+            return in.nextString();
+        case BOOLEAN:
+            return in.nextBoolean();
+        case NUMBER:
+            String n = in.nextString();
+            if (dataType == DataTypes.BIGDECIMAL_TYPE || dataType == DataTypes.BIGINTEGER_TYPE
+                    || dataType == DataTypes.STRING_TYPE) {
+                return n;
+            }
+            return number(n);
+        default:
+            throw new ValueConversionException(dataType, token, "not a primitive value");
+        }
+    }
+
+    private static Number number(String n) {
+        if (n.indexOf('.') < 0 && n.indexOf('e') < 0 && n.indexOf('E') < 0) {
+            BigInteger i = new BigInteger(n);
+            return i.bitLength() < 64 ? (Number) i.longValue() : i;
+        }
+        return new BigDecimal(n);
+    }
+
+    private static JsonReader replay(JsonElement e) {
+        return new JsonReader(new StringReader(e.toString()));
+    }
+}
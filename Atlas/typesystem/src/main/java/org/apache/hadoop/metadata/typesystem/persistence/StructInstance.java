@@ -27,7 +27,7 @@ import org.apache.hadoop.metadata.typesystem.types.AttributeInfo;
 import org.apache.hadoop.metadata.typesystem.types.ClassType;
 import org.apache.hadoop.metadata.typesystem.types.DataTypes;
 import org.apache.hadoop.metadata.typesystem.types.EnumType;
-import org.apache.hadoop.metadata.typesystem.types.EnumValue;
+import org.apache.hadoop.metadata.typesystem.types.FieldAccessor;
 import org.apache.hadoop.metadata.typesystem.types.FieldMapping;
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
 import org.apache.hadoop.metadata.typesystem.types.TypeUtils;
@@ -105,12 +105,19 @@ public class StructInstance implements ITypedStruct {
     }
 
     public void set(String attrName, Object val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new ValueConversionException(getTypeName(), val, "Unknown field " + attrName);
         }
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        set(accessor, val);
+    }
+
+    /**
+     * Sets a field through its accessor, which must come from the field mapping of
+     * this instance.
+     */
+    public void set(FieldAccessor accessor, Object val) throws MetadataException {
+        AttributeInfo i = accessor.info;
         Object cVal = null;
 
         if (val != null && val instanceof Id) {
@@ -122,123 +129,49 @@ public class StructInstance implements ITypedStruct {
             cVal = i.dataType().convert(val, i.multiplicity);
         }
         if (cVal == null) {
-            nullFlags[nullPos] = true;
+            nullFlags[accessor.nullPos] = true;
             return;
         }
-        nullFlags[nullPos] = false;
-        if (i.dataType() == DataTypes.BOOLEAN_TYPE) {
-            bools[pos] = ((Boolean) cVal).booleanValue();
-        } else if (i.dataType() == DataTypes.BYTE_TYPE) {
-            bytes[pos] = ((Byte) cVal).byteValue();
-        } else if (i.dataType() == DataTypes.SHORT_TYPE) {
-            shorts[pos] = ((Short) cVal).shortValue();
-        } else if (i.dataType() == DataTypes.INT_TYPE) {
-            ints[pos] = ((Integer) cVal).intValue();
-        } else if (i.dataType() == DataTypes.LONG_TYPE) {
-            longs[pos] = ((Long) cVal).longValue();
-        } else if (i.dataType() == DataTypes.FLOAT_TYPE) {
-            floats[pos] = ((Float) cVal).floatValue();
-        } else if (i.dataType() == DataTypes.DOUBLE_TYPE) {
-            doubles[pos] = ((Double) cVal).doubleValue();
-        } else if (i.dataType() == DataTypes.BIGINTEGER_TYPE) {
-            bigIntegers[pos] = (BigInteger) cVal;
-        } else if (i.dataType() == DataTypes.BIGDECIMAL_TYPE) {
-            bigDecimals[pos] = (BigDecimal) cVal;
-        } else if (i.dataType() == DataTypes.DATE_TYPE) {
-            dates[pos] = (Date) cVal;
-        } else if (i.dataType() == DataTypes.STRING_TYPE) {
-            strings[pos] = (String) cVal;
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ENUM) {
-            ints[pos] = ((EnumValue) cVal).ordinal;
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ARRAY) {
-            arrays[pos] = (ImmutableList) cVal;
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.MAP) {
-            maps[pos] = (ImmutableMap) cVal;
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.STRUCT ||
-                i.dataType().getTypeCategory() == DataTypes.TypeCategory.TRAIT) {
-            structs[pos] = (StructInstance) cVal;
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.CLASS) {
-            if (cVal instanceof Id) {
-                ids[pos] = (Id) cVal;
-            } else {
-                referenceables[pos] = (ReferenceableInstance) cVal;
-            }
-        } else {
-            throw new MetadataException(String.format("Unknown datatype %s", i.dataType()));
-        }
+        nullFlags[accessor.nullPos] = false;
+        accessor.write(this, cVal);
     }
 
     public Object get(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        return get(accessor);
+    }
 
-        if (nullFlags[nullPos]) {
+    /**
+     * Gets a field through its accessor, which must come from the field mapping of
+     * this instance.
+     */
+    public Object get(FieldAccessor accessor) {
+        if (nullFlags[accessor.nullPos]) {
             return null;
         }
-
-        if (i.dataType() == DataTypes.BOOLEAN_TYPE) {
-            return bools[pos];
-        } else if (i.dataType() == DataTypes.BYTE_TYPE) {
-            return bytes[pos];
-        } else if (i.dataType() == DataTypes.SHORT_TYPE) {
-            return shorts[pos];
-        } else if (i.dataType() == DataTypes.INT_TYPE) {
-            return ints[pos];
-        } else if (i.dataType() == DataTypes.LONG_TYPE) {
-            return longs[pos];
-        } else if (i.dataType() == DataTypes.FLOAT_TYPE) {
-            return floats[pos];
-        } else if (i.dataType() == DataTypes.DOUBLE_TYPE) {
-            return doubles[pos];
-        } else if (i.dataType() == DataTypes.BIGINTEGER_TYPE) {
-            return bigIntegers[pos];
-        } else if (i.dataType() == DataTypes.BIGDECIMAL_TYPE) {
-            return bigDecimals[pos];
-        } else if (i.dataType() == DataTypes.DATE_TYPE) {
-            return dates[pos];
-        } else if (i.dataType() == DataTypes.STRING_TYPE) {
-            return strings[pos];
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ENUM) {
-            return ((EnumType) i.dataType()).fromOrdinal(ints[pos]);
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ARRAY) {
-            return arrays[pos];
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.MAP) {
-            return maps[pos];
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.STRUCT ||
-                i.dataType().getTypeCategory() == DataTypes.TypeCategory.TRAIT) {
-            return structs[pos];
-        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.CLASS) {
-            if (ids[pos] != null) {
-                return ids[pos];
-            } else {
-                return referenceables[pos];
-            }
-        } else {
-            throw new MetadataException(String.format("Unknown datatype %s", i.dataType()));
-        }
+        return accessor.read(this);
     }
 
     public void setNull(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
-        nullFlags[nullPos] = true;
+        nullFlags[accessor.nullPos] = true;
     }
 
     public boolean getBoolean(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BOOLEAN_TYPE) {
             throw new MetadataException(
@@ -246,8 +179,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BOOLEAN_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.BOOLEAN_TYPE.nullValue();
@@ -257,11 +190,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public byte getByte(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BYTE_TYPE) {
             throw new MetadataException(
@@ -269,8 +203,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BYTE_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.BYTE_TYPE.nullValue();
@@ -280,11 +214,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public short getShort(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.SHORT_TYPE) {
             throw new MetadataException(
@@ -292,8 +227,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.SHORT_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.SHORT_TYPE.nullValue();
@@ -303,11 +238,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public int getInt(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
 
         if (i.dataType() != DataTypes.INT_TYPE && !(i.dataType() instanceof EnumType)) {
@@ -316,8 +252,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.INT_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.INT_TYPE.nullValue();
@@ -327,11 +263,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public long getLong(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.LONG_TYPE) {
             throw new MetadataException(
@@ -339,8 +276,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.LONG_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.LONG_TYPE.nullValue();
@@ -350,11 +287,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public float getFloat(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.FLOAT_TYPE) {
             throw new MetadataException(
@@ -362,8 +300,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.FLOAT_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.FLOAT_TYPE.nullValue();
@@ -373,11 +311,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public double getDouble(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.DOUBLE_TYPE) {
             throw new MetadataException(
@@ -385,8 +324,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.DOUBLE_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.DOUBLE_TYPE.nullValue();
@@ -396,11 +335,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public BigInteger getBigInt(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BIGINTEGER_TYPE) {
             throw new MetadataException(
@@ -408,8 +348,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BIGINTEGER_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.BIGINTEGER_TYPE.nullValue();
@@ -419,11 +359,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public BigDecimal getBigDecimal(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BIGDECIMAL_TYPE) {
             throw new MetadataException(
@@ -431,8 +372,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BIGDECIMAL_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.BIGDECIMAL_TYPE.nullValue();
@@ -442,11 +383,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public Date getDate(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.DATE_TYPE) {
             throw new MetadataException(
@@ -454,8 +396,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.DATE_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.DATE_TYPE.nullValue();
@@ -465,11 +407,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public String getString(String attrName) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.STRING_TYPE) {
             throw new MetadataException(
@@ -477,8 +420,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.STRING_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         if (nullFlags[nullPos]) {
             return DataTypes.STRING_TYPE.nullValue();
@@ -488,11 +431,12 @@ public class StructInstance implements ITypedStruct {
     }
 
     public void setBoolean(String attrName, boolean val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BOOLEAN_TYPE) {
             throw new MetadataException(
@@ -500,19 +444,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BOOLEAN_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         bools[pos] = val;
     }
 
     public void setByte(String attrName, byte val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BYTE_TYPE) {
             throw new MetadataException(
@@ -520,19 +465,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BYTE_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         bytes[pos] = val;
     }
 
     public void setShort(String attrName, short val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.SHORT_TYPE) {
             throw new MetadataException(
@@ -540,19 +486,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.SHORT_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         shorts[pos] = val;
     }
 
     public void setInt(String attrName, int val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.INT_TYPE && !(i.dataType() instanceof EnumType)) {
             throw new MetadataException(
@@ -560,19 +507,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.INT_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         ints[pos] = val;
     }
 
     public void setLong(String attrName, long val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.LONG_TYPE) {
             throw new MetadataException(
@@ -580,19 +528,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.LONG_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         longs[pos] = val;
     }
 
     public void setFloat(String attrName, float val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.FLOAT_TYPE) {
             throw new MetadataException(
@@ -600,19 +549,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.FLOAT_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         floats[pos] = val;
     }
 
     public void setDouble(String attrName, double val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.DOUBLE_TYPE) {
             throw new MetadataException(
@@ -620,19 +570,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.DOUBLE_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = false;
         doubles[pos] = val;
     }
 
     public void setBigInt(String attrName, BigInteger val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BIGINTEGER_TYPE) {
             throw new MetadataException(
@@ -640,19 +591,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BIGINTEGER_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = val == null;
         bigIntegers[pos] = val;
     }
 
     public void setBigDecimal(String attrName, BigDecimal val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.BIGDECIMAL_TYPE) {
             throw new MetadataException(
@@ -660,19 +612,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.BIGDECIMAL_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = val == null;
         bigDecimals[pos] = val;
     }
 
     public void setDate(String attrName, Date val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.DATE_TYPE) {
             throw new MetadataException(
@@ -680,19 +633,20 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.DATE_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = val == null;
         dates[pos] = val;
     }
 
     public void setString(String attrName, String val) throws MetadataException {
-        AttributeInfo i = fieldMapping.fields.get(attrName);
-        if (i == null) {
+        FieldAccessor accessor = fieldMapping.accessor(attrName);
+        if (accessor == null) {
             throw new MetadataException(
                     String.format("Unknown field %s for Struct %s", attrName, getTypeName()));
         }
+        AttributeInfo i = accessor.info;
 
         if (i.dataType() != DataTypes.STRING_TYPE) {
             throw new MetadataException(
@@ -700,8 +654,8 @@ public class StructInstance implements ITypedStruct {
                             attrName, getTypeName(), DataTypes.STRING_TYPE.getName()));
         }
 
-        int pos = fieldMapping.fieldPos.get(attrName);
-        int nullPos = fieldMapping.fieldNullPos.get(attrName);
+        int pos = accessor.pos;
+        int nullPos = accessor.nullPos;
 
         nullFlags[nullPos] = val == null;
         strings[pos] = val;
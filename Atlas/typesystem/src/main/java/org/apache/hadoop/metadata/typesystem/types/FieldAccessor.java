@@ -0,0 +1,405 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.typesystem.types;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.IInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.Id;
+import org.apache.hadoop.metadata.typesystem.persistence.ReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.persistence.StructInstance;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+/**
+ * Reads and writes one field of the instances of a {@link FieldMapping}. The slot array,
+ * position and null flag of the field are resolved when the mapping is built, so
+ * accessing a field through its accessor takes no lookups by name and no dispatch on
+ * its data type.
+ */
+public abstract class FieldAccessor {
+
+    public final FieldMapping fieldMapping;
+    public final String name;
+    public final AttributeInfo info;
+    public final int pos;
+    public final int nullPos;
+
+    FieldAccessor(FieldMapping fieldMapping, String name, AttributeInfo info, int pos,
+                  int nullPos) {
+        this.fieldMapping = fieldMapping;
+        this.name = name;
+        this.info = info;
+        this.pos = pos;
+        this.nullPos = nullPos;
+    }
+
+    /**
+     * Reads the slot of the field, the null flag is checked by the caller.
+     */
+    public abstract Object read(StructInstance s);
+
+    /**
+     * Writes a converted, non null value to the slot of the field, the null flag is
+     * cleared by the caller.
+     */
+    public abstract void write(StructInstance s, Object cVal);
+
+    /**
+     * @param s instance with this field
+     * @return the value of the field, or null if it is not set
+     */
+    public Object get(IInstance s) throws MetadataException {
+        if (isSlotted(s)) {
+            return ((StructInstance) s).get(this);
+        }
+        return s.get(name);
+    }
+
+    /**
+     * @param s   instance with this field
+     * @param val value of the field, converted to the field's data type
+     */
+    public void set(IInstance s, Object val) throws MetadataException {
+        if (isSlotted(s)) {
+            ((StructInstance) s).set(this, val);
+        } else {
+            s.set(name, val);
+        }
+    }
+
+    private boolean isSlotted(IInstance s) {
+        return s instanceof StructInstance && ((StructInstance) s).fieldMapping == fieldMapping;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldAccessor{name=" + name + ", type=" + info.dataType().getName()
+                + ", pos=" + pos + ", nullPos=" + nullPos + '}';
+    }
+
+    static FieldAccessor create(FieldMapping fieldMapping, String name, AttributeInfo i,
+                                int pos, int nullPos) throws MetadataException {
+        if (i.dataType() == DataTypes.BOOLEAN_TYPE) {
+            return new BooleanAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.BYTE_TYPE) {
+            return new ByteAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.SHORT_TYPE) {
+            return new ShortAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.INT_TYPE) {
+            return new IntAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.LONG_TYPE) {
+            return new LongAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.FLOAT_TYPE) {
+            return new FloatAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.DOUBLE_TYPE) {
+            return new DoubleAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.BIGINTEGER_TYPE) {
+            return new BigIntegerAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.BIGDECIMAL_TYPE) {
+            return new BigDecimalAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.DATE_TYPE) {
+            return new DateAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType() == DataTypes.STRING_TYPE) {
+            return new StringAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ENUM) {
+            return new EnumAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ARRAY) {
+            return new ArrayAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.MAP) {
+            return new MapAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.STRUCT ||
+                i.dataType().getTypeCategory() == DataTypes.TypeCategory.TRAIT) {
+            return new StructAccessor(fieldMapping, name, i, pos, nullPos);
+        } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.CLASS) {
+            return new ClassAccessor(fieldMapping, name, i, pos, nullPos);
+        } else {
+            throw new MetadataException(String.format("Unknown datatype %s", i.dataType()));
+        }
+    }
+
+    private static final class BooleanAccessor extends FieldAccessor {
+        BooleanAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.bools[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.bools[pos] = ((Boolean) cVal).booleanValue();
+        }
+    }
+
+    private static final class ByteAccessor extends FieldAccessor {
+        ByteAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.bytes[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.bytes[pos] = ((Byte) cVal).byteValue();
+        }
+    }
+
+    private static final class ShortAccessor extends FieldAccessor {
+        ShortAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.shorts[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.shorts[pos] = ((Short) cVal).shortValue();
+        }
+    }
+
+    private static final class IntAccessor extends FieldAccessor {
+        IntAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.ints[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.ints[pos] = ((Integer) cVal).intValue();
+        }
+    }
+
+    private static final class LongAccessor extends FieldAccessor {
+        LongAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.longs[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.longs[pos] = ((Long) cVal).longValue();
+        }
+    }
+
+    private static final class FloatAccessor extends FieldAccessor {
+        FloatAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.floats[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.floats[pos] = ((Float) cVal).floatValue();
+        }
+    }
+
+    private static final class DoubleAccessor extends FieldAccessor {
+        DoubleAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.doubles[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.doubles[pos] = ((Double) cVal).doubleValue();
+        }
+    }
+
+    private static final class BigIntegerAccessor extends FieldAccessor {
+        BigIntegerAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.bigIntegers[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.bigIntegers[pos] = (BigInteger) cVal;
+        }
+    }
+
+    private static final class BigDecimalAccessor extends FieldAccessor {
+        BigDecimalAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.bigDecimals[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.bigDecimals[pos] = (BigDecimal) cVal;
+        }
+    }
+
+    private static final class DateAccessor extends FieldAccessor {
+        DateAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.dates[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.dates[pos] = (Date) cVal;
+        }
+    }
+
+    private static final class StringAccessor extends FieldAccessor {
+        StringAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.strings[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.strings[pos] = (String) cVal;
+        }
+    }
+
+    private static final class EnumAccessor extends FieldAccessor {
+        EnumAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return ((EnumType) info.dataType()).fromOrdinal(s.ints[pos]);
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.ints[pos] = ((EnumValue) cVal).ordinal;
+        }
+    }
+
+    private static final class ArrayAccessor extends FieldAccessor {
+        ArrayAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.arrays[pos];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(StructInstance s, Object cVal) {
+            s.arrays[pos] = (ImmutableList<Object>) cVal;
+        }
+    }
+
+    private static final class MapAccessor extends FieldAccessor {
+        MapAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.maps[pos];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(StructInstance s, Object cVal) {
+            s.maps[pos] = (ImmutableMap<Object, Object>) cVal;
+        }
+    }
+
+    private static final class StructAccessor extends FieldAccessor {
+        StructAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            return s.structs[pos];
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            s.structs[pos] = (StructInstance) cVal;
+        }
+    }
+
+    private static final class ClassAccessor extends FieldAccessor {
+        ClassAccessor(FieldMapping m, String name, AttributeInfo i, int pos, int nullPos) {
+            super(m, name, i, pos, nullPos);
+        }
+
+        @Override
+        public Object read(StructInstance s) {
+            if (s.ids[pos] != null) {
+                return s.ids[pos];
+            } else {
+                return s.referenceables[pos];
+            }
+        }
+
+        @Override
+        public void write(StructInstance s, Object cVal) {
+            if (cVal instanceof Id) {
+                s.ids[pos] = (Id) cVal;
+            } else {
+                s.referenceables[pos] = (ReferenceableInstance) cVal;
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.apache.hadoop.metadata.typesystem.IReferenceableInstance;
 import org.apache.hadoop.metadata.typesystem.IStruct;
 import org.apache.hadoop.metadata.typesystem.persistence.Id;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class FieldMapping {
@@ -45,6 +47,10 @@ public class FieldMapping {
     public final int numMaps;
     public final int numStructs;
     public final int numReferenceables;
+    /**
+     * Accessors of the fields in field order, see {@link FieldAccessor}.
+     */
+    public final Map<String, FieldAccessor> accessors;
 
     public FieldMapping(Map<String, AttributeInfo> fields, Map<String, Integer> fieldPos,
                         Map<String, Integer> fieldNullPos, int numBools, int numBytes,
@@ -52,7 +58,7 @@ public class FieldMapping {
                         int numInts, int numLongs, int numFloats, int numDoubles, int numBigInts,
                         int numBigDecimals,
                         int numDates, int numStrings, int numArrays, int numMaps, int numStructs,
-                        int numReferenceables) {
+                        int numReferenceables) throws MetadataException {
         this.fields = fields;
         this.fieldPos = fieldPos;
         this.fieldNullPos = fieldNullPos;
@@ -71,14 +77,30 @@ public class FieldMapping {
         this.numMaps = numMaps;
         this.numStructs = numStructs;
         this.numReferenceables = numReferenceables;
+
+        Map<String, FieldAccessor> accessors = new LinkedHashMap<String, FieldAccessor>();
+        for (Map.Entry<String, AttributeInfo> e : fields.entrySet()) {
+            String attrName = e.getKey();
+            accessors.put(attrName, FieldAccessor.create(this, attrName, e.getValue(),
+                    fieldPos.get(attrName), fieldNullPos.get(attrName)));
+        }
+        this.accessors = Collections.unmodifiableMap(accessors);
+    }
+
+    /**
+     * @param attrName name of the field
+     * @return the accessor of the field or null if there is no such field
+     */
+    public FieldAccessor accessor(String attrName) {
+        return accessors.get(attrName);
     }
 
     protected void outputFields(IStruct s, Appendable buf, String fieldPrefix)
     throws MetadataException {
-        for (Map.Entry<String, AttributeInfo> e : fields.entrySet()) {
-            String attrName = e.getKey();
-            AttributeInfo i = e.getValue();
-            Object aVal = s.get(attrName);
+        for (FieldAccessor accessor : accessors.values()) {
+            String attrName = accessor.name;
+            AttributeInfo i = accessor.info;
+            Object aVal = accessor.get(s);
             TypeUtils.outputVal(attrName + " : ", buf, fieldPrefix);
             if (aVal != null && aVal instanceof Id) {
                 TypeUtils.outputVal(aVal.toString(), buf, "");
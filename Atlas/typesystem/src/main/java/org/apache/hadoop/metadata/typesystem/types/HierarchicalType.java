@@ -233,7 +233,7 @@ public abstract class HierarchicalType<ST extends HierarchicalType, T> extends A
                     fieldPos.put(attrName, numStrings);
                     numStrings++;
                 } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ENUM) {
-                    fieldPos.put(i.name, numInts);
+                    fieldPos.put(attrName, numInts);
                     numInts++;
                 } else if (i.dataType().getTypeCategory() == DataTypes.TypeCategory.ARRAY) {
                     fieldPos.put(attrName, numArrays);
@@ -19,6 +19,7 @@
 package org.apache.hadoop.metadata.typesystem.types;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.classification.InterfaceAudience;
 import org.apache.hadoop.metadata.typesystem.TypesDef;
@@ -31,12 +32,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Singleton
 @InterfaceAudience.Private
@@ -51,13 +55,20 @@ public class TypeSystem {
         }
     };
 
-    private Map<String, IDataType> types;
-    private IdType idType;
+    /**
+     * The types of the type system, replaced as a whole when types are defined. Readers take
+     * the current registry without locking and never see a partly defined type.
+     */
+    private volatile Registry registry;
 
     /**
-     * An in-memory copy of list of traits for convenience.
+     * Serializes type definitions. While a definition is in progress its types are visible
+     * to the defining thread only, in the pending registry.
      */
-    private List<String> traitTypes;
+    private final ReentrantLock definitionLock = new ReentrantLock();
+    private Registry pending;
+
+    private IdType idType;
 
     private ImmutableList<String> coreTypes;
 
@@ -78,12 +89,25 @@ public class TypeSystem {
     }
 
     private void initialize() {
-        types = new ConcurrentHashMap<>();
-        traitTypes = new ArrayList<>();
+        startDefinition(new Registry(registry == null ? 0 : registry.version + 1,
+                new LinkedHashMap<String, IDataType>(), new ArrayList<String>(),
+                new ConcurrentHashMap<String, IDataType>()));
+        try {
+            registerPrimitiveTypes();
+            registerCoreTypes();
+            commitDefinition();
+            coreTypes = ImmutableList.copyOf(registry.types.keySet());
+        } finally {
+            endDefinition();
+        }
+    }
 
-        registerPrimitiveTypes();
-        registerCoreTypes();
-        coreTypes = ImmutableList.copyOf(types.keySet());
+    /**
+     * The version of the types, it changes whenever types are defined. Caches of anything
+     * resolved against the types can be keyed on it.
+     */
+    public long getVersion() {
+        return registry.version;
     }
 
     public ImmutableList<String> getCoreTypes() {
@@ -91,18 +115,15 @@ public class TypeSystem {
     }
 
     public ImmutableList<String> getTypeNames() {
-        return ImmutableList.copyOf(types.keySet());
+        return ImmutableList.copyOf(current().types.keySet());
     }
 
     public ImmutableList<String> getTraitsNames() {
-        return ImmutableList.copyOf(traitTypes);
-    }
-
-    private void addTraitName(String traitName) {
-        traitTypes.add(traitName);
+        return ImmutableList.copyOf(current().traitNames);
     }
 
     private void registerPrimitiveTypes() {
+        Map<String, IDataType> types = pending.types;
         types.put(DataTypes.BOOLEAN_TYPE.getName(), DataTypes.BOOLEAN_TYPE);
         types.put(DataTypes.BYTE_TYPE.getName(), DataTypes.BYTE_TYPE);
         types.put(DataTypes.SHORT_TYPE.getName(), DataTypes.SHORT_TYPE);
@@ -128,26 +149,66 @@ public class TypeSystem {
         return idType;
     }
 
+    /*
+     * Definitions work on a copy of the registry, published when the definition completes.
+     * A failed definition leaves nothing behind.
+     */
+    private void startDefinition(Registry next) {
+        definitionLock.lock();
+        pending = next;
+    }
+
+    private void startDefinition() {
+        definitionLock.lock();
+        pending = registry.next();
+    }
+
+    private void commitDefinition() {
+        registry = pending.publish();
+    }
+
+    private void endDefinition() {
+        pending = null;
+        definitionLock.unlock();
+    }
+
+    private Registry current() {
+        // pending is only set and read by the thread holding the lock
+        Registry r = pending;
+        return r != null && definitionLock.isHeldByCurrentThread() ? r : registry;
+    }
+
     public boolean isRegistered(String typeName) {
-        return types.containsKey(typeName);
+        return current().types.containsKey(typeName);
     }
 
     public <T> T getDataType(Class<T> cls, String name) throws MetadataException {
-        if (types.containsKey(name)) {
-            try {
-                return cls.cast(types.get(name));
-            } catch(ClassCastException cce) {
-                throw new MetadataException(cce);
-            }
+        Registry r = current();
+        IDataType dT = r.types.get(name);
+        if (dT == null) {
+            dT = r.compositeTypes.get(name);
+        }
+        if (dT == null) {
+            dT = defineCompositeType(r, name);
+        }
+        if (dT == null) {
+            throw new MetadataException(String.format("Unknown datatype: %s", name));
+        }
+
+        try {
+            return cls.cast(dT);
+        } catch(ClassCastException cce) {
+            throw new MetadataException(cce);
         }
+    }
 
+    private IDataType defineCompositeType(Registry r, String name) throws MetadataException {
         /*
          * is this an Array Type?
          */
         String arrElemType = TypeUtils.parseAsArrayType(name);
         if (arrElemType != null) {
-            IDataType dT = defineArrayType(getDataType(IDataType.class, arrElemType));
-            return cls.cast(dT);
+            return r.intern(new DataTypes.ArrayType(getDataType(IDataType.class, arrElemType)));
         }
 
         /*
@@ -155,12 +216,11 @@ public class TypeSystem {
          */
         String[] mapType = TypeUtils.parseAsMapType(name);
         if (mapType != null) {
-            IDataType dT = defineMapType(getDataType(IDataType.class, mapType[0]),
-                    getDataType(IDataType.class, mapType[1]));
-            return cls.cast(dT);
+            return r.intern(new DataTypes.MapType(getDataType(IDataType.class, mapType[0]),
+                    getDataType(IDataType.class, mapType[1])));
         }
 
-        throw new MetadataException(String.format("Unknown datatype: %s", name));
+        return null;
     }
 
     public StructType defineStructType(String name,
@@ -218,20 +278,14 @@ public class TypeSystem {
 
     public Map<String, IDataType> defineTraitTypes(
             HierarchicalTypeDefinition<TraitType>... traitDefs) throws MetadataException {
-        TransientTypeSystem transientTypes = new TransientTypeSystem(
-                ImmutableList.<StructTypeDefinition>of(),
+        return defineTypes(ImmutableList.<StructTypeDefinition>of(),
                 ImmutableList.copyOf(traitDefs),
                 ImmutableList.<HierarchicalTypeDefinition<ClassType>>of());
-        return transientTypes.defineTypes();
     }
 
     public Map<String, IDataType> defineTypes(TypesDef typesDef)
     throws MetadataException {
 
-        for (EnumTypeDefinition enumDef : typesDef.enumTypesAsJavaList()) {
-            defineEnumType(enumDef);
-        }
-
         ImmutableList<StructTypeDefinition> structDefs = ImmutableList
                 .copyOf(typesDef.structTypesAsJavaList());
         ImmutableList<HierarchicalTypeDefinition<TraitType>> traitDefs =
@@ -239,35 +293,52 @@ public class TypeSystem {
         ImmutableList<HierarchicalTypeDefinition<ClassType>> classDefs =
                 ImmutableList.copyOf(typesDef.classTypesAsJavaList());
 
-        return defineTypes(structDefs, traitDefs, classDefs);
+        startDefinition();
+        try {
+            for (EnumTypeDefinition enumDef : typesDef.enumTypesAsJavaList()) {
+                addEnumType(enumDef);
+            }
+
+            Map<String, IDataType> definedTypes =
+                    new TransientTypeSystem(structDefs, traitDefs, classDefs).defineTypes();
+            commitDefinition();
+            return definedTypes;
+        } finally {
+            endDefinition();
+        }
     }
 
     public Map<String, IDataType> defineTypes(ImmutableList<StructTypeDefinition> structDefs,
                                               ImmutableList<HierarchicalTypeDefinition<TraitType>> traitDefs,
                                               ImmutableList<HierarchicalTypeDefinition<ClassType>> classDefs)
     throws MetadataException {
-        TransientTypeSystem transientTypes = new TransientTypeSystem(structDefs,
-                traitDefs,
-                classDefs);
-        Map<String, IDataType> definedTypes = transientTypes.defineTypes();
+        startDefinition();
+        try {
+            TransientTypeSystem transientTypes = new TransientTypeSystem(structDefs,
+                    traitDefs,
+                    classDefs);
+            Map<String, IDataType> definedTypes = transientTypes.defineTypes();
+            commitDefinition();
 //        LOG.debug("Defined new types " + Arrays.toString(definedTypes.keySet().toArray(new String[definedTypes.size()])));
-        return definedTypes;
+            return definedTypes;
+        } finally {
+            endDefinition();
+        }
     }
 
+    /**
+     * Array and map types are interned, the type returned may have been defined before.
+     */
     public DataTypes.ArrayType defineArrayType(IDataType elemType) throws MetadataException {
         assert elemType != null;
-        DataTypes.ArrayType dT = new DataTypes.ArrayType(elemType);
-        types.put(dT.getName(), dT);
-        return dT;
+        return (DataTypes.ArrayType) current().intern(new DataTypes.ArrayType(elemType));
     }
 
     public DataTypes.MapType defineMapType(IDataType keyType, IDataType valueType)
     throws MetadataException {
         assert keyType != null;
         assert valueType != null;
-        DataTypes.MapType dT = new DataTypes.MapType(keyType, valueType);
-        types.put(dT.getName(), dT);
-        return dT;
+        return (DataTypes.MapType) current().intern(new DataTypes.MapType(keyType, valueType));
     }
 
     public EnumType defineEnumType(String name, EnumValue... values) throws MetadataException {
@@ -275,13 +346,24 @@ public class TypeSystem {
     }
 
     public EnumType defineEnumType(EnumTypeDefinition eDef) throws MetadataException {
+        startDefinition();
+        try {
+            EnumType eT = addEnumType(eDef);
+            commitDefinition();
+            return eT;
+        } finally {
+            endDefinition();
+        }
+    }
+
+    private EnumType addEnumType(EnumTypeDefinition eDef) throws MetadataException {
         assert eDef.name != null;
-        if (types.containsKey(eDef.name)) {
+        if (pending.types.containsKey(eDef.name)) {
             throw new MetadataException(
                     String.format("Redefinition of type %s not supported", eDef.name));
         }
         EnumType eT = new EnumType(this, eDef.name, eDef.enumValues);
-        types.put(eDef.name, eT);
+        pending.types.put(eDef.name, eT);
         return eT;
     }
 
@@ -329,7 +411,7 @@ public class TypeSystem {
         }
 
         private IDataType dataType(String name) {
-            return TypeSystem.this.types.get(name);
+            return TypeSystem.this.pending.types.get(name);
         }
 
         /*
@@ -345,7 +427,7 @@ public class TypeSystem {
                     throw new MetadataException(
                             String.format("Cannot redefine type %s", sDef.typeName));
                 }
-                TypeSystem.this.types.put(sDef.typeName,
+                TypeSystem.this.pending.types.put(sDef.typeName,
                         new StructType(this, sDef.typeName, sDef.attributeDefinitions.length));
                 structNameToDefMap.put(sDef.typeName, sDef);
                 transientTypes.add(sDef.typeName);
@@ -354,12 +436,12 @@ public class TypeSystem {
             for (HierarchicalTypeDefinition<TraitType> traitDef : traitDefs) {
                 assert traitDef.typeName != null;
                 TypeUtils.validateName(traitDef.typeName);
-                if (types.containsKey(traitDef.typeName)) {
+                if (dataType(traitDef.typeName) != null) {
                     throw new MetadataException(
                             String.format("Cannot redefine type %s", traitDef.typeName));
                 }
 
-                TypeSystem.this.types.put(traitDef.typeName,
+                TypeSystem.this.pending.types.put(traitDef.typeName,
                         new TraitType(this, traitDef.typeName, traitDef.superTypes,
                                 traitDef.attributeDefinitions.length));
                 traitNameToDefMap.put(traitDef.typeName, traitDef);
@@ -369,12 +451,12 @@ public class TypeSystem {
             for (HierarchicalTypeDefinition<ClassType> classDef : classDefs) {
                 assert classDef.typeName != null;
                 TypeUtils.validateName(classDef.typeName);
-                if (types.containsKey(classDef.typeName)) {
+                if (dataType(classDef.typeName) != null) {
                     throw new MetadataException(
                             String.format("Cannot redefine type %s", classDef.typeName));
                 }
 
-                TypeSystem.this.types.put(classDef.typeName,
+                TypeSystem.this.pending.types.put(classDef.typeName,
                         new ClassType(this, classDef.typeName, classDef.superTypes,
                                 classDef.attributeDefinitions.length));
                 classNameToDefMap.put(classDef.typeName, classDef);
@@ -463,7 +545,7 @@ public class TypeSystem {
             }
 
             StructType type = new StructType(TypeSystem.this, def.typeName, null, infos);
-            TypeSystem.this.types.put(def.typeName, type);
+            TypeSystem.this.pending.types.put(def.typeName, type);
             return type;
         }
 
@@ -482,7 +564,7 @@ public class TypeSystem {
                         ImmutableList.class,
                         AttributeInfo[].class);
                 U type = cons.newInstance(TypeSystem.this, def.typeName, def.superTypes, infos);
-                TypeSystem.this.types.put(def.typeName, type);
+                TypeSystem.this.pending.types.put(def.typeName, type);
                 return type;
             } catch (Exception e) {
                 throw new MetadataException(
@@ -516,7 +598,7 @@ public class TypeSystem {
             for (TraitType traitType : traitTypes) {
                 constructHierarchicalType(TraitType.class,
                         traitNameToDefMap.get(traitType.getName()));
-                addTraitName(traitType.getName());
+                TypeSystem.this.pending.traitNames.add(traitType.getName());
             }
 
             for (ClassType classType : classTypes) {
@@ -543,17 +625,11 @@ public class TypeSystem {
         }
 
         Map<String, IDataType> defineTypes() throws MetadataException {
+            // a failure leaves the types in the pending registry, which is discarded
             step1();
             step2();
-            try {
-                step3();
-                step4();
-            } catch (MetadataException me) {
-                for (String sT : transientTypes) {
-                    types.remove(sT);
-                }
-                throw me;
-            }
+            step3();
+            step4();
 
             Map<String, IDataType> newTypes = new HashMap<>();
 
@@ -629,7 +705,7 @@ public class TypeSystem {
                 infos[1] = new AttributeInfo(TypeSystem.this, typNmAttr, null);
 
                 StructType type = new StructType(TypeSystem.this, TYP_NAME, null, infos);
-                TypeSystem.this.types.put(TYP_NAME, type);
+                TypeSystem.this.pending.types.put(TYP_NAME, type);
 
             } catch (MetadataException me) {
                 throw new RuntimeException(me);
@@ -644,4 +720,42 @@ public class TypeSystem {
         public String idAttrName() { return ID_ATTRNAME;}
         public String typeNameAttrName() { return TYPENAME_ATTRNAME;}
     }
+
+    /**
+     * A version of the types of the type system. A published registry is immutable, except
+     * for the array and map types interned on lookup; these only refer to registered types
+     * and carry over to the next version.
+     */
+    private static final class Registry {
+        final long version;
+        final Map<String, IDataType> types;
+        final List<String> traitNames;
+        final ConcurrentMap<String, IDataType> compositeTypes;
+
+        Registry(long version, Map<String, IDataType> types, List<String> traitNames,
+                 ConcurrentMap<String, IDataType> compositeTypes) {
+            this.version = version;
+            this.types = types;
+            this.traitNames = traitNames;
+            this.compositeTypes = compositeTypes;
+        }
+
+        /**
+         * @return a mutable copy of this registry, as the next version
+         */
+        Registry next() {
+            return new Registry(version + 1, new LinkedHashMap<>(types),
+                    new ArrayList<>(traitNames), new ConcurrentHashMap<>(compositeTypes));
+        }
+
+        Registry publish() {
+            return new Registry(version, ImmutableMap.copyOf(types),
+                    ImmutableList.copyOf(traitNames), compositeTypes);
+        }
+
+        IDataType intern(IDataType dT) {
+            IDataType existing = compositeTypes.putIfAbsent(dT.getName(), dT);
+            return existing == null ? dT : existing;
+        }
+    }
 }
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.typesystem.binary;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.ITypedInstance;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.ITypedStruct;
+import org.apache.hadoop.metadata.typesystem.Referenceable;
+import org.apache.hadoop.metadata.typesystem.json.Serialization$;
+import org.apache.hadoop.metadata.typesystem.types.AttributeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.BaseTest;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.DataTypes;
+import org.apache.hadoop.metadata.typesystem.types.HierarchicalTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
+import org.apache.hadoop.metadata.typesystem.types.StructType;
+import org.apache.hadoop.metadata.typesystem.types.StructTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.TraitType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createClassTypeDef;
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createOptionalAttrDef;
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createRequiredAttrDef;
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createTraitTypeDef;
+
+public class BinarySerializationTest extends BaseTest {
+
+    @Before
+    public void setup() throws Exception {
+        super.setup();
+    }
+
+    @Test
+    public void testStruct() throws MetadataException {
+        StructType structType = getTypeSystem().getDataType(StructType.class, STRUCT_TYPE_1);
+        ITypedStruct ts = structType.convert(createStruct(), Multiplicity.REQUIRED);
+        ts.set("e", null);
+
+        ITypedInstance ts2 = BinarySerialization.fromBytes(BinarySerialization.toBytes(ts));
+        Assert.assertEquals(ts2.toString(), ts.toString());
+        Assert.assertNull(ts2.get("e"));
+    }
+
+    @Test
+    public void testReferenceable() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+
+        HierarchicalTypeDefinition<ClassType> deptTypeDef = createClassTypeDef("Department",
+                ImmutableList.<String>of(),
+                createRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                new AttributeDefinition("employees",
+                        String.format("array<%s>", "Person"), Multiplicity.COLLECTION, true,
+                        "department")
+        );
+        HierarchicalTypeDefinition<ClassType> personTypeDef = createClassTypeDef("Person",
+                ImmutableList.<String>of(),
+                createRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                createOptionalAttrDef("age", DataTypes.INT_TYPE),
+                new AttributeDefinition("department",
+                        "Department", Multiplicity.REQUIRED, false, "employees")
+        );
+        HierarchicalTypeDefinition<TraitType> securityClearanceTypeDef = createTraitTypeDef(
+                "SecurityClearance",
+                ImmutableList.<String>of(),
+                createRequiredAttrDef("level", DataTypes.INT_TYPE)
+        );
+
+        ts.defineTypes(ImmutableList.<StructTypeDefinition>of(),
+                ImmutableList.<HierarchicalTypeDefinition<TraitType>>of(securityClearanceTypeDef),
+                ImmutableList.<HierarchicalTypeDefinition<ClassType>>of(deptTypeDef, personTypeDef));
+
+        Referenceable hrDept = new Referenceable("Department");
+        Referenceable john = new Referenceable("Person");
+        Referenceable jane = new Referenceable("Person", "SecurityClearance");
+
+        hrDept.set("name", "hr");
+        john.set("name", "John");
+        john.set("age", -3);
+        john.set("department", hrDept);
+        jane.set("name", "Jane");
+        jane.set("department", hrDept);
+        jane.getTrait("SecurityClearance").set("level", 1);
+        hrDept.set("employees", ImmutableList.of(john, jane));
+
+        ClassType deptType = ts.getDataType(ClassType.class, "Department");
+        ITypedReferenceableInstance hrDept2 = deptType.convert(hrDept, Multiplicity.REQUIRED);
+
+        byte[] bytes = BinarySerialization.toBytes(hrDept2);
+        ITypedReferenceableInstance hrDept3 = BinarySerialization.referenceableFromBytes(bytes);
+
+        Assert.assertEquals(hrDept3.toString(), hrDept2.toString());
+        Assert.assertEquals(hrDept3.getId().id, hrDept2.getId().id);
+        Assert.assertEquals(BinarySerialization.referenceableFromBytes(bytes, true).toString(),
+                hrDept2.toString());
+
+        String json = Serialization$.MODULE$.toJson(hrDept2);
+        Assert.assertTrue(bytes.length < json.length());
+    }
+
+    @Test(expected = MetadataException.class)
+    public void testNotAnInstance() throws MetadataException {
+        BinarySerialization.fromBytes(new byte[]{1, 2, 3, 4, 5});
+    }
+
+    @Test(expected = MetadataException.class)
+    public void testLengthPastPayload() throws MetadataException {
+        // a class instance whose type name claims 2^31 - 1 bytes
+        BinarySerialization.fromBytes(new byte[]{(byte) 0xA7, 0x1A, 0x5B, 0x01, 2, 0,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+    }
+
+    @Test(expected = MetadataException.class)
+    public void testNegativeLength() throws MetadataException {
+        BinarySerialization.fromBytes(new byte[]{(byte) 0xA7, 0x1A, 0x5B, 0x01, 2, 0,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+    }
+
+    @Test
+    public void testTruncatedPayload() throws MetadataException {
+        StructType structType = getTypeSystem().getDataType(StructType.class, STRUCT_TYPE_1);
+        byte[] bytes = BinarySerialization.toBytes(
+                structType.convert(createStruct(), Multiplicity.REQUIRED));
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                BinarySerialization.fromBytes(Arrays.copyOf(bytes, length));
+                Assert.fail("Read a truncated payload of " + length + " bytes");
+            } catch (MetadataException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testValidateRequiredAttribute() throws MetadataException {
+        TypeSystem ts = getTypeSystem();
+        ts.defineTypes(ImmutableList.<StructTypeDefinition>of(),
+                ImmutableList.<HierarchicalTypeDefinition<TraitType>>of(),
+                ImmutableList.<HierarchicalTypeDefinition<ClassType>>of(
+                        createClassTypeDef("Host", ImmutableList.<String>of(),
+                                createRequiredAttrDef("name", DataTypes.STRING_TYPE))));
+
+        // an instance created without its required name, as a client could send one
+        byte[] bytes = BinarySerialization.toBytes(
+                ts.getDataType(ClassType.class, "Host").createInstance());
+        Assert.assertNotNull(BinarySerialization.referenceableFromBytes(bytes));
+        try {
+            BinarySerialization.referenceableFromBytes(bytes, true);
+            Assert.fail("Read an instance without its required attribute");
+        } catch (MetadataException e) {
+            // expected
+        }
+    }
+}
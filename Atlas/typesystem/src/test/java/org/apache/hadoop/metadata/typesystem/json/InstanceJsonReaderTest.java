@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.typesystem.json;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.metadata.MetadataException;
+import org.apache.hadoop.metadata.typesystem.ITypedReferenceableInstance;
+import org.apache.hadoop.metadata.typesystem.Referenceable;
+import org.apache.hadoop.metadata.typesystem.types.AttributeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.BaseTest;
+import org.apache.hadoop.metadata.typesystem.types.ClassType;
+import org.apache.hadoop.metadata.typesystem.types.DataTypes;
+import org.apache.hadoop.metadata.typesystem.types.HierarchicalTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.Multiplicity;
+import org.apache.hadoop.metadata.typesystem.types.StructTypeDefinition;
+import org.apache.hadoop.metadata.typesystem.types.TraitType;
+import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createClassTypeDef;
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createOptionalAttrDef;
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createRequiredAttrDef;
+import static org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil.createTraitTypeDef;
+
+public class InstanceJsonReaderTest extends BaseTest {
+
+    @Before
+    public void setup() throws Exception {
+        super.setup();
+
+        HierarchicalTypeDefinition<ClassType> deptTypeDef = createClassTypeDef("Department",
+                ImmutableList.<String>of(),
+                createRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                new AttributeDefinition("employees",
+                        String.format("array<%s>", "Person"), Multiplicity.COLLECTION, true,
+                        "department")
+        );
+        HierarchicalTypeDefinition<ClassType> personTypeDef = createClassTypeDef("Person",
+                ImmutableList.<String>of(),
+                createRequiredAttrDef("name", DataTypes.STRING_TYPE),
+                createOptionalAttrDef("age", DataTypes.INT_TYPE),
+                new AttributeDefinition("department",
+                        "Department", Multiplicity.REQUIRED, false, "employees"),
+                new AttributeDefinition("manager",
+                        "Manager", Multiplicity.OPTIONAL, false, "subordinates")
+        );
+        HierarchicalTypeDefinition<ClassType> managerTypeDef = createClassTypeDef("Manager",
+                ImmutableList.<String>of("Person"),
+                new AttributeDefinition("subordinates",
+                        String.format("array<%s>", "Person"), Multiplicity.COLLECTION, false,
+                        "manager")
+        );
+        HierarchicalTypeDefinition<TraitType> securityClearanceTypeDef = createTraitTypeDef(
+                "SecurityClearance",
+                ImmutableList.<String>of(),
+                createRequiredAttrDef("level", DataTypes.INT_TYPE)
+        );
+
+        getTypeSystem().defineTypes(ImmutableList.<StructTypeDefinition>of(),
+                ImmutableList.<HierarchicalTypeDefinition<TraitType>>of(securityClearanceTypeDef),
+                ImmutableList.<HierarchicalTypeDefinition<ClassType>>of(deptTypeDef, personTypeDef,
+                        managerTypeDef));
+    }
+
+    private Referenceable createDepartment() {
+        Referenceable hrDept = new Referenceable("Department");
+        Referenceable john = new Referenceable("Person");
+        Referenceable jane = new Referenceable("Manager", "SecurityClearance");
+
+        hrDept.set("name", "hr");
+        john.set("name", "John");
+        john.set("age", 34);
+        john.set("department", hrDept.getId());
+        john.set("manager", jane.getId());
+        jane.set("name", "Jane");
+        jane.set("department", hrDept.getId());
+        jane.set("subordinates", ImmutableList.of(john.getId()));
+        jane.getTrait("SecurityClearance").set("level", 1);
+        hrDept.set("employees", ImmutableList.of(john, jane));
+        return hrDept;
+    }
+
+    @Test
+    public void testReferenceable() throws MetadataException {
+        String json = InstanceSerialization$.MODULE$.toJson(createDepartment(), true);
+
+        ClassType deptType = getTypeSystem().getDataType(ClassType.class, "Department");
+        ITypedReferenceableInstance expected = deptType.convert(
+                InstanceSerialization$.MODULE$.fromJsonReferenceable(json, true),
+                Multiplicity.REQUIRED);
+        ITypedReferenceableInstance hrDept = InstanceJsonReader.readReferenceable(new StringReader(json));
+
+        Assert.assertEquals(hrDept.toString(), expected.toString());
+        Assert.assertEquals(hrDept.getId(), expected.getId());
+    }
+
+    @Test
+    public void testTypeError() throws MetadataException {
+        Referenceable hrDept = createDepartment();
+        ((Referenceable) ((ImmutableList) hrDept.get("employees")).get(0)).set("age", "thirty");
+        String json = InstanceSerialization$.MODULE$.toJson(hrDept, true);
+
+        try {
+            InstanceJsonReader.readReferenceable(new StringReader(json));
+            Assert.fail("Expected a type error");
+        } catch (MetadataException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("age"));
+        }
+    }
+
+    @Test(expected = MetadataException.class)
+    public void testMissingRequiredField() throws MetadataException {
+        Referenceable hrDept = new Referenceable("Department");
+        String json = InstanceSerialization$.MODULE$.toJson(hrDept, true);
+
+        InstanceJsonReader.readReferenceable(new StringReader(json));
+    }
+}
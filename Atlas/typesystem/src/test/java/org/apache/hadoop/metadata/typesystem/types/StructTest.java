@@ -79,4 +79,23 @@ public class StructTest extends BaseTest {
                 "}");
     }
 
+    @Test
+    public void testFieldAccessors() throws MetadataException {
+        Struct s = createStruct();
+        ITypedStruct ts = structType.convert(s, Multiplicity.REQUIRED);
+        FieldMapping fieldMapping = ts.fieldMapping();
+
+        Assert.assertEquals(fieldMapping.accessors.keySet(), fieldMapping.fields.keySet());
+        for (FieldAccessor accessor : fieldMapping.accessors.values()) {
+            Assert.assertEquals(accessor.get(ts), ts.get(accessor.name));
+        }
+
+        FieldAccessor e = fieldMapping.accessor("e");
+        e.set(ts, 5);
+        Assert.assertEquals(ts.getInt("e"), 5);
+        e.set(ts, null);
+        Assert.assertNull(ts.get("e"));
+        Assert.assertNull(fieldMapping.accessor("unknown"));
+    }
+
 }
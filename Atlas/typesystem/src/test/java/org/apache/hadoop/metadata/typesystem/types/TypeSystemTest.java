@@ -19,6 +19,7 @@
 package org.apache.hadoop.metadata.typesystem.types;
 
 import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.typesystem.types.utils.TypesUtil;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -100,4 +101,48 @@ public class TypeSystemTest extends BaseTest {
 
         Assert.assertFalse(Collections.disjoint(traitsNames, traits));
     }
+
+    @Test
+    public void testVersion() throws Exception {
+        long version = getTypeSystem().getVersion();
+        getTypeSystem().defineEnumType("enum_test", new EnumValue("0", 0));
+        Assert.assertEquals(getTypeSystem().getVersion(), version + 1);
+
+        getTypeSystem().getDataType(IDataType.class, "array<enum_test>");
+        Assert.assertEquals(getTypeSystem().getVersion(), version + 1);
+    }
+
+    @Test
+    public void testFailedDefinition() throws Exception {
+        long version = getTypeSystem().getVersion();
+        HierarchicalTypeDefinition<TraitType> piiTrait =
+                TypesUtil.createTraitTypeDef("PII", ImmutableList.<String>of());
+        HierarchicalTypeDefinition<ClassType> tableType =
+                TypesUtil.createClassTypeDef("Table", ImmutableList.<String>of(),
+                        TypesUtil.createRequiredAttrDef("db", "Database"));
+
+        try {
+            getTypeSystem().defineTypes(ImmutableList.<StructTypeDefinition>of(),
+                    ImmutableList.of(piiTrait), ImmutableList.of(tableType));
+            Assert.fail("Expected an unknown type");
+        } catch (MetadataException e) {
+            // expected
+        }
+
+        Assert.assertEquals(getTypeSystem().getVersion(), version);
+        Assert.assertFalse(getTypeSystem().isRegistered("PII"));
+        Assert.assertFalse(getTypeSystem().isRegistered("Table"));
+        Assert.assertFalse(getTypeSystem().getTraitsNames().contains("PII"));
+    }
+
+    @Test
+    public void testCompositeTypesInterned() throws Exception {
+        IDataType arrayType = getTypeSystem().getDataType(IDataType.class, "array<string>");
+        Assert.assertSame(getTypeSystem().getDataType(IDataType.class, "array<string>"), arrayType);
+        Assert.assertSame(getTypeSystem().defineArrayType(DataTypes.STRING_TYPE), arrayType);
+
+        getTypeSystem().defineEnumType("enum_test", new EnumValue("0", 0));
+        Assert.assertSame(getTypeSystem().getDataType(IDataType.class, "array<string>"), arrayType);
+        Assert.assertFalse(getTypeSystem().getTypeNames().contains("array<string>"));
+    }
 }
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.web.filters;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of requests of one class running at once. A request that finds all
+ * the permits taken waits in a bounded queue, in order, for up to the queue timeout; once
+ * the queue is full, or the wait times out, the request is rejected.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final int retryAfterSecs;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueued,
+                    long queueTimeoutMillis, int retryAfterSecs) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSecs = retryAfterSecs;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Takes a permit, waiting in the queue if there is room in it. A request that is
+     * admitted must call {@link #release()} once it completes.
+     *
+     * @return true if the request is admitted, false if it is rejected
+     * @throws InterruptedException if the request is interrupted while it waits
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        // a zero wait still honors the requests already queued, unlike Semaphore.tryAcquire()
+        if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            admitted.incrementAndGet();
+            return true;
+        }
+
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        try {
+            if (permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+
+            rejected.incrementAndGet();
+            timedOut.incrementAndGet();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return seconds a rejected client is asked to wait before it retries.
+     */
+    public int getRetryAfterSecs() {
+        return retryAfterSecs;
+    }
+
+    /**
+     * @return the number of requests running.
+     */
+    public int getActiveCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of requests waiting for a permit.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    /**
+     * @return the number of requests rejected, either with the queue full or after waiting.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("maxConcurrent", maxConcurrent);
+        json.put("maxQueued", maxQueued);
+        json.put("queueTimeoutMillis", queueTimeoutMillis);
+        json.put("active", getActiveCount());
+        json.put("queueDepth", getQueueDepth());
+        json.put("admitted", getAdmittedCount());
+        json.put("rejected", getRejectedCount());
+        json.put("timedOut", getTimedOutCount());
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{name=" + name + ", active=" + getActiveCount()
+                + ", queueDepth=" + getQueueDepth() + "}";
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.web.filters;
+
+import com.google.inject.Singleton;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+
+/**
+ * Admits requests to the api through the bulkhead of their class of endpoint, see
+ * {@link Bulkheads}. A request its bulkhead rejects fails fast with a 503 and a
+ * Retry-After header. The permit is held until the response, streamed or not, is written.
+ */
+@Singleton
+public class BulkheadFilter implements Filter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkheadFilter.class);
+
+    static final String RETRY_AFTER = "Retry-After";
+
+    private final Bulkheads bulkheads;
+
+    @Inject
+    public BulkheadFilter(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        LOG.info("BulkheadFilter initialization started");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request,
+                         ServletResponse response,
+                         FilterChain filterChain) throws IOException, ServletException {
+        final HttpServletRequest httpRequest = (HttpServletRequest) request;
+        final String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+        final Bulkhead bulkhead = bulkheads.forRequest(httpRequest.getMethod(), path);
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+
+        if (!admitted) {
+            LOG.warn("Rejected request {} {}: {} is full", httpRequest.getMethod(), path, bulkhead);
+            reject((HttpServletResponse) response, bulkhead);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private void reject(HttpServletResponse response, Bulkhead bulkhead) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(RETRY_AFTER, String.valueOf(bulkhead.getRetryAfterSecs()));
+        response.setContentType(MediaType.APPLICATION_JSON);
+        response.getWriter().write(JSONObject.quote(
+                "Too many " + bulkhead.getName() + " requests are running, retry later"));
+    }
+
+    @Override
+    public void destroy() {
+        // do nothing
+    }
+}
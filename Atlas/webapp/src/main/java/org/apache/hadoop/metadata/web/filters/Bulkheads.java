@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.web.filters;
+
+import com.google.inject.Singleton;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.hadoop.metadata.PropertiesUtil;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The bulkheads requests to the api are admitted through, one for each class of endpoint,
+ * so that a burst of one class, say searches, can't take the threads of the server from
+ * another, say entity submissions by hooks.
+ *
+ * A bulkhead is configured with metadata.bulkhead.[name].max.concurrent, .max.queued,
+ * .queue.timeout.ms and .retry.after.secs; a max.concurrent of 0 or less leaves its
+ * class of endpoint unlimited.
+ */
+@Singleton
+public class Bulkheads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Bulkheads.class);
+
+    public static final String WRITE = "write";
+    public static final String POINT_READ = "point-read";
+    public static final String SEARCH = "search";
+    public static final String LINEAGE = "lineage";
+    public static final String GRAPH_BROWSE = "graph-browse";
+
+    static final String PREFIX = "metadata.bulkhead.";
+    static final String MAX_CONCURRENT = ".max.concurrent";
+    static final String MAX_QUEUED = ".max.queued";
+    static final String QUEUE_TIMEOUT = ".queue.timeout.ms";
+    static final String RETRY_AFTER = ".retry.after.secs";
+
+    static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 500L;
+    static final int DEFAULT_RETRY_AFTER_SECS = 5;
+
+    private static final String API_PATH = "/api/metadata/";
+
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+
+    @Inject
+    public Bulkheads() throws ConfigurationException {
+        this(PropertiesUtil.getApplicationProperties());
+    }
+
+    public Bulkheads(Configuration configuration) {
+        // the defaults together stay well below the 250 threads of jetty's default pool
+        add(configuration, WRITE, 32, 32);
+        add(configuration, POINT_READ, 48, 32);
+        add(configuration, SEARCH, 16, 16);
+        add(configuration, LINEAGE, 8, 8);
+        add(configuration, GRAPH_BROWSE, 4, 4);
+    }
+
+    private void add(Configuration configuration, String name,
+                     int defaultMaxConcurrent, int defaultMaxQueued) {
+        int maxConcurrent = configuration.getInt(PREFIX + name + MAX_CONCURRENT, defaultMaxConcurrent);
+        if (maxConcurrent <= 0) {
+            LOG.info("Bulkhead {} is disabled", name);
+            return;
+        }
+
+        Bulkhead bulkhead = new Bulkhead(name, maxConcurrent,
+                Math.max(0, configuration.getInt(PREFIX + name + MAX_QUEUED, defaultMaxQueued)),
+                configuration.getLong(PREFIX + name + QUEUE_TIMEOUT, DEFAULT_QUEUE_TIMEOUT_MILLIS),
+                configuration.getInt(PREFIX + name + RETRY_AFTER, DEFAULT_RETRY_AFTER_SECS));
+        LOG.info("Configured bulkhead {} with {} concurrent requests", name, maxConcurrent);
+        bulkheads.put(name, bulkhead);
+    }
+
+    /**
+     * Finds the bulkhead of a request from its resource and method.
+     *
+     * @param method http method of the request
+     * @param path   path of the request within the application
+     * @return the bulkhead, or null if the request is not limited
+     */
+    public Bulkhead forRequest(String method, String path) {
+        if (path == null || !path.startsWith(API_PATH)) {
+            return null;
+        }
+
+        String resource = path.substring(API_PATH.length());
+        int slash = resource.indexOf('/');
+        if (slash >= 0) {
+            resource = resource.substring(0, slash);
+        }
+
+        switch (resource) {
+            case "entities":
+            case "types":
+                return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)
+                        ? bulkheads.get(POINT_READ) : bulkheads.get(WRITE);
+
+            case "discovery":
+                return bulkheads.get(SEARCH);
+
+            case "lineage":
+                return bulkheads.get(LINEAGE);
+
+            case "graph":
+                return bulkheads.get(GRAPH_BROWSE);
+
+            default:
+                // admin, so that the server can still be looked at when it is busy
+                return null;
+        }
+    }
+
+    public Bulkhead get(String name) {
+        return bulkheads.get(name);
+    }
+
+    public Collection<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            json.put(bulkhead.getName(), bulkhead.toJSON());
+        }
+        return json;
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.hadoop.metadata.repository.typestore.ITypeStore;
 import org.apache.hadoop.metadata.typesystem.TypesDef;
 import org.apache.hadoop.metadata.typesystem.types.TypeSystem;
 import org.apache.hadoop.metadata.web.filters.AuditFilter;
+import org.apache.hadoop.metadata.web.filters.BulkheadFilter;
 import org.apache.hadoop.metadata.web.filters.MetadataAuthenticationFilter;
 import org.apache.hadoop.security.authentication.server.AuthenticationFilter;
 import org.slf4j.Logger;
@@ -71,6 +72,8 @@ public class GuiceServletConfig extends GuiceServletContextListener {
                             } catch (ConfigurationException e) {
                                 LOG.warn("Unable to add and configure authentication filter", e);
                             }
+                            // after authentication, so that rejected users don't take permits
+                            filter("/api/metadata/*").through(BulkheadFilter.class);
 
                             String packages = getServletContext().getInitParameter(GUICE_CTX_PARAM);
 
@@ -21,10 +21,12 @@ package org.apache.hadoop.metadata.web.resources;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.metadata.web.filters.Bulkheads;
 import org.apache.hadoop.metadata.web.util.Servlets;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -40,8 +42,15 @@ import javax.ws.rs.core.Response;
 @Singleton
 public class AdminResource {
 
+    private final Bulkheads bulkheads;
+
     private Response version;
 
+    @Inject
+    public AdminResource(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
     /**
      * Fetches the thread stack dump for this application.
      *
@@ -101,4 +110,22 @@ public class AdminResource {
 
         return version;
     }
+
+    /**
+     * Fetches the state of the bulkheads requests are admitted through: for each, the
+     * requests running and queued, and the number admitted and rejected so far.
+     *
+     * @return json representing the bulkheads.
+     */
+    @GET
+    @Path("bulkheads")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getBulkheads() {
+        try {
+            return Response.ok(bulkheads.toJSON()).build();
+        } catch (JSONException e) {
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+        }
+    }
 }
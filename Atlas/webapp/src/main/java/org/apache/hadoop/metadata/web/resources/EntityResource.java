@@ -19,9 +19,12 @@
 package org.apache.hadoop.metadata.web.resources;
 
 import com.google.common.base.Preconditions;
+import org.apache.commons.configuration.ConfigurationException;
 import org.apache.hadoop.metadata.MetadataException;
 import org.apache.hadoop.metadata.MetadataServiceClient;
+import org.apache.hadoop.metadata.PropertiesUtil;
 import org.apache.hadoop.metadata.services.MetadataService;
+import org.apache.hadoop.metadata.typesystem.binary.BinarySerialization;
 import org.apache.hadoop.metadata.web.util.Servlets;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
@@ -63,7 +66,15 @@ public class EntityResource {
     private static final String GUID = "GUID";
     private static final String TRAIT_NAME = "traitName";
 
+    /**
+     * Largest binary entity accepted by submit, larger ones are rejected with a 413.
+     */
+    public static final String MAX_BINARY_BYTES_PROPERTY = "metadata.entity.binary.max.bytes";
+
+    private static final int DEFAULT_MAX_BINARY_BYTES = 16 * 1024 * 1024;
+
     private final MetadataService metadataService;
+    private final int maxBinaryBytes;
 
     /**
      * Created by the Guice ServletModule and injected with the
@@ -72,8 +83,15 @@ public class EntityResource {
      * @param metadataService metadata service handle
      */
     @Inject
-    public EntityResource(MetadataService metadataService) {
+    public EntityResource(MetadataService metadataService) throws MetadataException {
         this.metadataService = metadataService;
+
+        try {
+            this.maxBinaryBytes = PropertiesUtil.getApplicationProperties().getInt(
+                    MAX_BINARY_BYTES_PROPERTY, DEFAULT_MAX_BINARY_BYTES);
+        } catch (ConfigurationException e) {
+            throw new MetadataException(e);
+        }
     }
 
     /**
@@ -85,8 +103,38 @@ public class EntityResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response submit(@Context HttpServletRequest request) {
         try {
-            final String entity = Servlets.getRequestPayload(request);
-            LOG.debug("submitting entity {} ", entity);
+            LOG.debug("submitting entity of {} bytes", request.getContentLength());
+
+            // the definition is streamed into the typed instance, it is not buffered
+            final String guid = metadataService.createEntity(Servlets.getRequestReader(request));
+            JSONObject response = new JSONObject();
+            response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
+            response.put(MetadataServiceClient.RESULTS, guid);
+
+            return Response.ok(response).build();
+        } catch (MetadataException | IOException | IllegalArgumentException e) {
+            LOG.error("Unable to persist entity instance", e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
+        } catch (JSONException e) {
+            LOG.error("Unable to persist entity instance", e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    /**
+     * Submits an entity instance in the binary encoding of {@link BinarySerialization}, of
+     * at most metadata.entity.binary.max.bytes.
+     */
+    @POST
+    @Path("submit")
+    @Consumes(BinarySerialization.MEDIA_TYPE)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitBinary(@Context HttpServletRequest request) {
+        try {
+            final byte[] entity = Servlets.getRequestPayloadBytes(request, maxBinaryBytes);
+            LOG.debug("submitting entity of {} bytes", entity.length);
 
             final String guid = metadataService.createEntity(entity);
             JSONObject response = new JSONObject();
@@ -105,6 +153,36 @@ public class EntityResource {
         }
     }
 
+    /**
+     * Submits a batch of entity definitions (instances) as a json array. Entities are
+     * stored in as few transactions as possible and failures are reported per entity.
+     */
+    @POST
+    @Path("submit/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitBatch(@Context HttpServletRequest request) {
+        try {
+            final String entities = Servlets.getRequestPayload(request);
+            LOG.debug("submitting entities {} ", entities);
+
+            JSONObject result = metadataService.createEntities(entities);
+            JSONObject response = new JSONObject();
+            response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
+            response.put(MetadataServiceClient.RESULTS, result);
+
+            return Response.ok(response).build();
+        } catch (MetadataException | IOException | IllegalArgumentException e) {
+            LOG.error("Unable to persist entity instances", e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
+        } catch (JSONException e) {
+            LOG.error("Unable to persist entity instances", e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+        }
+    }
+
     /**
      * Fetch the complete definition of an entity given its GUID.
      *
@@ -149,29 +227,70 @@ public class EntityResource {
         }
     }
 
+    /**
+     * Fetch the complete definition of an entity given its GUID, in the binary encoding of
+     * {@link BinarySerialization}. Only chosen when asked for explicitly, json stays the
+     * default representation.
+     *
+     * @param guid GUID for the entity
+     */
+    @GET
+    @Path("definition/{guid}")
+    @Produces(BinarySerialization.MEDIA_TYPE + ";qs=0.5")
+    public Response getBinaryEntityDefinition(@PathParam("guid") String guid) {
+        Preconditions.checkNotNull(guid, "Entity GUID cannot be null");
+
+        try {
+            LOG.debug("Fetching binary entity definition for guid={} ", guid);
+            final byte[] entityDefinition = metadataService.getBinaryEntityDefinition(guid);
+            if (entityDefinition == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+
+            return Response.ok(entityDefinition, BinarySerialization.MEDIA_TYPE).build();
+        } catch (MetadataException | IllegalArgumentException e) {
+            LOG.error("An entity with GUID={} does not exist", guid, e);
+            throw new WebApplicationException(e, Response
+                    .status(Response.Status.NOT_FOUND)
+                    .entity(e.getMessage())
+                    .type(MediaType.APPLICATION_JSON)
+                    .build());
+        }
+    }
+
     /**
      * Gets the list of entities for a given entity type.
      *
      * @param entityType     name of a type which is unique
      * @param offset         starting offset for pagination
-     * @param resultsPerPage number of results for pagination
+     * @param limit          number of results for pagination, all results if not given
+     * @param resultsPerPage number of results for pagination, used when limit is not given
+     * @param count          whether the total size is the count of all entities of the type
+     *                       rather than the size of the page
      */
     @GET
     @Path("list/{entityType}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getEntityList(@PathParam("entityType") String entityType,
-                                  @DefaultValue("0") @QueryParam("offset") Integer offset,
-                                  @QueryParam("numResults") Integer resultsPerPage) {
+                                  @DefaultValue("0") @QueryParam(MetadataServiceClient.OFFSET) Integer offset,
+                                  @QueryParam(MetadataServiceClient.LIMIT) Integer limit,
+                                  @QueryParam("numResults") Integer resultsPerPage,
+                                  @DefaultValue("false") @QueryParam(MetadataServiceClient.COUNT)
+                                  boolean count) {
         Preconditions.checkNotNull(entityType, "Entity type cannot be null");
         try {
             LOG.debug("Fetching entity list for type={} ", entityType);
-            final List<String> entityList = metadataService.getEntityList(entityType);
+            if (limit == null) {
+                limit = resultsPerPage != null ? resultsPerPage : -1;
+            }
+            final List<String> entityList = metadataService.getEntityList(entityType, limit, offset);
 
             JSONObject response = new JSONObject();
             response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
             response.put("type", entityType);
             response.put(MetadataServiceClient.RESULTS, new JSONArray(entityList));
-            response.put(MetadataServiceClient.TOTAL_SIZE, entityList.size());
+            response.put(MetadataServiceClient.TOTAL_SIZE,
+                    count ? metadataService.getEntityCount(entityType) : entityList.size());
 
             return Response.ok(response).build();
         } catch (MetadataException | IllegalArgumentException e) {
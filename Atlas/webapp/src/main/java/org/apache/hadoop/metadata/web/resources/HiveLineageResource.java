@@ -33,6 +33,7 @@ import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
@@ -164,4 +165,32 @@ public class HiveLineageResource {
                     Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
         }
     }
+
+    /**
+     * Rebuilds the lineage index from the lineage in the repository.
+     */
+    @POST
+    @Path("index")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response rebuildIndex(@Context HttpServletRequest request) {
+        LOG.info("Rebuilding the lineage index");
+
+        try {
+            final int processCount = lineageService.rebuildIndex();
+
+            JSONObject response = new JSONObject();
+            response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
+            response.put("processCount", processCount);
+
+            return Response.ok(response).build();
+        } catch (DiscoveryException e) {
+            LOG.error("Unable to rebuild the lineage index", e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
+        } catch (JSONException e) {
+            LOG.error("Unable to rebuild the lineage index", e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+        }
+    }
 }
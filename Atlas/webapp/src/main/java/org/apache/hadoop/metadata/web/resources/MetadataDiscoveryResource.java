@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import org.apache.hadoop.metadata.MetadataServiceClient;
 import org.apache.hadoop.metadata.discovery.DiscoveryException;
 import org.apache.hadoop.metadata.discovery.DiscoveryService;
+import org.apache.hadoop.metadata.query.QueryBudget;
 import org.apache.hadoop.metadata.web.util.Servlets;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
@@ -31,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -38,6 +40,13 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -67,80 +76,125 @@ public class MetadataDiscoveryResource {
      * Search using a given query.
      *
      * @param query search query in raw gremlin or DSL format falling back to full text.
+     * @param limit maximum number of results, all results if not given.
+     * @param offset number of results to skip.
+     * @param count whether to count all the results of a DSL query.
      * @return JSON representing the type and results.
      */
     @GET
     @Path("search")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response search(@QueryParam("query") String query) {
+    public Response search(@QueryParam("query") String query,
+                           @DefaultValue("-1") @QueryParam(MetadataServiceClient.LIMIT) int limit,
+                           @DefaultValue("0") @QueryParam(MetadataServiceClient.OFFSET) int offset,
+                           @DefaultValue("false") @QueryParam(MetadataServiceClient.COUNT) boolean count) {
         Preconditions.checkNotNull(query, "query cannot be null");
 
         if (query.startsWith("g.")) { // raw gremlin query
-            return searchUsingGremlinQuery(query);
+            return searchUsingGremlinQuery(query, 0, 0);
         }
 
-        try {
-            JSONObject response = new JSONObject();
-            response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
-            response.put("query", query);
-
-            try {   // fall back to dsl
-                final String jsonResult = discoveryService.searchByDSL(query);
-                response.put("queryType", "dsl");
-                response.put(MetadataServiceClient.RESULTS, new JSONObject(jsonResult));
-
-            } catch (Throwable throwable) {
-                LOG.error("Unable to get entity list for query {} using dsl", query, throwable);
-
-                try {   //fall back to full-text
-                    final String jsonResult = discoveryService.searchByFullText(query);
-                    response.put("queryType", "full-text");
-                    response.put(MetadataServiceClient.RESULTS, new JSONObject(jsonResult));
-                } catch (DiscoveryException e) {
-                    LOG.error("Unable to get entity list for query {}", query, e);
-                    throw new WebApplicationException(Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
-                } catch (JSONException e) {
-                    LOG.error("Unable to get entity list for query {}", query, e);
-                    throw new WebApplicationException(
-                            Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
-                }
-            }
-
-            return Response.ok(response).build();
-        } catch (JSONException e) {
-            LOG.error("Unable to get entity list for query {}", query, e);
-            throw new WebApplicationException(Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+        try {   // fall back to full-text
+            discoveryService.validateDSL(query);
+        } catch (DiscoveryException e) {
+            LOG.error("Unable to get entity list for query {} using dsl", query, e);
+            return searchUsingFullText(query, limit, offset);
         }
+
+        return searchUsingQueryDSL(query, limit, offset, count, false, null, 0, 0, 0);
     }
 
     /**
      * Search using query DSL format.
      *
      * @param dslQuery search query in DSL format.
-     * @return JSON representing the type and results.
+     * @param limit maximum number of results, all results if not given.
+     * @param offset number of results to skip.
+     * @param count whether to count all the results of the query.
+     * @param explain whether to explain how the query is evaluated instead of running it.
+     * @param attributes comma separated attributes of the instances to return, whole instances
+     *                   if not given, just their ids if empty.
+     * @param timeout maximum milliseconds the query runs, the configured limit if not given.
+     * @param maxTraversed maximum number of elements the loops of the query traverse, the
+     *                     configured limit if not given.
+     * @param maxRows maximum number of rows the query returns, the configured limit if not given.
+     * @return JSON representing the type and results, or the explanation of the query. The
+     *         results of a query that goes past a limit after its first row are cut short and
+     *         marked "truncated":true.
      */
     @GET
     @Path("search/dsl")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response searchUsingQueryDSL(@QueryParam("query") String dslQuery) {
+    public Response searchUsingQueryDSL(@QueryParam("query") final String dslQuery,
+                                        @DefaultValue("-1") @QueryParam(MetadataServiceClient.LIMIT)
+                                        final int limit,
+                                        @DefaultValue("0") @QueryParam(MetadataServiceClient.OFFSET)
+                                        final int offset,
+                                        @DefaultValue("false") @QueryParam(MetadataServiceClient.COUNT)
+                                        boolean count,
+                                        @DefaultValue("false") @QueryParam(MetadataServiceClient.EXPLAIN)
+                                        boolean explain,
+                                        @QueryParam(MetadataServiceClient.ATTRIBUTES)
+                                        String attributes,
+                                        @DefaultValue("0") @QueryParam(MetadataServiceClient.TIMEOUT)
+                                        long timeout,
+                                        @DefaultValue("0") @QueryParam(MetadataServiceClient.MAX_TRAVERSED)
+                                        long maxTraversed,
+                                        @DefaultValue("0") @QueryParam(MetadataServiceClient.MAX_ROWS)
+                                        long maxRows) {
         Preconditions.checkNotNull(dslQuery, "dslQuery cannot be null");
+        checkRange(limit, offset);
+
+        if (explain) {
+            return explainQueryDSL(dslQuery);
+        }
 
+        final List<String> projection = attributes == null ? null : splitAttributes(attributes);
+        final QueryBudget budget = discoveryService.getQueryBudget(timeout, maxTraversed, maxRows);
         try {
-            final String jsonResult = discoveryService.searchByDSL(dslQuery);
+            discoveryService.validateDSL(dslQuery, projection);
+            final Long totalSize = count ? discoveryService.countByDSL(dslQuery, budget) : null;
+
+            return streamResponse(dslQuery, "dsl", totalSize, new ResultsWriter() {
+                @Override
+                public void write(Writer writer) throws DiscoveryException {
+                    discoveryService.searchByDSL(dslQuery, limit, offset, projection, budget,
+                            writer);
+                }
+            });
+        } catch (DiscoveryException e) {
+            LOG.error("Unable to get entity list for dslQuery {}", dslQuery, e);
+            throw new WebApplicationException(
+                    Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
+        }
+    }
 
+    private static List<String> splitAttributes(String attributes) {
+        List<String> names = new ArrayList<>();
+        for (String name : attributes.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    private Response explainQueryDSL(String dslQuery) {
+        try {
             JSONObject response = new JSONObject();
             response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
             response.put("query", dslQuery);
             response.put("queryType", "dsl");
-            response.put(MetadataServiceClient.RESULTS, new JSONObject(jsonResult));
+            response.put(MetadataServiceClient.EXPLAIN,
+                    new JSONObject(discoveryService.explainDSL(dslQuery)));
 
             return Response.ok(response).build();
         } catch (DiscoveryException e) {
-            LOG.error("Unable to get entity list for dslQuery {}", dslQuery, e);
+            LOG.error("Unable to explain dslQuery {}", dslQuery, e);
             throw new WebApplicationException(
                     Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
         } catch (JSONException e) {
-            LOG.error("Unable to get entity list for dslQuery {}", dslQuery, e);
+            LOG.error("Unable to explain dslQuery {}", dslQuery, e);
             throw new WebApplicationException(
                     Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
         }
@@ -150,17 +204,24 @@ public class MetadataDiscoveryResource {
      * Search using raw gremlin query format.
      *
      * @param gremlinQuery search query in raw gremlin format.
+     * @param timeout maximum milliseconds the request waits for the query, the configured limit
+     *                if not given; a script may keep running past it until its next row.
+     * @param maxRows maximum number of rows the query returns, the configured limit if not given.
      * @return JSON representing the type and results.
      */
     @GET
     @Path("search/gremlin")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response searchUsingGremlinQuery(@QueryParam("query") String gremlinQuery) {
+    public Response searchUsingGremlinQuery(@QueryParam("query") String gremlinQuery,
+                                            @DefaultValue("0") @QueryParam(MetadataServiceClient.TIMEOUT)
+                                            long timeout,
+                                            @DefaultValue("0") @QueryParam(MetadataServiceClient.MAX_ROWS)
+                                            long maxRows) {
         Preconditions.checkNotNull(gremlinQuery, "gremlinQuery cannot be null");
 
         try {
-            final List<Map<String, String>> results = discoveryService
-                    .searchByGremlin(gremlinQuery);
+            final List<Map<String, String>> results = discoveryService.searchByGremlin(
+                    gremlinQuery, discoveryService.getQueryBudget(timeout, 0, maxRows));
 
             JSONObject response = new JSONObject();
             response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
@@ -190,31 +251,82 @@ public class MetadataDiscoveryResource {
      * Search using full text search.
      *
      * @param query search query.
+     * @param limit maximum number of results, all results if not given.
+     * @param offset number of results to skip.
      * @return JSON representing the type and results.
      */
     @GET
     @Path("search/fulltext")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response searchUsingFullText(@QueryParam("query") String query) {
+    public Response searchUsingFullText(@QueryParam("query") final String query,
+                                        @DefaultValue("-1") @QueryParam(MetadataServiceClient.LIMIT)
+                                        final int limit,
+                                        @DefaultValue("0") @QueryParam(MetadataServiceClient.OFFSET)
+                                        final int offset) {
         Preconditions.checkNotNull(query, "query cannot be null");
+        checkRange(limit, offset);
 
-        try {
-            final String jsonResult = discoveryService.searchByFullText(query);
-
-            JSONObject response = new JSONObject();
-            response.put(MetadataServiceClient.REQUEST_ID, Servlets.getRequestId());
-            response.put("query", query);
-            response.put("queryType", "full-text");
-            response.put(MetadataServiceClient.RESULTS, new JSONObject(jsonResult));
+        return streamResponse(query, "full-text", null, new ResultsWriter() {
+            @Override
+            public void write(Writer writer) throws DiscoveryException {
+                discoveryService.searchByFullText(query, limit, offset, writer);
+            }
+        });
+    }
 
-            return Response.ok(response).build();
-        } catch (DiscoveryException e) {
-            LOG.error("Unable to get entity list for query {}", query, e);
-            throw new WebApplicationException(Servlets.getErrorResponse(e, Response.Status.BAD_REQUEST));
-        } catch (JSONException e) {
-            LOG.error("Unable to get entity list for query {}", query, e);
-            throw new WebApplicationException(Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+    private static void checkRange(int limit, int offset) {
+        if (limit == 0 || offset < 0) {
+            throw new WebApplicationException(Servlets.getErrorResponse(
+                    "Invalid limit " + limit + " offset " + offset, Response.Status.BAD_REQUEST));
         }
+    }
+
+    /**
+     * Writes the results of a search into the response.
+     */
+    private interface ResultsWriter {
+        void write(Writer writer) throws DiscoveryException;
+    }
+
+    /**
+     * Builds a response that streams the results of a search, the results are written
+     * as they are found rather than built in memory first.
+     *
+     * @param query     search query
+     * @param queryType type of the search query
+     * @param totalSize total number of results, left out if null
+     * @param results   writes the results of the search
+     * @return response streaming the search results
+     */
+    private Response streamResponse(final String query, final String queryType,
+                                    final Long totalSize, final ResultsWriter results) {
+        final String requestId = Servlets.getRequestId();
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+                writer.write("{" + JSONObject.quote(MetadataServiceClient.REQUEST_ID) + ":"
+                        + JSONObject.quote(requestId));
+                writer.write(",\"query\":" + JSONObject.quote(query));
+                writer.write(",\"queryType\":" + JSONObject.quote(queryType));
+                if (totalSize != null) {
+                    writer.write("," + JSONObject.quote(MetadataServiceClient.TOTAL_SIZE) + ":" + totalSize);
+                }
+                writer.write("," + JSONObject.quote(MetadataServiceClient.RESULTS) + ":");
+
+                try {
+                    results.write(writer);
+                } catch (DiscoveryException e) {
+                    LOG.error("Unable to get entity list for query {}", query, e);
+                    throw new WebApplicationException(
+                            Servlets.getErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
+                }
+
+                writer.write("}");
+                writer.flush();
+            }
+        };
 
+        return Response.ok(output).build();
     }
-}
\ No newline at end of file
+}
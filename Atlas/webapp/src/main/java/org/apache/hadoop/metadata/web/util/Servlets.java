@@ -18,15 +18,21 @@
 
 package org.apache.hadoop.metadata.web.util;
 
+import com.google.common.base.Charsets;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jettison.json.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
 
 /**
  * Utility functions for dealing with servlets.
@@ -110,6 +116,42 @@ public final class Servlets {
         return writer.toString();
     }
 
+    /**
+     * Returns a reader over the request payload, in the encoding of the request or UTF-8.
+     */
+    public static Reader getRequestReader(HttpServletRequest request) throws IOException {
+        String encoding = request.getCharacterEncoding();
+        return new InputStreamReader(request.getInputStream(),
+                encoding == null ? Charsets.UTF_8 : Charset.forName(encoding));
+    }
+
+    /**
+     * Returns the request payload, failing the request with a 413 if it is larger than
+     * maxBytes. At most maxBytes + 1 bytes are read, whatever the Content-Length says.
+     *
+     * @param request  an HTTP servlet request
+     * @param maxBytes largest payload accepted
+     */
+    public static byte[] getRequestPayloadBytes(HttpServletRequest request,
+                                                int maxBytes) throws IOException {
+        if (request.getContentLength() > maxBytes) {
+            throw payloadTooLarge(maxBytes);
+        }
+
+        byte[] payload = IOUtils.toByteArray(
+                new BoundedInputStream(request.getInputStream(), maxBytes + 1L));
+        if (payload.length > maxBytes) {
+            throw payloadTooLarge(maxBytes);
+        }
+        return payload;
+    }
+
+    private static WebApplicationException payloadTooLarge(int maxBytes) {
+        return new WebApplicationException(getErrorResponse(
+                "Request payload is larger than " + maxBytes + " bytes",
+                Response.Status.REQUEST_ENTITY_TOO_LARGE));
+    }
+
     public static String getRequestId() {
         return Thread.currentThread().getName();
     }
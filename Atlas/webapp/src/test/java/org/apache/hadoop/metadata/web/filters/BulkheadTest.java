@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metadata.web.filters;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BulkheadTest {
+
+    @Test
+    public void testRequestsAreClassified() {
+        Bulkheads bulkheads = new Bulkheads(new PropertiesConfiguration());
+
+        Assert.assertEquals(bulkheads.forRequest("POST", "/api/metadata/entities/submit").getName(),
+                Bulkheads.WRITE);
+        Assert.assertEquals(bulkheads.forRequest("PUT", "/api/metadata/entities/update/1").getName(),
+                Bulkheads.WRITE);
+        Assert.assertEquals(bulkheads.forRequest("POST", "/api/metadata/types/submit").getName(),
+                Bulkheads.WRITE);
+        Assert.assertEquals(bulkheads.forRequest("GET", "/api/metadata/entities/definition/1").getName(),
+                Bulkheads.POINT_READ);
+        Assert.assertEquals(bulkheads.forRequest("GET", "/api/metadata/discovery/search/dsl").getName(),
+                Bulkheads.SEARCH);
+        Assert.assertEquals(bulkheads.forRequest("GET", "/api/metadata/lineage/hive/inputs/t").getName(),
+                Bulkheads.LINEAGE);
+        Assert.assertEquals(bulkheads.forRequest("GET", "/api/metadata/graph/vertices/1").getName(),
+                Bulkheads.GRAPH_BROWSE);
+
+        Assert.assertNull(bulkheads.forRequest("GET", "/api/metadata/admin/version"));
+        Assert.assertNull(bulkheads.forRequest("GET", "/index.html"));
+    }
+
+    @Test
+    public void testDisabledBulkheadIsNotLimited() {
+        PropertiesConfiguration configuration = new PropertiesConfiguration();
+        configuration.setProperty("metadata.bulkhead.search.max.concurrent", 0);
+        Bulkheads bulkheads = new Bulkheads(configuration);
+
+        Assert.assertNull(bulkheads.get(Bulkheads.SEARCH));
+        Assert.assertNull(bulkheads.forRequest("GET", "/api/metadata/discovery/search"));
+        Assert.assertNotNull(bulkheads.get(Bulkheads.WRITE));
+    }
+
+    @Test
+    public void testRequestsPastTheQueueAreRejected() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 1, 10000L, 1);
+        Assert.assertTrue(bulkhead.tryAcquire());
+        Assert.assertEquals(bulkhead.getActiveCount(), 1);
+
+        final CountDownLatch admitted = new CountDownLatch(1);
+        Thread queued = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    if (bulkhead.tryAcquire()) {
+                        admitted.countDown();
+                        bulkhead.release();
+                    }
+                } catch (InterruptedException e) {
+                    // the test fails on the latch
+                }
+            }
+        };
+        queued.start();
+
+        while (bulkhead.getQueueDepth() == 0) {
+            Thread.sleep(10);
+        }
+
+        // the queue is full
+        Assert.assertFalse(bulkhead.tryAcquire());
+        Assert.assertEquals(bulkhead.getRejectedCount(), 1);
+        Assert.assertEquals(bulkhead.getTimedOutCount(), 0);
+
+        bulkhead.release();
+        Assert.assertTrue(admitted.await(10, TimeUnit.SECONDS));
+        queued.join();
+
+        Assert.assertEquals(bulkhead.getQueueDepth(), 0);
+        Assert.assertEquals(bulkhead.getActiveCount(), 0);
+        Assert.assertEquals(bulkhead.getAdmittedCount(), 2);
+    }
+
+    @Test
+    public void testQueuedRequestTimesOut() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, 10L, 1);
+        Assert.assertTrue(bulkhead.tryAcquire());
+
+        Assert.assertFalse(bulkhead.tryAcquire());
+        Assert.assertEquals(bulkhead.getTimedOutCount(), 1);
+        Assert.assertEquals(bulkhead.getQueueDepth(), 0);
+
+        bulkhead.release();
+        Assert.assertTrue(bulkhead.tryAcquire());
+    }
+}
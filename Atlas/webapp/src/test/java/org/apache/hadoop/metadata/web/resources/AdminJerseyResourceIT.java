@@ -66,4 +66,24 @@ public class AdminJerseyResourceIT extends BaseResourceIT {
         Assert.assertEquals(response.get("Description"),
                 buildConfiguration.getString("project.description"));
     }
+
+    @Test
+    public void testGetBulkheads() throws Exception {
+        WebResource resource = service
+                .path("api/metadata/admin/bulkheads");
+
+        ClientResponse clientResponse = resource
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON)
+                .method(HttpMethod.GET, ClientResponse.class);
+        Assert.assertEquals(clientResponse.getStatus(), Response.Status.OK.getStatusCode());
+
+        JSONObject response = new JSONObject(clientResponse.getEntity(String.class));
+        for (String name : new String[]{"write", "point-read", "search", "lineage", "graph-browse"}) {
+            JSONObject bulkhead = response.getJSONObject(name);
+            Assert.assertTrue(bulkhead.getInt("maxConcurrent") > 0);
+            Assert.assertTrue(bulkhead.has("queueDepth"));
+            Assert.assertTrue(bulkhead.has("rejected"));
+        }
+    }
 }
@@ -87,6 +87,29 @@ public class MetadataDiscoveryJerseyResourceIT extends BaseResourceIT {
         Assert.assertEquals(rows.length(), 1);
     }
 
+    @Test
+    public void testExplainDSL() throws Exception {
+        String dslQuery = "dsl_test_type where name = \"foo name\"";
+        WebResource resource = service
+                .path("api/metadata/discovery/search/dsl")
+                .queryParam("query", dslQuery)
+                .queryParam(MetadataServiceClient.EXPLAIN, "true");
+
+        ClientResponse clientResponse = resource
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON)
+                .method(HttpMethod.GET, ClientResponse.class);
+        Assert.assertEquals(clientResponse.getStatus(), Response.Status.OK.getStatusCode());
+
+        JSONObject response = new JSONObject(clientResponse.getEntity(String.class));
+        Assert.assertEquals(response.getString("query"), dslQuery);
+
+        JSONObject explanation = response.getJSONObject(MetadataServiceClient.EXPLAIN);
+        Assert.assertTrue(explanation.getBoolean("startsFromIndex"));
+        Assert.assertEquals(explanation.getJSONArray("indexedPredicates").length(), 1);
+        Assert.assertFalse(response.has(MetadataServiceClient.RESULTS));
+    }
+
     @Test
     public void testSearchByDSLForUnknownType() throws Exception {
         String dslQuery = "from blah";